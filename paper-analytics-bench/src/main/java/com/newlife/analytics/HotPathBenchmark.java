@@ -0,0 +1,178 @@
+package com.newlife.analytics;
+
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.block.BlockState;
+import org.bukkit.block.Hopper;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
+import org.bukkit.inventory.ItemStack;
+import org.mockbukkit.mockbukkit.MockBukkit;
+import org.mockbukkit.mockbukkit.ServerMock;
+import org.mockbukkit.mockbukkit.block.state.BlockStateMock;
+import org.mockbukkit.mockbukkit.block.state.HopperStateMock;
+import org.mockbukkit.mockbukkit.world.ChunkMock;
+import org.mockbukkit.mockbukkit.world.WorldMock;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hot paths of the chunk scan and report building, for comparing a change to
+ * NewLifeAnalyticsPaper before and after. Run with -prof gc: gc.alloc.rate.norm is the bytes
+ * allocated per operation.
+ *
+ * The plugin runs on a MockBukkit server. The scanned chunk has 100 entities of common types and
+ * 64 tile entities, and stays below the critical score so analysis sends no alerts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HotPathBenchmark {
+
+    private static final int ENTITIES = 100;
+    private static final int TILE_ENTITIES = 64;
+
+    private WorldMock world;
+    private NewLifeAnalyticsPaper plugin;
+    private Chunk chunk;
+    private Entity[] entities;
+    private BlockState[] tileEntities;
+    private List<PlayerPositions.Position> players;
+    private Map<String, Object> chunkData;
+    private List<Map<String, String>> playerMaps;
+    private String details;
+    private Map<String, Object> location;
+    private Map<String, Object> context;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ServerMock server = MockBukkit.mock();
+        plugin = MockBukkit.load(NewLifeAnalyticsPaper.class);
+        world = server.addSimpleWorld("world");
+
+        Random random = new Random(42);
+        Location origin = new Location(world, 8, 64, 8);
+        EntityType[] types = {EntityType.ZOMBIE, EntityType.SKELETON, EntityType.COW, EntityType.CHICKEN, EntityType.ARMOR_STAND};
+        entities = new Entity[ENTITIES];
+        for (int i = 0; i < entities.length; i++) {
+            // Mostly mobs with some dropped items, like a real chunk
+            entities[i] = random.nextInt(5) == 0
+                ? world.dropItem(origin, new ItemStack(Material.COBBLESTONE))
+                : world.spawnEntity(origin, types[random.nextInt(types.length)]);
+        }
+        Material[] tileTypes = {
+            Material.REDSTONE_WIRE, Material.COMPARATOR, Material.REPEATER, Material.DROPPER,
+            Material.CHEST, Material.FURNACE, Material.BARREL
+        };
+        tileEntities = new BlockState[TILE_ENTITIES];
+        for (int i = 0; i < tileEntities.length; i++) {
+            tileEntities[i] = random.nextInt(4) == 0
+                ? new HopperStateMock(Material.HOPPER)
+                : new BlockStateMock(tileTypes[random.nextInt(tileTypes.length)]);
+        }
+        chunk = new FixedChunk(world, 0, 0, entities, tileEntities);
+        server.addPlayer().teleport(origin);
+        players = PlayerPositions.online();
+
+        chunkData = plugin.analyzeChunk(world, chunk, players);
+        playerMaps = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Map<String, String> player = new HashMap<>();
+            player.put("uuid", new UUID(random.nextLong(), random.nextLong()).toString());
+            player.put("username", "player" + i);
+            playerMaps.add(player);
+        }
+        details = "Critical chunk at (12, -40) in world: 212 entities (score 161.5) \"farm\"\n";
+        location = new HashMap<>();
+        location.put("world", "world");
+        location.put("chunkX", 12);
+        location.put("chunkZ", -40);
+        context = new HashMap<>();
+        context.put("suspectedCauses", Collections.singletonList(location));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        MockBukkit.unmock();
+    }
+
+    @Benchmark
+    public Map<String, Object> chunkAnalysis() {
+        return plugin.analyzeChunk(world, chunk, players);
+    }
+
+    @Benchmark
+    public Map<String, Integer> breakdownCounting() {
+        Map<String, Integer> breakdown = new HashMap<>();
+        for (Entity entity : entities) {
+            breakdown.merge(NewLifeAnalyticsPaper.entityKey(entity.getType()), 1, Integer::sum);
+        }
+        return breakdown;
+    }
+
+    @Benchmark
+    public int tileEntityClassification() {
+        int hoppers = 0;
+        int redstone = 0;
+        for (BlockState state : tileEntities) {
+            if (state instanceof Hopper) {
+                hoppers++;
+            }
+            if (NewLifeAnalyticsPaper.isRedstoneComponent(state.getType())) {
+                redstone++;
+            }
+        }
+        return hoppers * 1000 + redstone;
+    }
+
+    @Benchmark
+    public String escapeJson() {
+        return plugin.escapeJson(details);
+    }
+
+    @Benchmark
+    public String mapToJson() {
+        return plugin.mapToJson(chunkData);
+    }
+
+    @Benchmark
+    public String listToJson() {
+        return plugin.listToJson(playerMaps);
+    }
+
+    @Benchmark
+    public String alertBuilding() {
+        return plugin.lagAlertJson("entity_spam", "critical", details, location, playerMaps.get(0), context);
+    }
+
+    /**
+     * A loaded chunk that always holds the same entities and tile entities
+     */
+    private static class FixedChunk extends ChunkMock {
+
+        private final Entity[] entities;
+        private final BlockState[] tileEntities;
+
+        FixedChunk(WorldMock world, int x, int z, Entity[] entities, BlockState[] tileEntities) {
+            super(world, x, z);
+            this.entities = entities;
+            this.tileEntities = tileEntities;
+        }
+
+        @Override
+        public Entity[] getEntities() {
+            return entities;
+        }
+
+        @Override
+        public BlockState[] getTileEntities() {
+            return tileEntities;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.newlife.analytics;
+
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.plugin.Plugin;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs plugin tasks either on the Bukkit scheduler (one main thread) or on the region, entity,
+ * global region and async schedulers of a region-threaded server, where the Bukkit scheduler is
+ * unavailable. Paper implements the region schedulers too, so region mode also runs on plain Paper.
+ */
+public class AnalyticsScheduler {
+
+    private final Plugin plugin;
+    private final boolean regionThreaded;
+
+    public AnalyticsScheduler(Plugin plugin, boolean regionThreaded) {
+        this.plugin = plugin;
+        this.regionThreaded = regionThreaded;
+    }
+
+    /**
+     * True when the server ticks regions on separate threads (Folia)
+     */
+    public static boolean isRegionThreadedServer() {
+        try {
+            Class.forName("io.papermc.paper.threadedregions.RegionizedServer");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    public boolean isRegionThreaded() {
+        return regionThreaded;
+    }
+
+    /**
+     * Repeating task on the main thread, or the global region thread in region mode
+     */
+    public void runTimer(Runnable task, long delayTicks, long periodTicks) {
+        if (regionThreaded) {
+            Bukkit.getGlobalRegionScheduler().runAtFixedRate(plugin, t -> task.run(), Math.max(1, delayTicks), Math.max(1, periodTicks));
+        } else {
+            Bukkit.getScheduler().runTaskTimer(plugin, task, delayTicks, periodTicks);
+        }
+    }
+
+    /**
+     * Runs on the next tick of the main thread, or the global region thread in region mode
+     */
+    public void run(Runnable task) {
+        if (regionThreaded) {
+            Bukkit.getGlobalRegionScheduler().execute(plugin, task);
+        } else {
+            Bukkit.getScheduler().runTask(plugin, task);
+        }
+    }
+
+    public void runAsync(Runnable task) {
+        if (regionThreaded) {
+            Bukkit.getAsyncScheduler().runNow(plugin, t -> task.run());
+        } else {
+            Bukkit.getScheduler().runTaskAsynchronously(plugin, task);
+        }
+    }
+
+    public void runAsyncTimer(Runnable task, long delayTicks, long periodTicks) {
+        if (regionThreaded) {
+            Bukkit.getAsyncScheduler().runAtFixedRate(plugin, t -> task.run(),
+                Math.max(1, delayTicks) * 50, Math.max(1, periodTicks) * 50, TimeUnit.MILLISECONDS);
+        } else {
+            Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, task, delayTicks, periodTicks);
+        }
+    }
+
+    /**
+     * Runs on the thread that owns the chunk (the main thread outside region mode)
+     */
+    public void runAtChunk(World world, int chunkX, int chunkZ, Runnable task) {
+        if (regionThreaded) {
+            Bukkit.getRegionScheduler().execute(plugin, world, chunkX, chunkZ, task);
+        } else {
+            Bukkit.getScheduler().runTask(plugin, task);
+        }
+    }
+
+    /**
+     * Runs on the thread that owns the entity (the main thread outside region mode).
+     * If the entity is removed before the task runs, retired runs instead.
+     */
+    public void runForEntity(Entity entity, Runnable task, Runnable retired) {
+        if (regionThreaded) {
+            if (!entity.getScheduler().execute(plugin, task, retired, 1)) {
+                retired.run();
+            }
+        } else {
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                if (entity.isValid()) {
+                    task.run();
+                } else {
+                    retired.run();
+                }
+            });
+        }
+    }
+}
@@ -11,30 +11,49 @@ public class ApiClient {
     private static final int TIMEOUT = 5000;
 
     public static String post(String urlString, String apiKey, String jsonBody) throws IOException {
+        return post(urlString, apiKey, "application/json", jsonBody.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static String post(String urlString, String apiKey, String contentType, byte[] body) throws IOException {
         URL url = new URL(urlString);
         HttpURLConnection conn = (HttpURLConnection) url.openConnection();
         
         try {
             conn.setRequestMethod("POST");
-            conn.setRequestProperty("Content-Type", "application/json");
+            conn.setRequestProperty("Content-Type", contentType);
             conn.setRequestProperty("Authorization", "Bearer " + apiKey);
             conn.setConnectTimeout(TIMEOUT);
             conn.setReadTimeout(TIMEOUT);
             conn.setDoOutput(true);
             
             try (OutputStream os = conn.getOutputStream()) {
-                byte[] input = jsonBody.getBytes(StandardCharsets.UTF_8);
-                os.write(input, 0, input.length);
+                os.write(body, 0, body.length);
             }
             
             int responseCode = conn.getResponseCode();
             if (responseCode >= 200 && responseCode < 300) {
                 return "OK";
             } else {
-                throw new IOException("HTTP error: " + responseCode);
+                throw new HttpStatusException(responseCode);
             }
         } finally {
             conn.disconnect();
         }
     }
+
+    /**
+     * Non-2xx response from the API
+     */
+    public static class HttpStatusException extends IOException {
+        private final int statusCode;
+
+        public HttpStatusException(int statusCode) {
+            super("HTTP error: " + statusCode);
+            this.statusCode = statusCode;
+        }
+
+        public int getStatusCode() {
+            return statusCode;
+        }
+    }
 }
@@ -0,0 +1,100 @@
+package com.newlife.analytics;
+
+import org.bukkit.Location;
+import org.bukkit.block.Block;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockRedstoneEvent;
+import org.bukkit.event.inventory.InventoryMoveItemEvent;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Counts redstone updates and hopper item moves per chunk between scans.
+ * These events fire thousands of times per tick on busy farms, so counters are keyed by
+ * packed chunk coordinates per world.
+ *
+ * Hopper moves are counted by a separate listener that is only registered with
+ * lagBudget.hopperEvents: InventoryMoveItemEvent fires for every item a hopper moves and having
+ * any listener at all costs tick time. Without it the lag budget counts hoppers in the chunk scan.
+ */
+public class ChunkActivityTracker implements Listener {
+
+    // World name -> packed chunk key -> {redstone updates, hopper moves}; guarded by this, since
+    // region-threaded servers fire events from several region threads at once
+    private Map<String, Map<Long, long[]>> counters = new HashMap<>();
+    private long windowStart = System.currentTimeMillis();
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onRedstone(BlockRedstoneEvent event) {
+        Block block = event.getBlock();
+        count(block.getWorld().getName(), block.getX() >> 4, block.getZ() >> 4, 0);
+    }
+
+    /**
+     * Listener counting hopper item moves into this tracker
+     */
+    public Listener hopperMoves() {
+        return new HopperMoveListener();
+    }
+
+    public class HopperMoveListener implements Listener {
+
+        @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+        public void onHopperMove(InventoryMoveItemEvent event) {
+            Location location = event.getSource().getLocation();
+            if (location == null || location.getWorld() == null) {
+                return;
+            }
+            count(location.getWorld().getName(), location.getBlockX() >> 4, location.getBlockZ() >> 4, 1);
+        }
+    }
+
+    private synchronized void count(String world, int chunkX, int chunkZ, int index) {
+        long key = ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+        counters.computeIfAbsent(world, k -> new HashMap<>()).computeIfAbsent(key, k -> new long[2])[index]++;
+    }
+
+    /**
+     * Returns per-minute rates since the last drain by world and packed chunk key, and starts a new window.
+     */
+    public synchronized Map<String, Map<Long, Activity>> drain() {
+        long now = System.currentTimeMillis();
+        double minutes = Math.max(1, now - windowStart) / 60000.0;
+        windowStart = now;
+
+        Map<String, Map<Long, long[]>> drained = counters;
+        counters = new HashMap<>();
+
+        Map<String, Map<Long, Activity>> result = new HashMap<>();
+        for (Map.Entry<String, Map<Long, long[]>> world : drained.entrySet()) {
+            Map<Long, Activity> chunks = new HashMap<>();
+            for (Map.Entry<Long, long[]> chunk : world.getValue().entrySet()) {
+                long[] counts = chunk.getValue();
+                chunks.put(chunk.getKey(), new Activity(counts[0] / minutes, counts[1] / minutes));
+            }
+            result.put(world.getKey(), chunks);
+        }
+        return result;
+    }
+
+    public static class Activity {
+        private final double redstonePerMinute;
+        private final double hopperMovesPerMinute;
+
+        Activity(double redstonePerMinute, double hopperMovesPerMinute) {
+            this.redstonePerMinute = redstonePerMinute;
+            this.hopperMovesPerMinute = hopperMovesPerMinute;
+        }
+
+        public double getRedstonePerMinute() {
+            return redstonePerMinute;
+        }
+
+        public double getHopperMovesPerMinute() {
+            return hopperMovesPerMinute;
+        }
+    }
+}
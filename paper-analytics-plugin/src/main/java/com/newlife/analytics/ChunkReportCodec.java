@@ -0,0 +1,165 @@
+package com.newlife.analytics;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Compact binary encoding for chunk reports.
+ *
+ * Layout (all integers are unsigned LEB128 varints unless noted):
+ *   magic "NLCR", version byte
+ *   server name (string)
+ *   dictionary: count, then strings (world names, entity types, usernames)
+ *   chunk count N
+ *   columns of N values each: world index, x (zigzag), z (zigzag), entities, score (x10), hoppers, redstone, tileEntities
+ *   per chunk: breakdown size, then (type index, count) pairs
+ *   per chunk: player count, then (uuid as two fixed 8-byte longs, username index)
+ *
+ * Strings are a varint byte length followed by UTF-8 bytes.
+ */
+public final class ChunkReportCodec {
+
+    public static final String CONTENT_TYPE = "application/vnd.newlife.chunks+binary";
+
+    private static final byte[] MAGIC = {'N', 'L', 'C', 'R'};
+    private static final int VERSION = 2;
+
+    private ChunkReportCodec() {
+    }
+
+    @SuppressWarnings("unchecked")
+    public static byte[] encode(String serverName, List<Map<String, Object>> chunks) {
+        int n = chunks.size();
+        Map<String, Integer> dictionary = new HashMap<>();
+        List<String> dictionaryOrder = new ArrayList<>();
+
+        // Build the dictionary first so every repeated string is written once
+        for (Map<String, Object> chunk : chunks) {
+            intern((String) chunk.get("world"), dictionary, dictionaryOrder);
+            Map<String, Integer> breakdown = (Map<String, Integer>) chunk.get("entityBreakdown");
+            if (breakdown != null) {
+                for (String type : breakdown.keySet()) {
+                    intern(type, dictionary, dictionaryOrder);
+                }
+            }
+            List<Map<String, String>> players = (List<Map<String, String>>) chunk.get("playersNearby");
+            if (players != null) {
+                for (Map<String, String> player : players) {
+                    intern(player.get("username"), dictionary, dictionaryOrder);
+                }
+            }
+        }
+
+        Writer out = new Writer(64 + n * 24);
+        out.bytes(MAGIC);
+        out.raw(VERSION);
+        out.string(serverName);
+
+        out.varint(dictionaryOrder.size());
+        for (String s : dictionaryOrder) {
+            out.string(s);
+        }
+
+        out.varint(n);
+        for (Map<String, Object> chunk : chunks) out.varint(dictionary.get((String) chunk.get("world")));
+        for (Map<String, Object> chunk : chunks) out.zigzag(intValue(chunk.get("x")));
+        for (Map<String, Object> chunk : chunks) out.zigzag(intValue(chunk.get("z")));
+        for (Map<String, Object> chunk : chunks) out.varint(intValue(chunk.get("entities")));
+        for (Map<String, Object> chunk : chunks) out.varint((int) Math.round(doubleValue(chunk.get("score")) * 10));
+        for (Map<String, Object> chunk : chunks) out.varint(intValue(chunk.get("hoppers")));
+        for (Map<String, Object> chunk : chunks) out.varint(intValue(chunk.get("redstone")));
+        for (Map<String, Object> chunk : chunks) out.varint(intValue(chunk.get("tileEntities")));
+
+        for (Map<String, Object> chunk : chunks) {
+            Map<String, Integer> breakdown = (Map<String, Integer>) chunk.get("entityBreakdown");
+            if (breakdown == null) {
+                out.varint(0);
+                continue;
+            }
+            out.varint(breakdown.size());
+            for (Map.Entry<String, Integer> entry : breakdown.entrySet()) {
+                out.varint(dictionary.get(entry.getKey()));
+                out.varint(entry.getValue());
+            }
+        }
+
+        for (Map<String, Object> chunk : chunks) {
+            List<Map<String, String>> players = (List<Map<String, String>>) chunk.get("playersNearby");
+            if (players == null) {
+                out.varint(0);
+                continue;
+            }
+            out.varint(players.size());
+            for (Map<String, String> player : players) {
+                UUID uuid = UUID.fromString(player.get("uuid"));
+                out.fixedLong(uuid.getMostSignificantBits());
+                out.fixedLong(uuid.getLeastSignificantBits());
+                out.varint(dictionary.get(player.get("username")));
+            }
+        }
+
+        return out.toByteArray();
+    }
+
+    private static void intern(String value, Map<String, Integer> dictionary, List<String> order) {
+        if (value != null && !dictionary.containsKey(value)) {
+            dictionary.put(value, order.size());
+            order.add(value);
+        }
+    }
+
+    private static int intValue(Object value) {
+        return value instanceof Number ? ((Number) value).intValue() : 0;
+    }
+
+    private static double doubleValue(Object value) {
+        return value instanceof Number ? ((Number) value).doubleValue() : 0;
+    }
+
+    /**
+     * Growable byte buffer with varint helpers
+     */
+    private static final class Writer extends ByteArrayOutputStream {
+
+        Writer(int initialSize) {
+            super(initialSize);
+        }
+
+        void raw(int b) {
+            write(b);
+        }
+
+        void bytes(byte[] b) {
+            write(b, 0, b.length);
+        }
+
+        void varint(int value) {
+            while ((value & ~0x7F) != 0) {
+                write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            write(value);
+        }
+
+        void zigzag(int value) {
+            varint((value << 1) ^ (value >> 31));
+        }
+
+        void fixedLong(long value) {
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                write((int) (value >>> shift) & 0xFF);
+            }
+        }
+
+        void string(String value) {
+            byte[] utf8 = (value != null ? value : "").getBytes(StandardCharsets.UTF_8);
+            varint(utf8.length);
+            bytes(utf8);
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package com.newlife.analytics;
+
+import org.bukkit.Location;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.entity.EntityRemoveEvent;
+import org.bukkit.event.entity.EntitySpawnEvent;
+
+import java.util.*;
+
+/**
+ * Catches entities that pile up slowly (broken farms, item stacks on chunk borders) and never trip
+ * the single-scan thresholds.
+ *
+ * Spawns and removals are counted per chunk and type between scans. Each scan extends a chunk's run
+ * while its entity count does not drop; once a run spans enough scans with enough net growth, an
+ * entity_accumulation alert is sent with growth rate, spawn/removal flow and an age histogram.
+ */
+public class EntityAccumulationTracker implements Listener {
+
+    // Age bucket upper bounds in ticks: 1 min, 5 min, 30 min, 2 h, then older
+    private static final int[] AGE_BOUNDS = {1200, 6000, 36000, 144000};
+    private static final String[] AGE_LABELS = {"<1m", "1-5m", "5-30m", "30m-2h", ">2h"};
+    private static final long ALERT_COOLDOWN_MS = 30 * 60 * 1000;
+
+    private final NewLifeAnalyticsPaper plugin;
+    private final int minScans;
+    private final int minGrowth;
+    private final EntityType[] types = EntityType.values();
+
+    // World name -> packed chunk key -> spawns and removals by type. All state is guarded by this,
+    // since region-threaded servers fire events and scan chunks from several region threads
+    private Map<String, Map<Long, TypeFlows>> flows = new HashMap<>();
+    private final Map<String, Series> series = new HashMap<>();
+    // Server-wide age histogram per type ordinal, rebuilt each scan
+    private long[][] ages;
+    private long[][] scanAges;
+    private int generation = 0;
+
+    public EntityAccumulationTracker(NewLifeAnalyticsPaper plugin, int minScans, int minGrowth) {
+        this.plugin = plugin;
+        this.minScans = Math.max(2, minScans);
+        this.minGrowth = Math.max(1, minGrowth);
+        this.ages = new long[types.length][AGE_LABELS.length];
+        this.scanAges = new long[types.length][AGE_LABELS.length];
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onSpawn(EntitySpawnEvent event) {
+        flow(event.getLocation(), event.getEntity().getType(), 0);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onRemove(EntityRemoveEvent event) {
+        if (event.getCause() == EntityRemoveEvent.Cause.UNLOAD) {
+            return; // still exists, just not loaded
+        }
+        Entity entity = event.getEntity();
+        flow(entity.getLocation(), entity.getType(), 1);
+    }
+
+    private synchronized void flow(Location location, EntityType type, int index) {
+        if (location == null || location.getWorld() == null) {
+            return;
+        }
+        long key = ((long) (location.getBlockX() >> 4) << 32) | ((location.getBlockZ() >> 4) & 0xFFFFFFFFL);
+        flows.computeIfAbsent(location.getWorld().getName(), k -> new HashMap<>())
+            .computeIfAbsent(key, k -> new TypeFlows())
+            .add(type.ordinal(), index == 0 ? 1 : 0, index == 1 ? 1 : 0);
+    }
+
+    /**
+     * Records one scanned chunk. Called from the chunk scan on the thread owning the chunk, for every
+     * chunk with entities, with the type breakdown already computed by the scan.
+     */
+    public synchronized void observe(String world, int chunkX, int chunkZ, Entity[] entities,
+                        Map<String, Integer> breakdown, boolean alreadyCritical) {
+        for (Entity entity : entities) {
+            scanAges[entity.getType().ordinal()][ageBucket(entity.getTicksLived())]++;
+        }
+
+        String key = world + ":" + chunkX + ":" + chunkZ;
+        long now = System.currentTimeMillis();
+        int count = entities.length;
+
+        Series s = series.get(key);
+        if (s == null || count < s.lastCount) {
+            Series previous = s;
+            s = new Series(count, breakdown, now);
+            if (previous != null) {
+                s.lastAlert = previous.lastAlert;
+            }
+            series.put(key, s);
+        } else {
+            s.scans++;
+            s.lastCount = count;
+        }
+        s.generation = generation;
+
+        Map<Long, TypeFlows> worldFlows = flows.get(world);
+        TypeFlows chunkFlows = worldFlows != null
+            ? worldFlows.remove(((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL)) : null;
+        if (chunkFlows != null) {
+            s.flows.addAll(chunkFlows);
+        }
+
+        int growth = count - s.startCount;
+        if (s.scans >= minScans && growth >= minGrowth && !alreadyCritical
+            && now - s.lastAlert > ALERT_COOLDOWN_MS) {
+            s.lastAlert = now;
+            alert(world, chunkX, chunkZ, entities, breakdown, s, now);
+        }
+    }
+
+    /**
+     * Finishes a scan: forgets chunks that were not seen (unloaded or emptied) and publishes the
+     * server-wide age histogram
+     */
+    public synchronized void endScan() {
+        series.values().removeIf(s -> s.generation != generation);
+        generation++;
+        flows = new HashMap<>();
+        ages = scanAges;
+        scanAges = new long[types.length][AGE_LABELS.length];
+    }
+
+    private void alert(String world, int chunkX, int chunkZ, Entity[] entities,
+                       Map<String, Integer> breakdown, Series s, long now) {
+        // The type that grew the most since the run started
+        String dominant = null;
+        int dominantGrowth = Integer.MIN_VALUE;
+        for (Map.Entry<String, Integer> entry : breakdown.entrySet()) {
+            int grown = entry.getValue() - s.startBreakdown.getOrDefault(entry.getKey(), 0);
+            if (grown > dominantGrowth) {
+                dominant = entry.getKey();
+                dominantGrowth = grown;
+            }
+        }
+        EntityType dominantType = dominant != null ? typeOf(dominant) : null;
+
+        double hours = Math.max(1, now - s.startTime) / 3_600_000.0;
+        double growthPerHour = (s.lastCount - s.startCount) / hours;
+
+        Map<String, Object> context = new LinkedHashMap<>();
+        context.put("scans", s.scans);
+        context.put("startCount", s.startCount);
+        context.put("count", s.lastCount);
+        context.put("growthPerHour", Math.round(growthPerHour * 10) / 10.0);
+        if (dominant != null) {
+            context.put("dominantType", dominant);
+            context.put("dominantGrowth", dominantGrowth);
+        }
+        if (dominantType != null) {
+            int ordinal = dominantType.ordinal();
+            context.put("spawned", s.flows.spawned(ordinal));
+            context.put("removed", s.flows.removed(ordinal));
+
+            long[] chunkAges = new long[AGE_LABELS.length];
+            for (Entity entity : entities) {
+                if (entity.getType() == dominantType) {
+                    chunkAges[ageBucket(entity.getTicksLived())]++;
+                }
+            }
+            context.put("ageHistogram", histogram(chunkAges));
+            context.put("serverAgeHistogram", histogram(ages[ordinal]));
+        }
+
+        String details = String.format("Entities accumulating at (%d, %d) in %s: %d -> %d over %d scans (+%.0f/h)%s",
+            chunkX, chunkZ, world, s.startCount, s.lastCount, s.scans, growthPerHour,
+            dominant != null ? ", mostly " + dominant : "");
+
+        Map<String, Object> location = new HashMap<>();
+        location.put("world", world);
+        location.put("chunkX", chunkX);
+        location.put("chunkZ", chunkZ);
+        location.put("x", chunkX * 16);
+        location.put("z", chunkZ * 16);
+
+        plugin.sendLagAlert("entity_accumulation", "high", details, location, null, context);
+    }
+
+    private static Map<String, Object> histogram(long[] buckets) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (int i = 0; i < buckets.length; i++) {
+            result.put(AGE_LABELS[i], buckets[i]);
+        }
+        return result;
+    }
+
+    private static int ageBucket(int ticksLived) {
+        for (int i = 0; i < AGE_BOUNDS.length; i++) {
+            if (ticksLived < AGE_BOUNDS[i]) {
+                return i;
+            }
+        }
+        return AGE_BOUNDS.length;
+    }
+
+    private EntityType typeOf(String name) {
+        try {
+            return EntityType.valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private class Series {
+        private final int startCount;
+        private final Map<String, Integer> startBreakdown;
+        private final long startTime;
+        private final TypeFlows flows = new TypeFlows();
+        private int lastCount;
+        private int scans = 1;
+        private long lastAlert;
+        private int generation;
+
+        Series(int count, Map<String, Integer> breakdown, long now) {
+            this.startCount = count;
+            this.lastCount = count;
+            this.startBreakdown = new HashMap<>(breakdown);
+            this.startTime = now;
+        }
+    }
+
+    /**
+     * Spawns and removals per entity type for one chunk. A chunk sees a handful of types, so this is
+     * a small open-addressed table keyed by type ordinal rather than an array over every type.
+     */
+    private static final class TypeFlows {
+        // Type ordinal + 1 per slot, 0 for an empty slot
+        private int[] keys = new int[8];
+        private int[] spawned = new int[8];
+        private int[] removed = new int[8];
+        private int size;
+
+        void add(int ordinal, int spawnedCount, int removedCount) {
+            int slot = slot(ordinal);
+            if (keys[slot] == 0) {
+                if ((size + 1) * 4 > keys.length * 3) {
+                    grow();
+                    slot = slot(ordinal);
+                }
+                keys[slot] = ordinal + 1;
+                size++;
+            }
+            spawned[slot] += spawnedCount;
+            removed[slot] += removedCount;
+        }
+
+        void addAll(TypeFlows other) {
+            for (int i = 0; i < other.keys.length; i++) {
+                if (other.keys[i] != 0) {
+                    add(other.keys[i] - 1, other.spawned[i], other.removed[i]);
+                }
+            }
+        }
+
+        int spawned(int ordinal) {
+            int slot = slot(ordinal);
+            return keys[slot] != 0 ? spawned[slot] : 0;
+        }
+
+        int removed(int ordinal) {
+            int slot = slot(ordinal);
+            return keys[slot] != 0 ? removed[slot] : 0;
+        }
+
+        /**
+         * The slot holding the ordinal, or the empty slot where it would go
+         */
+        private int slot(int ordinal) {
+            int mask = keys.length - 1;
+            int hash = ordinal * 0x9E3779B9;
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            while (keys[slot] != 0 && keys[slot] != ordinal + 1) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            int[] oldSpawned = spawned;
+            int[] oldRemoved = removed;
+            keys = new int[oldKeys.length * 2];
+            spawned = new int[keys.length];
+            removed = new int[keys.length];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    add(oldKeys[i] - 1, oldSpawned[i], oldRemoved[i]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package com.newlife.analytics;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Per-EntityType cost weights used for chunk scores and hotspot ranking.
+ * A weight of 1.0 is roughly one average mob; items and orbs are cheap, villagers are expensive.
+ *
+ * Weights are resolved as: config.yml entityCosts.weights > learned weights in entity-costs.yml > built-in defaults.
+ * In calibration mode, each chunk scan records (entity counts per type, measured entity tick ms) and the
+ * weights are refit with non-negative ridge regression towards the defaults.
+ */
+public class EntityCostModel {
+
+    private static final Map<String, Double> DEFAULT_WEIGHTS = new HashMap<>();
+    static {
+        DEFAULT_WEIGHTS.put("item", 0.25);
+        DEFAULT_WEIGHTS.put("experience_orb", 0.2);
+        DEFAULT_WEIGHTS.put("arrow", 0.3);
+        DEFAULT_WEIGHTS.put("spectral_arrow", 0.3);
+        DEFAULT_WEIGHTS.put("trident", 0.3);
+        DEFAULT_WEIGHTS.put("snowball", 0.2);
+        DEFAULT_WEIGHTS.put("falling_block", 0.5);
+        DEFAULT_WEIGHTS.put("armor_stand", 0.3);
+        DEFAULT_WEIGHTS.put("item_frame", 0.1);
+        DEFAULT_WEIGHTS.put("glow_item_frame", 0.1);
+        DEFAULT_WEIGHTS.put("painting", 0.1);
+        DEFAULT_WEIGHTS.put("minecart", 0.6);
+        DEFAULT_WEIGHTS.put("chest_minecart", 0.8);
+        DEFAULT_WEIGHTS.put("hopper_minecart", 1.5);
+        DEFAULT_WEIGHTS.put("villager", 4.0);
+        DEFAULT_WEIGHTS.put("wandering_trader", 3.0);
+        DEFAULT_WEIGHTS.put("iron_golem", 1.5);
+        DEFAULT_WEIGHTS.put("piglin", 2.0);
+        DEFAULT_WEIGHTS.put("piglin_brute", 2.0);
+        DEFAULT_WEIGHTS.put("hoglin", 1.5);
+        DEFAULT_WEIGHTS.put("allay", 2.0);
+        DEFAULT_WEIGHTS.put("bee", 2.0);
+        DEFAULT_WEIGHTS.put("fox", 1.5);
+        DEFAULT_WEIGHTS.put("axolotl", 1.5);
+        DEFAULT_WEIGHTS.put("warden", 3.0);
+        DEFAULT_WEIGHTS.put("wither", 3.0);
+        DEFAULT_WEIGHTS.put("ender_dragon", 5.0);
+        DEFAULT_WEIGHTS.put("player", 0.0);
+    }
+    private static final double DEFAULT_WEIGHT = 1.0;
+
+    private static final int MAX_OBSERVATIONS = 200;
+    private static final int MIN_OBSERVATIONS = 20;
+    private static final int REFIT_EVERY = 10;
+    private static final int FIT_PASSES = 50;
+
+    private final NewLifeAnalyticsPaper plugin;
+    private final File learnedFile;
+    private final Map<String, Double> configured;
+    private final boolean calibrating;
+
+    // Indexed by EntityType ordinal; replaced wholesale so readers never see a half-written table
+    private volatile double[] weights;
+    private final double[] priors;
+
+    // Calibration state, main thread only
+    private final Deque<Observation> observations = new ArrayDeque<>();
+    private int observationsSinceFit = 0;
+    private long lastEntitySamples = -1;
+    private long lastTotalSamples;
+    private double lastTickMs;
+    private long lastTicks;
+
+    public EntityCostModel(NewLifeAnalyticsPaper plugin, ConfigurationSection overrides, boolean calibrating) {
+        this.plugin = plugin;
+        this.learnedFile = new File(plugin.getDataFolder(), "entity-costs.yml");
+        this.calibrating = calibrating;
+
+        this.configured = new HashMap<>();
+        if (overrides != null) {
+            for (String key : overrides.getKeys(false)) {
+                configured.put(key.toLowerCase(), overrides.getDouble(key));
+            }
+        }
+
+        EntityType[] types = EntityType.values();
+        this.priors = new double[types.length];
+        for (EntityType type : types) {
+            priors[type.ordinal()] = DEFAULT_WEIGHTS.getOrDefault(type.name().toLowerCase(), DEFAULT_WEIGHT);
+        }
+
+        Map<String, Double> learned = loadLearned();
+        double[] table = priors.clone();
+        for (EntityType type : types) {
+            String key = type.name().toLowerCase();
+            if (configured.containsKey(key)) {
+                table[type.ordinal()] = configured.get(key);
+            } else if (learned.containsKey(key)) {
+                table[type.ordinal()] = learned.get(key);
+            }
+        }
+        this.weights = table;
+
+        if (!learned.isEmpty()) {
+            plugin.getLogger().info("Loaded " + learned.size() + " calibrated entity costs from " + learnedFile.getName());
+        }
+    }
+
+    public double weight(EntityType type) {
+        return weights[type.ordinal()];
+    }
+
+    public double score(Entity[] entities) {
+        double[] table = weights;
+        double score = 0;
+        for (Entity entity : entities) {
+            score += table[entity.getType().ordinal()];
+        }
+        return score;
+    }
+
+    public boolean isCalibrating() {
+        return calibrating;
+    }
+
+    /**
+     * Records one calibration observation: global entity counts per type from the latest scan,
+     * paired with the average entity tick time measured by the profiler since the previous scan.
+     * Must be called on the main thread.
+     */
+    public void recordObservation(Map<String, Integer> entityCounts, TickPhaseProfiler profiler) {
+        if (!calibrating || profiler == null) {
+            return;
+        }
+
+        long entitySamples = profiler.getTotalSamples(TickPhaseProfiler.ENTITIES);
+        long totalSamples = profiler.getTotalSamples();
+        double tickMs = profiler.getTotalTickMs();
+        long ticks = profiler.getTotalTicks();
+
+        boolean first = lastEntitySamples < 0;
+        long dEntity = entitySamples - lastEntitySamples;
+        long dTotal = totalSamples - lastTotalSamples;
+        double dTickMs = tickMs - lastTickMs;
+        long dTicks = ticks - lastTicks;
+
+        lastEntitySamples = entitySamples;
+        lastTotalSamples = totalSamples;
+        lastTickMs = tickMs;
+        lastTicks = ticks;
+
+        if (first || dTotal == 0 || dTicks == 0) {
+            return;
+        }
+
+        // Entity share of sampled tick time, times the measured average tick duration
+        double entityMsPerTick = (dEntity / (double) dTotal) * (dTickMs / dTicks);
+
+        double[] counts = new double[priors.length];
+        for (Map.Entry<String, Integer> entry : entityCounts.entrySet()) {
+            try {
+                counts[EntityType.valueOf(entry.getKey().toUpperCase()).ordinal()] = entry.getValue();
+            } catch (IllegalArgumentException ignored) {
+                // type removed between versions
+            }
+        }
+
+        observations.addLast(new Observation(counts, entityMsPerTick));
+        while (observations.size() > MAX_OBSERVATIONS) {
+            observations.removeFirst();
+        }
+
+        if (observations.size() >= MIN_OBSERVATIONS && ++observationsSinceFit >= REFIT_EVERY) {
+            observationsSinceFit = 0;
+            List<Observation> snapshot = new ArrayList<>(observations);
+            plugin.getAnalyticsScheduler().runAsync(() -> refit(snapshot));
+        }
+    }
+
+    /**
+     * Non-negative ridge regression (coordinate descent) of entity ms/tick on per-type counts,
+     * pulled towards the default weights so rarely-seen types keep sensible values.
+     * The result is rescaled so one average entity weighs 1.0, keeping thresholds comparable.
+     */
+    private void refit(List<Observation> data) {
+        int types = priors.length;
+        double totalMs = 0;
+        double totalCount = 0;
+        for (Observation o : data) {
+            totalMs += o.entityMs;
+            for (double c : o.counts) totalCount += c;
+        }
+        if (totalMs <= 0 || totalCount <= 0) {
+            return;
+        }
+
+        // Average ms per entity converts between relative weights and ms
+        double msPerEntity = totalMs / totalCount;
+        double[] w = new double[types];
+        double[] prior = new double[types];
+        double[] sumSq = new double[types];
+        double maxSumSq = 0;
+        for (int j = 0; j < types; j++) {
+            prior[j] = priors[j] * msPerEntity;
+            w[j] = prior[j];
+            for (Observation o : data) sumSq[j] += o.counts[j] * o.counts[j];
+            maxSumSq = Math.max(maxSumSq, sumSq[j]);
+        }
+        double lambda = Math.max(1e-9, maxSumSq * 1e-3);
+
+        // Residuals y - Xw, updated incrementally as each weight changes
+        double[] residual = new double[data.size()];
+        for (int i = 0; i < data.size(); i++) {
+            Observation o = data.get(i);
+            double predicted = 0;
+            for (int j = 0; j < types; j++) predicted += o.counts[j] * w[j];
+            residual[i] = o.entityMs - predicted;
+        }
+
+        for (int pass = 0; pass < FIT_PASSES; pass++) {
+            for (int j = 0; j < types; j++) {
+                if (sumSq[j] == 0) continue;
+                double numerator = lambda * prior[j];
+                for (int i = 0; i < data.size(); i++) {
+                    double x = data.get(i).counts[j];
+                    numerator += x * (residual[i] + x * w[j]);
+                }
+                double updated = Math.max(0, numerator / (sumSq[j] + lambda));
+                double delta = updated - w[j];
+                if (delta != 0) {
+                    for (int i = 0; i < data.size(); i++) {
+                        residual[i] -= data.get(i).counts[j] * delta;
+                    }
+                    w[j] = updated;
+                }
+            }
+        }
+
+        EntityType[] values = EntityType.values();
+        double[] table = priors.clone();
+        Map<String, Double> learned = new TreeMap<>();
+        for (int j = 0; j < types; j++) {
+            String key = values[j].name().toLowerCase();
+            double relative = Math.round(w[j] / msPerEntity * 100) / 100.0;
+            if (sumSq[j] > 0) {
+                learned.put(key, relative);
+            }
+            if (configured.containsKey(key)) {
+                table[j] = configured.get(key);
+            } else if (sumSq[j] > 0) {
+                table[j] = relative;
+            }
+        }
+        weights = table;
+        saveLearned(learned, data.size());
+
+        if (plugin.isDebug()) {
+            plugin.getLogger().info("Recalibrated entity costs from " + data.size() + " observations: " + learned);
+        }
+    }
+
+    private Map<String, Double> loadLearned() {
+        Map<String, Double> learned = new HashMap<>();
+        if (!learnedFile.exists()) {
+            return learned;
+        }
+        YamlConfiguration yaml = YamlConfiguration.loadConfiguration(learnedFile);
+        ConfigurationSection section = yaml.getConfigurationSection("weights");
+        if (section != null) {
+            for (String key : section.getKeys(false)) {
+                learned.put(key.toLowerCase(), section.getDouble(key));
+            }
+        }
+        return learned;
+    }
+
+    private void saveLearned(Map<String, Double> learned, int observationCount) {
+        YamlConfiguration yaml = new YamlConfiguration();
+        yaml.set("observations", observationCount);
+        yaml.set("updated", System.currentTimeMillis());
+        for (Map.Entry<String, Double> entry : learned.entrySet()) {
+            yaml.set("weights." + entry.getKey(), entry.getValue());
+        }
+        try {
+            yaml.save(learnedFile);
+        } catch (IOException e) {
+            plugin.getLogger().warning("Failed to save calibrated entity costs: " + e.getMessage());
+        }
+    }
+
+    private static class Observation {
+        private final double[] counts;
+        private final double entityMs;
+
+        Observation(double[] counts, double entityMs) {
+            this.counts = counts;
+            this.entityMs = entityMs;
+        }
+    }
+}
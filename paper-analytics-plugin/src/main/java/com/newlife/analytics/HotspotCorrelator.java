@@ -0,0 +1,212 @@
+package com.newlife.analytics;
+
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+
+import java.util.*;
+
+/**
+ * Keeps a short rolling history of the busiest chunks (by entity cost score) alongside MSPT, so a
+ * TPS drop can be explained by the chunks whose activity rose in step with it (Spearman rank correlation).
+ */
+public class HotspotCorrelator {
+
+    private final NewLifeAnalyticsPaper plugin;
+    private final int maxTracked;
+    private final int window;
+    private final int minSamples;
+
+    // Shared ring slot for all series; msptHistory[slot] lines up with every chunk series' slot
+    private final double[] msptHistory;
+    private int slot = 0;
+    private int samples = 0;
+
+    // Chunk key -> activity history (NaN where the chunk was not tracked or not loaded)
+    private final Map<String, Hotspot> tracked = new LinkedHashMap<>();
+
+    public HotspotCorrelator(NewLifeAnalyticsPaper plugin, int maxTracked, int window) {
+        this.plugin = plugin;
+        this.maxTracked = maxTracked;
+        this.window = Math.max(4, window);
+        this.minSamples = Math.max(4, this.window / 2);
+        this.msptHistory = new double[this.window];
+        Arrays.fill(msptHistory, Double.NaN);
+    }
+
+    public void start(int intervalTicks) {
+        plugin.getAnalyticsScheduler().runTimer(this::sample, intervalTicks, intervalTicks);
+    }
+
+    /**
+     * Replaces the tracked set with the busiest chunks from a full scan, keeping history for chunks
+     * that stay in the set. Called on the main thread after each chunk scan.
+     */
+    public synchronized void trackHotspots(List<Map<String, Object>> chunks) {
+        List<Map<String, Object>> busiest = new ArrayList<>(chunks);
+        busiest.sort((a, b) -> Double.compare(activity(b), activity(a)));
+
+        Map<String, Hotspot> next = new LinkedHashMap<>();
+        for (Map<String, Object> chunk : busiest.subList(0, Math.min(maxTracked, busiest.size()))) {
+            String world = (String) chunk.get("world");
+            int x = (int) chunk.get("x");
+            int z = (int) chunk.get("z");
+            String key = world + ":" + x + ":" + z;
+            Hotspot hotspot = tracked.get(key);
+            next.put(key, hotspot != null ? hotspot : new Hotspot(world, x, z, window));
+        }
+        tracked.clear();
+        tracked.putAll(next);
+    }
+
+    private static double activity(Map<String, Object> chunk) {
+        Object score = chunk.get("score");
+        return score instanceof Number ? ((Number) score).doubleValue() : 0;
+    }
+
+    /**
+     * Records current MSPT and the cost-weighted entity score of every tracked chunk.
+     * In region mode each chunk is read on its owning region and fills its slot shortly after.
+     */
+    private synchronized void sample() {
+        AnalyticsScheduler scheduler = plugin.getAnalyticsScheduler();
+        msptHistory[slot] = plugin.getCurrentMspt();
+        int sampleSlot = slot;
+        for (Hotspot hotspot : tracked.values()) {
+            hotspot.history[sampleSlot] = Double.NaN;
+            World world = Bukkit.getWorld(hotspot.world);
+            if (world == null) {
+                continue;
+            }
+            if (scheduler.isRegionThreaded()) {
+                scheduler.runAtChunk(world, hotspot.x, hotspot.z, () -> record(hotspot, sampleSlot, world));
+            } else {
+                record(hotspot, sampleSlot, world);
+            }
+        }
+        slot = (slot + 1) % window;
+        samples++;
+    }
+
+    private void record(Hotspot hotspot, int sampleSlot, World world) {
+        if (!world.isChunkLoaded(hotspot.x, hotspot.z)) {
+            return;
+        }
+        double score = plugin.getEntityCosts().score(world.getChunkAt(hotspot.x, hotspot.z).getEntities());
+        synchronized (this) {
+            hotspot.history[sampleSlot] = score;
+        }
+    }
+
+    /**
+     * Returns the tracked chunks whose activity correlates most strongly with MSPT over the window,
+     * strongest first. Only positive correlations are reported.
+     */
+    public synchronized List<Map<String, Object>> suspects(int limit) {
+        List<Map<String, Object>> result = new ArrayList<>();
+        if (samples < minSamples) {
+            return result;
+        }
+
+        int n = Math.min(samples, window);
+        int oldest = samples < window ? 0 : slot;
+        double[] mspt = new double[n];
+        double[] activity = new double[n];
+
+        for (Hotspot hotspot : tracked.values()) {
+            int count = 0;
+            for (int i = 0; i < n; i++) {
+                int idx = (oldest + i) % window;
+                if (!Double.isNaN(hotspot.history[idx]) && !Double.isNaN(msptHistory[idx])) {
+                    mspt[count] = msptHistory[idx];
+                    activity[count] = hotspot.history[idx];
+                    count++;
+                }
+            }
+            if (count < minSamples) {
+                continue;
+            }
+
+            double rho = spearman(mspt, activity, count);
+            if (Double.isNaN(rho) || rho <= 0) {
+                continue;
+            }
+
+            Map<String, Object> suspect = new LinkedHashMap<>();
+            suspect.put("world", hotspot.world);
+            suspect.put("chunkX", hotspot.x);
+            suspect.put("chunkZ", hotspot.z);
+            suspect.put("correlation", Math.round(rho * 100) / 100.0);
+            suspect.put("score", Math.round(activity[count - 1] * 10) / 10.0);
+            suspect.put("scoreGrowth", Math.round((activity[count - 1] - activity[0]) * 10) / 10.0);
+            result.add(suspect);
+        }
+
+        result.sort((a, b) -> Double.compare((double) b.get("correlation"), (double) a.get("correlation")));
+        return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+
+    static double spearman(double[] a, double[] b, int n) {
+        double[] ra = ranks(a, n);
+        double[] rb = ranks(b, n);
+
+        double meanA = 0, meanB = 0;
+        for (int i = 0; i < n; i++) {
+            meanA += ra[i];
+            meanB += rb[i];
+        }
+        meanA /= n;
+        meanB /= n;
+
+        double cov = 0, varA = 0, varB = 0;
+        for (int i = 0; i < n; i++) {
+            double da = ra[i] - meanA;
+            double db = rb[i] - meanB;
+            cov += da * db;
+            varA += da * da;
+            varB += db * db;
+        }
+        if (varA == 0 || varB == 0) {
+            return Double.NaN; // a flat series says nothing
+        }
+        return cov / Math.sqrt(varA * varB);
+    }
+
+    /**
+     * Ranks the first n values, averaging ranks across ties
+     */
+    private static double[] ranks(double[] values, int n) {
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) order[i] = i;
+        Arrays.sort(order, Comparator.comparingDouble(i -> values[i]));
+
+        double[] ranks = new double[n];
+        int i = 0;
+        while (i < n) {
+            int j = i;
+            while (j + 1 < n && values[order[j + 1]] == values[order[i]]) {
+                j++;
+            }
+            double rank = (i + j) / 2.0 + 1;
+            for (int k = i; k <= j; k++) {
+                ranks[order[k]] = rank;
+            }
+            i = j + 1;
+        }
+        return ranks;
+    }
+
+    private static class Hotspot {
+        private final String world;
+        private final int x;
+        private final int z;
+        private final double[] history;
+
+        Hotspot(String world, int x, int z, int window) {
+            this.world = world;
+            this.x = x;
+            this.z = z;
+            this.history = new double[window];
+            Arrays.fill(history, Double.NaN);
+        }
+    }
+}
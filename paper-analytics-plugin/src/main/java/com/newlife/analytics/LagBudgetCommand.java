@@ -0,0 +1,98 @@
+package com.newlife.analytics;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.TabCompleter;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * /lagbudget [player] - shows the players whose bases cost the server the most
+ */
+public class LagBudgetCommand implements CommandExecutor, TabCompleter {
+
+    private static final int PAGE_SIZE = 10;
+
+    private final LagBudgetTracker tracker;
+
+    public LagBudgetCommand(LagBudgetTracker tracker) {
+        this.tracker = tracker;
+    }
+
+    @Override
+    public boolean onCommand(@NotNull CommandSender sender, @NotNull Command command, @NotNull String label, @NotNull String[] args) {
+        List<LagBudgetTracker.PlayerBudget> leaderboard = tracker.getLeaderboard();
+
+        if (args.length > 0) {
+            for (int i = 0; i < leaderboard.size(); i++) {
+                LagBudgetTracker.PlayerBudget budget = leaderboard.get(i);
+                if (args[0].equalsIgnoreCase(budget.getName())) {
+                    sender.sendMessage(Component.text("Lag budget for " + budget.getName() + ": ", NamedTextColor.GRAY)
+                        .append(Component.text(String.format("%.1f", budget.getBudget()), NamedTextColor.GOLD))
+                        .append(Component.text(" (#" + (i + 1) + ")", NamedTextColor.GRAY)));
+                    if (budget.getTopChunk() != null) {
+                        sender.sendMessage(Component.text("Heaviest chunk: " + formatChunk(budget.getTopChunk()), NamedTextColor.GRAY));
+                    }
+                    return true;
+                }
+            }
+            sender.sendMessage(Component.text("No lag budget recorded for " + args[0], NamedTextColor.RED));
+            return true;
+        }
+
+        if (leaderboard.isEmpty()) {
+            sender.sendMessage(Component.text("No lag budgets recorded yet", NamedTextColor.GRAY));
+            return true;
+        }
+
+        sender.sendMessage(Component.text("Lag budget leaderboard (decayed chunk load near each player):", NamedTextColor.GOLD));
+        for (int i = 0; i < Math.min(PAGE_SIZE, leaderboard.size()); i++) {
+            LagBudgetTracker.PlayerBudget budget = leaderboard.get(i);
+            Component line = Component.text((i + 1) + ". ", NamedTextColor.GRAY)
+                .append(Component.text(budget.getName() != null ? budget.getName() : budget.getUuid().toString(), NamedTextColor.WHITE))
+                .append(Component.text(" - ", NamedTextColor.DARK_GRAY))
+                .append(Component.text(String.format("%.1f", budget.getBudget()), NamedTextColor.GOLD));
+            if (budget.getTopChunk() != null) {
+                line = line.append(Component.text(" @ " + formatChunk(budget.getTopChunk()), NamedTextColor.GRAY));
+            }
+            sender.sendMessage(line);
+        }
+        return true;
+    }
+
+    /**
+     * "world:x:z" chunk key to "world (x, z) ~blockX blockZ"
+     */
+    private static String formatChunk(String key) {
+        String[] parts = key.split(":");
+        if (parts.length != 3) {
+            return key;
+        }
+        try {
+            int x = Integer.parseInt(parts[1]);
+            int z = Integer.parseInt(parts[2]);
+            return String.format("%s (%d, %d) ~%d %d", parts[0], x, z, x * 16 + 8, z * 16 + 8);
+        } catch (NumberFormatException e) {
+            return key;
+        }
+    }
+
+    @Override
+    public List<String> onTabComplete(@NotNull CommandSender sender, @NotNull Command command, @NotNull String alias, @NotNull String[] args) {
+        List<String> completions = new ArrayList<>();
+        if (args.length == 1) {
+            String prefix = args[0].toLowerCase();
+            for (LagBudgetTracker.PlayerBudget budget : tracker.getLeaderboard()) {
+                if (budget.getName() != null && budget.getName().toLowerCase().startsWith(prefix)) {
+                    completions.add(budget.getName());
+                }
+            }
+        }
+        return completions;
+    }
+}
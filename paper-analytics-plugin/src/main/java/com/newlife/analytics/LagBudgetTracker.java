@@ -0,0 +1,377 @@
+package com.newlife.analytics;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Attributes chunk load to the players who spend the most time near each chunk, so staff can
+ * see whose farm is costing the server before it becomes critical.
+ *
+ * Presence is sampled periodically for every chunk within a radius of each player that had load at
+ * the last chunk scan. After each chunk scan, every chunk's load (entity score + hoppers or hopper
+ * throughput + redstone rate) is split between players in proportion to their presence there. Presence and
+ * budgets decay with a half-life in days, and at most MAX_TRACKED_CHUNKS chunks are tracked.
+ */
+public class LagBudgetTracker {
+
+    private final NewLifeAnalyticsPaper plugin;
+    private final File dataFile;
+    private final int radius;
+    private final double halfLifeMs;
+    private final double hopperWeight;
+    private final double hopperBlockWeight;
+    private final double redstoneWeight;
+
+    // World -> packed chunk key -> player -> decayed presence (seconds); main (or global region) thread only
+    private final Map<String, Map<Long, Map<UUID, Double>>> presence = new HashMap<>();
+    private int trackedChunks = 0;
+    // World -> packed keys of the chunks that had load at the last attribution
+    private Map<String, Set<Long>> measuredChunks = new HashMap<>();
+    private final Map<UUID, PlayerBudget> budgets = new HashMap<>();
+    private long lastDecay = System.currentTimeMillis();
+    private long lastAttribution = System.currentTimeMillis();
+
+    // Latest leaderboard, replaced after each attribution so commands and reports can read it from any thread
+    private volatile List<PlayerBudget> leaderboard = Collections.emptyList();
+
+    private static final double PRUNE_BELOW = 0.01;
+    private static final int MAX_TRACKED_CHUNKS = 50_000;
+
+    public LagBudgetTracker(NewLifeAnalyticsPaper plugin, int radius, double halfLifeDays,
+                            double hopperWeight, double hopperBlockWeight, double redstoneWeight) {
+        this.plugin = plugin;
+        this.dataFile = new File(plugin.getDataFolder(), "lag-budget.yml");
+        this.radius = Math.max(0, radius);
+        this.halfLifeMs = Math.max(0.1, halfLifeDays) * 24 * 60 * 60 * 1000;
+        this.hopperWeight = hopperWeight;
+        this.hopperBlockWeight = hopperBlockWeight;
+        this.redstoneWeight = redstoneWeight;
+    }
+
+    public void start(int presenceIntervalTicks, int saveIntervalTicks) {
+        load();
+        final double intervalSeconds = presenceIntervalTicks / 20.0;
+        AnalyticsScheduler scheduler = plugin.getAnalyticsScheduler();
+        scheduler.runTimer(() -> PlayerPositions.capture(scheduler, players -> samplePresence(players, intervalSeconds)),
+            presenceIntervalTicks, presenceIntervalTicks);
+        scheduler.runTimer(this::saveAsync, saveIntervalTicks, saveIntervalTicks);
+    }
+
+    private void samplePresence(List<PlayerPositions.Position> players, double seconds) {
+        for (PlayerPositions.Position player : players) {
+            String world = player.getWorld();
+            int cx = player.getChunkX();
+            int cz = player.getChunkZ();
+            UUID uuid = player.getUuid();
+
+            // Time spent near chunks that cost nothing is never attributed, so it is not kept
+            Set<Long> measured = measuredChunks.get(world);
+            if (measured != null) {
+                for (int dx = -radius; dx <= radius; dx++) {
+                    for (int dz = -radius; dz <= radius; dz++) {
+                        long key = chunkKey(cx + dx, cz + dz);
+                        if (measured.contains(key)) {
+                            addPresence(world, key, uuid, seconds);
+                        }
+                    }
+                }
+            }
+
+            budgets.computeIfAbsent(uuid, k -> new PlayerBudget(uuid)).name = player.getName();
+        }
+    }
+
+    private void addPresence(String world, long key, UUID uuid, double seconds) {
+        Map<Long, Map<UUID, Double>> worldPresence = presence.computeIfAbsent(world, k -> new HashMap<>());
+        Map<UUID, Double> players = worldPresence.get(key);
+        if (players == null) {
+            if (trackedChunks >= MAX_TRACKED_CHUNKS) {
+                return;
+            }
+            players = new HashMap<>();
+            worldPresence.put(key, players);
+            trackedChunks++;
+        }
+        players.merge(uuid, seconds, Double::sum);
+    }
+
+    /**
+     * Splits each chunk's load since the previous scan between the players present around it.
+     * Called on the main thread after each chunk scan.
+     */
+    public void attribute(List<Map<String, Object>> chunks, Map<String, Map<Long, ChunkActivityTracker.Activity>> activity) {
+        long now = System.currentTimeMillis();
+        double minutes = (now - lastAttribution) / 60000.0;
+        lastAttribution = now;
+        decay(now);
+
+        Map<String, Map<Long, Double>> load = new HashMap<>();
+        for (Map<String, Object> chunk : chunks) {
+            Object world = chunk.get("world");
+            Object x = chunk.get("x");
+            Object z = chunk.get("z");
+            Object score = chunk.get("score");
+            Object hoppers = chunk.get("hoppers");
+            if (world instanceof String && x instanceof Number && z instanceof Number && score instanceof Number) {
+                double chunkLoad = ((Number) score).doubleValue()
+                    + (hoppers instanceof Number ? ((Number) hoppers).intValue() * hopperBlockWeight : 0);
+                load.computeIfAbsent((String) world, k -> new HashMap<>())
+                    .merge(chunkKey(((Number) x).intValue(), ((Number) z).intValue()), chunkLoad, Double::sum);
+            }
+        }
+        for (Map.Entry<String, Map<Long, ChunkActivityTracker.Activity>> world : activity.entrySet()) {
+            Map<Long, Double> worldLoad = load.computeIfAbsent(world.getKey(), k -> new HashMap<>());
+            for (Map.Entry<Long, ChunkActivityTracker.Activity> entry : world.getValue().entrySet()) {
+                ChunkActivityTracker.Activity a = entry.getValue();
+                worldLoad.merge(entry.getKey(),
+                    a.getHopperMovesPerMinute() * hopperWeight + a.getRedstonePerMinute() * redstoneWeight, Double::sum);
+            }
+        }
+
+        Map<String, Set<Long>> measured = new HashMap<>();
+        for (Map.Entry<String, Map<Long, Double>> world : load.entrySet()) {
+            Map<Long, Map<UUID, Double>> worldPresence = presence.getOrDefault(world.getKey(), Collections.emptyMap());
+            for (Map.Entry<Long, Double> entry : world.getValue().entrySet()) {
+                if (entry.getValue() <= 0) {
+                    continue;
+                }
+                measured.computeIfAbsent(world.getKey(), k -> new HashSet<>()).add(entry.getKey());
+
+                Map<UUID, Double> players = worldPresence.get(entry.getKey());
+                if (players == null || players.isEmpty()) {
+                    continue;
+                }
+                double total = 0;
+                for (double p : players.values()) total += p;
+
+                double chunkLoad = entry.getValue() * minutes;
+                for (Map.Entry<UUID, Double> player : players.entrySet()) {
+                    double share = chunkLoad * player.getValue() / total;
+                    PlayerBudget budget = budgets.computeIfAbsent(player.getKey(), PlayerBudget::new);
+                    budget.budget += share;
+                    if (share > budget.topChunkShare) {
+                        budget.topChunk = chunkName(world.getKey(), entry.getKey(), ':');
+                        budget.topChunkShare = share;
+                    }
+                }
+            }
+        }
+        measuredChunks = measured;
+
+        refreshLeaderboard();
+    }
+
+    private static long chunkKey(int x, int z) {
+        return ((long) x << 32) | (z & 0xFFFFFFFFL);
+    }
+
+    private static String chunkName(String world, long key, char separator) {
+        return world + separator + (int) (key >> 32) + separator + (int) key;
+    }
+
+    private void refreshLeaderboard() {
+        List<PlayerBudget> sorted = new ArrayList<>();
+        for (PlayerBudget budget : budgets.values()) {
+            sorted.add(budget.copy());
+        }
+        sorted.sort((a, b) -> Double.compare(b.budget, a.budget));
+        leaderboard = Collections.unmodifiableList(sorted);
+    }
+
+    /**
+     * Applies exponential decay to all presence and budget values since the last call
+     */
+    private void decay(long now) {
+        double factor = Math.pow(0.5, (now - lastDecay) / halfLifeMs);
+        lastDecay = now;
+
+        Iterator<Map<Long, Map<UUID, Double>>> worldIterator = presence.values().iterator();
+        while (worldIterator.hasNext()) {
+            Map<Long, Map<UUID, Double>> worldPresence = worldIterator.next();
+            Iterator<Map<UUID, Double>> chunkIterator = worldPresence.values().iterator();
+            while (chunkIterator.hasNext()) {
+                Map<UUID, Double> players = chunkIterator.next();
+                players.replaceAll((uuid, value) -> value * factor);
+                players.values().removeIf(value -> value < PRUNE_BELOW);
+                if (players.isEmpty()) {
+                    chunkIterator.remove();
+                    trackedChunks--;
+                }
+            }
+            if (worldPresence.isEmpty()) {
+                worldIterator.remove();
+            }
+        }
+
+        for (PlayerBudget budget : budgets.values()) {
+            budget.budget *= factor;
+            budget.topChunkShare *= factor;
+        }
+        budgets.values().removeIf(budget -> budget.budget < PRUNE_BELOW);
+    }
+
+    public List<PlayerBudget> getLeaderboard() {
+        return leaderboard;
+    }
+
+    /**
+     * Top entries as maps, ready for mapToJson
+     */
+    public List<Map<String, Object>> topAsMaps(int limit) {
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (PlayerBudget budget : leaderboard) {
+            if (result.size() >= limit) break;
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("uuid", budget.uuid.toString());
+            entry.put("username", budget.name != null ? budget.name : "unknown");
+            entry.put("budget", Math.round(budget.budget * 10) / 10.0);
+            if (budget.topChunk != null) {
+                entry.put("topChunk", budget.topChunk);
+            }
+            result.add(entry);
+        }
+        return result;
+    }
+
+    private void load() {
+        if (!dataFile.exists()) {
+            return;
+        }
+        YamlConfiguration yaml = YamlConfiguration.loadConfiguration(dataFile);
+        lastDecay = yaml.getLong("updated");
+        if (lastDecay <= 0) {
+            lastDecay = System.currentTimeMillis();
+        }
+
+        ConfigurationSection players = yaml.getConfigurationSection("players");
+        if (players != null) {
+            for (String key : players.getKeys(false)) {
+                try {
+                    UUID uuid = UUID.fromString(key);
+                    PlayerBudget budget = new PlayerBudget(uuid);
+                    budget.name = yaml.getString("players." + key + ".name");
+                    budget.budget = yaml.getDouble("players." + key + ".budget");
+                    budget.topChunk = yaml.getString("players." + key + ".topChunk");
+                    budgets.put(uuid, budget);
+                } catch (IllegalArgumentException ignored) {
+                    // not a UUID
+                }
+            }
+        }
+
+        // Presence is stored as "world;x;z" -> list of "uuid=seconds" to keep the file flat
+        ConfigurationSection chunks = yaml.getConfigurationSection("presence");
+        if (chunks != null) {
+            for (String key : chunks.getKeys(false)) {
+                int zSeparator = key.lastIndexOf(';');
+                int xSeparator = zSeparator > 0 ? key.lastIndexOf(';', zSeparator - 1) : -1;
+                if (xSeparator <= 0) {
+                    continue;
+                }
+                String world = key.substring(0, xSeparator);
+                long chunk;
+                try {
+                    chunk = chunkKey(Integer.parseInt(key.substring(xSeparator + 1, zSeparator)),
+                        Integer.parseInt(key.substring(zSeparator + 1)));
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                for (String line : yaml.getStringList("presence." + key)) {
+                    int eq = line.indexOf('=');
+                    if (eq > 0) {
+                        try {
+                            addPresence(world, chunk, UUID.fromString(line.substring(0, eq)), Double.parseDouble(line.substring(eq + 1)));
+                        } catch (IllegalArgumentException ignored) {
+                            // malformed line
+                        }
+                    }
+                }
+            }
+        }
+
+        // Apply the decay for the time the server was down
+        decay(System.currentTimeMillis());
+        refreshLeaderboard();
+        plugin.getLogger().info("Loaded lag budgets for " + budgets.size() + " players");
+    }
+
+    private YamlConfiguration snapshot() {
+        YamlConfiguration yaml = new YamlConfiguration();
+        yaml.set("updated", lastDecay);
+        for (PlayerBudget budget : budgets.values()) {
+            String path = "players." + budget.uuid;
+            yaml.set(path + ".name", budget.name);
+            yaml.set(path + ".budget", budget.budget);
+            yaml.set(path + ".topChunk", budget.topChunk);
+        }
+        for (Map.Entry<String, Map<Long, Map<UUID, Double>>> world : presence.entrySet()) {
+            for (Map.Entry<Long, Map<UUID, Double>> chunk : world.getValue().entrySet()) {
+                List<String> lines = new ArrayList<>(chunk.getValue().size());
+                for (Map.Entry<UUID, Double> entry : chunk.getValue().entrySet()) {
+                    lines.add(entry.getKey() + "=" + Math.round(entry.getValue() * 100) / 100.0);
+                }
+                // YAML path separator is '.', and ':' reads badly as a key, so store as "world;x;z"
+                yaml.set("presence." + chunkName(world.getKey(), chunk.getKey(), ';'), lines);
+            }
+        }
+        return yaml;
+    }
+
+    private void saveAsync() {
+        YamlConfiguration yaml = snapshot();
+        plugin.getAnalyticsScheduler().runAsync(() -> save(yaml));
+    }
+
+    public void saveNow() {
+        save(snapshot());
+    }
+
+    private void save(YamlConfiguration yaml) {
+        try {
+            yaml.save(dataFile);
+        } catch (IOException e) {
+            plugin.getLogger().warning("Failed to save lag budgets: " + e.getMessage());
+        }
+    }
+
+    public static class PlayerBudget {
+        private final UUID uuid;
+        private String name;
+        private double budget;
+        private String topChunk;
+        private double topChunkShare;
+
+        PlayerBudget(UUID uuid) {
+            this.uuid = uuid;
+        }
+
+        PlayerBudget copy() {
+            PlayerBudget copy = new PlayerBudget(uuid);
+            copy.name = name;
+            copy.budget = budget;
+            copy.topChunk = topChunk;
+            copy.topChunkShare = topChunkShare;
+            return copy;
+        }
+
+        public UUID getUuid() {
+            return uuid;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public double getBudget() {
+            return budget;
+        }
+
+        public String getTopChunk() {
+            return topChunk;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.newlife.analytics;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.text.SimpleDateFormat;
+import java.util.*;
+
+/**
+ * Watches old-gen occupancy after GC and, when it stays above the threshold, captures a
+ * class histogram, diffs it against the previous capture and reports the fastest-growing classes.
+ * Optionally writes a heap dump, keeping only the newest few files.
+ */
+public class MemoryMonitor {
+
+    private final NewLifeAnalyticsPaper plugin;
+    private final double threshold;
+    private final int sustainedChecks;
+    private final int topGrowers;
+    private final boolean heapDumpEnabled;
+    private final int heapDumpRetention;
+    private final File heapDumpDir;
+
+    private final MemoryPoolMXBean oldGen;
+    private int checksAbove = 0;
+    private long lastCapture = 0;
+    private static final long CAPTURE_COOLDOWN_MS = 15 * 60 * 1000; // 15 minutes
+
+    // Class name -> bytes from the previous histogram
+    private Map<String, Long> previousHistogram = null;
+
+    public MemoryMonitor(NewLifeAnalyticsPaper plugin, double threshold, int sustainedChecks, int topGrowers,
+                         boolean heapDumpEnabled, int heapDumpRetention) {
+        this.plugin = plugin;
+        this.threshold = threshold;
+        this.sustainedChecks = Math.max(1, sustainedChecks);
+        this.topGrowers = topGrowers;
+        this.heapDumpEnabled = heapDumpEnabled;
+        this.heapDumpRetention = Math.max(1, heapDumpRetention);
+        this.heapDumpDir = new File(plugin.getDataFolder(), "heapdumps");
+        this.oldGen = findOldGenPool();
+    }
+
+    public void start(int intervalTicks) {
+        if (oldGen == null) {
+            plugin.getLogger().warning("No old generation memory pool found, memory pressure monitor disabled");
+            return;
+        }
+        plugin.getLogger().info("Memory pressure monitor watching pool: " + oldGen.getName());
+        // MXBeans are thread-safe, so the whole check runs off the main thread
+        plugin.getAnalyticsScheduler().runAsyncTimer(this::check, intervalTicks, intervalTicks);
+    }
+
+    private static MemoryPoolMXBean findOldGenPool() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() != MemoryType.HEAP || !pool.isCollectionUsageThresholdSupported()) {
+                continue;
+            }
+            String name = pool.getName();
+            if (name.contains("Old") || name.contains("Tenured")) {
+                return pool;
+            }
+        }
+        // ZGC/Shenandoah expose a single heap pool
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getCollectionUsage() != null) {
+                return pool;
+            }
+        }
+        return null;
+    }
+
+    private void check() {
+        MemoryUsage afterGc = oldGen.getCollectionUsage();
+        long max = afterGc != null ? afterGc.getMax() : -1;
+        if (max <= 0) {
+            max = Runtime.getRuntime().maxMemory();
+        }
+        if (afterGc == null || afterGc.getUsed() == 0) {
+            return; // no collection of this pool yet
+        }
+
+        double ratio = afterGc.getUsed() / (double) max;
+        if (ratio < threshold) {
+            checksAbove = 0;
+            return;
+        }
+
+        checksAbove++;
+        long now = System.currentTimeMillis();
+        if (checksAbove < sustainedChecks || now - lastCapture < CAPTURE_COOLDOWN_MS) {
+            return;
+        }
+        lastCapture = now;
+        checksAbove = 0;
+
+        capture(ratio, afterGc.getUsed(), max);
+    }
+
+    private void capture(double ratio, long used, long max) {
+        Map<String, Long> histogram;
+        try {
+            histogram = classHistogram();
+        } catch (Exception e) {
+            plugin.getLogger().warning("Failed to capture class histogram: " + e.getMessage());
+            return;
+        }
+
+        List<Map<String, Object>> growers = new ArrayList<>();
+        if (previousHistogram != null) {
+            List<Map.Entry<String, Long>> deltas = new ArrayList<>();
+            for (Map.Entry<String, Long> entry : histogram.entrySet()) {
+                long delta = entry.getValue() - previousHistogram.getOrDefault(entry.getKey(), 0L);
+                if (delta > 0) {
+                    deltas.add(new AbstractMap.SimpleEntry<>(entry.getKey(), delta));
+                }
+            }
+            deltas.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+            for (Map.Entry<String, Long> entry : deltas.subList(0, Math.min(topGrowers, deltas.size()))) {
+                Map<String, Object> grower = new LinkedHashMap<>();
+                grower.put("class", entry.getKey());
+                grower.put("bytes", histogram.get(entry.getKey()));
+                grower.put("growth", entry.getValue());
+                growers.add(grower);
+            }
+        }
+        previousHistogram = histogram;
+
+        String dumpFile = heapDumpEnabled ? writeHeapDump() : null;
+
+        Map<String, Object> context = new LinkedHashMap<>();
+        context.put("pool", oldGen.getName());
+        context.put("usedMb", used / (1024 * 1024));
+        context.put("maxMb", max / (1024 * 1024));
+        context.put("topGrowers", growers);
+        if (dumpFile != null) {
+            context.put("heapDump", dumpFile);
+        }
+
+        String details = String.format("Old gen at %.0f%% after GC (threshold %.0f%%)%s",
+            ratio * 100, threshold * 100,
+            growers.isEmpty() ? ", first histogram captured" : ", top grower: " + growers.get(0).get("class"));
+        plugin.sendLagAlert("memory_pressure", ratio >= 0.95 ? "critical" : "high", details, null, null, context);
+    }
+
+    /**
+     * Runs the GC.class_histogram diagnostic command and parses it into class name -> bytes.
+     * Note: this triggers a full GC, which is why captures are rate limited.
+     */
+    private static Map<String, Long> classHistogram() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("com.sun.management:type=DiagnosticCommand");
+        String output = (String) server.invoke(name, "gcClassHistogram",
+            new Object[]{new String[0]}, new String[]{String[].class.getName()});
+
+        // Lines look like: "   1:        123456       7890123  java.lang.String (java.base@17)"
+        Map<String, Long> histogram = new HashMap<>();
+        for (String line : output.split("\n")) {
+            String[] parts = line.trim().split("\\s+");
+            if (parts.length < 4 || !parts[0].endsWith(":")) {
+                continue;
+            }
+            try {
+                histogram.put(parts[3], Long.parseLong(parts[2]));
+            } catch (NumberFormatException ignored) {
+                // header or total line
+            }
+        }
+        return histogram;
+    }
+
+    private String writeHeapDump() {
+        try {
+            if (!heapDumpDir.exists() && !heapDumpDir.mkdirs()) {
+                plugin.getLogger().warning("Could not create heap dump directory " + heapDumpDir);
+                return null;
+            }
+
+            // Keep at most heapDumpRetention files including the one we are about to write
+            File[] existing = heapDumpDir.listFiles((dir, fileName) -> fileName.endsWith(".hprof"));
+            if (existing != null && existing.length >= heapDumpRetention) {
+                Arrays.sort(existing, Comparator.comparingLong(File::lastModified));
+                for (int i = 0; i <= existing.length - heapDumpRetention; i++) {
+                    if (!existing[i].delete()) {
+                        plugin.getLogger().warning("Could not delete old heap dump " + existing[i].getName());
+                    }
+                }
+            }
+
+            String stamp = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+            File file = new File(heapDumpDir, "heap-" + stamp + ".hprof");
+            HotSpotDiagnosticMXBean diagnostic = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+            diagnostic.dumpHeap(file.getAbsolutePath(), true);
+            plugin.getLogger().warning("Wrote heap dump " + file.getName());
+            return file.getName();
+        } catch (Exception e) {
+            plugin.getLogger().warning("Failed to write heap dump: " + e.getMessage());
+            return null;
+        }
+    }
+}
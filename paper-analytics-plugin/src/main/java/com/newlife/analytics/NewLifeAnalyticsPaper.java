@@ -2,17 +2,19 @@ package com.newlife.analytics;
 
 import org.bukkit.Bukkit;
 import org.bukkit.Chunk;
+import org.bukkit.Material;
 import org.bukkit.World;
 import org.bukkit.block.BlockState;
 import org.bukkit.block.Hopper;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.entity.Entity;
-import org.bukkit.entity.Player;
+import org.bukkit.entity.EntityType;
 import org.bukkit.plugin.java.JavaPlugin;
-import org.bukkit.scheduler.BukkitRunnable;
 
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 
 public class NewLifeAnalyticsPaper extends JavaPlugin {
 
@@ -21,17 +23,17 @@ public class NewLifeAnalyticsPaper extends JavaPlugin {
     private String serverName;
     private boolean debug;
     
+    // Chunk report wire format ("json" or "binary"), falls back to JSON if the API rejects binary
+    private volatile boolean binaryReports = false;
+    
     // TPS tracking
     private long lastTickTime = System.currentTimeMillis();
     private final LinkedList<Double> tpsHistory = new LinkedList<>();
     private double currentTps = 20.0;
     private double currentMspt = 50.0;
     
-    // Redstone tracking
-    private final Map<String, Integer> redstoneActivity = new ConcurrentHashMap<>();
-    private final Map<String, Integer> pistonActivity = new ConcurrentHashMap<>();
-    
     // Thresholds
+    // Entity thresholds apply to the cost-weighted chunk score (1.0 ~ one average mob)
     private int entityWarning = 50;
     private int entityCritical = 150;
     private int hopperWarning = 50;
@@ -43,6 +45,39 @@ public class NewLifeAnalyticsPaper extends JavaPlugin {
     private int tpsInterval = 20;       // 1 second
     private int chunkScanInterval = 1200; // 1 minute (was 5 mins)
     private int tpsReportInterval = 60;   // 3 seconds (report to API)
+    private int schedulerSampleInterval = 100; // 5 seconds
+    private int memoryCheckInterval = 200;     // 10 seconds
+    private int hotspotSampleInterval = 200;   // 10 seconds
+    
+    private SchedulerMonitor schedulerMonitor;
+    private MemoryMonitor memoryMonitor;
+    private TickPhaseProfiler tickPhaseProfiler;
+    private HotspotCorrelator hotspotCorrelator;
+    private int hotspotSuspects = 3;
+    private EntityCostModel entityCosts;
+    private ChunkActivityTracker chunkActivity;
+    private EntityAccumulationTracker entityAccumulation;
+    private LagBudgetTracker lagBudget;
+    private boolean hopperEvents = false;
+    private int lagBudgetPresenceInterval = 600; // 30 seconds
+    private int lagBudgetSaveInterval = 12000;   // 10 minutes
+    
+    // Cost of the most recent chunk scan on the main thread
+    private volatile long lastScanNanos = -1;
+    private volatile long lastScanAllocated = -1;
+    private volatile int lastScanChunks = 0;
+    
+    // Execution mode: Bukkit scheduler on one main thread, or region/entity/global schedulers
+    private AnalyticsScheduler scheduler;
+    private RegionChunkScanner regionScanner;
+    // Totals from the last scan, used for TPS reports in region mode where worlds cannot be walked
+    private volatile int lastScanEntities = 0;
+    private volatile int lastScanLoadedChunks = 0;
+    
+    // Load reports to the Velocity analytics plugin for load-aware routing, null when disabled
+    private ProxyChannel proxyChannel;
+    private boolean proxyLoadReports;
+    private boolean proxyForwardReports;
 
     @Override
     public void onEnable() {
@@ -52,6 +87,8 @@ public class NewLifeAnalyticsPaper extends JavaPlugin {
         getLogger().info("NewLife Analytics Paper enabled!");
         getLogger().info("Server: " + serverName);
         getLogger().info("API URL: " + apiUrl);
+        getLogger().info("Chunk report format: " + (binaryReports ? "binary" : "json"));
+        getLogger().info("Execution mode: " + (scheduler.isRegionThreaded() ? "region-threaded" : "main thread"));
         getLogger().info("API Key: " + (apiKey != null && apiKey.length() > 8 ? apiKey.substring(0, 8) + "..." : "NOT SET"));
         
         // Test API connection on startup
@@ -64,13 +101,45 @@ public class NewLifeAnalyticsPaper extends JavaPlugin {
         startChunkScanner();
         
         // Start TPS reporter
+        if (proxyChannel != null) {
+            proxyChannel.register();
+        }
         startTpsReporter();
         
+        // Start scheduler leak detector (the Bukkit scheduler does not exist on region-threaded servers)
+        if (!scheduler.isRegionThreaded()) {
+            schedulerMonitor.start(schedulerSampleInterval);
+        }
+        
+        // Start memory pressure monitor
+        memoryMonitor.start(memoryCheckInterval);
+        
+        // Start hotspot history sampling
+        hotspotCorrelator.start(hotspotSampleInterval);
+        
+        // Track slow entity build-up between scans
+        getServer().getPluginManager().registerEvents(entityAccumulation, this);
+        
+        // Start lag budget accounting
+        getServer().getPluginManager().registerEvents(chunkActivity, this);
+        if (hopperEvents) {
+            getServer().getPluginManager().registerEvents(chunkActivity.hopperMoves(), this);
+        }
+        lagBudget.start(lagBudgetPresenceInterval, lagBudgetSaveInterval);
+        LagBudgetCommand lagBudgetCommand = new LagBudgetCommand(lagBudget);
+        getCommand("lagbudget").setExecutor(lagBudgetCommand);
+        getCommand("lagbudget").setTabCompleter(lagBudgetCommand);
+        
+        // Start tick phase profiler
+        if (tickPhaseProfiler != null) {
+            tickPhaseProfiler.start();
+        }
+        
         getLogger().info("Analytics monitors started!");
     }
     
     private void testApiConnection() {
-        Bukkit.getScheduler().runTaskAsynchronously(this, () -> {
+        scheduler.runAsync(() -> {
             try {
                 getLogger().info("Testing API connection to: " + apiUrl + "/api/analytics/tps");
                 String testJson = String.format(
@@ -92,6 +161,15 @@ public class NewLifeAnalyticsPaper extends JavaPlugin {
 
     @Override
     public void onDisable() {
+        if (tickPhaseProfiler != null) {
+            tickPhaseProfiler.stop();
+        }
+        if (lagBudget != null) {
+            lagBudget.saveNow();
+        }
+        if (proxyChannel != null) {
+            proxyChannel.unregister();
+        }
         getLogger().info("NewLife Analytics Paper disabled!");
     }
 
@@ -101,7 +179,11 @@ public class NewLifeAnalyticsPaper extends JavaPlugin {
         config.addDefault("api.url", "http://localhost:3002");
         config.addDefault("api.key", "your-analytics-api-key-here");
         config.addDefault("server.name", "main");
+        config.addDefault("api.format", "json");
         config.addDefault("debug", false);
+        config.addDefault("execution.mode", "auto");
+        config.addDefault("proxy.loadReports", true);
+        config.addDefault("proxy.forwardReports", false);
         
         config.addDefault("thresholds.entity.warning", 50);
         config.addDefault("thresholds.entity.critical", 150);
@@ -113,6 +195,39 @@ public class NewLifeAnalyticsPaper extends JavaPlugin {
         config.addDefault("intervals.tps", 20);
         config.addDefault("intervals.chunkScan", 1200);
         config.addDefault("intervals.tpsReport", 60);
+        config.addDefault("intervals.schedulerSample", 100);
+        
+        config.addDefault("thresholds.scheduler.windowSamples", 12);
+        config.addDefault("thresholds.scheduler.minGrowth", 200);
+        
+        config.addDefault("thresholds.accumulation.scans", 6);
+        config.addDefault("thresholds.accumulation.minGrowth", 40);
+        
+        config.addDefault("intervals.memoryCheck", 200);
+        config.addDefault("memory.threshold", 0.85);
+        config.addDefault("memory.sustainedChecks", 3);
+        config.addDefault("memory.topGrowers", 10);
+        config.addDefault("memory.heapDump.enabled", false);
+        config.addDefault("memory.heapDump.retention", 2);
+        
+        config.addDefault("intervals.hotspotSample", 200);
+        config.addDefault("hotspots.tracked", 32);
+        config.addDefault("hotspots.window", 30);
+        config.addDefault("hotspots.suspects", 3);
+        
+        config.addDefault("entityCosts.calibration", false);
+        
+        config.addDefault("lagBudget.radius", 3);
+        config.addDefault("lagBudget.halfLifeDays", 3.0);
+        config.addDefault("lagBudget.hopperEvents", false);
+        config.addDefault("lagBudget.hopperWeight", 0.05);
+        config.addDefault("lagBudget.hopperBlockWeight", 0.2);
+        config.addDefault("lagBudget.redstoneWeight", 0.01);
+        config.addDefault("intervals.lagBudgetPresence", 600);
+        config.addDefault("intervals.lagBudgetSave", 12000);
+        
+        config.addDefault("profiling.tickPhases.enabled", false);
+        config.addDefault("profiling.tickPhases.sampleIntervalMs", 20);
         
         config.options().copyDefaults(true);
         saveConfig();
@@ -120,7 +235,20 @@ public class NewLifeAnalyticsPaper extends JavaPlugin {
         apiUrl = config.getString("api.url");
         apiKey = config.getString("api.key");
         serverName = config.getString("server.name");
+        binaryReports = "binary".equalsIgnoreCase(config.getString("api.format"));
         debug = config.getBoolean("debug");
+        proxyLoadReports = config.getBoolean("proxy.loadReports");
+        proxyForwardReports = config.getBoolean("proxy.forwardReports");
+        proxyChannel = proxyLoadReports || proxyForwardReports ? new ProxyChannel(this) : null;
+        
+        // Region mode is forced on region-threaded servers and can be chosen on Paper for testing
+        String mode = config.getString("execution.mode");
+        boolean regionThreaded = AnalyticsScheduler.isRegionThreadedServer() || "region".equalsIgnoreCase(mode);
+        if ("main".equalsIgnoreCase(mode) && regionThreaded) {
+            getLogger().warning("execution.mode is main but this server is region-threaded, using region mode");
+        }
+        scheduler = new AnalyticsScheduler(this, regionThreaded);
+        regionScanner = regionThreaded ? new RegionChunkScanner(this, scheduler) : null;
         
         entityWarning = config.getInt("thresholds.entity.warning");
         entityCritical = config.getInt("thresholds.entity.critical");
@@ -132,10 +260,62 @@ public class NewLifeAnalyticsPaper extends JavaPlugin {
         tpsInterval = config.getInt("intervals.tps");
         chunkScanInterval = config.getInt("intervals.chunkScan");
         tpsReportInterval = config.getInt("intervals.tpsReport");
+        schedulerSampleInterval = config.getInt("intervals.schedulerSample");
+        
+        schedulerMonitor = new SchedulerMonitor(this,
+            config.getInt("thresholds.scheduler.windowSamples"),
+            config.getInt("thresholds.scheduler.minGrowth"));
+        
+        memoryCheckInterval = config.getInt("intervals.memoryCheck");
+        memoryMonitor = new MemoryMonitor(this,
+            config.getDouble("memory.threshold"),
+            config.getInt("memory.sustainedChecks"),
+            config.getInt("memory.topGrowers"),
+            config.getBoolean("memory.heapDump.enabled"),
+            config.getInt("memory.heapDump.retention"));
+        
+        entityCosts = new EntityCostModel(this,
+            config.getConfigurationSection("entityCosts.weights"),
+            config.getBoolean("entityCosts.calibration"));
+        
+        entityAccumulation = new EntityAccumulationTracker(this,
+            config.getInt("thresholds.accumulation.scans"),
+            config.getInt("thresholds.accumulation.minGrowth"));
+        
+        chunkActivity = new ChunkActivityTracker();
+        // Hoppers are weighed by their item moves when those are counted, otherwise by their number
+        hopperEvents = config.getBoolean("lagBudget.hopperEvents");
+        lagBudget = new LagBudgetTracker(this,
+            config.getInt("lagBudget.radius"),
+            config.getDouble("lagBudget.halfLifeDays"),
+            config.getDouble("lagBudget.hopperWeight"),
+            hopperEvents ? 0 : config.getDouble("lagBudget.hopperBlockWeight"),
+            config.getDouble("lagBudget.redstoneWeight"));
+        lagBudgetPresenceInterval = config.getInt("intervals.lagBudgetPresence");
+        lagBudgetSaveInterval = config.getInt("intervals.lagBudgetSave");
+        
+        hotspotSampleInterval = config.getInt("intervals.hotspotSample");
+        hotspotCorrelator = new HotspotCorrelator(this,
+            config.getInt("hotspots.tracked"),
+            config.getInt("hotspots.window"));
+        hotspotSuspects = config.getInt("hotspots.suspects");
+        
+        // loadConfig runs from onEnable, so the current thread is the server main thread.
+        // Region-threaded servers have no single main thread to sample.
+        boolean tickPhases = config.getBoolean("profiling.tickPhases.enabled");
+        if (tickPhases && regionThreaded) {
+            getLogger().info("Tick phase profiling is not available in region-threaded mode");
+        }
+        if (tickPhases && !regionThreaded) {
+            tickPhaseProfiler = new TickPhaseProfiler(this, Thread.currentThread(),
+                config.getLong("profiling.tickPhases.sampleIntervalMs"));
+        } else if (entityCosts.isCalibrating()) {
+            getLogger().warning("entityCosts.calibration needs profiling.tickPhases.enabled, using default entity costs");
+        }
     }
 
     private void startTpsMonitor() {
-        new BukkitRunnable() {
+        scheduler.runTimer(new Runnable() {
             @Override
             public void run() {
                 long now = System.currentTimeMillis();
@@ -161,25 +341,32 @@ public class NewLifeAnalyticsPaper extends JavaPlugin {
                     getLogger().info(String.format("TPS: %.2f, MSPT: %.2fms", tps, currentMspt));
                 }
             }
-        }.runTaskTimer(this, tpsInterval, tpsInterval);
+        }, tpsInterval, tpsInterval);
     }
 
     private void startTpsReporter() {
-        new BukkitRunnable() {
+        scheduler.runTimer(new Runnable() {
             @Override
             public void run() {
                 // Collect data on main thread (required for Bukkit API)
                 int entityCount = 0;
                 int loadedChunks = 0;
                 
-                for (World world : Bukkit.getWorlds()) {
-                    entityCount += world.getEntityCount();
-                    loadedChunks += world.getLoadedChunks().length;
+                if (scheduler.isRegionThreaded()) {
+                    // Worlds can only be walked region by region, so use the last chunk scan's totals
+                    entityCount = lastScanEntities;
+                    loadedChunks = lastScanLoadedChunks;
+                } else {
+                    for (World world : Bukkit.getWorlds()) {
+                        entityCount += world.getEntityCount();
+                        loadedChunks += world.getLoadedChunks().length;
+                    }
                 }
                 
                 int playerCount = Bukkit.getOnlinePlayers().size();
                 double tps = currentTps;
                 double mspt = currentMspt;
+                Map<String, Object> tickPhases = tickPhaseProfiler != null ? tickPhaseProfiler.snapshotAndReset() : null;
                 
                 // Capture values for async task
                 final int finalEntityCount = entityCount;
@@ -188,26 +375,25 @@ public class NewLifeAnalyticsPaper extends JavaPlugin {
                 final double finalTps = tps;
                 final double finalMspt = mspt;
                 
+                // The proxy routes new players by this, so it goes out on every report
+                if (proxyLoadReports) {
+                    proxyChannel.sendLoad(tps, mspt, entityCount, loadedChunks, playerCount);
+                }
+                
                 // Send to API async
-                Bukkit.getScheduler().runTaskAsynchronously(NewLifeAnalyticsPaper.this, () -> {
-                    reportTps(finalTps, finalMspt, finalLoadedChunks, finalEntityCount, finalPlayerCount);
+                scheduler.runAsync(() -> {
+                    reportTps(finalTps, finalMspt, finalLoadedChunks, finalEntityCount, finalPlayerCount, tickPhases);
                 });
             }
-        }.runTaskTimer(this, tpsReportInterval, tpsReportInterval);
+        }, tpsReportInterval, tpsReportInterval);
     }
 
-    private void reportTps(double tps, double mspt, int loadedChunks, int entityCount, int playerCount) {
+    private void reportTps(double tps, double mspt, int loadedChunks, int entityCount, int playerCount,
+                           Map<String, Object> tickPhases) {
         try {
-            Runtime runtime = Runtime.getRuntime();
-            long memoryUsed = (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024);
-            long memoryMax = runtime.maxMemory() / (1024 * 1024);
-            
-            String json = String.format(
-                "{\"server\":\"%s\",\"tps\":%.2f,\"mspt\":%.2f,\"loadedChunks\":%d,\"entityCount\":%d,\"playerCount\":%d,\"memoryUsed\":%d,\"memoryMax\":%d}",
-                serverName, tps, mspt, loadedChunks, entityCount, playerCount, memoryUsed, memoryMax
-            );
+            String json = tpsJson(tps, mspt, loadedChunks, entityCount, playerCount, tickPhases);
             
-            ApiClient.post(apiUrl + "/api/analytics/tps", apiKey, json);
+            postReport("/api/analytics/tps", json);
             
             if (debug) {
                 getLogger().info("Reported TPS: " + tps);
@@ -215,15 +401,13 @@ public class NewLifeAnalyticsPaper extends JavaPlugin {
             
             // Check for TPS alerts
             if (currentTps < tpsCriticalThreshold) {
-                sendLagAlert("tps_drop", "critical", 
-                    String.format("Critical TPS drop: %.2f (threshold: %.2f)", currentTps, tpsCriticalThreshold),
-                    null, null);
+                sendTpsAlert("critical",
+                    String.format("Critical TPS drop: %.2f (threshold: %.2f)", currentTps, tpsCriticalThreshold));
                 // Trigger immediate chunk scan when TPS is critical
-                Bukkit.getScheduler().runTask(NewLifeAnalyticsPaper.this, () -> scanChunks());
+                scheduler.run(() -> scanChunks());
             } else if (currentTps < tpsAlertThreshold) {
-                sendLagAlert("tps_drop", "high",
-                    String.format("TPS warning: %.2f (threshold: %.2f)", currentTps, tpsAlertThreshold),
-                    null, null);
+                sendTpsAlert("high",
+                    String.format("TPS warning: %.2f (threshold: %.2f)", currentTps, tpsAlertThreshold));
             }
             
         } catch (Exception e) {
@@ -233,40 +417,97 @@ public class NewLifeAnalyticsPaper extends JavaPlugin {
         }
     }
 
+    String tpsJson(double tps, double mspt, int loadedChunks, int entityCount, int playerCount,
+                   Map<String, Object> tickPhases) {
+        Runtime runtime = Runtime.getRuntime();
+        long memoryUsed = (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024);
+        long memoryMax = runtime.maxMemory() / (1024 * 1024);
+        
+        return String.format(
+            "{\"server\":\"%s\",\"tps\":%.2f,\"mspt\":%.2f,\"loadedChunks\":%d,\"entityCount\":%d,\"playerCount\":%d,\"memoryUsed\":%d,\"memoryMax\":%d,\"pendingTasks\":%d,\"activeWorkers\":%d%s}",
+            serverName, tps, mspt, loadedChunks, entityCount, playerCount, memoryUsed, memoryMax,
+            schedulerMonitor.getPendingTasks(), schedulerMonitor.getActiveWorkers(),
+            tickPhases != null ? ",\"tickPhases\":" + mapToJson(tickPhases) : ""
+        );
+    }
+
+    /**
+     * Sends a tps_drop alert with the chunks whose activity rose in step with MSPT as suspected causes
+     */
+    private void sendTpsAlert(String severity, String details) {
+        List<Map<String, Object>> suspects = hotspotCorrelator.suspects(hotspotSuspects);
+        if (suspects.isEmpty()) {
+            sendLagAlert("tps_drop", severity, details, null, null);
+            return;
+        }
+        
+        Map<String, Object> top = suspects.get(0);
+        details += String.format(" - top suspect: %s (%d, %d), correlation %.2f, entity score %.1f",
+            top.get("world"), top.get("chunkX"), top.get("chunkZ"), top.get("correlation"), top.get("score"));
+        
+        Map<String, Object> context = new HashMap<>();
+        context.put("suspectedCauses", suspects);
+        sendLagAlert("tps_drop", severity, details, null, null, context);
+    }
+
     private void startChunkScanner() {
-        new BukkitRunnable() {
-            @Override
-            public void run() {
-                scanChunks();
-            }
-        }.runTaskTimer(this, chunkScanInterval, chunkScanInterval);
+        scheduler.runTimer(this::scanChunks, chunkScanInterval, chunkScanInterval);
     }
 
-    private void scanChunks() {
+    void scanChunks() {
+        long scanStart = System.nanoTime();
+        
+        if (regionScanner != null) {
+            // Regions scan their own chunks in parallel; the merged result comes back on the global region thread
+            regionScanner.scan((chunks, loadedChunks) -> finishScan(chunks, loadedChunks, scanStart, -1));
+            return;
+        }
+        
+        long allocStart = allocatedBytes();
         List<Map<String, Object>> allChunks = new ArrayList<>();
-        Map<String, Integer> globalEntityCounts = new HashMap<>();
-        int totalEntities = 0;
+        List<PlayerPositions.Position> players = PlayerPositions.online();
+        int loadedChunks = 0;
         
         for (World world : Bukkit.getWorlds()) {
-            for (Chunk chunk : world.getLoadedChunks()) {
-                Map<String, Object> chunkData = analyzeChunk(world, chunk);
+            Chunk[] chunks = world.getLoadedChunks();
+            loadedChunks += chunks.length;
+            for (Chunk chunk : chunks) {
+                Map<String, Object> chunkData = analyzeChunk(world, chunk, players);
                 
                 if (chunkData != null) {
                     allChunks.add(chunkData);
-                    totalEntities += (int) chunkData.getOrDefault("entities", 0);
-                    
-                    // Aggregate entity types
-                    @SuppressWarnings("unchecked")
-                    Map<String, Integer> breakdown = (Map<String, Integer>) chunkData.get("entityBreakdown");
-                    if (breakdown != null) {
-                        for (Map.Entry<String, Integer> entry : breakdown.entrySet()) {
-                            globalEntityCounts.merge(entry.getKey(), entry.getValue(), Integer::sum);
-                        }
-                    }
                 }
             }
         }
         
+        finishScan(allChunks, loadedChunks, scanStart, allocStart);
+    }
+
+    /**
+     * Feeds a completed scan to the trackers and sends it. Runs on the main thread
+     * (global region thread in region mode).
+     */
+    private void finishScan(List<Map<String, Object>> allChunks, int loadedChunks, long scanStart, long allocStart) {
+        Map<String, Integer> globalEntityCounts = new HashMap<>();
+        int totalEntities = 0;
+        
+        for (Map<String, Object> chunkData : allChunks) {
+            totalEntities += (int) chunkData.getOrDefault("entities", 0);
+            
+            // Aggregate entity types
+            @SuppressWarnings("unchecked")
+            Map<String, Integer> breakdown = (Map<String, Integer>) chunkData.get("entityBreakdown");
+            if (breakdown != null) {
+                for (Map.Entry<String, Integer> entry : breakdown.entrySet()) {
+                    globalEntityCounts.merge(entry.getKey(), entry.getValue(), Integer::sum);
+                }
+            }
+        }
+        lastScanEntities = totalEntities;
+        lastScanLoadedChunks = loadedChunks;
+        
+        entityAccumulation.endScan();
+        
         if (debug) {
             getLogger().info("Chunk scan complete: " + allChunks.size() + " chunks with entities, " + totalEntities + " total entities");
             // Log top entity types
@@ -276,24 +517,47 @@ public class NewLifeAnalyticsPaper extends JavaPlugin {
                 .forEach(e -> getLogger().info("  " + e.getKey() + ": " + e.getValue()));
         }
         
+        hotspotCorrelator.trackHotspots(allChunks);
+        entityCosts.recordObservation(globalEntityCounts, tickPhaseProfiler);
+        lagBudget.attribute(allChunks, chunkActivity.drain());
+        final List<Map<String, Object>> budgets = lagBudget.topAsMaps(25);
+        if (!budgets.isEmpty()) {
+            scheduler.runAsync(() -> sendLagBudgets(budgets));
+        }
+        
+        lastScanNanos = System.nanoTime() - scanStart;
+        lastScanAllocated = allocStart >= 0 ? allocatedBytes() - allocStart : -1;
+        lastScanChunks = allChunks.size();
+        if (debug) {
+            getLogger().info(String.format("Chunk scan took %.2fms %s, %s allocated",
+                lastScanNanos / 1_000_000.0, regionScanner != null ? "across regions" : "on the main thread",
+                formatBytes(lastScanAllocated)));
+        }
+        
         // Send to API async
         if (!allChunks.isEmpty()) {
             final List<Map<String, Object>> chunks = new ArrayList<>(allChunks);
-            Bukkit.getScheduler().runTaskAsynchronously(this, () -> {
+            scheduler.runAsync(() -> {
                 sendChunkData(chunks);
             });
         }
     }
 
-    private Map<String, Object> analyzeChunk(World world, Chunk chunk) {
+    /**
+     * Analyzes one chunk. Runs on the thread that owns the chunk, which in region mode is one of
+     * several region threads running concurrently.
+     */
+    Map<String, Object> analyzeChunk(World world, Chunk chunk, List<PlayerPositions.Position> players) {
         Entity[] entities = chunk.getEntities();
         int entityCount = entities.length;
         
-        // Count entity types
+        // Count entity types and weight them by their tick cost
         Map<String, Integer> entityBreakdown = new HashMap<>();
+        double score = 0;
         for (Entity entity : entities) {
-            String type = entity.getType().name().toLowerCase();
-            entityBreakdown.merge(type, 1, Integer::sum);
+            EntityType type = entity.getType();
+            entityBreakdown.merge(entityKey(type), 1, Integer::sum);
+            score += entityCosts.weight(type);
         }
         
         // Count hoppers and redstone
@@ -305,36 +569,35 @@ public class NewLifeAnalyticsPaper extends JavaPlugin {
             if (state instanceof Hopper) {
                 hopperCount++;
             }
-            // Count redstone components
-            String typeName = state.getType().name().toLowerCase();
-            if (typeName.contains("redstone") || typeName.contains("repeater") || 
-                typeName.contains("comparator") || typeName.contains("piston") ||
-                typeName.contains("observer") || typeName.contains("dropper") ||
-                typeName.contains("dispenser")) {
+            if (isRedstoneComponent(state.getType())) {
                 redstoneCount++;
             }
         }
         
         // Check if chunk should be flagged
-        boolean flagged = entityCount >= entityWarning || hopperCount >= hopperWarning || redstoneCount >= redstoneWarning;
+        boolean flagged = score >= entityWarning || hopperCount >= hopperWarning || redstoneCount >= redstoneWarning;
         
         // Report ALL chunks with entities (not just flagged) for accurate dashboard
         if (entityCount == 0) {
             return null;
         }
         
+        entityAccumulation.observe(world.getName(), chunk.getX(), chunk.getZ(), entities, entityBreakdown, score >= entityCritical);
+        
         // Find nearby players
         List<Map<String, String>> playersNearby = new ArrayList<>();
         int chunkX = chunk.getX() * 16 + 8;
         int chunkZ = chunk.getZ() * 16 + 8;
         
-        for (Player player : world.getPlayers()) {
-            double distance = player.getLocation().distance(
-                new org.bukkit.Location(world, chunkX, player.getLocation().getY(), chunkZ)
-            );
-            if (distance < 64) { // Within 4 chunks
+        for (PlayerPositions.Position player : players) {
+            if (!player.getWorld().equals(world.getName())) {
+                continue;
+            }
+            double dx = player.getX() - chunkX;
+            double dz = player.getZ() - chunkZ;
+            if (dx * dx + dz * dz < 64 * 64) { // Within 4 chunks
                 Map<String, String> playerData = new HashMap<>();
-                playerData.put("uuid", player.getUniqueId().toString());
+                playerData.put("uuid", player.getUuid().toString());
                 playerData.put("username", player.getName());
                 playersNearby.add(playerData);
             }
@@ -345,6 +608,7 @@ public class NewLifeAnalyticsPaper extends JavaPlugin {
         chunkData.put("x", chunk.getX());
         chunkData.put("z", chunk.getZ());
         chunkData.put("entities", entityCount);
+        chunkData.put("score", Math.round(score * 10) / 10.0);
         chunkData.put("entityBreakdown", entityBreakdown);
         chunkData.put("hoppers", hopperCount);
         chunkData.put("redstone", redstoneCount);
@@ -352,9 +616,9 @@ public class NewLifeAnalyticsPaper extends JavaPlugin {
         chunkData.put("playersNearby", playersNearby);
         
         // Send alert for critical chunks
-        if (entityCount >= entityCritical) {
-            String details = String.format("Critical chunk at (%d, %d) in %s: %d entities", 
-                chunk.getX(), chunk.getZ(), world.getName(), entityCount);
+        if (score >= entityCritical) {
+            String details = String.format("Critical chunk at (%d, %d) in %s: %d entities (score %.1f)", 
+                chunk.getX(), chunk.getZ(), world.getName(), entityCount, score);
             
             Map<String, Object> location = new HashMap<>();
             location.put("world", world.getName());
@@ -370,22 +634,33 @@ public class NewLifeAnalyticsPaper extends JavaPlugin {
         return chunkData;
     }
 
+    static String entityKey(EntityType type) {
+        return type.name().toLowerCase();
+    }
+    
+    static boolean isRedstoneComponent(Material type) {
+        String typeName = type.name().toLowerCase();
+        return typeName.contains("redstone") || typeName.contains("repeater") || 
+            typeName.contains("comparator") || typeName.contains("piston") ||
+            typeName.contains("observer") || typeName.contains("dropper") ||
+            typeName.contains("dispenser");
+    }
+
     private void sendChunkData(List<Map<String, Object>> chunks) {
         try {
-            StringBuilder json = new StringBuilder();
-            json.append("{\"server\":\"").append(serverName).append("\",\"chunks\":[");
-            
-            for (int i = 0; i < chunks.size(); i++) {
-                if (i > 0) json.append(",");
-                json.append(mapToJson(chunks.get(i)));
+            if (binaryReports && sendBinaryChunkData(chunks)) {
+                return;
             }
             
-            json.append("]}");
+            long start = System.nanoTime();
+            String json = chunksToJson(chunks);
             
-            ApiClient.post(apiUrl + "/api/analytics/chunks", apiKey, json.toString());
+            postReport("/api/analytics/chunks", json);
             
             if (debug) {
-                getLogger().info("Sent " + chunks.size() + " chunk reports");
+                getLogger().info(String.format("Sent %d chunk reports (json, %d bytes, encoded in %.2fms)",
+                    chunks.size(), json.getBytes(StandardCharsets.UTF_8).length,
+                    (System.nanoTime() - start) / 1_000_000.0));
             }
         } catch (Exception e) {
             if (debug) {
@@ -394,34 +669,88 @@ public class NewLifeAnalyticsPaper extends JavaPlugin {
         }
     }
 
-    private void sendLagAlert(String type, String severity, String details, 
-                              Map<String, Object> location, Map<String, String> playerNearby) {
-        Bukkit.getScheduler().runTaskAsynchronously(this, () -> {
+    private void sendLagBudgets(List<Map<String, Object>> budgets) {
+        try {
+            String json = "{\"server\":\"" + escapeJson(serverName) + "\",\"players\":" + listToJson(budgets) + "}";
+            postReport("/api/analytics/lag-budget", json);
+        } catch (Exception e) {
+            if (debug) {
+                getLogger().warning("Failed to send lag budgets: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Sends chunk data using the binary codec.
+     * Returns false if the API does not accept binary reports, in which case the caller sends JSON.
+     */
+    private boolean sendBinaryChunkData(List<Map<String, Object>> chunks) throws Exception {
+        long start = System.nanoTime();
+        byte[] payload = ChunkReportCodec.encode(serverName, chunks);
+        long encodeNanos = System.nanoTime() - start;
+        
+        try {
+            postReport("/api/analytics/chunks", ChunkReportCodec.CONTENT_TYPE, payload);
+        } catch (ApiClient.HttpStatusException e) {
+            // Older bot versions either reject the content type or parse an empty body
+            if (e.getStatusCode() == 400 || e.getStatusCode() == 415) {
+                binaryReports = false;
+                getLogger().warning("API rejected binary chunk reports (HTTP " + e.getStatusCode() + "), falling back to JSON");
+                return false;
+            }
+            throw e;
+        }
+        
+        if (debug) {
+            long jsonStart = System.nanoTime();
+            int jsonSize = chunksToJson(chunks).getBytes(StandardCharsets.UTF_8).length;
+            long jsonNanos = System.nanoTime() - jsonStart;
+            getLogger().info(String.format("Sent %d chunk reports (binary, %d bytes in %.2fms; json would be %d bytes in %.2fms)",
+                chunks.size(), payload.length, encodeNanos / 1_000_000.0, jsonSize, jsonNanos / 1_000_000.0));
+        }
+        return true;
+    }
+
+    private void postReport(String path, String json) throws IOException {
+        postReport(path, "application/json", json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Posts a report to the API, or hands it to the proxy to ship with every other backend's reports
+     * when proxy.forwardReports is on and a player is online to carry it
+     */
+    private void postReport(String path, String contentType, byte[] body) throws IOException {
+        if (proxyForwardReports && proxyChannel.forwardReport(path, contentType, body)) {
+            return;
+        }
+        ApiClient.post(apiUrl + path, apiKey, contentType, body);
+    }
+
+    String chunksToJson(List<Map<String, Object>> chunks) {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"server\":\"").append(serverName).append("\",\"chunks\":[");
+        
+        for (int i = 0; i < chunks.size(); i++) {
+            if (i > 0) json.append(",");
+            json.append(mapToJson(chunks.get(i)));
+        }
+        
+        json.append("]}");
+        return json.toString();
+    }
+
+    void sendLagAlert(String type, String severity, String details, 
+                      Map<String, Object> location, Map<String, String> playerNearby) {
+        sendLagAlert(type, severity, details, location, playerNearby, null);
+    }
+
+    void sendLagAlert(String type, String severity, String details, 
+                      Map<String, Object> location, Map<String, String> playerNearby,
+                      Map<String, Object> context) {
+        scheduler.runAsync(() -> {
             try {
-                StringBuilder json = new StringBuilder();
-                json.append("{");
-                json.append("\"server\":\"").append(serverName).append("\",");
-                json.append("\"type\":\"").append(type).append("\",");
-                json.append("\"severity\":\"").append(severity).append("\",");
-                json.append("\"details\":\"").append(escapeJson(details)).append("\"");
-                
-                if (location != null) {
-                    json.append(",\"location\":").append(mapToJson(location));
-                }
-                
-                if (playerNearby != null) {
-                    json.append(",\"playerNearby\":{");
-                    json.append("\"uuid\":\"").append(playerNearby.get("uuid")).append("\",");
-                    json.append("\"username\":\"").append(playerNearby.get("username")).append("\"");
-                    json.append("}");
-                }
-                
-                json.append(",\"metrics\":{");
-                json.append("\"tps\":").append(String.format("%.2f", currentTps)).append(",");
-                json.append("\"mspt\":").append(String.format("%.2f", currentMspt));
-                json.append("}}");
-                
-                ApiClient.post(apiUrl + "/api/analytics/lag-alert", apiKey, json.toString());
+                String json = lagAlertJson(type, severity, details, location, playerNearby, context);
+                postReport("/api/analytics/lag-alert", json);
                 
                 getLogger().warning("Lag alert sent: " + type + " - " + severity);
             } catch (Exception e) {
@@ -432,7 +761,39 @@ public class NewLifeAnalyticsPaper extends JavaPlugin {
         });
     }
 
-    private String mapToJson(Map<String, Object> map) {
+    String lagAlertJson(String type, String severity, String details,
+                        Map<String, Object> location, Map<String, String> playerNearby,
+                        Map<String, Object> context) {
+        StringBuilder json = new StringBuilder();
+        json.append("{");
+        json.append("\"server\":\"").append(serverName).append("\",");
+        json.append("\"type\":\"").append(type).append("\",");
+        json.append("\"severity\":\"").append(severity).append("\",");
+        json.append("\"details\":\"").append(escapeJson(details)).append("\"");
+        
+        if (location != null) {
+            json.append(",\"location\":").append(mapToJson(location));
+        }
+        
+        if (playerNearby != null) {
+            json.append(",\"playerNearby\":{");
+            json.append("\"uuid\":\"").append(playerNearby.get("uuid")).append("\",");
+            json.append("\"username\":\"").append(playerNearby.get("username")).append("\"");
+            json.append("}");
+        }
+        
+        if (context != null) {
+            json.append(",\"context\":").append(mapToJson(context));
+        }
+        
+        json.append(",\"metrics\":{");
+        json.append("\"tps\":").append(String.format("%.2f", currentTps)).append(",");
+        json.append("\"mspt\":").append(String.format("%.2f", currentMspt));
+        json.append("}}");
+        return json.toString();
+    }
+
+    String mapToJson(Map<String, Object> map) {
         StringBuilder json = new StringBuilder("{");
         boolean first = true;
         
@@ -460,7 +821,7 @@ public class NewLifeAnalyticsPaper extends JavaPlugin {
         return json.toString();
     }
 
-    private String listToJson(List<?> list) {
+    String listToJson(List<?> list) {
         StringBuilder json = new StringBuilder("[");
         boolean first = true;
         
@@ -481,7 +842,7 @@ public class NewLifeAnalyticsPaper extends JavaPlugin {
         return json.toString();
     }
 
-    private String escapeJson(String str) {
+    String escapeJson(String str) {
         if (str == null) return "";
         return str.replace("\\", "\\\\")
                   .replace("\"", "\\\"")
@@ -490,6 +851,50 @@ public class NewLifeAnalyticsPaper extends JavaPlugin {
                   .replace("\t", "\\t");
     }
 
+    /**
+     * Bytes allocated so far by the current thread, or -1 if the JVM does not support it
+     */
+    static long allocatedBytes() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) threads;
+            if (hotspot.isThreadAllocatedMemorySupported() && hotspot.isThreadAllocatedMemoryEnabled()) {
+                return hotspot.getCurrentThreadAllocatedBytes();
+            }
+        }
+        return -1;
+    }
+
+    static String formatBytes(long bytes) {
+        if (bytes < 0) return "n/a";
+        if (bytes < 1024) return bytes + " B";
+        if (bytes < 1024 * 1024) return String.format("%.1f KB", bytes / 1024.0);
+        return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+
+    public AnalyticsScheduler getAnalyticsScheduler() {
+        return scheduler;
+    }
+
+    public boolean isDebug() {
+        return debug;
+    }
+
+    public EntityCostModel getEntityCosts() {
+        return entityCosts;
+    }
+
+    /**
+     * Main-thread time, allocation and reported chunks of the last chunk scan, or null before the first scan
+     */
+    public String describeLastScan() {
+        if (lastScanNanos < 0) {
+            return null;
+        }
+        return String.format("%,d chunks in %.2fms, %s allocated",
+            lastScanChunks, lastScanNanos / 1_000_000.0, formatBytes(lastScanAllocated));
+    }
+
     public double getCurrentTps() {
         return currentTps;
     }
@@ -0,0 +1,117 @@
+package com.newlife.analytics;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Snapshots of online player positions. On a region-threaded server a player's location may only
+ * be read on the thread that owns the player, so each position is captured by the player's entity
+ * scheduler and the snapshot is handed back on the global region thread.
+ */
+public final class PlayerPositions {
+
+    private PlayerPositions() {
+    }
+
+    /**
+     * Positions of all online players, read directly. Main thread only, outside region mode.
+     */
+    public static List<Position> online() {
+        List<Position> positions = new ArrayList<>();
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            positions.add(Position.of(player));
+        }
+        return positions;
+    }
+
+    /**
+     * Captures all online player positions and passes them to the callback on the main thread
+     * (global region thread in region mode). Outside region mode the callback runs immediately.
+     */
+    public static void capture(AnalyticsScheduler scheduler, Consumer<List<Position>> callback) {
+        if (!scheduler.isRegionThreaded()) {
+            callback.accept(online());
+            return;
+        }
+
+        Collection<? extends Player> players = new ArrayList<>(Bukkit.getOnlinePlayers());
+        if (players.isEmpty()) {
+            callback.accept(new ArrayList<>());
+            return;
+        }
+
+        Queue<Position> captured = new ConcurrentLinkedQueue<>();
+        AtomicInteger remaining = new AtomicInteger(players.size());
+        Runnable done = () -> {
+            if (remaining.decrementAndGet() == 0) {
+                scheduler.run(() -> callback.accept(new ArrayList<>(captured)));
+            }
+        };
+        for (Player player : players) {
+            scheduler.runForEntity(player, () -> {
+                captured.add(Position.of(player));
+                done.run();
+            }, done);
+        }
+    }
+
+    public static final class Position {
+        private final UUID uuid;
+        private final String name;
+        private final String world;
+        private final double x;
+        private final double z;
+
+        private Position(UUID uuid, String name, String world, double x, double z) {
+            this.uuid = uuid;
+            this.name = name;
+            this.world = world;
+            this.x = x;
+            this.z = z;
+        }
+
+        static Position of(Player player) {
+            Location location = player.getLocation();
+            return new Position(player.getUniqueId(), player.getName(), location.getWorld().getName(),
+                location.getX(), location.getZ());
+        }
+
+        public UUID getUuid() {
+            return uuid;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getWorld() {
+            return world;
+        }
+
+        public double getX() {
+            return x;
+        }
+
+        public double getZ() {
+            return z;
+        }
+
+        public int getChunkX() {
+            return (int) Math.floor(x) >> 4;
+        }
+
+        public int getChunkZ() {
+            return (int) Math.floor(z) >> 4;
+        }
+    }
+}
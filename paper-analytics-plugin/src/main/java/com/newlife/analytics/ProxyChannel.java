@@ -0,0 +1,109 @@
+package com.newlife.analytics;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Plugin messaging channel to the Velocity analytics plugin. Messages start with a version and a
+ * type byte; the proxy knows which backend sent them from the connection they arrive on.
+ *
+ * Plugin messages travel over a player's connection, so nothing can be sent while the server is
+ * empty. The proxy pings an empty backend to tell whether it is idle or down, and forwarded
+ * reports fall back to a direct HTTP post.
+ */
+public class ProxyChannel {
+
+    public static final String CHANNEL = "newlife:analytics";
+    static final int VERSION = 1;
+    static final int TYPE_LOAD = 1;
+    static final int TYPE_REPORT = 2;
+    // Messenger.MAX_MESSAGE_SIZE; larger messages are rejected before they are sent
+    private static final int MAX_MESSAGE_SIZE = 32766;
+
+    private final NewLifeAnalyticsPaper plugin;
+
+    public ProxyChannel(NewLifeAnalyticsPaper plugin) {
+        this.plugin = plugin;
+    }
+
+    public void register() {
+        plugin.getServer().getMessenger().registerOutgoingPluginChannel(plugin, CHANNEL);
+    }
+
+    public void unregister() {
+        plugin.getServer().getMessenger().unregisterOutgoingPluginChannel(plugin);
+    }
+
+    /**
+     * Sends the current load for load-aware routing. Returns false if no player could carry it.
+     */
+    public boolean sendLoad(double tps, double mspt, int entities, int loadedChunks, int players) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(VERSION);
+            out.writeByte(TYPE_LOAD);
+            out.writeDouble(tps);
+            out.writeDouble(mspt);
+            out.writeInt(entities);
+            out.writeInt(loadedChunks);
+            out.writeInt(players);
+            return sendThroughOnePlayer(bytes.toByteArray());
+        } catch (IOException e) {
+            return false; // cannot happen writing to memory
+        }
+    }
+
+    /**
+     * Hands an API report to the proxy, which ships it to the bot together with the other
+     * backends' reports. The body is gzipped to fit the plugin message size limit. Returns false if
+     * no player could carry it or it is still too large, in which case the caller posts it itself.
+     */
+    public boolean forwardReport(String path, String contentType, byte[] body) {
+        if (Bukkit.getOnlinePlayers().isEmpty()) {
+            return false;
+        }
+        try {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, body.length / 4));
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                gzip.write(body);
+            }
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(compressed.size() + 64);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(VERSION);
+            out.writeByte(TYPE_REPORT);
+            out.writeUTF(path);
+            out.writeUTF(contentType);
+            out.writeInt(compressed.size());
+            compressed.writeTo(out);
+            if (bytes.size() > MAX_MESSAGE_SIZE) {
+                return false;
+            }
+            return sendThroughOnePlayer(bytes.toByteArray());
+        } catch (IOException e) {
+            return false; // cannot happen writing to memory
+        }
+    }
+
+    /**
+     * Server#sendPluginMessage sends a copy through every online player and the proxy receives
+     * each one, so a report would be queued once per player. One carrier is enough.
+     */
+    private boolean sendThroughOnePlayer(byte[] message) {
+        try {
+            for (Player player : Bukkit.getOnlinePlayers()) {
+                player.sendPluginMessage(plugin, CHANNEL, message);
+                return true;
+            }
+        } catch (RuntimeException e) {
+            // The player left while the message was sent; the caller falls back
+        }
+        return false;
+    }
+}
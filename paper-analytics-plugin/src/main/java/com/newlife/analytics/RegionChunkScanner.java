@@ -0,0 +1,176 @@
+package com.newlife.analytics;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.World;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Chunk scan for region-threaded servers, where no thread may walk every loaded chunk.
+ *
+ * Chunks within view distance of each player are grouped into 16x16 chunk tiles and each tile is
+ * analyzed by a task on the region that owns it, so regions scan in parallel on their own threads.
+ * Results are merged through a lock-free queue and the last tile to finish hands the merged scan
+ * back on the global region thread. Chunks with no player nearby are not scanned in this mode.
+ *
+ * Each scan gets an id. A scan that went stale and was replaced by a newer one may still finish
+ * later; its results are dropped, so only the current scan completes and clears the running state.
+ */
+public class RegionChunkScanner {
+
+    private static final int TILE_SHIFT = 4;
+    // A scan whose tiles never all report back (region shut down mid-scan) stops blocking new scans
+    private static final long STALE_SCAN_MS = 60_000;
+
+    private final NewLifeAnalyticsPaper plugin;
+    private final AnalyticsScheduler scheduler;
+    // Id of the running scan, 0 when none; scan ids are handed out on the global region thread
+    private volatile long currentScan = 0;
+    private volatile long scanStarted = 0;
+    private long lastScanId = 0;
+
+    public RegionChunkScanner(NewLifeAnalyticsPaper plugin, AnalyticsScheduler scheduler) {
+        this.plugin = plugin;
+        this.scheduler = scheduler;
+    }
+
+    public interface Completion {
+        void accept(List<Map<String, Object>> chunks, int loadedChunks);
+    }
+
+    /**
+     * Starts a scan from the global region thread. The completion runs on the global region thread.
+     */
+    public void scan(Completion completion) {
+        long now = System.currentTimeMillis();
+        if (currentScan != 0 && now - scanStarted < STALE_SCAN_MS) {
+            return; // previous scan still running
+        }
+        long id = ++lastScanId;
+        currentScan = id;
+        scanStarted = now;
+
+        PlayerPositions.capture(scheduler, players -> {
+            if (currentScan != id) {
+                return; // superseded while capturing positions
+            }
+            Map<String, List<PlayerPositions.Position>> playersByWorld = new HashMap<>();
+            Map<World, Set<Long>> tiles = new HashMap<>();
+            for (PlayerPositions.Position player : players) {
+                World world = Bukkit.getWorld(player.getWorld());
+                if (world == null) {
+                    continue;
+                }
+                playersByWorld.computeIfAbsent(player.getWorld(), k -> new ArrayList<>()).add(player);
+
+                int radius = world.getViewDistance();
+                Set<Long> worldTiles = tiles.computeIfAbsent(world, k -> new HashSet<>());
+                for (int tx = (player.getChunkX() - radius) >> TILE_SHIFT; tx <= (player.getChunkX() + radius) >> TILE_SHIFT; tx++) {
+                    for (int tz = (player.getChunkZ() - radius) >> TILE_SHIFT; tz <= (player.getChunkZ() + radius) >> TILE_SHIFT; tz++) {
+                        worldTiles.add(((long) tx << 32) | (tz & 0xFFFFFFFFL));
+                    }
+                }
+            }
+
+            int tileCount = 0;
+            for (Set<Long> worldTiles : tiles.values()) {
+                tileCount += worldTiles.size();
+            }
+            if (tileCount == 0) {
+                currentScan = 0;
+                completion.accept(new ArrayList<>(), 0);
+                return;
+            }
+
+            Scan scan = new Scan(id, tileCount, completion);
+            for (Map.Entry<World, Set<Long>> entry : tiles.entrySet()) {
+                World world = entry.getKey();
+                List<PlayerPositions.Position> worldPlayers = playersByWorld.get(world.getName());
+                for (long tile : entry.getValue()) {
+                    int tx = (int) (tile >> 32);
+                    int tz = (int) tile;
+                    int centerX = (tx << TILE_SHIFT) + 8;
+                    int centerZ = (tz << TILE_SHIFT) + 8;
+                    scheduler.runAtChunk(world, centerX, centerZ, () -> scanTile(scan, world, tx, tz, worldPlayers));
+                }
+            }
+        });
+    }
+
+    /**
+     * Runs on the region owning the tile centre. Chunks of the tile owned by another region
+     * are rescheduled onto their own region individually.
+     */
+    private void scanTile(Scan scan, World world, int tileX, int tileZ, List<PlayerPositions.Position> players) {
+        try {
+            int minX = tileX << TILE_SHIFT;
+            int minZ = tileZ << TILE_SHIFT;
+            for (int x = minX; x < minX + (1 << TILE_SHIFT); x++) {
+                for (int z = minZ; z < minZ + (1 << TILE_SHIFT); z++) {
+                    if (!world.isChunkLoaded(x, z)) {
+                        continue;
+                    }
+                    if (Bukkit.isOwnedByCurrentRegion(world, x, z)) {
+                        scanChunk(scan, world, x, z, players);
+                    } else {
+                        int chunkX = x;
+                        int chunkZ = z;
+                        scan.pending.incrementAndGet();
+                        scheduler.runAtChunk(world, chunkX, chunkZ, () -> {
+                            try {
+                                if (world.isChunkLoaded(chunkX, chunkZ)) {
+                                    scanChunk(scan, world, chunkX, chunkZ, players);
+                                }
+                            } finally {
+                                scan.taskDone();
+                            }
+                        });
+                    }
+                }
+            }
+        } finally {
+            scan.taskDone();
+        }
+    }
+
+    private void scanChunk(Scan scan, World world, int x, int z, List<PlayerPositions.Position> players) {
+        Chunk chunk = world.getChunkAt(x, z);
+        scan.loadedChunks.incrementAndGet();
+        Map<String, Object> chunkData = plugin.analyzeChunk(world, chunk, players);
+        if (chunkData != null) {
+            scan.results.add(chunkData);
+        }
+    }
+
+    private class Scan {
+        private final long id;
+        private final Queue<Map<String, Object>> results = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger loadedChunks = new AtomicInteger();
+        private final AtomicInteger pending;
+        private final Completion completion;
+
+        Scan(long id, int tasks, Completion completion) {
+            this.id = id;
+            this.pending = new AtomicInteger(tasks);
+            this.completion = completion;
+        }
+
+        void taskDone() {
+            if (pending.decrementAndGet() == 0) {
+                scheduler.run(() -> {
+                    if (currentScan != id) {
+                        if (plugin.isDebug()) {
+                            plugin.getLogger().info("Dropped the results of stale chunk scan " + id);
+                        }
+                        return;
+                    }
+                    currentScan = 0;
+                    completion.accept(new ArrayList<>(results), loadedChunks.get());
+                });
+            }
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.newlife.analytics;
+
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.bukkit.scheduler.BukkitTask;
+import org.bukkit.scheduler.BukkitWorker;
+
+import java.util.*;
+
+/**
+ * Samples the Bukkit scheduler and detects plugins whose pending task count keeps growing
+ * (e.g. a runTaskLater per player action that never drains)
+ */
+public class SchedulerMonitor {
+
+    private final NewLifeAnalyticsPaper plugin;
+    private final int windowSamples;
+    private final int minGrowth;
+
+    // Plugin name -> ring buffer of recent pending task counts
+    private final Map<String, TaskSeries> history = new HashMap<>();
+    private int sampleIndex = 0;
+
+    // Plugin name -> last alert time, to avoid spamming the same leak
+    private final Map<String, Long> lastAlert = new HashMap<>();
+    private static final long ALERT_COOLDOWN_MS = 10 * 60 * 1000; // 10 minutes
+
+    // Latest totals, read by the TPS reporter
+    private volatile int pendingTasks = 0;
+    private volatile int activeWorkers = 0;
+
+    public SchedulerMonitor(NewLifeAnalyticsPaper plugin, int windowSamples, int minGrowth) {
+        this.plugin = plugin;
+        this.windowSamples = Math.max(2, windowSamples);
+        this.minGrowth = minGrowth;
+    }
+
+    public void start(int intervalTicks) {
+        Bukkit.getScheduler().runTaskTimer(plugin, this::sample, intervalTicks, intervalTicks);
+    }
+
+    private void sample() {
+        BukkitScheduler scheduler = Bukkit.getScheduler();
+        List<BukkitTask> tasks = scheduler.getPendingTasks();
+        List<BukkitWorker> workers = scheduler.getActiveWorkers();
+
+        // Count per owning plugin using int[1] holders instead of boxed Integers
+        Map<String, int[]> counts = new HashMap<>();
+        for (BukkitTask task : tasks) {
+            Plugin owner = task.getOwner();
+            counts.computeIfAbsent(owner.getName(), k -> new int[1])[0]++;
+        }
+
+        pendingTasks = tasks.size();
+        activeWorkers = workers.size();
+
+        int slot = sampleIndex;
+        sampleIndex = (sampleIndex + 1) % windowSamples;
+
+        // Plugins with no pending tasks this sample still need a zero recorded
+        for (Map.Entry<String, int[]> entry : counts.entrySet()) {
+            history.computeIfAbsent(entry.getKey(), k -> new TaskSeries(windowSamples));
+        }
+        for (Map.Entry<String, TaskSeries> entry : history.entrySet()) {
+            int[] count = counts.get(entry.getKey());
+            entry.getValue().record(slot, count != null ? count[0] : 0);
+        }
+
+        checkGrowth();
+    }
+
+    /**
+     * A plugin is leaking if its pending count never dropped across the whole window
+     * and grew by at least minGrowth from the oldest to the newest sample
+     */
+    private void checkGrowth() {
+        long now = System.currentTimeMillis();
+        int oldest = sampleIndex; // next slot to be overwritten holds the oldest sample
+
+        for (Map.Entry<String, TaskSeries> entry : history.entrySet()) {
+            TaskSeries series = entry.getValue();
+            if (series.samples < windowSamples) {
+                continue; // not enough history yet for this plugin
+            }
+            int[] ring = series.counts;
+            boolean monotonic = true;
+            for (int i = 1; i < windowSamples; i++) {
+                int prev = ring[(oldest + i - 1) % windowSamples];
+                int cur = ring[(oldest + i) % windowSamples];
+                if (cur < prev) {
+                    monotonic = false;
+                    break;
+                }
+            }
+
+            int first = ring[oldest];
+            int last = ring[(oldest + windowSamples - 1) % windowSamples];
+            if (!monotonic || last - first < minGrowth) {
+                continue;
+            }
+
+            Long previous = lastAlert.get(entry.getKey());
+            if (previous != null && now - previous < ALERT_COOLDOWN_MS) {
+                continue;
+            }
+            lastAlert.put(entry.getKey(), now);
+
+            String details = String.format("Plugin %s pending tasks grew from %d to %d over %d samples (possible task leak)",
+                entry.getKey(), first, last, windowSamples);
+            Map<String, Object> context = new HashMap<>();
+            context.put("plugin", entry.getKey());
+            context.put("pendingTasks", last);
+            context.put("growth", last - first);
+            plugin.sendLagAlert("scheduler_leak", "high", details, null, null, context);
+        }
+
+        // Drop plugins that have had no tasks for a full window (e.g. unloaded)
+        history.values().removeIf(series -> {
+            if (series.samples < windowSamples) return false;
+            for (int c : series.counts) if (c != 0) return false;
+            return true;
+        });
+    }
+
+    public int getPendingTasks() {
+        return pendingTasks;
+    }
+
+    public int getActiveWorkers() {
+        return activeWorkers;
+    }
+
+    /**
+     * Pending task counts for one plugin, indexed by the shared sample slot
+     */
+    private static class TaskSeries {
+        private final int[] counts;
+        private int samples = 0;
+
+        TaskSeries(int size) {
+            this.counts = new int[size];
+        }
+
+        void record(int slot, int count) {
+            counts[slot] = count;
+            samples++;
+        }
+    }
+}
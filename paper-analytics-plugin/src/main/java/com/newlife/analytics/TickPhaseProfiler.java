@@ -0,0 +1,182 @@
+package com.newlife.analytics;
+
+import com.destroystokyo.paper.event.server.ServerTickEndEvent;
+import com.destroystokyo.paper.event.server.ServerTickStartEvent;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Attributes tick time to coarse phases (entities, block entities, chunks, plugins, scheduler, network)
+ * by sampling the main thread's stack while a tick is running. Tick start/end events gate the sampler
+ * so idle time between ticks is never counted.
+ */
+public class TickPhaseProfiler implements Listener {
+
+    public static final String[] PHASES = {
+        "entities", "blockEntities", "chunks", "plugins", "scheduler", "network", "other"
+    };
+    static final int ENTITIES = 0;
+    private static final int BLOCK_ENTITIES = 1;
+    private static final int CHUNKS = 2;
+    private static final int PLUGINS = 3;
+    private static final int SCHEDULER = 4;
+    private static final int NETWORK = 5;
+    private static final int OTHER = 6;
+
+    private final NewLifeAnalyticsPaper plugin;
+    private final Thread mainThread;
+    private final long sampleIntervalMs;
+
+    private volatile boolean inTick = false;
+    private final AtomicLongArray phaseSamples = new AtomicLongArray(PHASES.length);
+    // Never reset, so other components can take their own deltas
+    private final AtomicLongArray totalPhaseSamples = new AtomicLongArray(PHASES.length);
+    private ScheduledExecutorService sampler;
+
+    // Busy tick time in the current report window, written on the main thread only
+    private double windowTickMs = 0;
+    private int windowTicks = 0;
+    private double totalTickMs = 0;
+    private long totalTicks = 0;
+
+    public TickPhaseProfiler(NewLifeAnalyticsPaper plugin, Thread mainThread, long sampleIntervalMs) {
+        this.plugin = plugin;
+        this.mainThread = mainThread;
+        this.sampleIntervalMs = Math.max(1, sampleIntervalMs);
+    }
+
+    public void start() {
+        plugin.getServer().getPluginManager().registerEvents(this, plugin);
+        sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "NewLifeAnalytics-TickSampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sampler.scheduleAtFixedRate(this::sample, sampleIntervalMs, sampleIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        if (sampler != null) {
+            sampler.shutdownNow();
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onTickStart(ServerTickStartEvent event) {
+        inTick = true;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onTickEnd(ServerTickEndEvent event) {
+        inTick = false;
+        windowTickMs += event.getTickDuration();
+        windowTicks++;
+        totalTickMs += event.getTickDuration();
+        totalTicks++;
+    }
+
+    private void sample() {
+        if (!inTick) {
+            return;
+        }
+        StackTraceElement[] stack = mainThread.getStackTrace();
+        // The tick may have ended while the stack was being captured
+        if (inTick && stack.length > 0) {
+            int phase = classify(stack);
+            phaseSamples.incrementAndGet(phase);
+            totalPhaseSamples.incrementAndGet(phase);
+        }
+    }
+
+    /**
+     * Walks from the innermost frame outwards and returns the first phase that matches, so a
+     * plugin listener fired from inside entity ticking counts as plugin time, not entity time
+     */
+    static int classify(StackTraceElement[] stack) {
+        for (StackTraceElement frame : stack) {
+            String cls = frame.getClassName();
+            String method = frame.getMethodName();
+
+            if (cls.startsWith("org.bukkit.plugin.") || cls.startsWith("io.papermc.paper.plugin.manager.")
+                    || cls.startsWith("co.aikar.timings.")) {
+                return PLUGINS;
+            }
+            if (cls.startsWith("org.bukkit.craftbukkit.scheduler.")) {
+                return SCHEDULER;
+            }
+            if (cls.startsWith("net.minecraft.world.level.block.entity.") || method.equals("tickBlockEntities")) {
+                return BLOCK_ENTITIES;
+            }
+            if (cls.startsWith("net.minecraft.world.entity.") || method.equals("tickNonPassenger")
+                    || method.equals("tickPassenger")) {
+                return ENTITIES;
+            }
+            if (cls.startsWith("net.minecraft.server.network.") || cls.startsWith("net.minecraft.network.")) {
+                return NETWORK;
+            }
+            if (cls.startsWith("net.minecraft.server.level.ServerChunkCache") || cls.startsWith("net.minecraft.server.level.ChunkMap")
+                    || cls.startsWith("net.minecraft.world.level.chunk.") || cls.startsWith("net.minecraft.world.ticks.")
+                    || cls.startsWith("net.minecraft.world.level.redstone.")) {
+                return CHUNKS;
+            }
+        }
+        return OTHER;
+    }
+
+    /**
+     * Cumulative counters since the profiler started, for callers that need their own windows.
+     * Tick totals are only safe to read on the main thread.
+     */
+    public long getTotalSamples(int phase) {
+        return totalPhaseSamples.get(phase);
+    }
+
+    public long getTotalSamples() {
+        long total = 0;
+        for (int i = 0; i < PHASES.length; i++) {
+            total += totalPhaseSamples.get(i);
+        }
+        return total;
+    }
+
+    public double getTotalTickMs() {
+        return totalTickMs;
+    }
+
+    public long getTotalTicks() {
+        return totalTicks;
+    }
+
+    /**
+     * Returns the share of tick time spent in each phase since the last call, as percentages,
+     * and starts a new window. Must be called on the main thread.
+     */
+    public Map<String, Object> snapshotAndReset() {
+        long[] counts = new long[PHASES.length];
+        long total = 0;
+        for (int i = 0; i < PHASES.length; i++) {
+            counts[i] = phaseSamples.getAndSet(i, 0);
+            total += counts[i];
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (int i = 0; i < PHASES.length; i++) {
+            double percent = total > 0 ? counts[i] * 100.0 / total : 0.0;
+            result.put(PHASES[i], Math.round(percent * 10) / 10.0);
+        }
+        result.put("avgTickMs", windowTicks > 0 ? Math.round(windowTickMs / windowTicks * 100) / 100.0 : 0.0);
+        result.put("samples", total);
+
+        windowTickMs = 0;
+        windowTicks = 0;
+        return result;
+    }
+}
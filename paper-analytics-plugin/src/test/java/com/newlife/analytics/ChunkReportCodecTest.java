@@ -0,0 +1,209 @@
+package com.newlife.analytics;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Round trips chunk reports through ChunkReportCodec. The bot's decoder is tested against the same
+ * fixture bytes in test/chunkCodec.test.js, which also covers version 1 reports and corrupt input.
+ */
+class ChunkReportCodecTest {
+
+    private static final String UUID_STRING = "123e4567-e89b-12d3-a456-426614174000";
+
+    // Must match the version 2 report in test/chunkCodec.test.js
+    private static final String FIXTURE =
+        "4e4c435202" + "08737572766976616c"
+        + "05" + "05776f726c64" + "067a6f6d626965" + "046974656d" + "055374657665" + "0c776f726c645f6e6574686572"
+        + "02" + "0004" + "0518" + "dfc50800" + "0500" + "4100" + "0100" + "008201" + "048201"
+        + "02" + "0103" + "0202" + "00"
+        + "01" + UUID_STRING.replace("-", "") + "03" + "00";
+
+    @Test
+    void encodesTheSharedFixture() {
+        Map<String, Integer> breakdown = new LinkedHashMap<>();
+        breakdown.put("zombie", 3);
+        breakdown.put("item", 2);
+        List<Map<String, Object>> chunks = List.of(
+            chunk("world", -3, -70000, 5, 6.5, breakdown, 1, 0, 4, List.of(player(UUID_STRING, "Steve"))),
+            chunk("world_nether", 12, 0, 0, 0.0, new LinkedHashMap<>(), 0, 130, 130, new ArrayList<>()));
+
+        assertEquals(FIXTURE, hex(ChunkReportCodec.encode("survival", chunks)));
+    }
+
+    @Test
+    void roundTripsReports() {
+        Random random = new Random(42);
+        String[] types = {"zombie", "item", "villager", "experience_orb"};
+        List<Map<String, Object>> chunks = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            Map<String, Integer> breakdown = new HashMap<>();
+            int entities = random.nextInt(300);
+            for (int e = 0; e < entities; e++) {
+                breakdown.merge(types[random.nextInt(types.length)], 1, Integer::sum);
+            }
+            List<Map<String, String>> players = new ArrayList<>();
+            for (int p = random.nextInt(3); p > 0; p--) {
+                players.add(player(new UUID(random.nextLong(), random.nextLong()).toString(), "player" + random.nextInt(20)));
+            }
+            chunks.add(chunk(i % 3 == 0 ? "world_nether" : "world",
+                random.nextInt(2_000_000) - 1_000_000, random.nextInt(2_000_000) - 1_000_000,
+                entities, Math.round(random.nextDouble() * 5000) / 10.0, breakdown,
+                random.nextInt(100), random.nextInt(100), random.nextInt(500), players));
+        }
+        chunks.add(chunk("world", Integer.MIN_VALUE / 16, Integer.MAX_VALUE / 16, 0, 0.0,
+            new HashMap<>(), 0, 0, 0, new ArrayList<>()));
+
+        Decoded decoded = decode(ChunkReportCodec.encode("survival", chunks));
+
+        assertEquals("survival", decoded.server);
+        assertEquals(chunks, decoded.chunks);
+    }
+
+    @Test
+    void writesMissingBreakdownsAndPlayersAsEmpty() {
+        Map<String, Object> chunk = chunk("world", -1, -1, 3, 3.0, null, 0, 0, 0, null);
+
+        Map<String, Object> decoded = decode(ChunkReportCodec.encode("survival", List.of(chunk))).chunks.get(0);
+
+        assertEquals(Map.of(), decoded.get("entityBreakdown"));
+        assertEquals(List.of(), decoded.get("playersNearby"));
+        assertEquals(-1, decoded.get("x"));
+    }
+
+    private static Map<String, Object> chunk(String world, int x, int z, int entities, double score,
+                                             Map<String, Integer> breakdown, int hoppers, int redstone,
+                                             int tileEntities, List<Map<String, String>> players) {
+        Map<String, Object> chunk = new HashMap<>();
+        chunk.put("world", world);
+        chunk.put("x", x);
+        chunk.put("z", z);
+        chunk.put("entities", entities);
+        chunk.put("score", score);
+        chunk.put("entityBreakdown", breakdown);
+        chunk.put("hoppers", hoppers);
+        chunk.put("redstone", redstone);
+        chunk.put("tileEntities", tileEntities);
+        chunk.put("playersNearby", players);
+        return chunk;
+    }
+
+    private static Map<String, String> player(String uuid, String username) {
+        Map<String, String> player = new HashMap<>();
+        player.put("uuid", uuid);
+        player.put("username", username);
+        return player;
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private static class Decoded {
+        String server;
+        List<Map<String, Object>> chunks = new ArrayList<>();
+    }
+
+    /**
+     * Version 2 decoder following the layout documented on ChunkReportCodec, into the encoder's input shape
+     */
+    private static Decoded decode(byte[] data) {
+        Reader in = new Reader(data);
+        assertEquals("NLCR", new String(in.bytes(4), StandardCharsets.US_ASCII));
+        assertEquals(2, in.raw());
+
+        Decoded decoded = new Decoded();
+        decoded.server = in.string();
+        String[] dictionary = new String[in.varint()];
+        for (int i = 0; i < dictionary.length; i++) {
+            dictionary[i] = in.string();
+        }
+
+        int n = in.varint();
+        for (int i = 0; i < n; i++) {
+            Map<String, Object> chunk = new HashMap<>();
+            chunk.put("world", dictionary[in.varint()]);
+            decoded.chunks.add(chunk);
+        }
+        for (Map<String, Object> chunk : decoded.chunks) chunk.put("x", in.zigzag());
+        for (Map<String, Object> chunk : decoded.chunks) chunk.put("z", in.zigzag());
+        for (Map<String, Object> chunk : decoded.chunks) chunk.put("entities", in.varint());
+        for (Map<String, Object> chunk : decoded.chunks) chunk.put("score", in.varint() / 10.0);
+        for (Map<String, Object> chunk : decoded.chunks) chunk.put("hoppers", in.varint());
+        for (Map<String, Object> chunk : decoded.chunks) chunk.put("redstone", in.varint());
+        for (Map<String, Object> chunk : decoded.chunks) chunk.put("tileEntities", in.varint());
+        for (Map<String, Object> chunk : decoded.chunks) {
+            Map<String, Integer> breakdown = new HashMap<>();
+            for (int size = in.varint(); size > 0; size--) {
+                breakdown.put(dictionary[in.varint()], in.varint());
+            }
+            chunk.put("entityBreakdown", breakdown);
+        }
+        for (Map<String, Object> chunk : decoded.chunks) {
+            List<Map<String, String>> players = new ArrayList<>();
+            for (int size = in.varint(); size > 0; size--) {
+                UUID uuid = new UUID(in.fixedLong(), in.fixedLong());
+                players.add(player(uuid.toString(), dictionary[in.varint()]));
+            }
+            chunk.put("playersNearby", players);
+        }
+        assertEquals(data.length, in.pos, "trailing bytes");
+        return decoded;
+    }
+
+    private static final class Reader {
+
+        private final byte[] data;
+        private int pos;
+
+        Reader(byte[] data) {
+            this.data = data;
+        }
+
+        int raw() {
+            return data[pos++] & 0xFF;
+        }
+
+        byte[] bytes(int length) {
+            byte[] result = Arrays.copyOfRange(data, pos, pos + length);
+            pos += length;
+            return result;
+        }
+
+        int varint() {
+            int result = 0;
+            for (int shift = 0; ; shift += 7) {
+                int b = raw();
+                result |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+            }
+        }
+
+        int zigzag() {
+            int n = varint();
+            return (n >>> 1) ^ -(n & 1);
+        }
+
+        long fixedLong() {
+            long result = 0;
+            for (int i = 0; i < 8; i++) {
+                result = (result << 8) | raw();
+            }
+            return result;
+        }
+
+        String string() {
+            return new String(bytes(varint()), StandardCharsets.UTF_8);
+        }
+    }
+}
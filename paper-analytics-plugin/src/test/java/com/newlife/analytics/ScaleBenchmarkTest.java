@@ -0,0 +1,235 @@
+package com.newlife.analytics;
+
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.block.BlockState;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
+import org.bukkit.inventory.ItemStack;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.mockbukkit.mockbukkit.MockBukkit;
+import org.mockbukkit.mockbukkit.ServerMock;
+import org.mockbukkit.mockbukkit.block.state.BlockStateMock;
+import org.mockbukkit.mockbukkit.block.state.HopperStateMock;
+import org.mockbukkit.mockbukkit.entity.PlayerMock;
+import org.mockbukkit.mockbukkit.world.ChunkMock;
+import org.mockbukkit.mockbukkit.world.WorldMock;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Measures the report pipeline against synthetic worlds of 1k, 10k and 50k loaded chunks on a
+ * MockBukkit server, so regressions show up before deploying.
+ *
+ * Each size runs the real chunk scan, chunk report encoding (JSON and binary), hotspot tracking
+ * and building the TPS report, and prints the median time, per-thread allocation and payload size
+ * of each stage. Tagged "benchmark" and skipped by a plain mvn test; run with mvn test -Pbench.
+ */
+@Tag("benchmark")
+class ScaleBenchmarkTest {
+
+    private static final int ENTITIES_PER_CHUNK = 20;
+    private static final int TILE_ENTITIES_PER_CHUNK = 8;
+    private static final int PLAYERS = 50;
+    private static final int WARMUP = 2;
+    private static final int ITERATIONS = 5;
+
+    private ServerMock server;
+    private NewLifeAnalyticsPaper plugin;
+
+    @BeforeEach
+    void setUp() {
+        server = MockBukkit.mock();
+        plugin = MockBukkit.load(NewLifeAnalyticsPaper.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        MockBukkit.unmock();
+    }
+
+    @ParameterizedTest(name = "{0} chunks")
+    @ValueSource(ints = {1_000, 10_000, 50_000})
+    void reportPipeline(int chunks) {
+        SyntheticWorld world = new SyntheticWorld(chunks);
+        server.addWorld(world);
+        world.populate();
+        for (int i = 0; i < PLAYERS; i++) {
+            PlayerMock player = server.addPlayer();
+            player.teleport(world.playerSpot(i));
+        }
+
+        List<PlayerPositions.Position> players = PlayerPositions.online();
+        List<Map<String, Object>> report = new ArrayList<>();
+        for (Chunk chunk : world.getLoadedChunks()) {
+            Map<String, Object> chunkData = plugin.analyzeChunk(world, chunk, players);
+            if (chunkData != null) {
+                report.add(chunkData);
+            }
+        }
+        assertEquals(chunks, report.size());
+        server.getScheduler().waitAsyncTasksFinished();
+
+        System.out.printf("%,d chunks, %d entities, %d tile entities per chunk, %d players%n",
+            chunks, ENTITIES_PER_CHUNK, TILE_ENTITIES_PER_CHUNK, PLAYERS);
+        System.out.println(measure("chunk scan", () -> {
+            plugin.scanChunks();
+            return 0;
+        }));
+        assertNotNull(plugin.describeLastScan());
+        System.out.println("  last scan as measured by the plugin: " + plugin.describeLastScan());
+        System.out.println(measure("json report", () -> plugin.chunksToJson(report).getBytes(StandardCharsets.UTF_8).length));
+        System.out.println(measure("binary report", () -> ChunkReportCodec.encode("bench", report).length));
+        System.out.println(measure("hotspot tracking", () -> {
+            new HotspotCorrelator(plugin, 32, 30).trackHotspots(report);
+            return 0;
+        }));
+        // reportTps without the HTTP post
+        Map<String, Object> tickPhases = syntheticTickPhases();
+        System.out.println(measure("tps report", () -> plugin.tpsJson(19.5, 51.2, chunks, chunks * ENTITIES_PER_CHUNK, PLAYERS, tickPhases)
+            .getBytes(StandardCharsets.UTF_8).length));
+    }
+
+    /**
+     * Runs a stage WARMUP + ITERATIONS times and reports the median time and mean allocation of the
+     * measured runs. The stage returns its payload size in bytes, or 0 if it has none. Reports the
+     * stage queued for sending are drained between runs, outside the measurement.
+     */
+    private String measure(String name, Supplier<Integer> stage) {
+        for (int i = 0; i < WARMUP; i++) {
+            stage.get();
+            server.getScheduler().waitAsyncTasksFinished();
+        }
+
+        long[] nanos = new long[ITERATIONS];
+        long allocated = 0;
+        int payload = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            long allocStart = NewLifeAnalyticsPaper.allocatedBytes();
+            long start = System.nanoTime();
+            payload = stage.get();
+            nanos[i] = System.nanoTime() - start;
+            long allocEnd = NewLifeAnalyticsPaper.allocatedBytes();
+            allocated += allocStart >= 0 && allocEnd >= 0 ? allocEnd - allocStart : 0;
+            server.getScheduler().waitAsyncTasksFinished();
+        }
+        Arrays.sort(nanos);
+        long meanAllocated = NewLifeAnalyticsPaper.allocatedBytes() >= 0 ? allocated / ITERATIONS : -1;
+        return String.format("  %s: %.2fms, %s allocated%s", name, nanos[ITERATIONS / 2] / 1_000_000.0,
+            NewLifeAnalyticsPaper.formatBytes(meanAllocated),
+            payload > 0 ? ", payload " + NewLifeAnalyticsPaper.formatBytes(payload) : "");
+    }
+
+    private static Map<String, Object> syntheticTickPhases() {
+        Map<String, Object> phases = new LinkedHashMap<>();
+        for (String phase : TickPhaseProfiler.PHASES) {
+            phases.put(phase, 100.0 / TickPhaseProfiler.PHASES.length);
+        }
+        phases.put("avgTickMs", 42.0);
+        phases.put("samples", 1200);
+        return phases;
+    }
+
+    /**
+     * A world with a square of loaded chunks around 0,0. Chunks hand out entities and tile
+     * entities from a small shared pool instead of spawning a million mocks; the scan only reads
+     * them. Seeded so runs are comparable.
+     */
+    private static class SyntheticWorld extends WorldMock {
+
+        private final int chunkCount;
+        private final int side;
+        private Chunk[] chunks;
+
+        SyntheticWorld(int chunkCount) {
+            super();
+            setName("world");
+            this.chunkCount = chunkCount;
+            this.side = (int) Math.ceil(Math.sqrt(chunkCount));
+        }
+
+        void populate() {
+            Random random = new Random(42);
+            Location origin = new Location(this, 0, 64, 0);
+            EntityType[] types = {
+                EntityType.ZOMBIE, EntityType.SKELETON, EntityType.COW, EntityType.CHICKEN,
+                EntityType.VILLAGER, EntityType.ARMOR_STAND
+            };
+            List<Entity> pool = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                for (EntityType type : types) {
+                    pool.add(spawnEntity(origin, type));
+                }
+                pool.add(dropItem(origin, new ItemStack(Material.COBBLESTONE)));
+                pool.add(dropItem(origin, new ItemStack(Material.ROTTEN_FLESH)));
+            }
+            BlockState[] tiles = {
+                new HopperStateMock(Material.HOPPER), new BlockStateMock(Material.REDSTONE_WIRE),
+                new BlockStateMock(Material.COMPARATOR), new BlockStateMock(Material.DROPPER),
+                new BlockStateMock(Material.CHEST), new BlockStateMock(Material.FURNACE)
+            };
+
+            chunks = new Chunk[chunkCount];
+            for (int i = 0; i < chunkCount; i++) {
+                // Spread entities unevenly: most chunks near the average, a few farms far above it
+                int count = Math.max(1, (int) (ENTITIES_PER_CHUNK * (random.nextDouble() < 0.02 ? 8 : random.nextDouble() * 2)));
+                Entity[] entities = new Entity[count];
+                for (int e = 0; e < count; e++) {
+                    entities[e] = pool.get(random.nextInt(pool.size()));
+                }
+                BlockState[] tileEntities = new BlockState[TILE_ENTITIES_PER_CHUNK];
+                for (int t = 0; t < tileEntities.length; t++) {
+                    tileEntities[t] = tiles[random.nextInt(tiles.length)];
+                }
+                chunks[i] = new SyntheticChunk(this, i % side - side / 2, i / side - side / 2, entities, tileEntities);
+            }
+        }
+
+        /**
+         * Each player stands in the middle of their own 9x9 chunk area
+         */
+        Location playerSpot(int player) {
+            int chunk = Math.min(chunkCount - 1, player * 81 + 40);
+            int x = chunk % side - side / 2;
+            int z = chunk / side - side / 2;
+            return new Location(this, x * 16 + 8, 64, z * 16 + 8);
+        }
+
+        @Override
+        public Chunk[] getLoadedChunks() {
+            return chunks;
+        }
+    }
+
+    private static class SyntheticChunk extends ChunkMock {
+
+        private final Entity[] entities;
+        private final BlockState[] tileEntities;
+
+        SyntheticChunk(WorldMock world, int x, int z, Entity[] entities, BlockState[] tileEntities) {
+            super(world, x, z);
+            this.entities = entities;
+            this.tileEntities = tileEntities;
+        }
+
+        @Override
+        public Entity[] getEntities() {
+            return entities;
+        }
+
+        @Override
+        public BlockState[] getTileEntities() {
+            return tileEntities;
+        }
+    }
+}
@@ -15,9 +15,12 @@ const LagAlert = require('../database/models/LagAlert');
 const PlayerConnection = require('../database/models/PlayerConnection');
 const PlayerAnalytics = require('../database/models/PlayerAnalytics');
 const AltGroup = require('../database/models/AltGroup');
+const chunkCodec = require('./chunkCodec');
+const hyperLogLog = require('./hyperLogLog');
 
 const app = express();
 app.use(express.json({ limit: '10mb' }));
+app.use(express.raw({ type: chunkCodec.CONTENT_TYPE, limit: '10mb' }));
 
 // Hash IP for privacy
 function hashIp(ip) {
@@ -66,55 +69,69 @@ app.get('/health', (req, res) => {
 /**
  * POST /api/analytics/tps
  * Receives TPS and performance data from Paper plugin
- * Body: { server, tps, mspt, loadedChunks, entityCount, playerCount, memoryUsed, memoryMax }
+ * Body: { server, tps, mspt, loadedChunks, entityCount, playerCount, memoryUsed, memoryMax, tickPhases? }
+ * tickPhases: percentage of tick time per phase (entities, blockEntities, chunks, plugins, scheduler, network, other)
  */
 app.post('/api/analytics/tps', async (req, res) => {
     try {
-        const { server, tps, mspt, loadedChunks, entityCount, playerCount, memoryUsed, memoryMax } = req.body;
-        
-        if (!server) {
+        if (!await processTpsReport(req.body)) {
             return res.status(400).json({ error: 'Missing server name' });
         }
         
-        // Store to MongoDB
-        await ServerTps.create({
+        res.json({ success: true });
+    } catch (error) {
+        console.error('[Analytics API] TPS endpoint error:', error);
+        res.status(500).json({ error: 'Internal server error' });
+    }
+});
+
+/**
+ * Stores one TPS report and emits low TPS to Discord. Returns false if the report is invalid.
+ */
+async function processTpsReport(report) {
+    const { server, tps, mspt, loadedChunks, entityCount, playerCount, memoryUsed, memoryMax, tickPhases } = report;
+    
+    if (!server) {
+        return false;
+    }
+    
+    // Store to MongoDB
+    await ServerTps.create({
+        server,
+        tps: parseFloat(tps) || 20.0,
+        mspt: parseFloat(mspt) || 50.0,
+        loadedChunks: parseInt(loadedChunks) || 0,
+        entityCount: parseInt(entityCount) || 0,
+        playerCount: parseInt(playerCount) || 0,
+        memoryUsed: parseInt(memoryUsed) || 0,
+        memoryMax: parseInt(memoryMax) || 0,
+        tickPhases: tickPhases || undefined,
+    });
+    
+    // Log if TPS is concerning
+    const tpsValue = parseFloat(tps) || 20.0;
+    if (tpsValue < 18) {
+        console.log(`[Analytics] Low TPS on ${server}: ${tpsValue.toFixed(2)}`);
+    }
+    
+    // Emit TPS update event for all low TPS (alerts handled in analytics cog)
+    if (tpsValue < 18 && global.discordClient) {
+        global.discordClient.emit('analyticsEvent', {
+            type: 'tps_update',
             server,
-            tps: parseFloat(tps) || 20.0,
+            tps: tpsValue,
             mspt: parseFloat(mspt) || 50.0,
             loadedChunks: parseInt(loadedChunks) || 0,
             entityCount: parseInt(entityCount) || 0,
             playerCount: parseInt(playerCount) || 0,
             memoryUsed: parseInt(memoryUsed) || 0,
             memoryMax: parseInt(memoryMax) || 0,
+            tickPhases: tickPhases || null,
         });
-        
-        // Log if TPS is concerning
-        const tpsValue = parseFloat(tps) || 20.0;
-        if (tpsValue < 18) {
-            console.log(`[Analytics] Low TPS on ${server}: ${tpsValue.toFixed(2)}`);
-        }
-        
-        // Emit TPS update event for all low TPS (alerts handled in analytics cog)
-        if (tpsValue < 18 && global.discordClient) {
-            global.discordClient.emit('analyticsEvent', {
-                type: 'tps_update',
-                server,
-                tps: tpsValue,
-                mspt: parseFloat(mspt) || 50.0,
-                loadedChunks: parseInt(loadedChunks) || 0,
-                entityCount: parseInt(entityCount) || 0,
-                playerCount: parseInt(playerCount) || 0,
-                memoryUsed: parseInt(memoryUsed) || 0,
-                memoryMax: parseInt(memoryMax) || 0,
-            });
-        }
-        
-        res.json({ success: true });
-    } catch (error) {
-        console.error('[Analytics API] TPS endpoint error:', error);
-        res.status(500).json({ error: 'Internal server error' });
     }
-});
+    
+    return true;
+}
 
 /**
  * GET /api/analytics/tps
@@ -132,6 +149,7 @@ app.get('/api/analytics/tps', async (req, res) => {
                 loadedChunks: { $first: '$loadedChunks' },
                 entityCount: { $first: '$entityCount' },
                 playerCount: { $first: '$playerCount' },
+                tickPhases: { $first: '$tickPhases' },
                 timestamp: { $first: '$timestamp' },
             }}
         ]);
@@ -172,108 +190,133 @@ app.get('/api/analytics/tps/:server', async (req, res) => {
 /**
  * POST /api/analytics/chunks
  * Receives flagged chunk data from Paper plugin
- * Body: { server, chunks: [{ world, x, z, entities, hoppers, redstone, ... }] }
+ * Body: { server, chunks: [{ world, x, z, entities, score?, hoppers, redstone, ... }] }
+ * score is the cost-weighted entity load (1.0 ~ one average mob); thresholds use it when present
+ * Also accepts the binary encoding (Content-Type: application/vnd.newlife.chunks+binary)
  */
 app.post('/api/analytics/chunks', async (req, res) => {
     try {
-        const { server, chunks } = req.body;
+        let body = req.body;
+        if (Buffer.isBuffer(body)) {
+            try {
+                body = chunkCodec.decodeChunkReport(body);
+            } catch (err) {
+                return res.status(400).json({ error: `Invalid binary chunk report: ${err.message}` });
+            }
+        }
         
-        if (!server || !chunks) {
+        const result = await processChunkReport(body);
+        if (!result) {
             return res.status(400).json({ error: 'Missing server or chunks data' });
         }
         
-        const flaggedChunks = [];
-        let totalEntities = 0;
-        const globalBreakdown = {};
+        res.json({ success: true, ...result });
+    } catch (error) {
+        console.error('[Analytics API] Chunks endpoint error:', error);
+        res.status(500).json({ error: 'Internal server error' });
+    }
+});
+
+/**
+ * Stores one decoded chunk report and emits flagged chunks to Discord.
+ * Returns the scan summary, or null if the report is invalid.
+ */
+async function processChunkReport(report) {
+    const { server, chunks } = report;
+    
+    if (!server || !chunks) {
+        return null;
+    }
+    
+    const flaggedChunks = [];
+    let totalEntities = 0;
+    const globalBreakdown = {};
+    
+    for (const chunk of chunks) {
+        const { world, x, z, entities, score, entityBreakdown, hoppers, redstone, tileEntities, playersNearby } = chunk;
+        const entityLoad = typeof score === 'number' ? score : entities;
+        
+        totalEntities += entities || 0;
         
-        for (const chunk of chunks) {
-            const { world, x, z, entities, entityBreakdown, hoppers, redstone, tileEntities, playersNearby } = chunk;
-            
-            totalEntities += entities || 0;
-            
-            // Aggregate entity types globally
-            if (entityBreakdown) {
-                for (const [type, count] of Object.entries(entityBreakdown)) {
-                    globalBreakdown[type] = (globalBreakdown[type] || 0) + count;
-                }
-            }
-            
-            let flagged = false;
-            let flagReason = null;
-            
-            if (entities >= 250) {
-                flagged = true;
-                flagReason = 'Critical entity count';
-            } else if (entities >= 100) {
-                flagged = true;
-                flagReason = 'High entity count';
-            } else if (hoppers >= 50) {
-                flagged = true;
-                flagReason = 'High hopper count';
-            } else if (redstone >= 100) {
-                flagged = true;
-                flagReason = 'High redstone count';
-            }
-            
-            await ChunkAnalytics.findOneAndUpdate(
-                { server, world, chunkX: x, chunkZ: z },
-                {
-                    entityCount: entities || 0,
-                    entityBreakdown: entityBreakdown || {},
-                    tileEntityCount: tileEntities || 0,
-                    hopperCount: hoppers || 0,
-                    redstoneCount: redstone || 0,
-                    flagged,
-                    flagReason,
-                    playersNearby: playersNearby || [],
-                    lastUpdated: new Date()
-                },
-                { upsert: true }
-            );
-            
-            if (flagged) {
-                flaggedChunks.push({ world, x, z, entities, hoppers, redstone, flagReason });
+        // Aggregate entity types globally
+        if (entityBreakdown) {
+            for (const [type, count] of Object.entries(entityBreakdown)) {
+                globalBreakdown[type] = (globalBreakdown[type] || 0) + count;
             }
         }
         
-        // Log critical chunks
-        const criticalChunks = chunks.filter(c => c.entities >= 250);
-        if (criticalChunks.length > 0) {
-            console.log(`[Analytics] ${criticalChunks.length} critical chunks on ${server}`);
-        }
+        let flagged = false;
+        let flagReason = null;
         
-        // Emit flagged chunks to Discord
-        if (flaggedChunks.length > 0 && global.discordClient) {
-            global.discordClient.emit('analyticsEvent', {
-                type: 'chunk_scan',
-                server,
-                chunks: flaggedChunks
-            });
+        if (entityLoad >= 250) {
+            flagged = true;
+            flagReason = 'Critical entity count';
+        } else if (entityLoad >= 100) {
+            flagged = true;
+            flagReason = 'High entity count';
+        } else if (hoppers >= 50) {
+            flagged = true;
+            flagReason = 'High hopper count';
+        } else if (redstone >= 100) {
+            flagged = true;
+            flagReason = 'High redstone count';
         }
         
-        // Log summary
-        console.log(`[Analytics] ${server}: ${chunks.length} chunks, ${totalEntities} total entities`);
-        if (Object.keys(globalBreakdown).length > 0) {
-            const topEntities = Object.entries(globalBreakdown)
-                .sort((a, b) => b[1] - a[1])
-                .slice(0, 5)
-                .map(([type, count]) => `${type}:${count}`)
-                .join(', ');
-            console.log(`[Analytics] Top entities: ${topEntities}`);
-        }
+        await ChunkAnalytics.findOneAndUpdate(
+            { server, world, chunkX: x, chunkZ: z },
+            {
+                entityCount: entities || 0,
+                entityScore: typeof score === 'number' ? score : undefined,
+                entityBreakdown: entityBreakdown || {},
+                tileEntityCount: tileEntities || 0,
+                hopperCount: hoppers || 0,
+                redstoneCount: redstone || 0,
+                flagged,
+                flagReason,
+                playersNearby: playersNearby || [],
+                lastUpdated: new Date()
+            },
+            { upsert: true }
+        );
         
-        res.json({ 
-            success: true, 
-            received: chunks.length, 
-            flagged: flaggedChunks.length,
-            totalEntities,
-            topEntities: Object.entries(globalBreakdown).sort((a, b) => b[1] - a[1]).slice(0, 10)
+        if (flagged) {
+            flaggedChunks.push({ world, x, z, entities, hoppers, redstone, flagReason });
+        }
+    }
+    
+    // Log critical chunks
+    const criticalChunks = chunks.filter(c => (typeof c.score === 'number' ? c.score : c.entities) >= 250);
+    if (criticalChunks.length > 0) {
+        console.log(`[Analytics] ${criticalChunks.length} critical chunks on ${server}`);
+    }
+    
+    // Emit flagged chunks to Discord
+    if (flaggedChunks.length > 0 && global.discordClient) {
+        global.discordClient.emit('analyticsEvent', {
+            type: 'chunk_scan',
+            server,
+            chunks: flaggedChunks
         });
-    } catch (error) {
-        console.error('[Analytics API] Chunks endpoint error:', error);
-        res.status(500).json({ error: 'Internal server error' });
     }
-});
+    
+    // Log summary
+    console.log(`[Analytics] ${server}: ${chunks.length} chunks, ${totalEntities} total entities`);
+    if (Object.keys(globalBreakdown).length > 0) {
+        const topEntities = Object.entries(globalBreakdown)
+            .sort((a, b) => b[1] - a[1])
+            .slice(0, 5)
+            .map(([type, count]) => `${type}:${count}`)
+            .join(', ');
+        console.log(`[Analytics] Top entities: ${topEntities}`);
+    }
+    
+    return {
+        received: chunks.length, 
+        flagged: flaggedChunks.length,
+        totalEntities,
+        topEntities: Object.entries(globalBreakdown).sort((a, b) => b[1] - a[1]).slice(0, 10)
+    };
+}
 
 /**
  * GET /api/analytics/chunks
@@ -315,38 +358,15 @@ app.get('/api/analytics/chunks/:server', async (req, res) => {
 /**
  * POST /api/analytics/lag-alert
  * Receives lag alerts from Paper plugin
- * Body: { server, type, severity, details, location?, playerNearby?, metrics }
+ * Body: { server, type, severity, details, location?, playerNearby?, context?, metrics }
  */
 app.post('/api/analytics/lag-alert', async (req, res) => {
     try {
-        const { server, type, severity, details, location, playerNearby, metrics } = req.body;
-        
-        if (!server || !type || !severity) {
+        const alert = await processLagAlert(req.body);
+        if (!alert) {
             return res.status(400).json({ error: 'Missing required fields' });
         }
         
-        const alert = await LagAlert.create({
-            server,
-            type,
-            severity: severity || 'medium',
-            details: details || `${type} alert on ${server}`, // Provide default if missing
-            location,
-            playerNearby,
-            metrics: metrics || {},
-        });
-        
-        // Log the alert
-        const severityLabel = severity === 'critical' ? 'CRITICAL' : severity === 'high' ? 'HIGH' : 'INFO';
-        console.log(`[Analytics] [${severityLabel}] Lag Alert [${server}] ${type}: ${details}`);
-        
-        // Emit to Discord
-        if (global.discordClient) {
-            global.discordClient.emit('analyticsEvent', {
-                type: 'lag_alert',
-                ...alert.toObject()
-            });
-        }
-        
         res.json({ success: true, alertId: alert._id });
     } catch (error) {
         console.error('[Analytics API] Lag alert endpoint error:', error);
@@ -354,6 +374,42 @@ app.post('/api/analytics/lag-alert', async (req, res) => {
     }
 });
 
+/**
+ * Stores one lag alert and emits it to Discord. Returns the alert, or null if it is invalid.
+ */
+async function processLagAlert(report) {
+    const { server, type, severity, details, location, playerNearby, context, metrics } = report;
+    
+    if (!server || !type || !severity) {
+        return null;
+    }
+    
+    const alert = await LagAlert.create({
+        server,
+        type,
+        severity: severity || 'medium',
+        details: details || `${type} alert on ${server}`, // Provide default if missing
+        location,
+        playerNearby,
+        context,
+        metrics: metrics || {},
+    });
+    
+    // Log the alert
+    const severityLabel = severity === 'critical' ? 'CRITICAL' : severity === 'high' ? 'HIGH' : 'INFO';
+    console.log(`[Analytics] [${severityLabel}] Lag Alert [${server}] ${type}: ${details}`);
+    
+    // Emit to Discord
+    if (global.discordClient) {
+        global.discordClient.emit('analyticsEvent', {
+            type: 'lag_alert',
+            ...alert.toObject()
+        });
+    }
+    
+    return alert;
+}
+
 /**
  * GET /api/analytics/lag-alerts
  * Returns recent lag alerts
@@ -379,10 +435,156 @@ app.get('/api/analytics/lag-alerts', async (req, res) => {
     }
 });
 
+// =====================================================
+// LAG BUDGET ENDPOINT
+// =====================================================
+
+// Latest leaderboard per server; the plugin persists budgets itself, so only the newest copy is kept
+const lagBudgets = new Map();
+
+/**
+ * POST /api/analytics/lag-budget
+ * Receives the per-player lag budget leaderboard from Paper plugin after each chunk scan
+ * Body: { server, players: [{ uuid, username, budget, topChunk? }] }
+ */
+app.post('/api/analytics/lag-budget', (req, res) => {
+    if (!processLagBudget(req.body)) {
+        return res.status(400).json({ error: 'Missing required fields' });
+    }
+    
+    res.json({ success: true });
+});
+
+function processLagBudget(report) {
+    const { server, players } = report;
+    
+    if (!server || !Array.isArray(players)) {
+        return false;
+    }
+    
+    lagBudgets.set(server, { server, players, timestamp: new Date() });
+    return true;
+}
+
+/**
+ * GET /api/analytics/lag-budget
+ * Returns the latest lag budget leaderboard, optionally for one server
+ */
+app.get('/api/analytics/lag-budget', (req, res) => {
+    const server = req.query.server;
+    
+    if (server) {
+        const budget = lagBudgets.get(server);
+        if (!budget) {
+            return res.status(404).json({ error: 'No lag budget data for this server' });
+        }
+        return res.json(budget);
+    }
+    
+    res.json({ servers: Array.from(lagBudgets.values()) });
+});
+
 // =====================================================
 // CONNECTION EVENTS ENDPOINT (Velocity)
 // =====================================================
 
+/**
+ * Stores one connection event, updates player analytics and runs ALT detection on join.
+ * Throws on storage errors; returns false if required fields are missing.
+ */
+async function processConnectionEvent(event) {
+    const { uuid, username, ip, server, type, sessionDuration, ping, timestamp, asn, asName, country, hosting, vpn } = event;
+    
+    if (!uuid || !username || !type) {
+        return false;
+    }
+    
+    const ipHash = hashIp(ip || 'unknown');
+    // Batched events carry the time they happened, which can be a second or more before arrival
+    const eventTime = timestamp ? new Date(parseInt(timestamp)) : new Date();
+    
+    // Store connection
+    await PlayerConnection.create({
+        uuid,
+        username,
+        ip: ip || 'unknown',
+        ipHash,
+        server: server || 'proxy',
+        type, // join, leave, server_switch
+        timestamp: eventTime,
+        sessionDuration: parseInt(sessionDuration) || 0,
+        ping: parseInt(ping) || 0,
+        asn: parseInt(asn) || null,
+        asName: asName || null,
+        country: country || null,
+        hosting: hosting === true,
+        vpn: vpn === true,
+    });
+    
+    // Update player analytics
+    const updateData = {
+        $set: { username, lastSeen: eventTime },
+        $setOnInsert: { firstSeen: eventTime },
+        $inc: { connectionCount: 1 }
+    };
+    
+    if (sessionDuration) {
+        updateData.$inc.totalPlaytime = sessionDuration;
+        updateData.$inc.sessionCount = 1;
+    }
+    
+    await PlayerAnalytics.findOneAndUpdate(
+        { uuid },
+        updateData,
+        { upsert: true }
+    );
+    
+    // Check for ALTs on join
+    if (type === 'join' && ip && global.discordClient) {
+        const sameIpAccounts = await PlayerConnection.aggregate([
+            { $match: { ipHash, uuid: { $ne: uuid } } },
+            { $group: { _id: '$uuid', username: { $last: '$username' }, count: { $sum: 1 } } }
+        ]);
+        
+        if (sameIpAccounts.length > 0) {
+            // Check if already flagged
+            const existing = await AltGroup.findOne({
+                $or: [
+                    { primaryUuid: uuid },
+                    { 'linkedAccounts.uuid': uuid }
+                ]
+            });
+            
+            if (!existing) {
+                // Create new ALT group
+                const altGroup = await AltGroup.create({
+                    primaryUuid: uuid,
+                    primaryUsername: username,
+                    linkedAccounts: sameIpAccounts.map(a => ({
+                        uuid: a._id,
+                        username: a.username,
+                        connectionCount: a.count
+                    })),
+                    sharedIpHash: ipHash,
+                    status: 'pending',
+                    riskScore: Math.min(100, sameIpAccounts.length * 25)
+                });
+                
+                global.discordClient.emit('analyticsEvent', {
+                    type: 'alt_detected',
+                    primary: { uuid, username },
+                    alts: sameIpAccounts,
+                    groupId: altGroup._id
+                });
+            }
+        }
+    }
+    
+    // Note: End items clearing is handled by endItemsClear.js cog via RCON polling
+    
+    return true;
+}
+
 /**
  * POST /api/analytics/connection
  * Receives connection events from Velocity plugin
@@ -390,87 +592,10 @@ app.get('/api/analytics/lag-alerts', async (req, res) => {
  */
 app.post('/api/analytics/connection', async (req, res) => {
     try {
-        const { uuid, username, ip, server, type, sessionDuration, ping } = req.body;
-        
-        if (!uuid || !username || !type) {
+        if (!await processConnectionEvent(req.body)) {
             return res.status(400).json({ error: 'Missing required fields' });
         }
         
-        const ipHash = hashIp(ip || 'unknown');
-        
-        // Store connection
-        await PlayerConnection.create({
-            uuid,
-            username,
-            ip: ip || 'unknown',
-            ipHash,
-            server: server || 'proxy',
-            type, // join, leave, server_switch
-            sessionDuration: parseInt(sessionDuration) || 0,
-            ping: parseInt(ping) || 0,
-        });
-        
-        // Update player analytics
-        const updateData = {
-            $set: { username, lastSeen: new Date() },
-            $setOnInsert: { firstSeen: new Date() },
-            $inc: { connectionCount: 1 }
-        };
-        
-        if (sessionDuration) {
-            updateData.$inc.totalPlaytime = sessionDuration;
-            updateData.$inc.sessionCount = 1;
-        }
-        
-        await PlayerAnalytics.findOneAndUpdate(
-            { uuid },
-            updateData,
-            { upsert: true }
-        );
-        
-        // Check for ALTs on join
-        if (type === 'join' && ip && global.discordClient) {
-            const sameIpAccounts = await PlayerConnection.aggregate([
-                { $match: { ipHash, uuid: { $ne: uuid } } },
-                { $group: { _id: '$uuid', username: { $last: '$username' }, count: { $sum: 1 } } }
-            ]);
-            
-            if (sameIpAccounts.length > 0) {
-                // Check if already flagged
-                const existing = await AltGroup.findOne({
-                    $or: [
-                        { primaryUuid: uuid },
-                        { 'linkedAccounts.uuid': uuid }
-                    ]
-                });
-                
-                if (!existing) {
-                    // Create new ALT group
-                    const altGroup = await AltGroup.create({
-                        primaryUuid: uuid,
-                        primaryUsername: username,
-                        linkedAccounts: sameIpAccounts.map(a => ({
-                            uuid: a._id,
-                            username: a.username,
-                            connectionCount: a.count
-                        })),
-                        sharedIpHash: ipHash,
-                        status: 'pending',
-                        riskScore: Math.min(100, sameIpAccounts.length * 25)
-                    });
-                    
-                    global.discordClient.emit('analyticsEvent', {
-                        type: 'alt_detected',
-                        primary: { uuid, username },
-                        alts: sameIpAccounts,
-                        groupId: altGroup._id
-                    });
-                }
-            }
-        }
-        
-        // Note: End items clearing is handled by endItemsClear.js cog via RCON polling
-        
         res.json({ success: true });
     } catch (error) {
         console.error('[Analytics API] Connection endpoint error:', error);
@@ -478,6 +603,37 @@ app.post('/api/analytics/connection', async (req, res) => {
     }
 });
 
+/**
+ * POST /api/analytics/connections/batch
+ * Receives batched connection events from Velocity plugin, oldest first
+ * Body: { events: [{ uuid, username, ip, server, type, sessionDuration, ping, timestamp }] }
+ */
+app.post('/api/analytics/connections/batch', async (req, res) => {
+    const { events } = req.body;
+    
+    if (!Array.isArray(events)) {
+        return res.status(400).json({ error: 'Missing events array' });
+    }
+    
+    // Sequential so a player's join is stored (and ALT-checked) before their leave
+    let processed = 0;
+    let failed = 0;
+    for (const event of events) {
+        try {
+            if (await processConnectionEvent(event)) {
+                processed++;
+            } else {
+                failed++;
+            }
+        } catch (error) {
+            failed++;
+            console.error('[Analytics API] Batched connection event error:', error);
+        }
+    }
+    
+    res.json({ success: true, processed, failed });
+});
+
 /**
  * GET /api/analytics/connections
  * Returns recent connection events
@@ -528,6 +684,313 @@ app.get('/api/analytics/player/:username', async (req, res) => {
     }
 });
 
+// =====================================================
+// PING ENDPOINT (Velocity)
+// =====================================================
+
+// Reports cover one sampling window each, so only a short history is worth keeping in memory
+const PING_REPORT_HISTORY = 60;
+const pingReports = [];
+
+/**
+ * POST /api/analytics/ping
+ * Receives a ping report from Velocity plugin at the end of each sampling window
+ * Body: { windowSeconds, servers: { name: { count, mean, p50, p90, p99, max } }, regions: { ... }, degraded: [...] }
+ */
+app.post('/api/analytics/ping', (req, res) => {
+    const { windowSeconds, servers, regions, degraded } = req.body;
+    
+    if (!servers || typeof servers !== 'object') {
+        return res.status(400).json({ error: 'Missing required fields' });
+    }
+    
+    pingReports.push({
+        windowSeconds: parseInt(windowSeconds) || 0,
+        servers,
+        regions: regions || {},
+        degraded: Array.isArray(degraded) ? degraded : [],
+        timestamp: new Date()
+    });
+    if (pingReports.length > PING_REPORT_HISTORY) {
+        pingReports.shift();
+    }
+    
+    res.json({ success: true });
+});
+
+/**
+ * GET /api/analytics/ping
+ * Returns the latest ping report and players whose ping degraded in the kept history
+ */
+app.get('/api/analytics/ping', (req, res) => {
+    res.json({
+        latest: pingReports[pingReports.length - 1] || null,
+        degraded: pingReports.flatMap(r => r.degraded.map(d => ({ ...d, timestamp: r.timestamp })))
+    });
+});
+
+// =====================================================
+// TRANSFER ENDPOINT (Velocity)
+// =====================================================
+
+const transferReports = [];
+
+/**
+ * POST /api/analytics/transfers
+ * Receives backend transfer timings from Velocity plugin at the end of each report window
+ * Body: { windowSeconds, servers: { name: { attempts, successes, failures, failureReasons, connectMs, totalMs } }, slow: [...] }
+ */
+app.post('/api/analytics/transfers', (req, res) => {
+    const { windowSeconds, servers, slow } = req.body;
+    
+    if (!servers || typeof servers !== 'object') {
+        return res.status(400).json({ error: 'Missing required fields' });
+    }
+    
+    transferReports.push({
+        windowSeconds: parseInt(windowSeconds) || 0,
+        servers,
+        slow: Array.isArray(slow) ? slow : [],
+        timestamp: new Date()
+    });
+    if (transferReports.length > PING_REPORT_HISTORY) {
+        transferReports.shift();
+    }
+    
+    res.json({ success: true });
+});
+
+/**
+ * GET /api/analytics/transfers
+ * Returns the latest transfer report and slow transfers in the kept history
+ */
+app.get('/api/analytics/transfers', (req, res) => {
+    res.json({
+        latest: transferReports[transferReports.length - 1] || null,
+        slow: transferReports.flatMap(r => r.slow.map(t => ({ ...t, timestamp: r.timestamp })))
+    });
+});
+
+// =====================================================
+// UNIQUE PLAYERS ENDPOINT (Velocity)
+// =====================================================
+
+// Closed periods kept per kind; a week of hours lets any 24h window be merged from sketches
+const UNIQUE_HISTORY = { hour: 168, day: 60, week: 26 };
+const uniqueStats = { live: {}, closed: { hour: [], day: [], week: [] } };
+
+/**
+ * POST /api/analytics/uniques
+ * Receives unique player / IP sketches and concurrency per calendar hour, day and week from Velocity plugin.
+ * Periods that just ended come with final: true; the current ones are sent as running totals.
+ * Body: { periods: [{ period, start, end, final, uniquePlayers, uniqueIps, playersSketch, ipsSketch,
+ *                     concurrency: { total: { peak, avg }, servers: { name: { peak, avg } } } }] }
+ */
+app.post('/api/analytics/uniques', (req, res) => {
+    const { periods } = req.body;
+    
+    if (!Array.isArray(periods)) {
+        return res.status(400).json({ error: 'Missing periods array' });
+    }
+    
+    let accepted = 0;
+    for (const p of periods) {
+        const limit = UNIQUE_HISTORY[p.period];
+        const players = hyperLogLog.decode(p.playersSketch);
+        const ips = hyperLogLog.decode(p.ipsSketch);
+        if (!limit || !players || !ips || typeof p.start !== 'number') {
+            continue;
+        }
+        
+        const entry = {
+            period: p.period,
+            start: p.start,
+            end: p.end,
+            uniquePlayers: hyperLogLog.estimate(players),
+            uniqueIps: hyperLogLog.estimate(ips),
+            concurrency: p.concurrency || {},
+            players,
+            ips,
+        };
+        if (p.final) {
+            // The proxy resends closed periods until one post succeeds, so keep one copy per start
+            const closed = uniqueStats.closed[p.period].filter(c => c.start !== p.start);
+            closed.push(entry);
+            closed.sort((a, b) => a.start - b.start);
+            uniqueStats.closed[p.period] = closed.slice(-limit);
+            if (uniqueStats.live[p.period] && uniqueStats.live[p.period].start === p.start) {
+                delete uniqueStats.live[p.period];
+            }
+        } else {
+            uniqueStats.live[p.period] = entry;
+        }
+        accepted++;
+    }
+    
+    res.json({ success: true, accepted });
+});
+
+/**
+ * Unique players and IPs over the last `hours` hours, merged from hourly sketches.
+ * hoursCovered says how many of those hours the bot holds a sketch for.
+ */
+function rollingUniques(hours) {
+    const since = Date.now() - hours * 60 * 60 * 1000;
+    const sketches = uniqueStats.closed.hour.filter(h => h.end > since);
+    if (uniqueStats.live.hour) {
+        sketches.push(uniqueStats.live.hour);
+    }
+    
+    return {
+        uniquePlayers: hyperLogLog.estimate(hyperLogLog.merge(sketches.map(h => h.players))),
+        uniqueIps: hyperLogLog.estimate(hyperLogLog.merge(sketches.map(h => h.ips))),
+        hoursCovered: sketches.length,
+    };
+}
+
+function withoutSketches({ players, ips, ...entry }) {
+    return entry;
+}
+
+/**
+ * GET /api/analytics/uniques
+ * Returns the current hour/day/week, closed periods (optionally ?period=day) and rolling 24h / 7d uniques
+ */
+app.get('/api/analytics/uniques', (req, res) => {
+    const period = req.query.period;
+    const closed = {};
+    for (const [kind, entries] of Object.entries(uniqueStats.closed)) {
+        if (!period || period === kind) {
+            closed[kind] = entries.map(withoutSketches);
+        }
+    }
+    
+    const live = {};
+    for (const [kind, entry] of Object.entries(uniqueStats.live)) {
+        live[kind] = withoutSketches(entry);
+    }
+    
+    res.json({
+        live,
+        closed,
+        rolling: { last24h: rollingUniques(24), last7d: rollingUniques(168) }
+    });
+});
+
+// =====================================================
+// LOGIN THROTTLE ENDPOINT (Velocity)
+// =====================================================
+
+// Windows in which the proxy refused logins; quiet windows are not reported
+const throttleReports = [];
+
+/**
+ * POST /api/analytics/login-throttle
+ * Receives the login rate limiter summary from Velocity plugin for each window with refused logins
+ * Body: { windowSeconds, attempts, rejected, rejectedByIp, rejectedBySubnet, limits, topSources: [{ ip, refused }],
+ *         attack, attackStartedAt?, attackRejected?, attackEnded? }
+ */
+app.post('/api/analytics/login-throttle', (req, res) => {
+    const { windowSeconds, attempts, rejected, rejectedByIp, rejectedBySubnet, limits, topSources,
+        attack, attackStartedAt, attackRejected, attackEnded } = req.body;
+    
+    if (typeof rejected !== 'number') {
+        return res.status(400).json({ error: 'Missing required fields' });
+    }
+    
+    const report = {
+        windowSeconds: parseInt(windowSeconds) || 0,
+        attempts: parseInt(attempts) || 0,
+        rejected,
+        rejectedByIp: parseInt(rejectedByIp) || 0,
+        rejectedBySubnet: parseInt(rejectedBySubnet) || 0,
+        limits: limits || {},
+        topSources: Array.isArray(topSources) ? topSources : [],
+        attack: !!attack,
+        attackStartedAt: attackStartedAt ? new Date(attackStartedAt) : null,
+        attackRejected: parseInt(attackRejected) || 0,
+        attackEnded: !!attackEnded,
+        timestamp: new Date()
+    };
+    
+    // Announce a flood once when it starts and once when it ends, not every window in between
+    const previous = throttleReports[throttleReports.length - 1];
+    const started = report.attack && !(previous && previous.attack && !previous.attackEnded);
+    throttleReports.push(report);
+    if (throttleReports.length > PING_REPORT_HISTORY) {
+        throttleReports.shift();
+    }
+    
+    if (report.attack && (started || report.attackEnded)) {
+        console.log(`[Analytics] Login flood ${report.attackEnded ? 'ended' : 'started'}: ${report.attackRejected} connections refused`);
+        if (global.discordClient) {
+            global.discordClient.emit('analyticsEvent', {
+                type: 'login_attack',
+                ...report
+            });
+        }
+    }
+    
+    res.json({ success: true });
+});
+
+/**
+ * GET /api/analytics/login-throttle
+ * Returns the kept login throttle reports, newest last
+ */
+app.get('/api/analytics/login-throttle', (req, res) => {
+    res.json({ reports: throttleReports });
+});
+
+// =====================================================
+// TELEMETRY INGEST ENDPOINT (Velocity)
+// =====================================================
+
+// Backend reports the proxy may forward, by the path the backend would have posted to
+const INGEST_HANDLERS = {
+    '/api/analytics/tps': processTpsReport,
+    '/api/analytics/chunks': processChunkReport,
+    '/api/analytics/lag-alert': processLagAlert,
+    '/api/analytics/lag-budget': processLagBudget,
+};
+
+/**
+ * POST /api/analytics/ingest
+ * Receives the Paper backends' reports merged by the Velocity plugin, usually gzipped
+ * (Content-Encoding: gzip) over one kept-alive connection. Reports are processed in arrival order.
+ * Body: { reports: [{ backend, path, receivedAt, body?, contentType?, bodyBase64? }] }
+ * body holds JSON reports; binary reports come as contentType + bodyBase64
+ */
+app.post('/api/analytics/ingest', async (req, res) => {
+    const { reports } = req.body;
+    
+    if (!Array.isArray(reports)) {
+        return res.status(400).json({ error: 'Missing reports array' });
+    }
+    
+    let processed = 0;
+    let failed = 0;
+    for (const report of reports) {
+        const handler = INGEST_HANDLERS[report.path];
+        try {
+            let body = report.body;
+            if (body === undefined && report.bodyBase64 && report.contentType === chunkCodec.CONTENT_TYPE) {
+                body = chunkCodec.decodeChunkReport(Buffer.from(report.bodyBase64, 'base64'));
+            }
+            if (handler && body && await handler(body)) {
+                processed++;
+            } else {
+                failed++;
+            }
+        } catch (error) {
+            failed++;
+            console.error(`[Analytics API] Ingested ${report.path} report from ${report.backend} failed:`, error);
+        }
+    }
+    
+    res.json({ success: true, processed, failed });
+});
+
 // =====================================================
 // SUMMARY ENDPOINT
 // =====================================================
@@ -566,7 +1029,12 @@ app.get('/api/analytics/summary', async (req, res) => {
         
         // Get connection count
         const connectionCount = await PlayerConnection.countDocuments({ timestamp: { $gte: oneDayAgo } });
-        const uniquePlayers = await PlayerConnection.distinct('uuid', { timestamp: { $gte: oneDayAgo } });
+        
+        // Merge the proxy's hourly sketches when they cover the whole day; scan only when they don't
+        const rolling = rollingUniques(24);
+        const uniquePlayersLastDay = rolling.hoursCovered >= 24
+            ? rolling.uniquePlayers
+            : (await PlayerConnection.distinct('uuid', { timestamp: { $gte: oneDayAgo } })).length;
         
         res.json({
             servers: serverData,
@@ -578,7 +1046,7 @@ app.get('/api/analytics/summary', async (req, res) => {
                     timestamp: { $gte: oneDayAgo },
                     severity: 'critical'
                 }),
-                uniquePlayersLastDay: uniquePlayers.length,
+                uniquePlayersLastDay,
             },
         });
     } catch (error) {
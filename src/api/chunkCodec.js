@@ -0,0 +1,117 @@
+/**
+ * Chunk Report Codec
+ * Decodes the compact binary chunk report sent by the Paper analytics plugin
+ * (see ChunkReportCodec.java for the layout) into the same shape as the JSON body
+ */
+
+const CONTENT_TYPE = 'application/vnd.newlife.chunks+binary';
+const MAGIC = 'NLCR';
+// Version 2 added the score column
+const SUPPORTED_VERSIONS = [1, 2];
+
+/**
+ * Decode a binary chunk report
+ * @param {Buffer} buf - Raw request body
+ * @returns {{ server: string, chunks: Array<Object> }}
+ */
+function decodeChunkReport(buf) {
+    let pos = 0;
+
+    function varint() {
+        let result = 0;
+        let shift = 0;
+        let byte;
+        do {
+            if (pos >= buf.length) throw new Error('Truncated chunk report');
+            byte = buf[pos++];
+            result += (byte & 0x7f) * Math.pow(2, shift);
+            shift += 7;
+        } while (byte & 0x80);
+        return result;
+    }
+
+    // A count read from the body, checked against the bytes left before anything is allocated:
+    // every entry takes at least minBytes, so a corrupt count can't ask for billions of slots
+    function count(minBytes) {
+        const c = varint();
+        if (c * minBytes > buf.length - pos) throw new Error('Chunk report count exceeds its size');
+        return c;
+    }
+
+    function zigzag() {
+        const n = varint();
+        return n % 2 === 0 ? n / 2 : -(n + 1) / 2;
+    }
+
+    function string() {
+        const len = varint();
+        if (pos + len > buf.length) throw new Error('Truncated chunk report');
+        const s = buf.toString('utf8', pos, pos + len);
+        pos += len;
+        return s;
+    }
+
+    function uuid() {
+        if (pos + 16 > buf.length) throw new Error('Truncated chunk report');
+        const hex = buf.toString('hex', pos, pos + 16);
+        pos += 16;
+        return `${hex.slice(0, 8)}-${hex.slice(8, 12)}-${hex.slice(12, 16)}-${hex.slice(16, 20)}-${hex.slice(20)}`;
+    }
+
+    if (buf.length < 5 || buf.toString('latin1', 0, 4) !== MAGIC) {
+        throw new Error('Not a chunk report');
+    }
+    pos = 4;
+    const version = buf[pos++];
+    if (!SUPPORTED_VERSIONS.includes(version)) {
+        throw new Error(`Unsupported chunk report version ${version}`);
+    }
+
+    const server = string();
+
+    const dictionary = new Array(count(1));
+    for (let i = 0; i < dictionary.length; i++) {
+        dictionary[i] = string();
+    }
+
+    // World, x, z, entities, (score,) hoppers, redstone, tile entities, breakdown and player counts
+    const n = count(version >= 2 ? 10 : 9);
+    const chunks = new Array(n);
+    for (let i = 0; i < n; i++) chunks[i] = { world: dictionary[varint()] };
+    for (let i = 0; i < n; i++) chunks[i].x = zigzag();
+    for (let i = 0; i < n; i++) chunks[i].z = zigzag();
+    for (let i = 0; i < n; i++) chunks[i].entities = varint();
+    if (version >= 2) {
+        for (let i = 0; i < n; i++) chunks[i].score = varint() / 10;
+    }
+    for (let i = 0; i < n; i++) chunks[i].hoppers = varint();
+    for (let i = 0; i < n; i++) chunks[i].redstone = varint();
+    for (let i = 0; i < n; i++) chunks[i].tileEntities = varint();
+
+    for (let i = 0; i < n; i++) {
+        const breakdown = {};
+        const size = count(2);
+        for (let j = 0; j < size; j++) {
+            const type = dictionary[varint()];
+            breakdown[type] = varint();
+        }
+        chunks[i].entityBreakdown = breakdown;
+    }
+
+    for (let i = 0; i < n; i++) {
+        // UUID and username index
+        const players = new Array(count(17));
+        for (let j = 0; j < players.length; j++) {
+            const id = uuid();
+            players[j] = { uuid: id, username: dictionary[varint()] };
+        }
+        chunks[i].playersNearby = players;
+    }
+
+    return { server, chunks };
+}
+
+module.exports = {
+    CONTENT_TYPE,
+    decodeChunkReport,
+};
@@ -0,0 +1,61 @@
+/**
+ * HyperLogLog
+ * Merges and estimates the unique player / IP sketches sent by the Velocity analytics plugin
+ * (see HyperLogLog.java): 2^10 one-byte registers, base64 encoded
+ */
+
+const PRECISION = 10;
+const REGISTERS = 1 << PRECISION;
+const ALPHA = 0.7213 / (1 + 1.079 / REGISTERS);
+
+/**
+ * Decode a base64 sketch
+ * @param {string} encoded
+ * @returns {Buffer|null} the registers, or null if the sketch is malformed
+ */
+function decode(encoded) {
+    if (typeof encoded !== 'string') return null;
+    const registers = Buffer.from(encoded, 'base64');
+    return registers.length === REGISTERS ? registers : null;
+}
+
+/**
+ * Merge sketches by taking the largest register
+ * @param {Array<Buffer>} sketches
+ * @returns {Buffer}
+ */
+function merge(sketches) {
+    const merged = Buffer.alloc(REGISTERS);
+    for (const sketch of sketches) {
+        for (let i = 0; i < REGISTERS; i++) {
+            if (sketch[i] > merged[i]) merged[i] = sketch[i];
+        }
+    }
+    return merged;
+}
+
+/**
+ * Estimate the number of distinct values in a sketch
+ * @param {Buffer} registers
+ * @returns {number}
+ */
+function estimate(registers) {
+    let sum = 0;
+    let zeros = 0;
+    for (let i = 0; i < REGISTERS; i++) {
+        sum += Math.pow(2, -registers[i]);
+        if (registers[i] === 0) zeros++;
+    }
+    let result = ALPHA * REGISTERS * REGISTERS / sum;
+    if (result <= 2.5 * REGISTERS && zeros > 0) {
+        result = REGISTERS * Math.log(REGISTERS / zeros); // linear counting for small sets
+    }
+    return Math.round(result);
+}
+
+module.exports = {
+    REGISTERS,
+    decode,
+    merge,
+    estimate,
+};
@@ -8,6 +8,7 @@ const express = require('express');
 const crypto = require('crypto');
 const LinkedAccount = require('../database/models/LinkedAccount');
 const ServerBan = require('../database/models/ServerBan');
+const ServerBanTombstone = require('../database/models/ServerBanTombstone');
 const Kick = require('../database/models/Kick');
 const Warning = require('../database/models/Warning');
 const Mute = require('../database/models/Mute');
@@ -3633,6 +3634,59 @@ app.get('/api/bans/active', async (req, res) => {
     }
 });
 
+// Ban replica sync for the proxy: a snapshot of every active ban, then the bans changed since a
+// cursor (updatedAt in epoch ms). Unbanned, expired and deleted bans come back as removals.
+const BAN_CHANGES_LIMIT = 500;
+
+function toReplicaBan(ban) {
+    const uuids = [...new Set((ban.bannedUuids || []).map(u => String(u).replace(/-/g, '').toLowerCase()))];
+    return { id: ban._id.toString(), caseNumber: ban.caseNumber, uuids, reason: ban.reason, duration: ban.duration, isPermanent: ban.isPermanent, bannedAt: ban.bannedAt, expiresAt: ban.expiresAt, staffTag: ban.staffTag };
+}
+
+app.get('/api/bans/snapshot', async (req, res) => {
+    try {
+        // Take the cursor first, so a ban saved while the snapshot is read is pulled again as a change
+        const [latest, latestTombstone] = await Promise.all([
+            ServerBan.findOne({}, { updatedAt: 1 }).sort({ updatedAt: -1 }),
+            ServerBanTombstone.findOne({}, { deletedAt: 1 }).sort({ deletedAt: -1 })
+        ]);
+        const cursor = Math.max(latest?.updatedAt ? latest.updatedAt.getTime() : 0, latestTombstone?.deletedAt ? latestTombstone.deletedAt.getTime() : 0);
+        const bans = await ServerBan.find({ active: true });
+        return res.json({ success: true, cursor, count: bans.length, bans: bans.filter(b => !b.isExpired()).map(toReplicaBan) });
+    } catch (error) {
+        console.error('API Error:', error);
+        return res.status(500).json({ success: false, error: 'Internal server error' });
+    }
+});
+
+app.get('/api/bans/changes', async (req, res) => {
+    try {
+        const since = parseInt(req.query.since, 10);
+        if (!Number.isFinite(since) || since < 0) return res.status(400).json({ success: false, error: 'since cursor required' });
+        // Tombstones older than this are gone, so deletions since the cursor may be missing
+        if (since > 0 && since < Date.now() - ServerBanTombstone.TTL_SECONDS * 1000) return res.json({ success: true, reset: true, cursor: since, changes: [] });
+        // $gte: bans saved in the same millisecond as the cursor are sent again rather than missed
+        const [bans, tombstones] = await Promise.all([
+            ServerBan.find({ updatedAt: { $gte: new Date(since) } }).sort({ updatedAt: 1 }).limit(BAN_CHANGES_LIMIT + 1),
+            ServerBanTombstone.find({ deletedAt: { $gte: new Date(since) } }).sort({ deletedAt: 1 }).limit(BAN_CHANGES_LIMIT + 1)
+        ]);
+        // Merge both feeds in time order; on a tie the deletion goes last so it wins
+        const merged = [
+            ...bans.map(b => ({ at: b.updatedAt.getTime(), change: b.active && !b.isExpired() ? { op: 'ban', ban: toReplicaBan(b) } : { op: 'unban', id: b._id.toString() } })),
+            ...tombstones.map(t => ({ at: t.deletedAt.getTime(), change: { op: 'unban', id: t.banId } }))
+        ].sort((a, b) => a.at - b.at);
+        const more = merged.length > BAN_CHANGES_LIMIT;
+        const page = merged.slice(0, BAN_CHANGES_LIMIT);
+        const cursor = page.length > 0 ? page[page.length - 1].at : since;
+        // A full page within one millisecond can't advance the cursor; have the proxy take a snapshot
+        if (more && cursor === since) return res.json({ success: true, reset: true, cursor: since, changes: [] });
+        return res.json({ success: true, cursor, more, changes: page.map(entry => entry.change) });
+    } catch (error) {
+        console.error('API Error:', error);
+        return res.status(500).json({ success: false, error: 'Internal server error' });
+    }
+});
+
 // =====================================================
 // PVP STATUS API ENDPOINTS
 // =====================================================
@@ -984,6 +984,9 @@ We appreciate your patience and understanding while we worked through these issu
                 // Try to find and delete from each collection
                 const ban = await ServerBan.findOneAndDelete({ caseNumber: caseId });
                 if (ban) {
+                    // The proxy may still have this player cached as banned
+                    const { invalidateProxyBanCache } = require('./serverBans');
+                    await invalidateProxyBanCache(ban.bannedUuids || []);
                     const embed = new EmbedBuilder()
                         .setColor(0x10b981)
                         .setTitle('Record Deleted')
@@ -19,6 +19,8 @@ const { getEmbedColor } = require('../utils/embeds');
 
 // Environment config
 const LOG_CHANNEL_ID = process.env.LOG_CHANNEL_ID || process.env.BAN_LOG_CHANNEL_ID;
+// NewLifeBans notification server on the proxy (e.g. http://proxy-host:3002), so its ban check cache drops changed players
+const BANS_PLUGIN_URL = process.env.BANS_PLUGIN_URL;
 
 /**
  * Normalize UUID - remove dashes and lowercase
@@ -27,6 +29,34 @@ function normalizeUuid(uuid) {
     return uuid.replace(/-/g, '').toLowerCase();
 }
 
+/**
+ * Tell the proxy's ban plugin these UUIDs were banned or unbanned, so a cached
+ * "not banned" or "banned" answer is not reused and its ban replica pulls the change
+ * at once. Failures only delay the change until the cache entry expires or the
+ * replica's next poll.
+ */
+async function invalidateProxyBanCache(uuids) {
+    if (!BANS_PLUGIN_URL || !uuids || uuids.length === 0) {
+        return;
+    }
+    try {
+        const response = await fetch(`${BANS_PLUGIN_URL.replace(/\/$/, '')}/invalidate`, {
+            method: 'POST',
+            headers: {
+                'Content-Type': 'application/json',
+                'Authorization': `Bearer ${process.env.LINK_API_KEY}`
+            },
+            body: JSON.stringify({ uuids }),
+            signal: AbortSignal.timeout(3000)
+        });
+        if (!response.ok) {
+            console.error(`[ServerBans] Proxy ban cache invalidation failed: HTTP ${response.status}`);
+        }
+    } catch (error) {
+        console.error('[ServerBans] Proxy ban cache invalidation failed:', error.message);
+    }
+}
+
 function getMentionedDiscordId(target) {
     const mentionMatch = target.match(/<@!?(\d+)>/);
     return mentionMatch ? mentionMatch[1] : null;
@@ -549,6 +579,7 @@ const slashCommands = [
             });
 
             await ban.save();
+            await invalidateProxyBanCache(bannedUuids);
 
             const banTargets = dedupeTargets(primaryProfile, linkedAccounts);
             const banResults = await applyMinecraftBan(banTargets, reason);
@@ -781,6 +812,8 @@ const slashCommands = [
                 }
             }
 
+            await invalidateProxyBanCache(unbannedBans.flatMap(ban => ban.bannedUuids || []));
+
             if (unbannedBans.length === 0) {
                 return interaction.editReply({ 
                     content: `No active bans found for **${primaryProfile.name}**${discordUser ? ` (<@${discordId}>)` : ''}.` 
@@ -1838,5 +1871,6 @@ module.exports = {
     lookupMcProfile,
     getAllLinkedAccounts,
     initMuteProcessor,
-    stopMuteProcessor
+    stopMuteProcessor,
+    invalidateProxyBanCache
 };
@@ -45,6 +45,27 @@ const playerConnectionSchema = new mongoose.Schema({
         type: String,
         enum: ['join', 'leave', 'server_switch'],
         default: 'join'
+    },
+    // Network of the address on joins, from the proxy's IP range database
+    asn: {
+        type: Number,
+        default: null
+    },
+    asName: {
+        type: String,
+        default: null
+    },
+    country: {
+        type: String,
+        default: null
+    },
+    hosting: {
+        type: Boolean,
+        default: false
+    },
+    vpn: {
+        type: Boolean,
+        default: false
     }
 }, {
     timestamps: true
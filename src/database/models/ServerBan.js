@@ -4,6 +4,7 @@
  * Integrates with Velocity proxy for enforcement
  */
 const mongoose = require('mongoose');
+const ServerBanTombstone = require('./ServerBanTombstone');
 
 const serverBanSchema = new mongoose.Schema({
     // Case tracking
@@ -50,6 +51,22 @@ const serverBanSchema = new mongoose.Schema({
 // Compound indexes for efficient lookups
 serverBanSchema.index({ active: 1, expiresAt: 1 });
 serverBanSchema.index({ bannedUuids: 1, active: 1 });
+// Cursor for the proxy's ban replica
+serverBanSchema.index({ updatedAt: 1 });
+
+// A deleted ban never shows up in the updatedAt feed again; leave a tombstone the proxy can see
+async function recordTombstone(ban) {
+    if (!ban) return;
+    try {
+        await ServerBanTombstone.create({ banId: ban._id.toString(), caseNumber: ban.caseNumber });
+    } catch (error) {
+        console.error('[ServerBan] Failed to record ban tombstone:', error.message);
+    }
+}
+serverBanSchema.post('findOneAndDelete', recordTombstone);
+serverBanSchema.post('deleteOne', { document: true, query: false }, function() {
+    return recordTombstone(this);
+});
 
 /**
  * Check if this ban is expired
@@ -0,0 +1,25 @@
+/**
+ * Server Ban Tombstone Model
+ * Records server bans that were deleted outright, so the proxy's ban replica
+ * drops them through /api/bans/changes instead of waiting for a full resync
+ */
+const mongoose = require('mongoose');
+
+// Longer than any proxy goes between full resyncs; a cursor older than this gets a new snapshot
+const TOMBSTONE_TTL_SECONDS = 7 * 24 * 60 * 60;
+
+const serverBanTombstoneSchema = new mongoose.Schema({
+    banId: { type: String, required: true },
+    caseNumber: { type: Number },
+    deletedAt: { type: Date, default: Date.now }
+}, {
+    collection: 'server_ban_tombstones',
+    versionKey: false
+});
+
+serverBanTombstoneSchema.index({ deletedAt: 1 }, { expireAfterSeconds: TOMBSTONE_TTL_SECONDS });
+
+const ServerBanTombstone = mongoose.model('ServerBanTombstone', serverBanTombstoneSchema);
+ServerBanTombstone.TTL_SECONDS = TOMBSTONE_TTL_SECONDS;
+
+module.exports = ServerBanTombstone;
@@ -0,0 +1,93 @@
+/**
+ * Chunk Report Codec tests
+ * The version 2 fixture is the exact output of ChunkReportCodec.encode in the Paper plugin
+ * (ChunkReportCodecTest checks the Java side produces these bytes), so together they cover the
+ * round trip from the plugin to the bot. Run with npm test.
+ */
+
+const test = require('node:test');
+const assert = require('node:assert');
+const { decodeChunkReport } = require('../src/api/chunkCodec');
+
+const UUID = '123e4567-e89b-12d3-a456-426614174000';
+
+function report(version, columns) {
+    return Buffer.from([
+        '4e4c4352', version,                            // magic, version
+        '08', '737572766976616c',                       // "survival"
+        '05',                                           // dictionary
+        '05', '776f726c64',                             //   world
+        '06', '7a6f6d626965',                           //   zombie
+        '04', '6974656d',                               //   item
+        '05', '5374657665',                             //   Steve
+        '0c', '776f726c645f6e6574686572',               //   world_nether
+        '02',                                           // chunks
+        ...columns,
+        '02', '0103', '0202', '00',                     // breakdowns: zombie 3, item 2; empty
+        '01', UUID.replace(/-/g, ''), '03', '00',       // players: Steve; none
+    ].join(''), 'hex');
+}
+
+const COLUMNS_V1 = [
+    '0004',                                             // world index
+    '0518',                                             // x: -3, 12
+    'dfc50800',                                         // z: -70000, 0
+    '0500',                                             // entities
+    '0100',                                             // hoppers
+    '008201',                                           // redstone: 0, 130
+    '048201',                                           // tile entities: 4, 130
+];
+const COLUMNS_V2 = [...COLUMNS_V1.slice(0, 4), '4100', ...COLUMNS_V1.slice(4)]; // score x10: 6.5, 0
+
+const V2 = report('02', COLUMNS_V2);
+const V1 = report('01', COLUMNS_V1);
+
+test('decodes a version 2 report from the Paper plugin', () => {
+    assert.deepStrictEqual(decodeChunkReport(V2), {
+        server: 'survival',
+        chunks: [
+            {
+                world: 'world', x: -3, z: -70000, entities: 5, score: 6.5, hoppers: 1, redstone: 0, tileEntities: 4,
+                entityBreakdown: { zombie: 3, item: 2 },
+                playersNearby: [{ uuid: UUID, username: 'Steve' }],
+            },
+            {
+                world: 'world_nether', x: 12, z: 0, entities: 0, score: 0, hoppers: 0, redstone: 130, tileEntities: 130,
+                entityBreakdown: {},
+                playersNearby: [],
+            },
+        ],
+    });
+});
+
+test('decodes a version 1 report without scores', () => {
+    const { chunks } = decodeChunkReport(V1);
+    assert.strictEqual(chunks.length, 2);
+    assert.strictEqual(chunks[0].score, undefined);
+    assert.deepStrictEqual([chunks[0].x, chunks[0].z, chunks[1].x], [-3, -70000, 12]);
+    assert.deepStrictEqual(chunks[0].entityBreakdown, { zombie: 3, item: 2 });
+    assert.deepStrictEqual(chunks[1].playersNearby, []);
+});
+
+test('rejects every truncation of a report', () => {
+    for (let length = 0; length < V2.length; length++) {
+        assert.throws(() => decodeChunkReport(V2.subarray(0, length)),
+            /Truncated chunk report|count exceeds its size|Not a chunk report/, `length ${length}`);
+    }
+});
+
+test('rejects counts larger than the bytes left', () => {
+    const header = '4e4c435202' + '08737572766976616c';
+    // 2^32 - 1 dictionary entries
+    assert.throws(() => decodeChunkReport(Buffer.from(header + 'ffffffff0f', 'hex')), /count exceeds its size/);
+    // 1000 chunks with room for one
+    assert.throws(() => decodeChunkReport(Buffer.from(header + '00' + 'e807' + '00'.repeat(10), 'hex')), /count exceeds its size/);
+    // One chunk claiming a million breakdown entries
+    const oneChunk = '00' + '01' + '00'.repeat(8);
+    assert.throws(() => decodeChunkReport(Buffer.from(header + oneChunk + 'c0843d' + '00'.repeat(4), 'hex')), /count exceeds its size/);
+});
+
+test('rejects other formats and versions', () => {
+    assert.throws(() => decodeChunkReport(Buffer.from('{"server":"survival"}')), /Not a chunk report/);
+    assert.throws(() => decodeChunkReport(Buffer.from('4e4c435203', 'hex')), /Unsupported chunk report version 3/);
+});
@@ -0,0 +1,356 @@
+package com.newlife.analytics;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * Local index of which accounts connected from which addresses, so ALT lookups work without a
+ * round trip to the bot and keep working while it is down.
+ *
+ * Accounts are interned once (UUID as two longs, last name, last denied login). Each distinct
+ * account/address pair is one observation row holding the address key, its subnet key (/24 for
+ * IPv4, /64 for IPv6) and a last-seen time in epoch seconds, all in parallel primitive arrays.
+ * Lookups go through hash indexes from address and subnet to rows, so a query touches only the
+ * rows that share something with the player.
+ *
+ * All methods are synchronized; the index is small and queries take microseconds.
+ */
+public class AltIndex {
+
+    private static final int MAGIC = 0x414C5431; // "ALT1"
+    private static final long IPV4_TAG = 1L << 32;
+    private static final long IPV4_SUBNET_TAG = 1L << 40;
+
+    private final long retentionSeconds;
+
+    // Accounts, indexed by account id
+    private long[] accountMsb = new long[64];
+    private long[] accountLsb = new long[64];
+    private String[] accountName = new String[64];
+    private long[] accountDenied = new long[64];
+    private int accounts = 0;
+    private final Map<UUID, Integer> accountByUuid = new HashMap<>();
+    private final Map<String, Integer> accountByName = new HashMap<>();
+    private final Map<Integer, IntList> rowsByAccount = new HashMap<>();
+
+    // Observations, indexed by row
+    private int[] rowAccount = new int[256];
+    private long[] rowAddress = new long[256];
+    private long[] rowSubnet = new long[256];
+    private int[] rowLastSeen = new int[256];
+    private int rows = 0;
+    private final Map<Long, IntList> rowsByAddress = new HashMap<>();
+    private final Map<Long, IntList> rowsBySubnet = new HashMap<>();
+
+    public AltIndex(int retentionDays) {
+        this.retentionSeconds = Math.max(1, retentionDays) * 86400L;
+    }
+
+    /**
+     * An account that shares addresses or subnets with the queried player
+     */
+    public static class Match {
+        private final UUID uuid;
+        private final String username;
+        private int sharedAddresses;
+        private int sharedSubnets;
+        private long lastSeen;
+        private final long lastDenied;
+
+        Match(UUID uuid, String username, long lastDenied) {
+            this.uuid = uuid;
+            this.username = username;
+            this.lastDenied = lastDenied;
+        }
+
+        public UUID getUuid() {
+            return uuid;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public int getSharedAddresses() {
+            return sharedAddresses;
+        }
+
+        public int getSharedSubnets() {
+            return sharedSubnets;
+        }
+
+        /**
+         * Epoch millis of the most recent shared observation
+         */
+        public long getLastSeen() {
+            return lastSeen;
+        }
+
+        /**
+         * Epoch millis of the account's last denied login, or 0 if it never was denied
+         */
+        public long getLastDenied() {
+            return lastDenied;
+        }
+    }
+
+    /**
+     * Records that the account connected from the address now
+     */
+    public synchronized void observe(UUID uuid, String username, InetAddress address) {
+        int account = account(uuid, username);
+        long addressKey = addressKey(address);
+        int now = (int) (System.currentTimeMillis() / 1000);
+
+        IntList own = rowsByAccount.get(account);
+        for (int i = 0; i < own.size; i++) {
+            int row = own.values[i];
+            if (rowAddress[row] == addressKey) {
+                rowLastSeen[row] = now;
+                return;
+            }
+        }
+        addRow(account, addressKey, subnetKey(address), now);
+    }
+
+    /**
+     * Marks the account as denied at login (banned or on a kick cooldown)
+     */
+    public synchronized void markDenied(UUID uuid, String username, long time) {
+        accountDenied[account(uuid, username)] = time;
+    }
+
+    public synchronized UUID findByName(String username) {
+        Integer account = accountByName.get(username.toLowerCase(Locale.ROOT));
+        return account != null ? new UUID(accountMsb[account], accountLsb[account]) : null;
+    }
+
+    /**
+     * Accounts sharing an address or subnet with the player within the retention window, strongest
+     * first (shared addresses, then shared subnets, then most recent)
+     */
+    public synchronized List<Match> alts(UUID uuid) {
+        Integer account = accountByUuid.get(uuid);
+        if (account == null) {
+            return Collections.emptyList();
+        }
+        int cutoff = (int) (System.currentTimeMillis() / 1000 - retentionSeconds);
+
+        Map<Integer, Match> matches = new HashMap<>();
+        IntList own = rowsByAccount.get(account);
+        for (int i = 0; i < own.size; i++) {
+            int row = own.values[i];
+            if (rowLastSeen[row] < cutoff) {
+                continue;
+            }
+            collect(matches, rowsByAddress.get(rowAddress[row]), account, cutoff, 0, true);
+            collect(matches, rowsBySubnet.get(rowSubnet[row]), account, cutoff, rowAddress[row], false);
+        }
+
+        List<Match> result = new ArrayList<>(matches.values());
+        result.sort(Comparator.comparingInt(Match::getSharedAddresses).reversed()
+            .thenComparing(Comparator.comparingInt(Match::getSharedSubnets).reversed())
+            .thenComparing(Comparator.comparingLong(Match::getLastSeen).reversed()));
+        return result;
+    }
+
+    /**
+     * Adds candidate rows to the matches. Subnet candidates on the very same address are skipped,
+     * since the address pass already counted them.
+     */
+    private void collect(Map<Integer, Match> matches, IntList candidates, int self, int cutoff,
+                         long sameAddress, boolean exact) {
+        if (candidates == null) {
+            return;
+        }
+        for (int i = 0; i < candidates.size; i++) {
+            int row = candidates.values[i];
+            int other = rowAccount[row];
+            if (other == self || rowLastSeen[row] < cutoff || (!exact && rowAddress[row] == sameAddress)) {
+                continue;
+            }
+            Match match = matches.computeIfAbsent(other, a -> new Match(
+                new UUID(accountMsb[a], accountLsb[a]), accountName[a], accountDenied[a]));
+            if (exact) {
+                match.sharedAddresses++;
+            } else {
+                match.sharedSubnets++;
+            }
+            match.lastSeen = Math.max(match.lastSeen, rowLastSeen[row] * 1000L);
+        }
+    }
+
+    public synchronized int size() {
+        return rows;
+    }
+
+    /**
+     * Writes the index to a temporary file and swaps it in, skipping expired observations
+     */
+    public void save(Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        synchronized (this) {
+            int cutoff = (int) (System.currentTimeMillis() / 1000 - retentionSeconds);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(accounts);
+                for (int a = 0; a < accounts; a++) {
+                    out.writeLong(accountMsb[a]);
+                    out.writeLong(accountLsb[a]);
+                    out.writeUTF(accountName[a]);
+                    out.writeLong(accountDenied[a]);
+                }
+                int live = 0;
+                for (int r = 0; r < rows; r++) {
+                    if (rowLastSeen[r] >= cutoff) live++;
+                }
+                out.writeInt(live);
+                for (int r = 0; r < rows; r++) {
+                    if (rowLastSeen[r] < cutoff) continue;
+                    out.writeInt(rowAccount[r]);
+                    out.writeLong(rowAddress[r]);
+                    out.writeLong(rowSubnet[r]);
+                    out.writeInt(rowLastSeen[r]);
+                }
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Replaces the index with the file's contents. Expired observations are dropped.
+     */
+    public synchronized void load(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not an ALT index file: " + file);
+            }
+            clear();
+            int accountCount = in.readInt();
+            for (int a = 0; a < accountCount; a++) {
+                UUID uuid = new UUID(in.readLong(), in.readLong());
+                int account = account(uuid, in.readUTF());
+                accountDenied[account] = in.readLong();
+            }
+            int cutoff = (int) (System.currentTimeMillis() / 1000 - retentionSeconds);
+            int rowCount = in.readInt();
+            for (int r = 0; r < rowCount; r++) {
+                int account = in.readInt();
+                long address = in.readLong();
+                long subnet = in.readLong();
+                int lastSeen = in.readInt();
+                if (lastSeen >= cutoff && account < accounts) {
+                    addRow(account, address, subnet, lastSeen);
+                }
+            }
+        }
+    }
+
+    private void clear() {
+        accounts = 0;
+        rows = 0;
+        accountByUuid.clear();
+        accountByName.clear();
+        rowsByAccount.clear();
+        rowsByAddress.clear();
+        rowsBySubnet.clear();
+    }
+
+    private int account(UUID uuid, String username) {
+        Integer existing = accountByUuid.get(uuid);
+        if (existing != null) {
+            if (username != null && !username.equals(accountName[existing])) {
+                accountByName.remove(accountName[existing].toLowerCase(Locale.ROOT));
+                accountName[existing] = username;
+                accountByName.put(username.toLowerCase(Locale.ROOT), existing);
+            }
+            return existing;
+        }
+
+        if (accounts == accountMsb.length) {
+            int capacity = accounts * 2;
+            accountMsb = Arrays.copyOf(accountMsb, capacity);
+            accountLsb = Arrays.copyOf(accountLsb, capacity);
+            accountName = Arrays.copyOf(accountName, capacity);
+            accountDenied = Arrays.copyOf(accountDenied, capacity);
+        }
+        int account = accounts++;
+        accountMsb[account] = uuid.getMostSignificantBits();
+        accountLsb[account] = uuid.getLeastSignificantBits();
+        accountName[account] = username != null ? username : uuid.toString();
+        accountDenied[account] = 0;
+        accountByUuid.put(uuid, account);
+        accountByName.put(accountName[account].toLowerCase(Locale.ROOT), account);
+        rowsByAccount.put(account, new IntList());
+        return account;
+    }
+
+    private void addRow(int account, long address, long subnet, int lastSeen) {
+        if (rows == rowAccount.length) {
+            int capacity = rows * 2;
+            rowAccount = Arrays.copyOf(rowAccount, capacity);
+            rowAddress = Arrays.copyOf(rowAddress, capacity);
+            rowSubnet = Arrays.copyOf(rowSubnet, capacity);
+            rowLastSeen = Arrays.copyOf(rowLastSeen, capacity);
+        }
+        int row = rows++;
+        rowAccount[row] = account;
+        rowAddress[row] = address;
+        rowSubnet[row] = subnet;
+        rowLastSeen[row] = lastSeen;
+        rowsByAccount.get(account).add(row);
+        rowsByAddress.computeIfAbsent(address, k -> new IntList()).add(row);
+        rowsBySubnet.computeIfAbsent(subnet, k -> new IntList()).add(row);
+    }
+
+    /**
+     * IPv4 as its 32 bits (tagged so it cannot equal an IPv6 key), IPv6 folded to 64 bits
+     */
+    static long addressKey(InetAddress address) {
+        byte[] bytes = address.getAddress();
+        if (bytes.length == 4) {
+            return IPV4_TAG | (toLong(bytes, 0, 4) & 0xFFFFFFFFL);
+        }
+        long high = toLong(bytes, 0, 8);
+        long low = toLong(bytes, 8, 8);
+        return high * 0x9E3779B97F4A7C15L ^ low;
+    }
+
+    /**
+     * The /24 of an IPv4 address or the /64 of an IPv6 address
+     */
+    static long subnetKey(InetAddress address) {
+        byte[] bytes = address.getAddress();
+        if (bytes.length == 4) {
+            return IPV4_SUBNET_TAG | (toLong(bytes, 0, 3) & 0xFFFFFFL);
+        }
+        return toLong(bytes, 0, 8);
+    }
+
+    private static long toLong(byte[] bytes, int offset, int length) {
+        long value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            value = (value << 8) | (bytes[i] & 0xFF);
+        }
+        return value;
+    }
+
+    private static class IntList {
+        private int[] values = new int[2];
+        private int size = 0;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}
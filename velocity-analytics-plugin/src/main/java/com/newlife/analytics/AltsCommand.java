@@ -0,0 +1,96 @@
+package com.newlife.analytics;
+
+import com.velocitypowered.api.command.SimpleCommand;
+import com.velocitypowered.api.proxy.Player;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * /alts <player> - accounts that shared an IP or subnet with the player, from the local ALT index
+ */
+public class AltsCommand implements SimpleCommand {
+
+    private static final int MAX_SHOWN = 15;
+
+    private final NewLifeAnalytics plugin;
+
+    public AltsCommand(NewLifeAnalytics plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public void execute(Invocation invocation) {
+        var source = invocation.source();
+        String[] args = invocation.arguments();
+        if (args.length < 1) {
+            source.sendMessage(Component.text("Usage: /alts <player>", NamedTextColor.RED));
+            return;
+        }
+
+        AltIndex index = plugin.getAltIndex();
+        UUID uuid = plugin.getServer().getPlayer(args[0]).map(Player::getUniqueId).orElse(null);
+        if (uuid == null) {
+            uuid = index.findByName(args[0]);
+        }
+        if (uuid == null) {
+            source.sendMessage(Component.text("No connections recorded for " + args[0] + ".", NamedTextColor.RED));
+            return;
+        }
+
+        List<AltIndex.Match> matches = index.alts(uuid);
+        if (matches.isEmpty()) {
+            source.sendMessage(Component.text("No accounts share an IP or subnet with " + args[0] + ".", NamedTextColor.GREEN));
+            return;
+        }
+
+        source.sendMessage(Component.text(matches.size() + " possible ALT account(s) of " + args[0] + ":", NamedTextColor.GOLD));
+        long now = System.currentTimeMillis();
+        for (AltIndex.Match match : matches.subList(0, Math.min(MAX_SHOWN, matches.size()))) {
+            String detail = match.getSharedAddresses() > 0
+                ? match.getSharedAddresses() + " shared IP(s)"
+                : match.getSharedSubnets() + " shared subnet(s)";
+            if (match.getSharedAddresses() > 0 && match.getSharedSubnets() > 0) {
+                detail += ", " + match.getSharedSubnets() + " shared subnet(s)";
+            }
+            detail += ", seen " + ago(now - match.getLastSeen());
+
+            source.sendMessage(Component.text()
+                .append(Component.text("  " + match.getUsername(), match.getSharedAddresses() > 0 ? NamedTextColor.WHITE : NamedTextColor.GRAY))
+                .append(Component.text(" - " + detail, NamedTextColor.GRAY))
+                .append(match.getLastDenied() > 0
+                    ? Component.text(" [denied " + ago(now - match.getLastDenied()) + "]", NamedTextColor.RED)
+                    : Component.empty())
+                .build());
+        }
+        if (matches.size() > MAX_SHOWN) {
+            source.sendMessage(Component.text("  ... and " + (matches.size() - MAX_SHOWN) + " more", NamedTextColor.DARK_GRAY));
+        }
+    }
+
+    @Override
+    public CompletableFuture<List<String>> suggestAsync(Invocation invocation) {
+        String[] args = invocation.arguments();
+        String prefix = args.length > 0 ? args[0].toLowerCase() : "";
+        return CompletableFuture.completedFuture(plugin.getServer().getAllPlayers().stream()
+            .map(Player::getUsername)
+            .filter(name -> name.toLowerCase().startsWith(prefix))
+            .limit(10)
+            .toList());
+    }
+
+    @Override
+    public boolean hasPermission(Invocation invocation) {
+        return invocation.source().hasPermission("newlife.analytics.alts");
+    }
+
+    private static String ago(long millis) {
+        long minutes = Math.max(0, millis) / 60000;
+        if (minutes < 60) return minutes + "m ago";
+        if (minutes < 48 * 60) return (minutes / 60) + "h ago";
+        return (minutes / (24 * 60)) + "d ago";
+    }
+}
@@ -0,0 +1,143 @@
+package com.newlife.analytics;
+
+import com.velocitypowered.api.event.Subscribe;
+import com.velocitypowered.api.event.connection.PluginMessageEvent;
+import com.velocitypowered.api.proxy.ServerConnection;
+import com.velocitypowered.api.proxy.messages.MinecraftChannelIdentifier;
+import org.slf4j.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Receives load reports that the Paper analytics plugin on each backend sends over the
+ * newlife:analytics plugin messaging channel, and hands the API reports backends forward on the
+ * same channel to the telemetry collector.
+ *
+ * The latest report per backend lives in an immutable map that is replaced on every update, so
+ * routing decisions read it with a single volatile load and never wait on a lock.
+ */
+public class BackendLoadMonitor {
+
+    public static final MinecraftChannelIdentifier CHANNEL = MinecraftChannelIdentifier.create("newlife", "analytics");
+    static final int VERSION = 1;
+    static final int TYPE_LOAD = 1;
+    static final int TYPE_REPORT = 2;
+
+    private final Logger logger;
+    private final TelemetryCollector telemetry;
+    private final boolean debug;
+    private volatile Map<String, BackendHealth> snapshot = Collections.emptyMap();
+
+    /**
+     * telemetry may be null, in which case forwarded reports are ignored
+     */
+    public BackendLoadMonitor(Logger logger, TelemetryCollector telemetry, boolean debug) {
+        this.logger = logger;
+        this.telemetry = telemetry;
+        this.debug = debug;
+    }
+
+    /**
+     * Latest load of one backend as reported by the backend itself
+     */
+    public static class BackendHealth {
+        private final String server;
+        private final double tps;
+        private final double mspt;
+        private final int entities;
+        private final int loadedChunks;
+        private final int players;
+        private final long receivedAt;
+
+        BackendHealth(String server, double tps, double mspt, int entities, int loadedChunks, int players, long receivedAt) {
+            this.server = server;
+            this.tps = tps;
+            this.mspt = mspt;
+            this.entities = entities;
+            this.loadedChunks = loadedChunks;
+            this.players = players;
+            this.receivedAt = receivedAt;
+        }
+
+        public String getServer() {
+            return server;
+        }
+
+        public double getTps() {
+            return tps;
+        }
+
+        public double getMspt() {
+            return mspt;
+        }
+
+        public int getEntities() {
+            return entities;
+        }
+
+        public int getLoadedChunks() {
+            return loadedChunks;
+        }
+
+        public int getPlayers() {
+            return players;
+        }
+
+        public long getReceivedAt() {
+            return receivedAt;
+        }
+    }
+
+    public Map<String, BackendHealth> snapshot() {
+        return snapshot;
+    }
+
+    @Subscribe
+    public void onPluginMessage(PluginMessageEvent event) {
+        if (!CHANNEL.equals(event.getIdentifier())) {
+            return;
+        }
+        // Never forward to the client, and never trust a client that sends on our channel
+        event.setResult(PluginMessageEvent.ForwardResult.handled());
+        if (!(event.getSource() instanceof ServerConnection connection)) {
+            return;
+        }
+        String server = connection.getServerInfo().getName();
+
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(event.getData()))) {
+            int version = in.readUnsignedByte();
+            int type = in.readUnsignedByte();
+            if (version != VERSION) {
+                if (debug) {
+                    logger.warn("Ignoring analytics message version {} from {}", version, server);
+                }
+                return;
+            }
+            if (type == TYPE_LOAD) {
+                update(new BackendHealth(server, in.readDouble(), in.readDouble(), in.readInt(), in.readInt(),
+                    in.readInt(), System.currentTimeMillis()));
+            } else if (type == TYPE_REPORT && telemetry != null) {
+                String path = in.readUTF();
+                String contentType = in.readUTF();
+                byte[] body = new byte[in.readInt()];
+                in.readFully(body);
+                telemetry.accept(server, path, contentType, body);
+            } else if (type == TYPE_REPORT && debug) {
+                logger.warn("{} forwards reports but telemetry.enabled is false", server);
+            }
+        } catch (IOException e) {
+            logger.warn("Malformed analytics message from {}: {}", server, e.getMessage());
+        }
+    }
+
+    private synchronized void update(BackendHealth health) {
+        Map<String, BackendHealth> next = new HashMap<>(snapshot);
+        next.put(health.getServer(), health);
+        snapshot = Collections.unmodifiableMap(next);
+    }
+}
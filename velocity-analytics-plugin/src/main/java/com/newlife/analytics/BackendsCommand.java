@@ -0,0 +1,67 @@
+package com.newlife.analytics;
+
+import com.velocitypowered.api.command.SimpleCommand;
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * /backends - the load each backend last reported and the routing groups built on it
+ */
+public class BackendsCommand implements SimpleCommand {
+
+    private final NewLifeAnalytics plugin;
+
+    public BackendsCommand(NewLifeAnalytics plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public void execute(Invocation invocation) {
+        var source = invocation.source();
+        Map<String, BackendLoadMonitor.BackendHealth> health = plugin.getLoadMonitor().snapshot();
+        if (health.isEmpty()) {
+            source.sendMessage(Component.text("No backend has reported its load yet.", NamedTextColor.RED));
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        source.sendMessage(Component.text("Backend load", NamedTextColor.GOLD));
+        health.keySet().stream().sorted().forEach(name -> {
+            BackendLoadMonitor.BackendHealth h = health.get(name);
+            long age = (now - h.getReceivedAt()) / 1000;
+            source.sendMessage(Component.text()
+                .append(Component.text("  " + name + ": ", NamedTextColor.WHITE))
+                .append(Component.text(String.format("%.1f TPS, %.1f MSPT", h.getTps(), h.getMspt()),
+                    h.getMspt() > 50 ? NamedTextColor.RED : h.getMspt() > 40 ? NamedTextColor.YELLOW : NamedTextColor.GREEN))
+                .append(Component.text(String.format(", %d players, %d entities, %d chunks (%ds ago)",
+                    h.getPlayers(), h.getEntities(), h.getLoadedChunks(), age), NamedTextColor.GRAY))
+                .build());
+        });
+
+        LoadRouter router = plugin.getLoadRouter();
+        if (router == null) {
+            source.sendMessage(Component.text("Load-aware routing is disabled.", NamedTextColor.GRAY));
+            return;
+        }
+        for (Map.Entry<String, List<String>> group : router.groups().entrySet()) {
+            Optional<RegisteredServer> first = plugin.getServer().getServer(group.getValue().get(0));
+            if (first.isEmpty()) {
+                source.sendMessage(Component.text("  group " + group.getKey() + " " + group.getValue()
+                    + " -> next join goes to -", NamedTextColor.AQUA));
+                continue;
+            }
+            router.route(first.get()).thenAccept(next -> source.sendMessage(Component.text("  group " + group.getKey()
+                + " " + group.getValue() + " -> next join goes to " + next.getServerInfo().getName(), NamedTextColor.AQUA)));
+        }
+    }
+
+    @Override
+    public boolean hasPermission(Invocation invocation) {
+        return invocation.source().hasPermission("newlife.analytics.backends");
+    }
+}
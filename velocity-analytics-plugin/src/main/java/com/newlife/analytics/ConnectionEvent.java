@@ -0,0 +1,83 @@
+package com.newlife.analytics;
+
+/**
+ * One join, leave or server switch, captured when it happens so a delayed send reports the
+ * original time and ping
+ */
+public class ConnectionEvent {
+
+    private final String uuid;
+    private final String username;
+    private final String ip;
+    private final String server;
+    private final String type;
+    private final long sessionDuration;
+    private final long ping;
+    private final long timestamp;
+    private final IpRangeDatabase.IpInfo network;
+
+    public ConnectionEvent(String uuid, String username, String ip, String server, String type,
+                           long sessionDuration, long ping) {
+        this(uuid, username, ip, server, type, sessionDuration, ping, System.currentTimeMillis());
+    }
+
+    public ConnectionEvent(String uuid, String username, String ip, String server, String type,
+                           long sessionDuration, long ping, long timestamp) {
+        this(uuid, username, ip, server, type, sessionDuration, ping, timestamp, null);
+    }
+
+    /**
+     * A join tagged with what the IP range database knows about the player's address
+     */
+    public ConnectionEvent(String uuid, String username, String ip, String server, String type,
+                           long sessionDuration, long ping, long timestamp, IpRangeDatabase.IpInfo network) {
+        this.uuid = uuid;
+        this.username = username;
+        this.ip = ip;
+        this.server = server;
+        this.type = type;
+        this.sessionDuration = sessionDuration;
+        this.ping = ping;
+        this.timestamp = timestamp;
+        this.network = network;
+    }
+
+    public String getUuid() {
+        return uuid;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getServer() {
+        return server;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String toJson() {
+        String json = String.format(
+            "{\"uuid\":\"%s\",\"username\":\"%s\",\"ip\":\"%s\",\"server\":\"%s\",\"type\":\"%s\",\"sessionDuration\":%d,\"ping\":%d,\"timestamp\":%d",
+            escapeJson(uuid), escapeJson(username), escapeJson(ip), escapeJson(server), escapeJson(type),
+            sessionDuration, ping, timestamp
+        );
+        if (network == null) {
+            return json + "}";
+        }
+        return json + String.format(
+            ",\"asn\":%d,\"asName\":\"%s\",\"country\":\"%s\",\"hosting\":%b,\"vpn\":%b}",
+            network.getAsn(), escapeJson(network.getAsName()), escapeJson(network.getCountry()),
+            network.isHosting(), network.isVpn()
+        );
+    }
+
+    private static String escapeJson(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
@@ -0,0 +1,531 @@
+package com.newlife.analytics;
+
+import org.slf4j.Logger;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects connection events and posts them to the batch endpoint in one request, either once
+ * maxSize events are waiting or every maxDelayMs, so a reconnect storm after a proxy restart costs
+ * a handful of posts instead of one per login.
+ *
+ * Events are split across a fixed number of lanes by player UUID, each drained by its own sender
+ * thread, so a hanging API blocks at most that many threads and a player's events always leave in
+ * order. Each lane holds at most capacity / threads events; when one is full the overflow policy
+ * decides what gives: the oldest event is dropped, a queued server switch of the same player is
+ * replaced by a newer one, or the lane spills to a file in the data directory until the sender
+ * catches up.
+ *
+ * A failed post is not retried. Callers that must know an event arrived pass a callback to
+ * add(), which runs on the sender thread once the post carrying the event succeeds; it never runs
+ * for an event that was dropped, failed or spilled.
+ */
+public class ConnectionEventBatcher {
+
+    public enum OverflowPolicy {
+        DROP_OLDEST, COALESCE, SPILL;
+
+        public static OverflowPolicy parse(String value) {
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException | NullPointerException e) {
+                return DROP_OLDEST;
+            }
+        }
+    }
+
+    private static final int LATENCY_SAMPLES = 256;
+    private static final long SHUTDOWN_WAIT_MS = 10_000;
+
+    private final Logger logger;
+    private final String apiUrl;
+    private final String apiKey;
+    private final int maxSize;
+    private final long maxDelayMs;
+    private final OverflowPolicy overflow;
+    private final Path spillDirectory;
+    private final boolean debug;
+
+    private final Lane[] lanes;
+    private final ExecutorService senders;
+    private volatile boolean running = true;
+    // Cleared when the bot predates the batch endpoint; events are then posted one by one
+    private volatile boolean batchEndpoint = true;
+
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong spilled = new AtomicLong();
+    private final AtomicLong posts = new AtomicLong();
+    private final long[] latencies = new long[LATENCY_SAMPLES];
+    private long latencyCount = 0;
+
+    public ConnectionEventBatcher(Logger logger, String apiUrl, String apiKey, int maxSize, long maxDelayMs,
+                                  int capacity, int threads, OverflowPolicy overflow, Path spillDirectory, boolean debug) {
+        this.logger = logger;
+        this.apiUrl = apiUrl;
+        this.apiKey = apiKey;
+        this.maxSize = Math.max(1, maxSize);
+        this.maxDelayMs = Math.max(50, maxDelayMs);
+        this.overflow = overflow;
+        this.spillDirectory = spillDirectory;
+        this.debug = debug;
+
+        int laneCount = Math.max(1, threads);
+        int laneCapacity = Math.max(this.maxSize, capacity / laneCount);
+        this.lanes = new Lane[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            lanes[i] = new Lane(i, laneCapacity);
+        }
+
+        AtomicInteger threadId = new AtomicInteger();
+        this.senders = Executors.newFixedThreadPool(laneCount, r -> {
+            Thread thread = new Thread(r, "newlife-analytics-sender-" + threadId.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() {
+        for (Lane lane : lanes) {
+            senders.execute(lane::run);
+        }
+    }
+
+    /**
+     * Stops accepting events and gives the senders a few seconds to send what is left. With the
+     * spill policy anything still queued after that is written to disk for the next start.
+     */
+    public void shutdown() {
+        running = false;
+        for (Lane lane : lanes) {
+            synchronized (lane) {
+                lane.notifyAll();
+            }
+        }
+        senders.shutdown();
+        try {
+            if (!senders.awaitTermination(SHUTDOWN_WAIT_MS, TimeUnit.MILLISECONDS)) {
+                senders.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            senders.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+
+        int left = 0;
+        for (Lane lane : lanes) {
+            synchronized (lane) {
+                left += lane.queue.size();
+                if (overflow == OverflowPolicy.SPILL && !lane.queue.isEmpty()) {
+                    List<String> queued = new ArrayList<>(lane.queue.size());
+                    while (!lane.queue.isEmpty()) {
+                        queued.add(lane.queue.pollFirst().toJson());
+                    }
+                    lane.spillAhead(queued);
+                }
+                lane.callbacks.clear();
+            }
+        }
+        if (left > 0) {
+            logger.warn("{} connection events were still queued at shutdown{}", left,
+                overflow == OverflowPolicy.SPILL ? " and were spilled to disk" : " and were lost");
+        }
+    }
+
+    public void add(ConnectionEvent event) {
+        add(event, null);
+    }
+
+    /**
+     * Queues an event and runs onDelivered once the bot has accepted it
+     */
+    public void add(ConnectionEvent event, Runnable onDelivered) {
+        if (!running) {
+            return;
+        }
+        lanes[Math.floorMod(event.getUuid().hashCode(), lanes.length)].add(event, onDelivered);
+    }
+
+    /**
+     * Queue depth, overflow counters and send latency since startup
+     */
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        int depth = 0;
+        long spillDepth = 0;
+        for (Lane lane : lanes) {
+            synchronized (lane) {
+                depth += lane.queue.size();
+                spillDepth += lane.spillLines;
+            }
+        }
+        metrics.put("queueDepth", depth);
+        metrics.put("queueCapacity", lanes[0].capacity * lanes.length);
+        metrics.put("spillDepth", spillDepth);
+        metrics.put("sent", sent.get());
+        metrics.put("failed", failed.get());
+        metrics.put("dropped", dropped.get());
+        metrics.put("coalesced", coalesced.get());
+        metrics.put("spilled", spilled.get());
+        metrics.put("posts", posts.get());
+
+        long[] samples;
+        synchronized (latencies) {
+            samples = Arrays.copyOf(latencies, (int) Math.min(latencyCount, LATENCY_SAMPLES));
+        }
+        if (samples.length > 0) {
+            Arrays.sort(samples);
+            metrics.put("sendLatencyP50Ms", samples[samples.length / 2]);
+            metrics.put("sendLatencyP95Ms", samples[(int) Math.min(samples.length - 1, Math.ceil(samples.length * 0.95) - 1)]);
+            metrics.put("sendLatencyMaxMs", samples[samples.length - 1]);
+        }
+        metrics.put("overflowPolicy", overflow.name().toLowerCase(Locale.ROOT));
+        metrics.put("senders", lanes.length);
+        return metrics;
+    }
+
+    /**
+     * Posts events (already JSON) as one batch, or one by one if the bot has no batch endpoint.
+     * Returns whether every event was accepted.
+     */
+    private boolean send(List<String> events) {
+        if (batchEndpoint) {
+            StringBuilder json = new StringBuilder("{\"events\":[");
+            for (int i = 0; i < events.size(); i++) {
+                if (i > 0) json.append(',');
+                json.append(events.get(i));
+            }
+            json.append("]}");
+
+            long start = System.nanoTime();
+            try {
+                ApiClient.post(apiUrl + "/api/analytics/connections/batch", apiKey, json.toString());
+                recordSend(start, events.size(), true);
+                if (debug) {
+                    logger.info("Sent {} connection events in one batch", events.size());
+                }
+                return true;
+            } catch (ApiClient.HttpStatusException e) {
+                if (e.getStatusCode() != 404) {
+                    recordSend(start, events.size(), false);
+                    logFailure(events.size(), e);
+                    return false;
+                }
+                batchEndpoint = false;
+                logger.warn("API has no batch endpoint (HTTP 404), sending connection events one at a time");
+            } catch (IOException e) {
+                recordSend(start, events.size(), false);
+                logFailure(events.size(), e);
+                return false;
+            }
+        }
+
+        boolean delivered = true;
+        for (String event : events) {
+            long start = System.nanoTime();
+            try {
+                ApiClient.post(apiUrl + "/api/analytics/connection", apiKey, event);
+                recordSend(start, 1, true);
+            } catch (IOException e) {
+                recordSend(start, 1, false);
+                logFailure(1, e);
+                delivered = false;
+            }
+        }
+        if (debug) {
+            logger.info("Sent {} connection events individually", events.size());
+        }
+        return delivered;
+    }
+
+    private void recordSend(long startNanos, int events, boolean success) {
+        long millis = (System.nanoTime() - startNanos) / 1_000_000;
+        synchronized (latencies) {
+            latencies[(int) (latencyCount++ % LATENCY_SAMPLES)] = millis;
+        }
+        posts.incrementAndGet();
+        (success ? sent : failed).addAndGet(events);
+    }
+
+    private void logFailure(int events, IOException e) {
+        if (debug) {
+            logger.error("Failed to send {} connection events", events, e);
+        }
+    }
+
+    /**
+     * One sender thread's share of the players. Guarded by its own monitor.
+     */
+    private class Lane {
+        private final int capacity;
+        private final Deque<ConnectionEvent> queue = new ArrayDeque<>();
+        // Delivery callbacks of queued events, by identity
+        private final Map<ConnectionEvent, Runnable> callbacks = new IdentityHashMap<>();
+        // Sender thread only: the callbacks of the batch next() just took
+        private final List<Runnable> batchCallbacks = new ArrayList<>();
+        private final Path spillFile;
+        private final Path sendingFile;
+        // While the spill file has lines, new events go after them on disk to keep order
+        private long spillLines;
+        // Set while the sender owns the rotated file; it goes before anything queued in memory
+        private boolean rotated;
+        private long oldestQueued;
+
+        Lane(int index, int capacity) {
+            this.capacity = capacity;
+            this.spillFile = spillDirectory.resolve("connection-spill-" + index + ".jsonl");
+            this.sendingFile = spillDirectory.resolve("connection-spill-" + index + ".sending");
+            // Events spilled by a previous run are sent before anything new
+            this.rotated = Files.exists(sendingFile);
+            this.spillLines = countLines(spillFile);
+        }
+
+        synchronized void add(ConnectionEvent event, Runnable onDelivered) {
+            if (spillLines > 0 && overflow == OverflowPolicy.SPILL) {
+                spill(event.toJson());
+                return;
+            }
+
+            if (queue.size() >= capacity) {
+                switch (overflow) {
+                    case SPILL:
+                        spill(event.toJson());
+                        return;
+                    case COALESCE:
+                        if (coalesce(event)) {
+                            coalesced.incrementAndGet();
+                            break;
+                        }
+                        // Nothing to merge with, fall through to dropping the oldest
+                    case DROP_OLDEST:
+                        callbacks.remove(queue.pollFirst());
+                        dropped.incrementAndGet();
+                        break;
+                }
+            }
+
+            if (queue.isEmpty()) {
+                oldestQueued = System.currentTimeMillis();
+            }
+            queue.addLast(event);
+            if (onDelivered != null) {
+                callbacks.put(event, onDelivered);
+            }
+            if (queue.size() >= maxSize) {
+                notifyAll();
+            }
+        }
+
+        /**
+         * Removes the newest queued server switch of the same player when the incoming event is a
+         * newer server switch, which supersedes it. Joins and leaves never merge: playtime and ALT
+         * checks need both, and a leave does not say which server the player was last on.
+         */
+        private boolean coalesce(ConnectionEvent event) {
+            if (!"server_switch".equals(event.getType())) {
+                return false;
+            }
+            Iterator<ConnectionEvent> it = queue.descendingIterator();
+            while (it.hasNext()) {
+                ConnectionEvent queued = it.next();
+                if (queued.getUuid().equals(event.getUuid())) {
+                    if ("server_switch".equals(queued.getType())) {
+                        it.remove();
+                        callbacks.remove(queued);
+                        return true;
+                    }
+                    return false; // only the player's latest event may be replaced
+                }
+            }
+            return false;
+        }
+
+        private void spill(String json) {
+            try (BufferedWriter writer = Files.newBufferedWriter(spillFile, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                writer.write(json);
+                writer.newLine();
+                spillLines++;
+                spilled.incrementAndGet();
+            } catch (IOException e) {
+                dropped.incrementAndGet();
+                logger.error("Failed to spill connection event to {}", spillFile, e);
+            }
+        }
+
+        /**
+         * Puts events in front of the spill file. Used at shutdown: while the spill file has lines
+         * new events skip the queue, so whatever is still queued is older than everything on disk.
+         * Written to a new file followed by the old contents, then moved over the spill file.
+         */
+        void spillAhead(List<String> events) {
+            Path temp = spillFile.resolveSibling(spillFile.getFileName() + ".tmp");
+            try {
+                try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                    for (String json : events) {
+                        writer.write(json);
+                        writer.newLine();
+                    }
+                    if (Files.exists(spillFile)) {
+                        try (var lines = Files.lines(spillFile, StandardCharsets.UTF_8)) {
+                            for (String line : (Iterable<String>) lines::iterator) {
+                                writer.write(line);
+                                writer.newLine();
+                            }
+                        }
+                    }
+                }
+                Files.move(temp, spillFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                spillLines += events.size();
+                spilled.addAndGet(events.size());
+            } catch (IOException e) {
+                dropped.addAndGet(events.size());
+                logger.error("Failed to spill {} queued connection events to {}", events.size(), spillFile, e);
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+
+        void run() {
+            while (true) {
+                List<String> batch;
+                try {
+                    batch = next();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (batch == null) {
+                    return;
+                }
+                if (!batch.isEmpty() && send(batch)) {
+                    for (Runnable callback : batchCallbacks) {
+                        callback.run();
+                    }
+                }
+            }
+        }
+
+        /**
+         * Waits for a full batch or the delay, then takes up to maxSize events. Spilled events are
+         * newer than everything queued before the spill began, so they go once the in-memory queue
+         * is empty. Returns null once stopped and drained; spilled events then wait for the next start.
+         */
+        private List<String> next() throws InterruptedException {
+            batchCallbacks.clear();
+            synchronized (this) {
+                while (true) {
+                    if (!running) {
+                        if (queue.isEmpty()) {
+                            return null;
+                        }
+                        break;
+                    }
+                    if (rotated || queue.size() >= maxSize) {
+                        break;
+                    }
+                    if (!queue.isEmpty() && System.currentTimeMillis() - oldestQueued >= maxDelayMs) {
+                        break;
+                    }
+                    if (queue.isEmpty() && spillLines > 0) {
+                        break;
+                    }
+                    long wait = queue.isEmpty() ? maxDelayMs : maxDelayMs - (System.currentTimeMillis() - oldestQueued);
+                    wait(Math.max(1, wait));
+                }
+
+                if (!rotated && !queue.isEmpty()) {
+                    List<String> batch = new ArrayList<>(Math.min(maxSize, queue.size()));
+                    while (batch.size() < maxSize && !queue.isEmpty()) {
+                        ConnectionEvent event = queue.pollFirst();
+                        batch.add(event.toJson());
+                        Runnable callback = callbacks.remove(event);
+                        if (callback != null) {
+                            batchCallbacks.add(callback);
+                        }
+                    }
+                    if (!queue.isEmpty()) {
+                        oldestQueued = System.currentTimeMillis();
+                    }
+                    return batch;
+                }
+
+                if (!rotated) {
+                    // Hand the spill file to the sender; events arriving from now on queue in memory
+                    try {
+                        Files.move(spillFile, sendingFile, StandardCopyOption.REPLACE_EXISTING);
+                        rotated = true;
+                    } catch (IOException e) {
+                        logger.error("Failed to rotate connection spill file {}", spillFile, e);
+                        return Collections.emptyList();
+                    } finally {
+                        spillLines = 0;
+                    }
+                }
+            }
+
+            sendSpilled();
+            synchronized (this) {
+                rotated = false;
+            }
+            return Collections.emptyList();
+        }
+
+        /**
+         * Sends the rotated spill file in batches, then deletes it. Runs without the lane lock so
+         * new events keep queueing meanwhile.
+         */
+        private void sendSpilled() {
+            try {
+                List<String> lines = Files.readAllLines(sendingFile, StandardCharsets.UTF_8);
+                for (int i = 0; i < lines.size(); i += maxSize) {
+                    List<String> batch = new ArrayList<>();
+                    for (String line : lines.subList(i, Math.min(lines.size(), i + maxSize))) {
+                        if (!line.isBlank()) {
+                            batch.add(line);
+                        }
+                    }
+                    if (!batch.isEmpty()) {
+                        send(batch);
+                    }
+                }
+                Files.deleteIfExists(sendingFile);
+                if (debug) {
+                    logger.info("Sent {} spilled connection events from {}", lines.size(), sendingFile.getFileName());
+                }
+            } catch (IOException e) {
+                logger.error("Failed to read connection spill file {}", sendingFile, e);
+                try {
+                    Files.deleteIfExists(sendingFile);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+
+        private long countLines(Path file) {
+            if (!Files.exists(file)) {
+                return 0;
+            }
+            try (var lines = Files.lines(file, StandardCharsets.UTF_8)) {
+                return lines.count();
+            } catch (IOException e) {
+                return 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.newlife.analytics;
+
+import java.util.Arrays;
+
+/**
+ * HyperLogLog distinct counter with 2^10 one-byte registers: 1KB, about 3% standard error.
+ *
+ * Two sketches merge by taking the larger register, so hourly sketches can be combined into any
+ * longer span without seeing the original values. The registers are the serialized form; the bot
+ * merges and estimates them the same way (src/api/hyperLogLog.js).
+ */
+public class HyperLogLog {
+
+    public static final int PRECISION = 10;
+    public static final int REGISTERS = 1 << PRECISION;
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / REGISTERS);
+
+    private final byte[] registers = new byte[REGISTERS];
+
+    /**
+     * Adds a well-mixed 64-bit hash (see {@link #hash})
+     */
+    public void offer(long hash) {
+        int index = (int) (hash >>> (64 - PRECISION));
+        int rank = Math.min(Long.numberOfLeadingZeros(hash << PRECISION), 64 - PRECISION) + 1;
+        if (rank > registers[index]) {
+            registers[index] = (byte) rank;
+        }
+    }
+
+    public void merge(HyperLogLog other) {
+        for (int i = 0; i < REGISTERS; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    public long estimate() {
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double estimate = ALPHA * REGISTERS * REGISTERS / sum;
+        if (estimate <= 2.5 * REGISTERS && zeros > 0) {
+            estimate = REGISTERS * Math.log((double) REGISTERS / zeros); // linear counting for small sets
+        }
+        return Math.round(estimate);
+    }
+
+    public void reset() {
+        Arrays.fill(registers, (byte) 0);
+    }
+
+    public byte[] toBytes() {
+        return registers.clone();
+    }
+
+    public void load(byte[] bytes) {
+        if (bytes.length != REGISTERS) {
+            throw new IllegalArgumentException("Expected " + REGISTERS + " registers, got " + bytes.length);
+        }
+        System.arraycopy(bytes, 0, registers, 0, REGISTERS);
+    }
+
+    /**
+     * 64-bit finalizer of MurmurHash3; spreads structured keys (UUID halves, IPv4 addresses) over
+     * all bits
+     */
+    public static long hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xFF51AFD7ED558CCDL;
+        key ^= key >>> 33;
+        key *= 0xC4CEB9FE1A85EC53L;
+        key ^= key >>> 33;
+        return key;
+    }
+}
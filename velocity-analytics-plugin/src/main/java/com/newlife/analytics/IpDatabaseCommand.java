@@ -0,0 +1,135 @@
+package com.newlife.analytics;
+
+import com.velocitypowered.api.command.CommandSource;
+import com.velocitypowered.api.command.SimpleCommand;
+import com.velocitypowered.api.proxy.Player;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * /ipdb [lookup <player|ip>|reload|import <kind:file>...] - the IP range database's state, what it
+ * knows about an address, and rebuilding it from CSV files in the plugin folder
+ */
+public class IpDatabaseCommand implements SimpleCommand {
+
+    private static final Pattern ADDRESS_LITERAL = Pattern.compile("[0-9A-Fa-f:.]*[:.][0-9A-Fa-f:.]*");
+
+    private final NewLifeAnalytics plugin;
+
+    public IpDatabaseCommand(NewLifeAnalytics plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public void execute(Invocation invocation) {
+        var source = invocation.source();
+        String[] args = invocation.arguments();
+        IpRangeDatabase database = plugin.getIpDatabase();
+        if (database == null) {
+            source.sendMessage(Component.text("The IP range database is disabled.", NamedTextColor.RED));
+            return;
+        }
+
+        if (args.length == 0) {
+            source.sendMessage(Component.text("IP range database", NamedTextColor.GOLD));
+            for (Map.Entry<String, Object> entry : database.status().entrySet()) {
+                source.sendMessage(Component.text()
+                    .append(Component.text("  " + entry.getKey() + ": ", NamedTextColor.GRAY))
+                    .append(Component.text(String.valueOf(entry.getValue()), NamedTextColor.WHITE))
+                    .build());
+            }
+            return;
+        }
+
+        switch (args[0].toLowerCase()) {
+            case "lookup":
+                if (args.length < 2) {
+                    source.sendMessage(Component.text("Usage: /ipdb lookup <player|ip>", NamedTextColor.RED));
+                    return;
+                }
+                lookup(source, database, args[1]);
+                break;
+            case "reload":
+                plugin.getServer().getScheduler().buildTask(plugin, () -> {
+                    try {
+                        database.reload();
+                        source.sendMessage(Component.text("IP range database reloaded.", NamedTextColor.GREEN));
+                    } catch (IOException e) {
+                        source.sendMessage(Component.text("Reload failed: " + e.getMessage(), NamedTextColor.RED));
+                    }
+                }).schedule();
+                break;
+            case "import":
+                if (args.length < 2) {
+                    source.sendMessage(Component.text("Usage: /ipdb import <asn|hosting|vpn|hosting-asn|vpn-asn>:<file> ...", NamedTextColor.RED));
+                    return;
+                }
+                List<String> sources = Arrays.asList(args).subList(1, args.length);
+                Path folder = plugin.getDataDirectory().toAbsolutePath().normalize();
+                for (String spec : sources) {
+                    Path file = folder.resolve(spec.substring(spec.indexOf(':') + 1)).normalize();
+                    if (!file.startsWith(folder)) {
+                        source.sendMessage(Component.text("Sources must be files in the plugin folder: " + spec, NamedTextColor.RED));
+                        return;
+                    }
+                }
+                source.sendMessage(Component.text("Converting " + sources.size() + " sources...", NamedTextColor.GRAY));
+                plugin.getServer().getScheduler().buildTask(plugin, () -> {
+                    try {
+                        IpRangeConverter.Result result = IpRangeConverter.convert(sources,
+                            plugin.getDataDirectory(), database.getFile());
+                        database.reload();
+                        source.sendMessage(Component.text("Imported: " + result, NamedTextColor.GREEN));
+                    } catch (IOException | IllegalArgumentException e) {
+                        source.sendMessage(Component.text("Import failed: " + e.getMessage(), NamedTextColor.RED));
+                    }
+                }).schedule();
+                break;
+            default:
+                source.sendMessage(Component.text("Usage: /ipdb [lookup <player|ip>|reload|import <kind:file>...]", NamedTextColor.RED));
+        }
+    }
+
+    private void lookup(CommandSource source, IpRangeDatabase database, String target) {
+        InetAddress address = null;
+        Optional<Player> player = plugin.getServer().getPlayer(target);
+        if (player.isPresent()) {
+            InetSocketAddress remote = player.get().getRemoteAddress();
+            address = remote != null ? remote.getAddress() : null;
+        } else if (ADDRESS_LITERAL.matcher(target).matches()) {
+            try {
+                address = InetAddress.getByName(target);
+            } catch (UnknownHostException ignored) {
+                // reported below
+            }
+        }
+        if (address == null) {
+            source.sendMessage(Component.text(target + " is not an online player or an IP address.", NamedTextColor.RED));
+            return;
+        }
+
+        IpRangeDatabase.IpInfo info = database.lookup(address);
+        source.sendMessage(Component.text()
+            .append(Component.text(address.getHostAddress() + ": ", NamedTextColor.WHITE))
+            .append(info != null
+                ? Component.text(info.toString(), info.isHosting() || info.isVpn() ? NamedTextColor.YELLOW : NamedTextColor.GREEN)
+                : Component.text("not in the database", NamedTextColor.GRAY))
+            .build());
+    }
+
+    @Override
+    public boolean hasPermission(Invocation invocation) {
+        return invocation.source().hasPermission("newlife.analytics.ipdb");
+    }
+}
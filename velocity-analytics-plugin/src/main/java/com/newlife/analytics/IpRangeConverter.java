@@ -0,0 +1,567 @@
+package com.newlife.analytics;
+
+import java.io.*;
+import java.math.BigInteger;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Builds the file {@link IpRangeDatabase} maps from CSV or TSV exports. Each source is given as
+ * kind:path, where kind is one of
+ *
+ *   asn          ranges with their ASN: iptoasn rows (start, end, ASN, country, AS name), CIDR
+ *                rows as in GeoLite2-ASN-Blocks (network, ASN, AS name) or IP2Location ASN rows
+ *                (start, end, CIDR, ASN, AS name)
+ *   hosting      CIDRs, start/end ranges or single addresses of hosting and datacenter networks
+ *   vpn          the same for VPN and proxy exits
+ *   hosting-asn  one ASN per line; every range of those ASNs is flagged as hosting
+ *   vpn-asn      the same for VPN providers
+ *
+ * Addresses may be written as literals or as integers. Headers, comments and rows that do not
+ * parse are skipped and counted. Where ASN sources overlap, the range listed first keeps the
+ * overlap. The output is written beside the target and moved over it.
+ *
+ * Runs on the proxy through /ipdb import, or standalone:
+ *   java -cp newlife-analytics-velocity-1.0.0.jar com.newlife.analytics.IpRangeConverter ipranges.bin asn:ip2asn-v4.tsv hosting:dc.txt
+ */
+public class IpRangeConverter {
+
+    private static final Pattern ADDRESS_LITERAL = Pattern.compile("[0-9A-Fa-f:.]*[:.][0-9A-Fa-f:.]*");
+    private static final Pattern DIGITS = Pattern.compile("[0-9]+");
+    private static final Pattern COUNTRY = Pattern.compile("[A-Za-z]{2}");
+    private static final int MAX_NAME_BYTES = 255;
+
+    // IPv4 addresses are kept as IPv4-mapped IPv6 (::ffff:a.b.c.d) so both families sort together
+    private static final long MAPPED_HIGH = 0L;
+    private static final long MAPPED_LOW = 0x0000FFFF00000000L;
+    private static final Key V4_FIRST = new Key(MAPPED_HIGH, MAPPED_LOW);
+    private static final Key V4_LAST = new Key(MAPPED_HIGH, MAPPED_LOW | 0xFFFFFFFFL);
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: IpRangeConverter <output.bin> <asn|hosting|vpn|hosting-asn|vpn-asn>:<file> ...");
+            System.exit(1);
+        }
+        Result result = convert(Arrays.asList(args).subList(1, args.length), Paths.get("."), Paths.get(args[0]));
+        System.out.println(result);
+    }
+
+    /**
+     * Reads the sources (paths relative to baseDirectory) and writes the database to output
+     */
+    public static Result convert(List<String> sources, Path baseDirectory, Path output) throws IOException {
+        Result result = new Result();
+        List<Range> networks = new ArrayList<>();
+        List<Range> hosting = new ArrayList<>();
+        List<Range> vpn = new ArrayList<>();
+        Map<Integer, Integer> asnFlags = new HashMap<>();
+
+        for (String source : sources) {
+            int colon = source.indexOf(':');
+            if (colon <= 0) {
+                throw new IllegalArgumentException("Source must be kind:file, got " + source);
+            }
+            String kind = source.substring(0, colon).toLowerCase(Locale.ROOT);
+            Path path = baseDirectory.resolve(source.substring(colon + 1));
+            switch (kind) {
+                case "asn":
+                    readRanges(path, networks, true, result);
+                    break;
+                case "hosting":
+                    readRanges(path, hosting, false, result);
+                    break;
+                case "vpn":
+                    readRanges(path, vpn, false, result);
+                    break;
+                case "hosting-asn":
+                    readAsns(path, asnFlags, IpRangeDatabase.FLAG_HOSTING, result);
+                    break;
+                case "vpn-asn":
+                    readAsns(path, asnFlags, IpRangeDatabase.FLAG_VPN, result);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown source kind " + kind);
+            }
+        }
+
+        List<Range> merged = merge(disjoint(networks, result), union(hosting), union(vpn), asnFlags);
+        write(merged, output, result);
+        return result;
+    }
+
+    private static void readRanges(Path path, List<Range> ranges, boolean withAsn, Result result) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                result.rows++;
+                Range range = parseRange(split(line), withAsn);
+                if (range == null) {
+                    result.skipped++;
+                } else {
+                    ranges.add(range);
+                }
+            }
+        }
+    }
+
+    private static Range parseRange(List<String> fields, boolean withAsn) {
+        Range range;
+        int next;
+        String first = fields.get(0);
+        if (first.indexOf('/') > 0) {
+            range = parseCidr(first);
+            next = 1;
+        } else {
+            Key start = parseAddress(first);
+            Key end = fields.size() > 1 ? parseAddress(fields.get(1)) : null;
+            if (start != null && end != null) {
+                range = start.compareTo(end) <= 0 ? new Range(start, end) : null;
+                next = 2;
+            } else {
+                range = start != null ? new Range(start, start) : null;
+                next = 1;
+            }
+        }
+        if (range == null || !withAsn) {
+            return range;
+        }
+
+        // iptoasn: start, end, ASN, country, name; GeoLite2: network, ASN, name; IP2Location: start, end, CIDR, ASN, name
+        if (next == 2 && fields.size() > 3 && fields.get(2).indexOf('/') > 0) {
+            range.asn = parseAsn(fields.get(3));
+            range.name = range.asn != 0 && fields.size() > 4 ? name(fields.get(4)) : null;
+            return range.asn != 0 ? range : null;
+        }
+        if (fields.size() <= next) {
+            return null;
+        }
+        range.asn = parseAsn(fields.get(next));
+        if (range.asn == 0) {
+            return null; // not routed, or not an ASN
+        }
+        if (next == 2 && fields.size() > 4) {
+            range.country = COUNTRY.matcher(fields.get(3)).matches() ? fields.get(3).toUpperCase(Locale.ROOT) : null;
+            range.name = name(fields.get(4));
+        } else if (fields.size() > next + 1) {
+            range.name = name(fields.get(next + 1));
+        }
+        return range;
+    }
+
+    private static void readAsns(Path path, Map<Integer, Integer> asnFlags, int flag, Result result) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                result.rows++;
+                int asn = parseAsn(split(line).get(0));
+                if (asn == 0) {
+                    result.skipped++;
+                } else {
+                    asnFlags.merge(asn, flag, (a, b) -> a | b);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sorts the ASN ranges and trims overlaps, earlier sources first
+     */
+    private static List<Range> disjoint(List<Range> ranges, Result result) {
+        ranges.sort(Comparator.comparing(r -> r.start)); // stable, so ties keep source order
+        List<Range> disjoint = new ArrayList<>(ranges.size());
+        Key lastEnd = null;
+        for (Range range : ranges) {
+            if (lastEnd != null && range.start.compareTo(lastEnd) <= 0) {
+                result.overlaps++;
+                if (range.end.compareTo(lastEnd) <= 0 || lastEnd.next() == null) {
+                    continue;
+                }
+                range.start = lastEnd.next();
+            }
+            disjoint.add(range);
+            lastEnd = range.end;
+        }
+        return disjoint;
+    }
+
+    /**
+     * Joins overlapping and adjacent flag ranges
+     */
+    private static List<Range> union(List<Range> ranges) {
+        ranges.sort(Comparator.comparing(r -> r.start));
+        List<Range> union = new ArrayList<>(ranges.size());
+        Range last = null;
+        for (Range range : ranges) {
+            Key after = last != null ? last.end.next() : null;
+            if (last != null && (after == null || range.start.compareTo(after) <= 0)) {
+                if (range.end.compareTo(last.end) > 0) {
+                    last.end = range.end;
+                }
+            } else {
+                last = new Range(range.start, range.end);
+                union.add(last);
+            }
+        }
+        return union;
+    }
+
+    /**
+     * Cuts the address space at every range boundary and emits each piece that any source covers,
+     * joining neighbours with the same attributes
+     */
+    private static List<Range> merge(List<Range> networks, List<Range> hosting, List<Range> vpn,
+                                     Map<Integer, Integer> asnFlags) {
+        List<Key> cuts = new ArrayList<>();
+        for (List<Range> list : List.of(networks, hosting, vpn)) {
+            for (Range range : list) {
+                cuts.add(range.start);
+                Key after = range.end.next();
+                if (after != null) {
+                    cuts.add(after);
+                }
+            }
+        }
+        cuts.sort(null);
+
+        List<Range> merged = new ArrayList<>();
+        int n = 0;
+        int h = 0;
+        int v = 0;
+        Range last = null;
+        Key previousCut = null;
+        for (int i = 0; i < cuts.size(); i++) {
+            Key start = cuts.get(i);
+            if (start.equals(previousCut)) {
+                continue;
+            }
+            previousCut = start;
+            while (n < networks.size() && networks.get(n).end.compareTo(start) < 0) {
+                n++;
+            }
+            while (h < hosting.size() && hosting.get(h).end.compareTo(start) < 0) {
+                h++;
+            }
+            while (v < vpn.size() && vpn.get(v).end.compareTo(start) < 0) {
+                v++;
+            }
+            Range network = n < networks.size() && networks.get(n).start.compareTo(start) <= 0 ? networks.get(n) : null;
+            int flags = 0;
+            if (h < hosting.size() && hosting.get(h).start.compareTo(start) <= 0) {
+                flags |= IpRangeDatabase.FLAG_HOSTING;
+            }
+            if (v < vpn.size() && vpn.get(v).start.compareTo(start) <= 0) {
+                flags |= IpRangeDatabase.FLAG_VPN;
+            }
+            if (network != null) {
+                flags |= asnFlags.getOrDefault(network.asn, 0);
+            }
+            if (network == null && flags == 0) {
+                last = null;
+                continue;
+            }
+
+            Key end = Key.MAX;
+            for (int j = i + 1; j < cuts.size(); j++) {
+                if (!cuts.get(j).equals(start)) {
+                    end = cuts.get(j).previous();
+                    break;
+                }
+            }
+            if (last != null && last.sameAs(network, flags)) {
+                last.end = end;
+                continue;
+            }
+            last = new Range(start, end);
+            if (network != null) {
+                last.asn = network.asn;
+                last.name = network.name;
+                last.country = network.country;
+            }
+            last.flags = flags;
+            merged.add(last);
+        }
+        return merged;
+    }
+
+    private static void write(List<Range> ranges, Path output, Result result) throws IOException {
+        List<Range> v4 = new ArrayList<>();
+        List<Range> v6 = new ArrayList<>();
+        for (Range range : ranges) {
+            if (range.end.compareTo(V4_FIRST) >= 0 && range.start.compareTo(V4_LAST) <= 0) {
+                Range part = range.copy();
+                part.start = Collections.max(List.of(range.start, V4_FIRST));
+                part.end = Collections.min(List.of(range.end, V4_LAST));
+                v4.add(part);
+            }
+            // Lookups never see mapped addresses in IPv6 form, so only ranges reaching outside go here
+            if (range.start.compareTo(V4_FIRST) < 0 || range.end.compareTo(V4_LAST) > 0) {
+                v6.add(range);
+            }
+        }
+
+        ByteArrayOutputStream strings = new ByteArrayOutputStream();
+        DataOutputStream stringsOut = new DataOutputStream(strings);
+        Map<String, Integer> nameOffsets = new HashMap<>();
+        for (Range range : ranges) {
+            if (range.name != null && !nameOffsets.containsKey(range.name)) {
+                byte[] bytes = range.name.getBytes(StandardCharsets.UTF_8);
+                nameOffsets.put(range.name, stringsOut.size());
+                stringsOut.writeShort(bytes.length);
+                stringsOut.write(bytes);
+            }
+        }
+
+        Path temp = output.resolveSibling(output.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(IpRangeDatabase.MAGIC);
+            out.writeInt(IpRangeDatabase.VERSION);
+            out.writeLong(System.currentTimeMillis());
+            out.writeInt(v4.size());
+            out.writeInt(v6.size());
+            out.writeInt(strings.size());
+            out.writeInt(0);
+            for (Range range : v4) {
+                out.writeInt((int) range.start.low);
+                out.writeInt((int) range.end.low);
+                writeAttributes(out, range, nameOffsets);
+            }
+            for (Range range : v6) {
+                out.writeLong(range.start.high);
+                out.writeLong(range.start.low);
+                out.writeLong(range.end.high);
+                out.writeLong(range.end.low);
+                writeAttributes(out, range, nameOffsets);
+            }
+            strings.writeTo(out);
+        }
+        Files.move(temp, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        result.ipv4Ranges = v4.size();
+        result.ipv6Ranges = v6.size();
+        result.bytes = Files.size(output);
+    }
+
+    private static void writeAttributes(DataOutputStream out, Range range, Map<String, Integer> nameOffsets) throws IOException {
+        out.writeInt(range.asn);
+        out.writeInt(range.name != null ? nameOffsets.get(range.name) : IpRangeDatabase.NO_NAME);
+        out.writeByte(range.country != null ? range.country.charAt(0) : 0);
+        out.writeByte(range.country != null ? range.country.charAt(1) : 0);
+        out.writeByte(range.flags);
+        out.writeByte(0);
+    }
+
+    /**
+     * Splits a TSV line on tabs, anything else on commas honouring double quotes
+     */
+    static List<String> split(String line) {
+        List<String> fields = new ArrayList<>();
+        char separator = line.indexOf('\t') >= 0 ? '\t' : ',';
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                if (quoted && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = !quoted;
+                }
+            } else if (c == separator && !quoted) {
+                fields.add(field.toString().trim());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString().trim());
+        return fields;
+    }
+
+    private static Range parseCidr(String text) {
+        int slash = text.indexOf('/');
+        Key base = parseAddress(text.substring(0, slash));
+        if (base == null || !DIGITS.matcher(text.substring(slash + 1)).matches()) {
+            return null;
+        }
+        int prefix = Integer.parseInt(text.substring(slash + 1));
+        if (base.isMappedV4() && text.indexOf(':') < 0) {
+            prefix += 96;
+        }
+        if (prefix > 128) {
+            return null;
+        }
+        int hostBits = 128 - prefix;
+        long highMask = hostBits >= 128 ? -1L : hostBits > 64 ? (1L << (hostBits - 64)) - 1 : 0;
+        long lowMask = hostBits >= 64 ? -1L : (1L << hostBits) - 1;
+        return new Range(new Key(base.high & ~highMask, base.low & ~lowMask),
+            new Key(base.high | highMask, base.low | lowMask));
+    }
+
+    private static Key parseAddress(String text) {
+        if (DIGITS.matcher(text).matches()) {
+            BigInteger value = new BigInteger(text);
+            if (value.bitLength() > 128) {
+                return null;
+            }
+            if (value.bitLength() <= 32) {
+                return new Key(MAPPED_HIGH, MAPPED_LOW | value.longValue());
+            }
+            return new Key(value.shiftRight(64).longValue(), value.longValue());
+        }
+        if (!ADDRESS_LITERAL.matcher(text).matches()) {
+            return null; // also keeps header words away from name resolution
+        }
+        try {
+            InetAddress address = InetAddress.getByName(text);
+            byte[] bytes = address.getAddress();
+            if (address instanceof Inet4Address) {
+                return new Key(MAPPED_HIGH, MAPPED_LOW | (new BigInteger(1, bytes).longValue()));
+            }
+            BigInteger value = new BigInteger(1, bytes);
+            return new Key(value.shiftRight(64).longValue(), value.longValue());
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static int parseAsn(String text) {
+        String digits = text.regionMatches(true, 0, "AS", 0, 2) ? text.substring(2) : text;
+        if (!DIGITS.matcher(digits).matches() || digits.length() > 10) {
+            return 0;
+        }
+        long asn = Long.parseLong(digits);
+        return asn <= 0xFFFFFFFFL ? (int) asn : 0;
+    }
+
+    private static String name(String text) {
+        if (text.isEmpty() || text.equalsIgnoreCase("Not routed") || text.equalsIgnoreCase("None")) {
+            return null;
+        }
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= MAX_NAME_BYTES) {
+            return text;
+        }
+        String cut = new String(bytes, 0, MAX_NAME_BYTES, StandardCharsets.UTF_8);
+        return cut.charAt(cut.length() - 1) == '\uFFFD' ? cut.substring(0, cut.length() - 1) : cut;
+    }
+
+    /**
+     * A 128-bit address, compared unsigned
+     */
+    private static final class Key implements Comparable<Key> {
+        static final Key MAX = new Key(-1L, -1L);
+
+        final long high;
+        final long low;
+
+        Key(long high, long low) {
+            this.high = high;
+            this.low = low;
+        }
+
+        boolean isMappedV4() {
+            return compareTo(V4_FIRST) >= 0 && compareTo(V4_LAST) <= 0;
+        }
+
+        /**
+         * The following address, or null past the end of the address space
+         */
+        Key next() {
+            if (low != -1L) {
+                return new Key(high, low + 1);
+            }
+            return high != -1L ? new Key(high + 1, 0) : null;
+        }
+
+        Key previous() {
+            return low != 0 ? new Key(high, low - 1) : new Key(high - 1, -1L);
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            int compared = Long.compareUnsigned(high, other.high);
+            return compared != 0 ? compared : Long.compareUnsigned(low, other.low);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key key && key.high == high && key.low == low;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(high) * 31 + Long.hashCode(low);
+        }
+    }
+
+    private static final class Range {
+        Key start;
+        Key end;
+        int asn;
+        String name;
+        String country;
+        int flags;
+
+        Range(Key start, Key end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        Range copy() {
+            Range copy = new Range(start, end);
+            copy.asn = asn;
+            copy.name = name;
+            copy.country = country;
+            copy.flags = flags;
+            return copy;
+        }
+
+        boolean sameAs(Range network, int otherFlags) {
+            return flags == otherFlags
+                && asn == (network != null ? network.asn : 0)
+                && Objects.equals(name, network != null ? network.name : null)
+                && Objects.equals(country, network != null ? network.country : null);
+        }
+    }
+
+    /**
+     * What a conversion read and wrote
+     */
+    public static class Result {
+        private long rows;
+        private long skipped;
+        private long overlaps;
+        private int ipv4Ranges;
+        private int ipv6Ranges;
+        private long bytes;
+
+        public int getIpv4Ranges() {
+            return ipv4Ranges;
+        }
+
+        public int getIpv6Ranges() {
+            return ipv6Ranges;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d rows read (%d skipped, %d overlapping), wrote %d IPv4 and %d IPv6 ranges in %d bytes",
+                rows, skipped, overlaps, ipv4Ranges, ipv6Ranges, bytes);
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package com.newlife.analytics;
+
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Looks up the network (ASN, AS name, country) and the hosting/VPN flags of an address in a
+ * memory-mapped file of sorted, non-overlapping IP ranges, so every login can be tagged without a
+ * network call. A lookup is a binary search over the mapped records of the address's /16 (found
+ * through a small index built on load), a few hundred nanoseconds for a full ASN table.
+ *
+ * The file is built from CSV exports by {@link IpRangeConverter}. It is checked for changes every
+ * few seconds and swapped in without a restart; lookups running at that moment finish on the old
+ * table. The file is copied before it is mapped, so replacing or overwriting it in place never
+ * touches memory the proxy is reading.
+ *
+ * Layout (big-endian): a 32-byte header (magic, version, build time, IPv4 and IPv6 range counts,
+ * string pool size), the IPv4 records, the IPv6 records, then the pool of AS names. An IPv4 record
+ * is start, end, ASN, AS name offset (4 bytes each), country (2 ASCII bytes), flags and one pad
+ * byte; an IPv6 record is the same with 16-byte start and end.
+ */
+public class IpRangeDatabase {
+
+    public static final int MAGIC = 0x4E4C4950; // NLIP
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 32;
+    public static final int V4_RECORD_SIZE = 20;
+    public static final int V6_RECORD_SIZE = 44;
+    public static final int FLAG_HOSTING = 1;
+    public static final int FLAG_VPN = 2;
+    public static final int NO_NAME = -1;
+
+    private final Logger logger;
+    private final Path file;
+    private final Path workDirectory;
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private volatile Table table;
+    private FileTime loadedModified;
+    private long loadedSize = -1;
+
+    public IpRangeDatabase(Logger logger, Path file, Path workDirectory) {
+        this.logger = logger;
+        this.file = file;
+        this.workDirectory = workDirectory;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public boolean isLoaded() {
+        return table != null;
+    }
+
+    /**
+     * Swaps in the file if it changed since it was last loaded. A file that is missing or does not
+     * validate (for example one still being uploaded) leaves the current table in place.
+     */
+    public synchronized void reloadIfChanged() {
+        try {
+            if (!Files.exists(file)) {
+                return;
+            }
+            FileTime modified = Files.getLastModifiedTime(file);
+            long size = Files.size(file);
+            if (modified.equals(loadedModified) && size == loadedSize) {
+                return;
+            }
+            load(modified, size);
+        } catch (IOException e) {
+            logger.warn("IP range database {} not reloaded: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * Loads the file whether or not it changed
+     */
+    public synchronized void reload() throws IOException {
+        load(Files.getLastModifiedTime(file), Files.size(file));
+    }
+
+    private void load(FileTime modified, long size) throws IOException {
+        Path copy = Files.createTempFile(workDirectory, "ipranges-", ".map");
+        try {
+            Files.copy(file, copy, StandardCopyOption.REPLACE_EXISTING);
+            Table loaded;
+            try (FileChannel channel = FileChannel.open(copy, StandardOpenOption.READ)) {
+                loaded = new Table(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            }
+            Table previous = table;
+            table = loaded;
+            loadedModified = modified;
+            loadedSize = size;
+            logger.info("Loaded IP range database: {} IPv4 and {} IPv6 ranges{}", loaded.v4Count, loaded.v6Count,
+                previous != null ? " (replaced the previous table)" : "");
+        } finally {
+            try {
+                // The mapping stays valid after the file is gone
+                Files.deleteIfExists(copy);
+            } catch (IOException e) {
+                copy.toFile().deleteOnExit(); // Windows refuses to delete a mapped file
+            }
+        }
+    }
+
+    /**
+     * The range containing the address, or null if none does or no table is loaded
+     */
+    public IpInfo lookup(InetAddress address) {
+        Table current = table;
+        if (current == null || address == null) {
+            return null;
+        }
+        lookups.increment();
+        IpInfo info = current.lookup(address.getAddress());
+        if (info != null) {
+            hits.increment();
+        }
+        return info;
+    }
+
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        Table current = table;
+        status.put("file", file.toString());
+        status.put("loaded", current != null);
+        if (current != null) {
+            status.put("builtAt", current.builtAt);
+            status.put("ipv4Ranges", current.v4Count);
+            status.put("ipv6Ranges", current.v6Count);
+            status.put("mappedBytes", current.buffer.capacity());
+        }
+        status.put("lookups", lookups.sum());
+        status.put("hits", hits.sum());
+        return status;
+    }
+
+    /**
+     * One mapped file. Only absolute reads are used, so lookups on many threads share the buffer.
+     */
+    private static class Table {
+        private final ByteBuffer buffer;
+        private final long builtAt;
+        private final int v4Count;
+        private final int v6Count;
+        private final int v4Offset;
+        private final int v6Offset;
+        private final int stringsOffset;
+        // v4Index[p] is the first IPv4 record starting at or after p << 16, so a lookup only
+        // searches the records of its /16 and the one before
+        private final int[] v4Index = new int[(1 << 16) + 1];
+
+        Table(MappedByteBuffer buffer) throws IOException {
+            this.buffer = buffer;
+            if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+                throw new IOException("not an IP range database");
+            }
+            if (buffer.getInt(4) != VERSION) {
+                throw new IOException("unsupported version " + buffer.getInt(4));
+            }
+            builtAt = buffer.getLong(8);
+            v4Count = buffer.getInt(16);
+            v6Count = buffer.getInt(20);
+            int stringsSize = buffer.getInt(24);
+            long expected = HEADER_SIZE + (long) v4Count * V4_RECORD_SIZE + (long) v6Count * V6_RECORD_SIZE + stringsSize;
+            if (v4Count < 0 || v6Count < 0 || stringsSize < 0 || expected != buffer.capacity()) {
+                throw new IOException("truncated or corrupt file");
+            }
+            v4Offset = HEADER_SIZE;
+            v6Offset = v4Offset + v4Count * V4_RECORD_SIZE;
+            stringsOffset = v6Offset + v6Count * V6_RECORD_SIZE;
+
+            int record = 0;
+            for (int prefix = 0; prefix <= 1 << 16; prefix++) {
+                while (record < v4Count && (buffer.getInt(v4Offset + record * V4_RECORD_SIZE) >>> 16) < prefix) {
+                    record++;
+                }
+                v4Index[prefix] = record;
+            }
+        }
+
+        IpInfo lookup(byte[] address) {
+            if (address.length == 4) {
+                int key = ByteBuffer.wrap(address).getInt();
+                int prefix = key >>> 16;
+                int low = Math.max(0, v4Index[prefix] - 1);
+                int high = v4Index[prefix + 1] - 1;
+                int found = -1;
+                while (low <= high) {
+                    int mid = (low + high) >>> 1;
+                    if (Integer.compareUnsigned(buffer.getInt(v4Offset + mid * V4_RECORD_SIZE), key) <= 0) {
+                        found = mid;
+                        low = mid + 1;
+                    } else {
+                        high = mid - 1;
+                    }
+                }
+                if (found < 0) {
+                    return null;
+                }
+                int record = v4Offset + found * V4_RECORD_SIZE;
+                return Integer.compareUnsigned(key, buffer.getInt(record + 4)) <= 0 ? info(record + 8) : null;
+            }
+
+            ByteBuffer wrapped = ByteBuffer.wrap(address);
+            long keyHigh = wrapped.getLong();
+            long keyLow = wrapped.getLong();
+            int low = 0;
+            int high = v6Count - 1;
+            int found = -1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int record = v6Offset + mid * V6_RECORD_SIZE;
+                if (compare(buffer.getLong(record), buffer.getLong(record + 8), keyHigh, keyLow) <= 0) {
+                    found = mid;
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            if (found < 0) {
+                return null;
+            }
+            int record = v6Offset + found * V6_RECORD_SIZE;
+            return compare(keyHigh, keyLow, buffer.getLong(record + 16), buffer.getLong(record + 24)) <= 0
+                ? info(record + 32) : null;
+        }
+
+        /**
+         * Reads the ASN, name, country and flags that follow a record's start and end
+         */
+        private IpInfo info(int offset) {
+            int asn = buffer.getInt(offset);
+            int nameOffset = buffer.getInt(offset + 4);
+            String name = null;
+            if (nameOffset != NO_NAME) {
+                int at = stringsOffset + nameOffset;
+                byte[] bytes = new byte[buffer.getShort(at) & 0xFFFF];
+                buffer.get(at + 2, bytes);
+                name = new String(bytes, StandardCharsets.UTF_8);
+            }
+            byte first = buffer.get(offset + 8);
+            String country = first != 0
+                ? new String(new char[] {(char) first, (char) buffer.get(offset + 9)}) : null;
+            return new IpInfo(asn, name, country, buffer.get(offset + 10));
+        }
+
+        private static int compare(long aHigh, long aLow, long bHigh, long bLow) {
+            int high = Long.compareUnsigned(aHigh, bHigh);
+            return high != 0 ? high : Long.compareUnsigned(aLow, bLow);
+        }
+    }
+
+    /**
+     * What the database knows about one address. ASN is 0 when only a hosting or VPN list covered it.
+     */
+    public static class IpInfo {
+        private final long asn;
+        private final String asName;
+        private final String country;
+        private final int flags;
+
+        IpInfo(int asn, String asName, String country, int flags) {
+            this.asn = Integer.toUnsignedLong(asn);
+            this.asName = asName;
+            this.country = country;
+            this.flags = flags;
+        }
+
+        public long getAsn() {
+            return asn;
+        }
+
+        public String getAsName() {
+            return asName;
+        }
+
+        public String getCountry() {
+            return country;
+        }
+
+        public boolean isHosting() {
+            return (flags & FLAG_HOSTING) != 0;
+        }
+
+        public boolean isVpn() {
+            return (flags & FLAG_VPN) != 0;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder(asn != 0 ? "AS" + asn : "unknown AS");
+            if (asName != null) {
+                text.append(' ').append(asName);
+            }
+            if (country != null) {
+                text.append(" (").append(country).append(')');
+            }
+            if (isHosting()) {
+                text.append(" [hosting]");
+            }
+            if (isVpn()) {
+                text.append(" [vpn]");
+            }
+            return text.toString();
+        }
+    }
+}
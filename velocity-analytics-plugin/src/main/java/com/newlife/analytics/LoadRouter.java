@@ -0,0 +1,284 @@
+package com.newlife.analytics;
+
+import com.velocitypowered.api.event.EventTask;
+import com.velocitypowered.api.event.PostOrder;
+import com.velocitypowered.api.event.Subscribe;
+import com.velocitypowered.api.event.player.PlayerChooseInitialServerEvent;
+import com.velocitypowered.api.event.player.ServerPreConnectEvent;
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.proxy.ProxyServer;
+import com.velocitypowered.api.proxy.ServerConnection;
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+import org.slf4j.Logger;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Sends players joining a server group to its least loaded backend.
+ *
+ * A group is a list of interchangeable backends (routing.groups=survival:survival-1,survival-2).
+ * The initial connection and any /server request to a member of a group go to the member with the
+ * lowest load score, unless the player is already inside that group or holds the bypass
+ * permission. The score comes from the backends' own load reports: MSPT against the 50ms budget,
+ * the TPS shortfall and a small per-player weight. Backends below routing.minTps are skipped.
+ *
+ * Backends can only report while a player is on them, so an empty backend is silent whether it is
+ * idle or has crashed. Empty members are pinged every few seconds; one that answered recently is
+ * idle and gets the best score, one that did not is skipped, and so is a member with players but
+ * no fresh report. If nothing qualifies, the empty members are pinged on the spot and the player
+ * goes to the first that answers (the requested one if it does).
+ */
+public class LoadRouter {
+
+    public static final String BYPASS_PERMISSION = "newlife.analytics.routing.bypass";
+    public static final long IDLE_PING_SECONDS = 5;
+    private static final double PLAYER_WEIGHT = 0.01;
+    private static final long PING_TIMEOUT_MS = 1500;
+
+    private final ProxyServer server;
+    private final Logger logger;
+    private final BackendLoadMonitor monitor;
+    private final Map<String, List<String>> groups;
+    private final Map<String, List<String>> groupByMember;
+    private final double minTps;
+    private final long staleMs;
+    private final boolean debug;
+    // Member name -> when an empty member last answered a ping
+    private final Map<String, Long> answeredAt = new ConcurrentHashMap<>();
+
+    public LoadRouter(ProxyServer server, Logger logger, BackendLoadMonitor monitor, Map<String, List<String>> groups,
+                      double minTps, long staleMs, boolean debug) {
+        this.server = server;
+        this.logger = logger;
+        this.monitor = monitor;
+        this.minTps = minTps;
+        this.staleMs = Math.max(1000, staleMs);
+        this.debug = debug;
+
+        Map<String, List<String>> copies = new LinkedHashMap<>();
+        Map<String, List<String>> byMember = new HashMap<>();
+        for (Map.Entry<String, List<String>> group : groups.entrySet()) {
+            List<String> members = List.copyOf(group.getValue());
+            copies.put(group.getKey(), members);
+            for (String member : members) {
+                byMember.put(member, members);
+            }
+        }
+        this.groups = Collections.unmodifiableMap(copies);
+        this.groupByMember = byMember;
+    }
+
+    /**
+     * Parses "group:a,b,c;group2:d,e" into group name -> members
+     */
+    public static Map<String, List<String>> parseGroups(String value) {
+        Map<String, List<String>> groups = new LinkedHashMap<>();
+        if (value == null) {
+            return groups;
+        }
+        for (String group : value.split(";")) {
+            int colon = group.indexOf(':');
+            if (colon <= 0) {
+                continue;
+            }
+            List<String> members = new ArrayList<>();
+            for (String member : group.substring(colon + 1).split(",")) {
+                if (!member.isBlank()) {
+                    members.add(member.trim());
+                }
+            }
+            if (members.size() > 1) {
+                groups.put(group.substring(0, colon).trim(), members);
+            }
+        }
+        return groups;
+    }
+
+    /**
+     * Suspends the login only while silent members are being pinged
+     */
+    @Subscribe
+    public EventTask onChooseInitialServer(PlayerChooseInitialServerEvent event) {
+        Optional<RegisteredServer> initial = event.getInitialServer();
+        if (initial.isEmpty() || event.getPlayer().hasPermission(BYPASS_PERMISSION)) {
+            return null;
+        }
+        return whenRouted(route(initial.get()), best -> {
+            if (best != initial.get()) {
+                event.setInitialServer(best);
+                if (debug) {
+                    logger.info("Routed {} to {} instead of {}", event.getPlayer().getUsername(),
+                        best.getServerInfo().getName(), initial.get().getServerInfo().getName());
+                }
+            }
+        });
+    }
+
+    /**
+     * Early, so later listeners (and transfer timing) see the routed target
+     */
+    @Subscribe(order = PostOrder.EARLY)
+    public EventTask onServerPreConnect(ServerPreConnectEvent event) {
+        Player player = event.getPlayer();
+        Optional<ServerConnection> current = player.getCurrentServer();
+        // Initial connections were routed when the initial server was chosen
+        if (current.isEmpty() || !event.getResult().isAllowed() || player.hasPermission(BYPASS_PERMISSION)) {
+            return null;
+        }
+        RegisteredServer target = event.getResult().getServer().orElse(event.getOriginalServer());
+        List<String> group = groupByMember.get(target.getServerInfo().getName());
+        if (group == null || group.contains(current.get().getServerInfo().getName())) {
+            return null;
+        }
+        return whenRouted(route(target), best -> {
+            if (best != target) {
+                event.setResult(ServerPreConnectEvent.ServerResult.allowed(best));
+                if (debug) {
+                    logger.info("Routed {} to {} instead of {}", player.getUsername(),
+                        best.getServerInfo().getName(), target.getServerInfo().getName());
+                }
+            }
+        });
+    }
+
+    /**
+     * Applies a routing decision right away when it is known, otherwise once the pings are in
+     */
+    private static EventTask whenRouted(CompletableFuture<RegisteredServer> routed,
+                                        Consumer<RegisteredServer> apply) {
+        if (routed.isDone()) {
+            apply.accept(routed.join());
+            return null;
+        }
+        return EventTask.resumeWhenComplete(routed.thenAccept(apply));
+    }
+
+    /**
+     * The least loaded eligible member of the target's group. If none is eligible, the first
+     * empty member that answers a ping now, preferring the target. The target itself if it is in
+     * no group or nothing qualifies.
+     */
+    public CompletableFuture<RegisteredServer> route(RegisteredServer target) {
+        List<String> group = groupByMember.get(target.getServerInfo().getName());
+        if (group == null) {
+            return CompletableFuture.completedFuture(target);
+        }
+        RegisteredServer best = leastLoaded(group);
+        return best != null ? CompletableFuture.completedFuture(best) : firstResponding(group, target);
+    }
+
+    /**
+     * Pings every empty group member and remembers which answered. Runs every IDLE_PING_SECONDS.
+     */
+    public void pingIdleMembers() {
+        for (String name : groupByMember.keySet()) {
+            Optional<RegisteredServer> member = server.getServer(name);
+            if (member.isEmpty() || !member.get().getPlayersConnected().isEmpty()) {
+                continue;
+            }
+            ping(member.get());
+        }
+    }
+
+    private CompletableFuture<Boolean> ping(RegisteredServer member) {
+        String name = member.getServerInfo().getName();
+        return member.ping()
+            .orTimeout(PING_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+            .handle((ping, error) -> {
+                if (error == null) {
+                    answeredAt.put(name, System.currentTimeMillis());
+                } else {
+                    answeredAt.remove(name);
+                }
+                return error == null;
+            });
+    }
+
+    /**
+     * The eligible member with the lowest score, or null if none is eligible
+     */
+    RegisteredServer leastLoaded(List<String> group) {
+        Map<String, BackendLoadMonitor.BackendHealth> health = monitor.snapshot();
+        long now = System.currentTimeMillis();
+
+        RegisteredServer best = null;
+        double bestScore = Double.MAX_VALUE;
+        for (String name : group) {
+            Optional<RegisteredServer> member = server.getServer(name);
+            if (member.isEmpty()) {
+                continue;
+            }
+            double score = score(member.get(), health.get(name), now);
+            if (score < bestScore) {
+                best = member.get();
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Nothing is eligible, for instance right after startup before the first idle pings are in:
+     * ping the empty members now and take the first (in group order, the target first) that answers
+     */
+    private CompletableFuture<RegisteredServer> firstResponding(List<String> group, RegisteredServer target) {
+        List<RegisteredServer> empty = new ArrayList<>();
+        for (String name : group) {
+            server.getServer(name)
+                .filter(member -> member.getPlayersConnected().isEmpty())
+                .ifPresent(member -> empty.add(name.equals(target.getServerInfo().getName()) ? 0 : empty.size(), member));
+        }
+        if (empty.isEmpty()) {
+            return CompletableFuture.completedFuture(target);
+        }
+
+        List<CompletableFuture<Boolean>> pings = new ArrayList<>();
+        for (RegisteredServer member : empty) {
+            pings.add(ping(member));
+        }
+        return CompletableFuture.allOf(pings.toArray(new CompletableFuture[0])).thenApply(done -> {
+            for (int i = 0; i < empty.size(); i++) {
+                if (pings.get(i).join()) {
+                    return empty.get(i);
+                }
+            }
+            if (debug) {
+                logger.info("No member of {} reports or answers a ping; leaving {} as the target", group,
+                    target.getServerInfo().getName());
+            }
+            return target;
+        });
+    }
+
+    private boolean isFresh(BackendLoadMonitor.BackendHealth health, long now) {
+        return health != null && now - health.getReceivedAt() <= staleMs;
+    }
+
+    /**
+     * Lower is better; MAX_VALUE means not eligible. An empty member that answered a ping recently
+     * is idle and scores 0.
+     */
+    double score(RegisteredServer member, BackendLoadMonitor.BackendHealth health, long now) {
+        if (member.getPlayersConnected().isEmpty()) {
+            Long answered = answeredAt.get(member.getServerInfo().getName());
+            if (answered != null && now - answered <= staleMs) {
+                return 0;
+            }
+        }
+        if (!isFresh(health, now)) {
+            return Double.MAX_VALUE;
+        }
+        if (health.getTps() < minTps) {
+            return Double.MAX_VALUE;
+        }
+        return health.getMspt() / 50.0 + (20.0 - health.getTps()) / 20.0 + health.getPlayers() * PLAYER_WEIGHT;
+    }
+
+    public Map<String, List<String>> groups() {
+        return groups;
+    }
+}
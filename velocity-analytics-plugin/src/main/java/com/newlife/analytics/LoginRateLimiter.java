@@ -0,0 +1,263 @@
+package com.newlife.analytics;
+
+import org.slf4j.Logger;
+
+import java.net.InetAddress;
+import java.util.*;
+
+/**
+ * Counts login attempts per IP and per subnet (/24 or /64) over a sliding window and tells the
+ * caller to refuse connections past the configured rates, before they reach the backends or the
+ * link and ban APIs.
+ *
+ * Counts live in count-min sketches, one per slice of the window, so memory stays the same however
+ * many addresses a flood uses. A plain count-min estimate overcounts by about attempts / WIDTH,
+ * which in a flood from thousands of addresses would refuse everyone; each row's estimate therefore
+ * has its expected share of the other keys' counts subtracted (count-mean-min) and the median row
+ * is used, never above the plain minimum. The slices rotate lazily as attempts arrive, so nothing
+ * runs while the proxy is idle.
+ *
+ * While attempts are being refused the limiter counts it as an attack and keeps the heaviest
+ * refused sources; each report window is summarised for the analytics API.
+ */
+public class LoginRateLimiter {
+
+    public enum Verdict {
+        ALLOW, IP_LIMIT, SUBNET_LIMIT
+    }
+
+    private static final int DEPTH = 4;
+    private static final int WIDTH = 8192; // power of two
+    private static final int SLICES = 6;
+    private static final int TOP_SOURCES = 32;
+    private static final long[] SEEDS = {
+        0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L
+    };
+
+    private final Logger logger;
+    private final int perIp;
+    private final int perSubnet;
+    private final int attackThreshold;
+    private final long sliceMs;
+    private final long windowMs;
+
+    // Guarded by this
+    private final Sketch addresses = new Sketch();
+    private final Sketch subnets = new Sketch();
+    private final Map<Long, Source> top = new HashMap<>();
+    private long attempts = 0;
+    private long rejectedByIp = 0;
+    private long rejectedBySubnet = 0;
+    private long reportStart = System.currentTimeMillis();
+    private long attackStart = 0;
+    private long attackRejected = 0;
+
+    public LoginRateLimiter(Logger logger, int perIp, int perSubnet, int windowSeconds, int attackThreshold) {
+        this.logger = logger;
+        this.perIp = Math.max(1, perIp);
+        this.perSubnet = Math.max(this.perIp, perSubnet);
+        this.attackThreshold = Math.max(1, attackThreshold);
+        this.sliceMs = Math.max(1000L, windowSeconds * 1000L / SLICES);
+        this.windowMs = sliceMs * SLICES;
+    }
+
+    /**
+     * Counts an attempt from the address and decides whether it may continue. Refused attempts
+     * count too, so a source that keeps hammering stays refused until it slows down.
+     */
+    public synchronized Verdict attempt(InetAddress address) {
+        long now = System.currentTimeMillis();
+        long slice = now / sliceMs;
+        long addressKey = AltIndex.addressKey(address);
+        long subnetKey = AltIndex.subnetKey(address);
+        attempts++;
+
+        int byAddress = addresses.add(addressKey, slice);
+        int bySubnet = subnets.add(subnetKey, slice);
+        Verdict verdict = byAddress > perIp ? Verdict.IP_LIMIT
+            : bySubnet > perSubnet ? Verdict.SUBNET_LIMIT
+            : Verdict.ALLOW;
+        if (verdict == Verdict.ALLOW) {
+            return verdict;
+        }
+
+        if (verdict == Verdict.IP_LIMIT) {
+            rejectedByIp++;
+        } else {
+            rejectedBySubnet++;
+        }
+        track(addressKey, address);
+        attackRejected++;
+        if (attackStart == 0 && attackRejected >= attackThreshold) {
+            attackStart = now;
+            logger.warn("Login flood: {} connections refused, throttling by IP and subnet", attackRejected);
+        }
+        return verdict;
+    }
+
+    /**
+     * Keeps the heaviest refused sources in a small table; when it is full the lightest entry
+     * makes room and its count carries over, so a persistent source still rises to the top
+     */
+    private void track(long key, InetAddress address) {
+        Source source = top.get(key);
+        if (source == null) {
+            long inherited = 0;
+            if (top.size() >= TOP_SOURCES) {
+                Source lightest = Collections.min(top.values(), Comparator.comparingLong(s -> s.count));
+                top.remove(lightest.key);
+                inherited = lightest.count;
+            }
+            source = new Source(key, address, inherited);
+            top.put(key, source);
+        }
+        source.count++;
+    }
+
+    /**
+     * Closes the report window. Returns null if nothing was refused in it; otherwise a summary with
+     * the refused counts and top sources, marked ended once a window passes without refusals after
+     * an attack.
+     */
+    public synchronized Map<String, Object> rollWindow() {
+        long now = System.currentTimeMillis();
+        long rejected = rejectedByIp + rejectedBySubnet;
+        Map<String, Object> report = null;
+
+        if (rejected > 0 || attackStart != 0) {
+            report = new LinkedHashMap<>();
+            report.put("windowSeconds", (now - reportStart) / 1000);
+            report.put("attempts", attempts);
+            report.put("rejected", rejected);
+            report.put("rejectedByIp", rejectedByIp);
+            report.put("rejectedBySubnet", rejectedBySubnet);
+            report.put("limits", Map.of("perIp", perIp, "perSubnet", perSubnet, "windowSeconds", windowMs / 1000));
+
+            List<Map<String, Object>> sources = new ArrayList<>();
+            top.values().stream()
+                .sorted(Comparator.comparingLong((Source s) -> s.count).reversed())
+                .forEach(s -> {
+                    Map<String, Object> entry = new LinkedHashMap<>();
+                    entry.put("ip", s.address.getHostAddress());
+                    entry.put("refused", s.count);
+                    sources.add(entry);
+                });
+            report.put("topSources", sources);
+
+            if (attackStart != 0) {
+                boolean ended = rejected == 0;
+                report.put("attack", true);
+                report.put("attackStartedAt", attackStart);
+                report.put("attackRejected", attackRejected);
+                report.put("attackEnded", ended);
+                if (ended) {
+                    logger.info("Login flood over after {}s, {} connections refused",
+                        (now - attackStart) / 1000, attackRejected);
+                    attackStart = 0;
+                }
+            } else {
+                report.put("attack", false);
+            }
+        }
+
+        if (attackStart == 0) {
+            attackRejected = 0;
+        }
+        top.clear();
+        attempts = 0;
+        rejectedByIp = 0;
+        rejectedBySubnet = 0;
+        reportStart = now;
+        return report;
+    }
+
+    public synchronized Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("attempts", attempts);
+        status.put("rejectedByIp", rejectedByIp);
+        status.put("rejectedBySubnet", rejectedBySubnet);
+        status.put("underAttack", attackStart != 0);
+        if (attackStart != 0) {
+            status.put("attackSeconds", (System.currentTimeMillis() - attackStart) / 1000);
+            status.put("attackRejected", attackRejected);
+        }
+        status.put("sketchBytes", 2L * SLICES * DEPTH * WIDTH * Character.BYTES);
+        return status;
+    }
+
+    private static int index(long key, int row) {
+        long h = (key ^ SEEDS[row]) * 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return (int) h & (WIDTH - 1);
+    }
+
+    /**
+     * A count-min sketch per window slice. Slices are reused as the window slides; a slice whose
+     * epoch fell out of the window is cleared before it is written again.
+     */
+    private static class Sketch {
+        // 16-bit counters, saturating; a slice never sees that many attempts on one cell in practice
+        private final char[][] counts = new char[SLICES][DEPTH * WIDTH];
+        private final long[] totals = new long[SLICES];
+        private final long[] epochs = new long[SLICES];
+        private final double[] rowEstimates = new double[DEPTH];
+
+        Sketch() {
+            Arrays.fill(epochs, -1);
+        }
+
+        /**
+         * Adds one to the key in the current slice and returns its estimated count over the window,
+         * at least 1 since this attempt is in it
+         */
+        int add(long key, long slice) {
+            int current = (int) (slice % SLICES);
+            if (epochs[current] != slice) {
+                Arrays.fill(counts[current], (char) 0);
+                totals[current] = 0;
+                epochs[current] = slice;
+            }
+            totals[current]++;
+
+            long total = 0;
+            for (int s = 0; s < SLICES; s++) {
+                if (slice - epochs[s] < SLICES) {
+                    total += totals[s];
+                }
+            }
+
+            int minimum = Integer.MAX_VALUE;
+            for (int row = 0; row < DEPTH; row++) {
+                int cell = row * WIDTH + index(key, row);
+                if (counts[current][cell] < Character.MAX_VALUE) {
+                    counts[current][cell]++;
+                }
+                int sum = 0;
+                for (int s = 0; s < SLICES; s++) {
+                    if (slice - epochs[s] < SLICES) {
+                        sum += counts[s][cell];
+                    }
+                }
+                minimum = Math.min(minimum, sum);
+                rowEstimates[row] = sum - (double) (total - sum) / (WIDTH - 1);
+            }
+            Arrays.sort(rowEstimates);
+            double median = (rowEstimates[DEPTH / 2 - 1] + rowEstimates[DEPTH / 2]) / 2;
+            return (int) Math.max(1, Math.min(minimum, Math.round(median)));
+        }
+    }
+
+    private static class Source {
+        private final long key;
+        private final InetAddress address;
+        private long count;
+
+        Source(long key, InetAddress address, long count) {
+            this.key = key;
+            this.address = address;
+            this.count = count;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.newlife.analytics;
+
+import com.velocitypowered.api.command.SimpleCommand;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
+
+import java.util.Map;
+
+/**
+ * /loginthrottle - login attempts and refusals in the current report window, and any ongoing flood
+ */
+public class LoginThrottleCommand implements SimpleCommand {
+
+    private final NewLifeAnalytics plugin;
+
+    public LoginThrottleCommand(NewLifeAnalytics plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public void execute(Invocation invocation) {
+        var source = invocation.source();
+        LoginRateLimiter limiter = plugin.getLoginLimiter();
+        if (limiter == null) {
+            source.sendMessage(Component.text("Login throttling is disabled.", NamedTextColor.RED));
+            return;
+        }
+
+        Map<String, Object> status = limiter.status();
+        boolean attack = (boolean) status.get("underAttack");
+        source.sendMessage(Component.text(attack ? "Login throttle - flood in progress" : "Login throttle",
+            attack ? NamedTextColor.RED : NamedTextColor.GOLD));
+        for (Map.Entry<String, Object> entry : status.entrySet()) {
+            source.sendMessage(Component.text()
+                .append(Component.text("  " + entry.getKey() + ": ", NamedTextColor.GRAY))
+                .append(Component.text(String.valueOf(entry.getValue()), NamedTextColor.WHITE))
+                .build());
+        }
+    }
+
+    @Override
+    public boolean hasPermission(Invocation invocation) {
+        return invocation.source().hasPermission("newlife.analytics.throttle");
+    }
+}
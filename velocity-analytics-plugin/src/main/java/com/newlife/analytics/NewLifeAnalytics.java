@@ -1,21 +1,34 @@
 package com.newlife.analytics;
 
+import com.google.gson.Gson;
 import com.google.inject.Inject;
+import com.velocitypowered.api.event.PostOrder;
 import com.velocitypowered.api.event.Subscribe;
 import com.velocitypowered.api.event.connection.DisconnectEvent;
 import com.velocitypowered.api.event.connection.LoginEvent;
+import com.velocitypowered.api.event.connection.PreLoginEvent;
+import com.velocitypowered.api.event.player.KickedFromServerEvent;
 import com.velocitypowered.api.event.player.ServerConnectedEvent;
+import com.velocitypowered.api.event.player.ServerPostConnectEvent;
+import com.velocitypowered.api.event.player.ServerPreConnectEvent;
 import com.velocitypowered.api.event.proxy.ProxyInitializeEvent;
+import com.velocitypowered.api.event.proxy.ProxyShutdownEvent;
 import com.velocitypowered.api.plugin.Plugin;
 import com.velocitypowered.api.plugin.annotation.DataDirectory;
 import com.velocitypowered.api.proxy.Player;
 import com.velocitypowered.api.proxy.ProxyServer;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
 import org.slf4j.Logger;
 
 import java.io.*;
 import java.net.InetSocketAddress;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.UUID;
@@ -38,6 +51,52 @@ public class NewLifeAnalytics {
     private String apiUrl;
     private String apiKey;
     private boolean debug;
+    private int batchMaxSize;
+    private long batchMaxDelayMs;
+    private int queueCapacity;
+    private int senderThreads;
+    private ConnectionEventBatcher.OverflowPolicy overflowPolicy;
+    private long journalFlushMs;
+    private long journalHeartbeatMs;
+    private int journalCompactAfter;
+    private int altRetentionDays;
+    private int altDeniedWindowDays;
+    private int pingSampleSeconds;
+    private int pingReportSeconds;
+    private double pingDegradedFactor;
+    private int pingDegradedMinMs;
+    private int transferSlowMs;
+    private boolean routingEnabled;
+    private Map<String, List<String>> routingGroups;
+    private double routingMinTps;
+    private int routingStaleSeconds;
+    private boolean telemetryEnabled;
+    private int telemetryFlushMs;
+    private int telemetryCapacity;
+    private boolean throttleEnabled;
+    private int throttlePerIp;
+    private int throttlePerSubnet;
+    private int throttleWindowSeconds;
+    private int throttleAttackThreshold;
+    private int statsReportMinutes;
+    private boolean ipdbEnabled;
+    private String ipdbFile;
+    private int ipdbCheckSeconds;
+    
+    private ConnectionEventBatcher batcher;
+    private SessionJournal journal;
+    private AltIndex altIndex;
+    private PingSampler pingSampler;
+    private TransferTracker transferTracker;
+    private TelemetryCollector telemetry;
+    private LoginRateLimiter loginLimiter;
+    private PlayerStats playerStats;
+    private IpRangeDatabase ipDatabase;
+    // Closed hour/day/week summaries not yet accepted by the bot
+    private final List<Map<String, Object>> pendingStats = new ArrayList<>();
+    private BackendLoadMonitor loadMonitor;
+    private LoadRouter loadRouter;
+    private final Gson gson = new Gson();
     
     // Track session start times
     private final Map<UUID, Long> sessionStartTimes = new ConcurrentHashMap<>();
@@ -53,10 +112,272 @@ public class NewLifeAnalytics {
     @Subscribe
     public void onProxyInitialization(ProxyInitializeEvent event) {
         loadConfig();
+        batcher = new ConnectionEventBatcher(logger, apiUrl, apiKey, batchMaxSize, batchMaxDelayMs,
+            queueCapacity, senderThreads, overflowPolicy, dataDirectory, debug);
+        batcher.start();
+        
+        journal = new SessionJournal(dataDirectory.resolve("sessions.journal"), logger,
+            journalFlushMs, journalHeartbeatMs, journalCompactAfter);
+        List<SessionJournal.OrphanedSession> orphans = journal.replay();
+        try {
+            journal.start();
+        } catch (IOException e) {
+            logger.error("Failed to open session journal, open sessions will not survive a crash", e);
+        }
+        closeOrphanedSessions(orphans);
+        
+        altIndex = new AltIndex(altRetentionDays);
+        try {
+            altIndex.load(dataDirectory.resolve("alts.idx"));
+        } catch (IOException e) {
+            logger.error("Failed to load ALT index, starting empty", e);
+        }
+        server.getScheduler().buildTask(this, this::saveAltIndex)
+            .repeat(5, TimeUnit.MINUTES)
+            .schedule();
+        
+        pingSampler = new PingSampler(server, logger, pingDegradedFactor, pingDegradedMinMs);
+        server.getScheduler().buildTask(this, pingSampler::sample)
+            .repeat(pingSampleSeconds, TimeUnit.SECONDS)
+            .schedule();
+        transferTracker = new TransferTracker(logger, transferSlowMs);
+        server.getScheduler().buildTask(this, this::sendLatencyReports)
+            .delay(pingReportSeconds, TimeUnit.SECONDS)
+            .repeat(pingReportSeconds, TimeUnit.SECONDS)
+            .schedule();
+        
+        playerStats = new PlayerStats(ZoneId.systemDefault());
+        try {
+            addPendingStats(playerStats.load(dataDirectory.resolve("stats.dat")));
+        } catch (IOException e) {
+            logger.error("Failed to load player stats, starting empty", e);
+        }
+        server.getScheduler().buildTask(this, this::samplePlayerStats)
+            .repeat(pingSampleSeconds, TimeUnit.SECONDS)
+            .schedule();
+        server.getScheduler().buildTask(this, this::sendPlayerStats)
+            .delay(1, TimeUnit.MINUTES)
+            .repeat(statsReportMinutes, TimeUnit.MINUTES)
+            .schedule();
+        
+        if (throttleEnabled) {
+            loginLimiter = new LoginRateLimiter(logger, throttlePerIp, throttlePerSubnet,
+                throttleWindowSeconds, throttleAttackThreshold);
+            server.getScheduler().buildTask(this, this::sendThrottleReport)
+                .repeat(pingReportSeconds, TimeUnit.SECONDS)
+                .schedule();
+        }
+        
+        if (ipdbEnabled) {
+            ipDatabase = new IpRangeDatabase(logger, dataDirectory.resolve(ipdbFile), dataDirectory);
+            ipDatabase.reloadIfChanged();
+            if (!ipDatabase.isLoaded()) {
+                logger.info("No IP range database at {}, logins are not tagged with ASN until one is added (/ipdb import)",
+                    ipDatabase.getFile());
+            }
+            server.getScheduler().buildTask(this, ipDatabase::reloadIfChanged)
+                .delay(ipdbCheckSeconds, TimeUnit.SECONDS)
+                .repeat(ipdbCheckSeconds, TimeUnit.SECONDS)
+                .schedule();
+        }
+        
+        if (telemetryEnabled) {
+            telemetry = new TelemetryCollector(logger, apiUrl, apiKey, telemetryFlushMs, telemetryCapacity, debug);
+            telemetry.start();
+        }
+        loadMonitor = new BackendLoadMonitor(logger, telemetry, debug);
+        server.getChannelRegistrar().register(BackendLoadMonitor.CHANNEL);
+        server.getEventManager().register(this, loadMonitor);
+        if (routingEnabled && !routingGroups.isEmpty()) {
+            loadRouter = new LoadRouter(server, logger, loadMonitor, routingGroups,
+                routingMinTps, routingStaleSeconds * 1000L, debug);
+            server.getEventManager().register(this, loadRouter);
+            server.getScheduler().buildTask(this, loadRouter::pingIdleMembers)
+                .repeat(LoadRouter.IDLE_PING_SECONDS, TimeUnit.SECONDS)
+                .schedule();
+            logger.info("Load-aware routing enabled for groups {}", routingGroups.keySet());
+        }
+        
+        server.getCommandManager().register(
+            server.getCommandManager().metaBuilder("alts")
+                .plugin(this)
+                .build(),
+            new AltsCommand(this)
+        );
+        server.getCommandManager().register(
+            server.getCommandManager().metaBuilder("pingstats")
+                .plugin(this)
+                .build(),
+            new PingStatsCommand(this)
+        );
+        server.getCommandManager().register(
+            server.getCommandManager().metaBuilder("transferstats")
+                .plugin(this)
+                .build(),
+            new TransferStatsCommand(this)
+        );
+        server.getCommandManager().register(
+            server.getCommandManager().metaBuilder("playerstats")
+                .plugin(this)
+                .build(),
+            new PlayerStatsCommand(this)
+        );
+        server.getCommandManager().register(
+            server.getCommandManager().metaBuilder("loginthrottle")
+                .plugin(this)
+                .build(),
+            new LoginThrottleCommand(this)
+        );
+        server.getCommandManager().register(
+            server.getCommandManager().metaBuilder("ipdb")
+                .plugin(this)
+                .build(),
+            new IpDatabaseCommand(this)
+        );
+        server.getCommandManager().register(
+            server.getCommandManager().metaBuilder("backends")
+                .plugin(this)
+                .build(),
+            new BackendsCommand(this)
+        );
+        server.getCommandManager().register(
+            server.getCommandManager().metaBuilder("analyticsqueue")
+                .plugin(this)
+                .build(),
+            new QueueStatusCommand(this)
+        );
         logger.info("NewLife Analytics initialized!");
         logger.info("API URL: {}", apiUrl);
     }
 
+    @Subscribe
+    public void onProxyShutdown(ProxyShutdownEvent event) {
+        // Players are still connected here; close their sessions before the queue stops
+        for (Player player : server.getAllPlayers()) {
+            endSession(player);
+        }
+        if (batcher != null) {
+            batcher.shutdown();
+        }
+        if (journal != null) {
+            journal.shutdown();
+        }
+        if (telemetry != null) {
+            telemetry.shutdown();
+        }
+        if (altIndex != null) {
+            saveAltIndex();
+        }
+        if (playerStats != null) {
+            savePlayerStats();
+        }
+    }
+
+    private void sendLatencyReports() {
+        sendReport("/api/analytics/ping", pingSampler.rollWindow());
+        sendReport("/api/analytics/transfers", transferTracker.rollWindow());
+    }
+
+    /**
+     * Counts everyone online into the current periods (so players who stay across an hour or day
+     * boundary count in both), samples concurrency, and ships periods that just closed
+     */
+    private void samplePlayerStats() {
+        Map<String, Integer> perServer = new HashMap<>();
+        server.getAllServers().forEach(backend -> perServer.put(backend.getServerInfo().getName(), 0));
+        for (Player player : server.getAllPlayers()) {
+            InetSocketAddress address = player.getRemoteAddress();
+            playerStats.observe(player.getUniqueId(), address != null ? address.getAddress() : null);
+            player.getCurrentServer().ifPresent(connection ->
+                perServer.merge(connection.getServerInfo().getName(), 1, Integer::sum));
+        }
+        playerStats.sampleConcurrency(perServer, server.getPlayerCount());
+
+        List<Map<String, Object>> closed = playerStats.roll();
+        if (!closed.isEmpty()) {
+            addPendingStats(closed);
+            sendPlayerStats();
+        }
+    }
+
+    private void addPendingStats(List<Map<String, Object>> closed) {
+        synchronized (pendingStats) {
+            pendingStats.addAll(closed);
+            while (pendingStats.size() > 200) {
+                pendingStats.remove(0);
+            }
+        }
+    }
+
+    private void sendPlayerStats() {
+        List<Map<String, Object>> closed;
+        synchronized (pendingStats) {
+            closed = new ArrayList<>(pendingStats);
+        }
+        List<Map<String, Object>> periods = new ArrayList<>(closed);
+        periods.addAll(playerStats.live());
+        try {
+            ApiClient.post(apiUrl + "/api/analytics/uniques", apiKey, gson.toJson(Map.of("periods", periods)));
+            synchronized (pendingStats) {
+                pendingStats.removeAll(closed);
+            }
+        } catch (IOException e) {
+            if (debug) {
+                logger.error("Failed to send player stats", e);
+            }
+        }
+        savePlayerStats();
+    }
+
+    private void savePlayerStats() {
+        try {
+            playerStats.save(dataDirectory.resolve("stats.dat"));
+        } catch (IOException e) {
+            logger.error("Failed to save player stats", e);
+        }
+    }
+
+    private void sendThrottleReport() {
+        Map<String, Object> report = loginLimiter.rollWindow();
+        if (report != null) {
+            sendReport("/api/analytics/login-throttle", report);
+        }
+    }
+
+    private void sendReport(String path, Map<String, Object> report) {
+        try {
+            ApiClient.post(apiUrl + path, apiKey, gson.toJson(report));
+        } catch (IOException e) {
+            if (debug) {
+                logger.error("Failed to send report to {}", path, e);
+            }
+        }
+    }
+
+    private void saveAltIndex() {
+        try {
+            altIndex.save(dataDirectory.resolve("alts.idx"));
+        } catch (IOException e) {
+            logger.error("Failed to save ALT index", e);
+        }
+    }
+
+    /**
+     * Sends leave events for sessions a crashed or killed proxy never closed, ending each at the
+     * last time the journal shows the proxy alive. Each stays in the journal until its event is
+     * delivered, so one that fails is sent again on the next start.
+     */
+    private void closeOrphanedSessions(List<SessionJournal.OrphanedSession> orphans) {
+        for (SessionJournal.OrphanedSession orphan : orphans) {
+            batcher.add(new ConnectionEvent(orphan.getUuid(), orphan.getUsername(), orphan.getIp(),
+                orphan.getServer(), "leave", orphan.getDurationSeconds(), 0, orphan.getEndTime()),
+                () -> journal.acknowledge(orphan));
+        }
+        if (!orphans.isEmpty()) {
+            logger.info("Closed {} sessions left open by the previous proxy run", orphans.size());
+        }
+    }
+
     private void loadConfig() {
         try {
             if (!Files.exists(dataDirectory)) {
@@ -71,6 +392,37 @@ public class NewLifeAnalytics {
                 defaults.setProperty("api.url", "http://YOUR_BOT_IP:3002");
                 defaults.setProperty("api.key", "your-analytics-api-key-here");
                 defaults.setProperty("debug", "false");
+                defaults.setProperty("batch.maxSize", "100");
+                defaults.setProperty("batch.maxDelayMs", "1000");
+                defaults.setProperty("queue.capacity", "5000");
+                defaults.setProperty("queue.overflow", "drop_oldest");
+                defaults.setProperty("sender.threads", "2");
+                defaults.setProperty("journal.flushMs", "50");
+                defaults.setProperty("journal.heartbeatSeconds", "15");
+                defaults.setProperty("journal.compactAfter", "10000");
+                defaults.setProperty("alts.retentionDays", "90");
+                defaults.setProperty("alts.deniedWindowDays", "30");
+                defaults.setProperty("ping.sampleSeconds", "10");
+                defaults.setProperty("ping.reportSeconds", "60");
+                defaults.setProperty("ping.degradedFactor", "2.0");
+                defaults.setProperty("ping.degradedMinMs", "75");
+                defaults.setProperty("transfer.slowMs", "3000");
+                defaults.setProperty("routing.enabled", "false");
+                defaults.setProperty("routing.groups", "survival:survival-1,survival-2");
+                defaults.setProperty("routing.minTps", "15");
+                defaults.setProperty("routing.staleSeconds", "15");
+                defaults.setProperty("telemetry.enabled", "false");
+                defaults.setProperty("telemetry.flushMs", "1000");
+                defaults.setProperty("telemetry.capacity", "2000");
+                defaults.setProperty("throttle.enabled", "true");
+                defaults.setProperty("throttle.perIp", "10");
+                defaults.setProperty("throttle.perSubnet", "40");
+                defaults.setProperty("throttle.windowSeconds", "60");
+                defaults.setProperty("throttle.attackThreshold", "50");
+                defaults.setProperty("stats.reportMinutes", "5");
+                defaults.setProperty("ipdb.enabled", "true");
+                defaults.setProperty("ipdb.file", "ipranges.bin");
+                defaults.setProperty("ipdb.checkSeconds", "30");
                 
                 try (OutputStream out = Files.newOutputStream(configPath)) {
                     defaults.store(out, "NewLife Analytics Configuration - Update api.url to point to your bot server");
@@ -85,12 +437,175 @@ public class NewLifeAnalytics {
             apiUrl = config.getProperty("api.url", "http://localhost:3002");
             apiKey = config.getProperty("api.key", "");
             debug = Boolean.parseBoolean(config.getProperty("debug", "false"));
+            batchMaxSize = parseInt(config.getProperty("batch.maxSize"), 100);
+            batchMaxDelayMs = parseInt(config.getProperty("batch.maxDelayMs"), 1000);
+            queueCapacity = parseInt(config.getProperty("queue.capacity"), 5000);
+            senderThreads = parseInt(config.getProperty("sender.threads"), 2);
+            overflowPolicy = ConnectionEventBatcher.OverflowPolicy.parse(config.getProperty("queue.overflow", "drop_oldest"));
+            journalFlushMs = parseInt(config.getProperty("journal.flushMs"), 50);
+            journalHeartbeatMs = parseInt(config.getProperty("journal.heartbeatSeconds"), 15) * 1000L;
+            journalCompactAfter = parseInt(config.getProperty("journal.compactAfter"), 10000);
+            altRetentionDays = parseInt(config.getProperty("alts.retentionDays"), 90);
+            altDeniedWindowDays = parseInt(config.getProperty("alts.deniedWindowDays"), 30);
+            pingSampleSeconds = Math.max(1, parseInt(config.getProperty("ping.sampleSeconds"), 10));
+            pingReportSeconds = Math.max(10, parseInt(config.getProperty("ping.reportSeconds"), 60));
+            pingDegradedFactor = parseDouble(config.getProperty("ping.degradedFactor"), 2.0);
+            pingDegradedMinMs = parseInt(config.getProperty("ping.degradedMinMs"), 75);
+            transferSlowMs = parseInt(config.getProperty("transfer.slowMs"), 3000);
+            routingEnabled = Boolean.parseBoolean(config.getProperty("routing.enabled", "false"));
+            routingGroups = LoadRouter.parseGroups(config.getProperty("routing.groups", ""));
+            routingMinTps = parseDouble(config.getProperty("routing.minTps"), 15.0);
+            routingStaleSeconds = parseInt(config.getProperty("routing.staleSeconds"), 15);
+            telemetryEnabled = Boolean.parseBoolean(config.getProperty("telemetry.enabled", "false"));
+            telemetryFlushMs = parseInt(config.getProperty("telemetry.flushMs"), 1000);
+            telemetryCapacity = parseInt(config.getProperty("telemetry.capacity"), 2000);
+            throttleEnabled = Boolean.parseBoolean(config.getProperty("throttle.enabled", "true"));
+            throttlePerIp = parseInt(config.getProperty("throttle.perIp"), 10);
+            throttlePerSubnet = parseInt(config.getProperty("throttle.perSubnet"), 40);
+            throttleWindowSeconds = parseInt(config.getProperty("throttle.windowSeconds"), 60);
+            throttleAttackThreshold = parseInt(config.getProperty("throttle.attackThreshold"), 50);
+            statsReportMinutes = Math.max(1, parseInt(config.getProperty("stats.reportMinutes"), 5));
+            ipdbEnabled = Boolean.parseBoolean(config.getProperty("ipdb.enabled", "true"));
+            ipdbFile = config.getProperty("ipdb.file", "ipranges.bin");
+            ipdbCheckSeconds = Math.max(5, parseInt(config.getProperty("ipdb.checkSeconds"), 30));
             
         } catch (IOException e) {
             logger.error("Failed to load config", e);
             apiUrl = "http://localhost:27289";
             apiKey = "";
             debug = false;
+            batchMaxSize = 100;
+            batchMaxDelayMs = 1000;
+            queueCapacity = 5000;
+            senderThreads = 2;
+            overflowPolicy = ConnectionEventBatcher.OverflowPolicy.DROP_OLDEST;
+            journalFlushMs = 50;
+            journalHeartbeatMs = 15000;
+            journalCompactAfter = 10000;
+            altRetentionDays = 90;
+            altDeniedWindowDays = 30;
+            pingSampleSeconds = 10;
+            pingReportSeconds = 60;
+            pingDegradedFactor = 2.0;
+            pingDegradedMinMs = 75;
+            transferSlowMs = 3000;
+            routingEnabled = false;
+            routingGroups = Map.of();
+            routingMinTps = 15.0;
+            routingStaleSeconds = 15;
+            telemetryEnabled = false;
+            telemetryFlushMs = 1000;
+            telemetryCapacity = 2000;
+            throttleEnabled = true;
+            throttlePerIp = 10;
+            throttlePerSubnet = 40;
+            throttleWindowSeconds = 60;
+            throttleAttackThreshold = 50;
+            statsReportMinutes = 5;
+            ipdbEnabled = true;
+            ipdbFile = "ipranges.bin";
+            ipdbCheckSeconds = 30;
+        }
+    }
+
+    public ProxyServer getServer() {
+        return server;
+    }
+
+    public Path getDataDirectory() {
+        return dataDirectory;
+    }
+
+    public AltIndex getAltIndex() {
+        return altIndex;
+    }
+
+    public PingSampler getPingSampler() {
+        return pingSampler;
+    }
+
+    public TransferTracker getTransferTracker() {
+        return transferTracker;
+    }
+
+    /**
+     * Null unless telemetry.enabled is set
+     */
+    public TelemetryCollector getTelemetry() {
+        return telemetry;
+    }
+
+    /**
+     * Null unless throttle.enabled is set
+     */
+    public LoginRateLimiter getLoginLimiter() {
+        return loginLimiter;
+    }
+
+    public PlayerStats getPlayerStats() {
+        return playerStats;
+    }
+
+    /**
+     * Null unless ipdb.enabled is set
+     */
+    public IpRangeDatabase getIpDatabase() {
+        return ipDatabase;
+    }
+
+    public BackendLoadMonitor getLoadMonitor() {
+        return loadMonitor;
+    }
+
+    /**
+     * Null unless routing is enabled with at least one group
+     */
+    public LoadRouter getLoadRouter() {
+        return loadRouter;
+    }
+
+    public ConnectionEventBatcher getBatcher() {
+        return batcher;
+    }
+
+    private int parseInt(String value, int fallback) {
+        try {
+            return value != null ? Integer.parseInt(value.trim()) : fallback;
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid number in config: {}, using {}", value, fallback);
+            return fallback;
+        }
+    }
+
+    private double parseDouble(String value, double fallback) {
+        try {
+            return value != null ? Double.parseDouble(value.trim()) : fallback;
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid number in config: {}, using {}", value, fallback);
+            return fallback;
+        }
+    }
+
+    /**
+     * First, so a flood is turned away before ban, link or any other plugin's checks run
+     */
+    @Subscribe(order = PostOrder.FIRST)
+    public void onPreLogin(PreLoginEvent event) {
+        if (loginLimiter == null || !event.getResult().isAllowed()) {
+            return;
+        }
+        InetSocketAddress address = event.getConnection().getRemoteAddress();
+        if (address == null || address.getAddress() == null) {
+            return;
+        }
+        LoginRateLimiter.Verdict verdict = loginLimiter.attempt(address.getAddress());
+        if (verdict != LoginRateLimiter.Verdict.ALLOW) {
+            event.setResult(PreLoginEvent.PreLoginComponentResult.denied(
+                Component.text("Too many connection attempts from your network. Please wait a minute and try again.", NamedTextColor.RED)));
+            if (debug) {
+                logger.info("Refused login of {} from {} ({})", event.getUsername(),
+                    address.getAddress().getHostAddress(), verdict);
+            }
         }
     }
 
@@ -105,16 +620,93 @@ public class NewLifeAnalytics {
         String ip = address != null ? address.getAddress().getHostAddress() : "unknown";
         
         // Record session start
-        sessionStartTimes.put(uuid, System.currentTimeMillis());
+        long startTime = System.currentTimeMillis();
+        sessionStartTimes.put(uuid, startTime);
+        if (journal != null) {
+            journal.open(uuid, username, ip, "proxy", startTime);
+        }
         
         if (debug) {
             logger.info("Player login: {} ({}) from {}", username, uuid, ip);
         }
         
-        // Send connection event to API (async)
-        server.getScheduler().buildTask(this, () -> {
-            sendConnectionEvent(uuid.toString(), username, ip, "proxy", "join", 0, player.getPing());
-        }).schedule();
+        if (altIndex != null && address != null) {
+            altIndex.observe(uuid, username, address.getAddress());
+        }
+        if (playerStats != null && event.getResult().isAllowed()) {
+            playerStats.observe(uuid, address != null ? address.getAddress() : null);
+        }
+        
+        // Tag the join with the network the address belongs to; a mapped-file lookup, no network call
+        IpRangeDatabase.IpInfo network = ipDatabase != null && address != null ? ipDatabase.lookup(address.getAddress()) : null;
+        if (debug && network != null) {
+            logger.info("Player {} connects from {}", username, network);
+        }
+        
+        // Queue connection event for the next batch
+        if (batcher != null) {
+            batcher.add(new ConnectionEvent(uuid.toString(), username, ip, "proxy", "join", 0, player.getPing(),
+                startTime, network));
+        }
+    }
+
+    /**
+     * Runs after the other plugins' login checks. Denied logins (bans, kick cooldowns) are
+     * remembered in the ALT index; allowed ones are checked against accounts denied recently.
+     */
+    @Subscribe(order = PostOrder.LAST)
+    public void onLoginResult(LoginEvent event) {
+        if (altIndex == null) {
+            return;
+        }
+        Player player = event.getPlayer();
+        if (!event.getResult().isAllowed()) {
+            altIndex.markDenied(player.getUniqueId(), player.getUsername(), System.currentTimeMillis());
+            return;
+        }
+
+        long since = System.currentTimeMillis() - altDeniedWindowDays * 86_400_000L;
+        for (AltIndex.Match match : altIndex.alts(player.getUniqueId())) {
+            if (match.getSharedAddresses() > 0 && match.getLastDenied() >= since) {
+                logger.warn("{} shares an IP with {}, whose login was denied recently", player.getUsername(), match.getUsername());
+                Component alert = Component.text("[Analytics] " + player.getUsername() + " shares an IP with "
+                    + match.getUsername() + ", whose login was denied recently. /alts " + player.getUsername(), NamedTextColor.RED);
+                for (Player staff : server.getAllPlayers()) {
+                    if (staff.hasPermission("newlife.analytics.alts.notify")) {
+                        staff.sendMessage(alert);
+                    }
+                }
+                break;
+            }
+        }
+    }
+
+    /**
+     * Starts timing a transfer once every plugin has had its say on the target
+     */
+    @Subscribe(order = PostOrder.LAST)
+    public void onServerPreConnect(ServerPreConnectEvent event) {
+        if (transferTracker == null || !event.getResult().isAllowed()) {
+            return;
+        }
+        Player player = event.getPlayer();
+        String target = event.getResult().getServer().orElse(event.getOriginalServer()).getServerInfo().getName();
+        String previous = player.getCurrentServer().map(connection -> connection.getServerInfo().getName()).orElse(null);
+        transferTracker.preConnect(player.getUniqueId(), player.getUsername(), target, previous);
+    }
+
+    @Subscribe
+    public void onServerPostConnect(ServerPostConnectEvent event) {
+        if (transferTracker != null) {
+            transferTracker.postConnect(event.getPlayer().getUniqueId());
+        }
+    }
+
+    @Subscribe
+    public void onKickedFromServer(KickedFromServerEvent event) {
+        if (transferTracker != null && event.kickedDuringServerConnect()) {
+            transferTracker.kicked(event.getPlayer().getUniqueId(), event.getServer().getServerInfo().getName());
+        }
     }
 
     @Subscribe
@@ -122,9 +714,15 @@ public class NewLifeAnalytics {
         Player player = event.getPlayer();
         UUID uuid = player.getUniqueId();
         String serverName = event.getServer().getServerInfo().getName();
+        if (transferTracker != null) {
+            transferTracker.connected(uuid, serverName);
+        }
         
         // Track server changes
         String previousServer = lastServer.put(uuid, serverName);
+        if (journal != null && !serverName.equals(previousServer)) {
+            journal.switchServer(uuid, serverName);
+        }
         
         if (previousServer != null && !previousServer.equals(serverName)) {
             // Player switched servers
@@ -135,24 +733,34 @@ public class NewLifeAnalytics {
                 logger.info("Player {} switched from {} to {}", player.getUsername(), previousServer, serverName);
             }
             
-            server.getScheduler().buildTask(this, () -> {
-                sendConnectionEvent(uuid.toString(), player.getUsername(), ip, serverName, "server_switch", 0, player.getPing());
-            }).schedule();
+            sendConnectionEvent(uuid.toString(), player.getUsername(), ip, serverName, "server_switch", 0, player.getPing());
         }
     }
 
     @Subscribe
     public void onDisconnect(DisconnectEvent event) {
-        Player player = event.getPlayer();
+        if (transferTracker != null) {
+            transferTracker.disconnected(event.getPlayer().getUniqueId());
+        }
+        endSession(event.getPlayer());
+    }
+
+    private void endSession(Player player) {
         UUID uuid = player.getUniqueId();
         String username = player.getUsername();
         
-        // Calculate session duration
+        // Calculate session duration; no start time means the session was already closed at shutdown
         Long startTime = sessionStartTimes.remove(uuid);
-        long sessionDuration = startTime != null ? (System.currentTimeMillis() - startTime) / 1000 : 0;
+        if (startTime == null) {
+            return;
+        }
+        long sessionDuration = (System.currentTimeMillis() - startTime) / 1000;
         
         // Clean up
         String serverName = lastServer.remove(uuid);
+        if (journal != null) {
+            journal.close(uuid);
+        }
         
         InetSocketAddress address = player.getRemoteAddress();
         String ip = address != null ? address.getAddress().getHostAddress() : "unknown";
@@ -161,29 +769,15 @@ public class NewLifeAnalytics {
             logger.info("Player disconnect: {} - session duration: {}s", username, sessionDuration);
         }
         
-        // Send disconnect event
-        final long duration = sessionDuration;
-        server.getScheduler().buildTask(this, () -> {
-            sendConnectionEvent(uuid.toString(), username, ip, serverName != null ? serverName : "proxy", "leave", duration, 0);
-        }).schedule();
+        // Queue disconnect event with the session's mean sampled ping
+        long ping = pingSampler != null ? pingSampler.endSession(uuid) : 0;
+        sendConnectionEvent(uuid.toString(), username, ip, serverName != null ? serverName : "proxy", "leave", sessionDuration, ping);
     }
 
     private void sendConnectionEvent(String uuid, String username, String ip, String serverName, String type, long sessionDuration, long ping) {
-        try {
-            String json = String.format(
-                "{\"uuid\":\"%s\",\"username\":\"%s\",\"ip\":\"%s\",\"server\":\"%s\",\"type\":\"%s\",\"sessionDuration\":%d,\"ping\":%d}",
-                uuid, username, ip, serverName, type, sessionDuration, ping
-            );
-            
-            ApiClient.post(apiUrl + "/api/analytics/connection", apiKey, json);
-            
-            if (debug) {
-                logger.info("Sent connection event: {} {} on {}", type, username, serverName);
-            }
-        } catch (Exception e) {
-            if (debug) {
-                logger.error("Failed to send connection event", e);
-            }
+        if (batcher == null) {
+            return;
         }
+        batcher.add(new ConnectionEvent(uuid, username, ip, serverName, type, sessionDuration, ping));
     }
 }
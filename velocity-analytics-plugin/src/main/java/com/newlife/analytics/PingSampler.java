@@ -0,0 +1,189 @@
+package com.newlife.analytics;
+
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.proxy.ProxyServer;
+import com.velocitypowered.api.proxy.ServerConnection;
+import org.slf4j.Logger;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Samples every connected player's ping on a fixed interval into latency histograms per backend
+ * server and per client region (the country of the player's locale), and notices players whose
+ * ping rose well above where their session started.
+ *
+ * Per-player state is created once per session and histograms are reused between windows, so a
+ * sample pass over hundreds of players allocates next to nothing.
+ */
+public class PingSampler {
+
+    private static final int BASELINE_SAMPLES = 5;
+    private static final int DEGRADED_SAMPLES = 3;
+    private static final double EWMA_ALPHA = 0.3;
+    private static final int MAX_DEGRADED_REPORTED = 100;
+
+    private final ProxyServer server;
+    private final Logger logger;
+    private final double degradedFactor;
+    private final long degradedMinMs;
+
+    private final Map<UUID, PlayerPing> players = new ConcurrentHashMap<>();
+    // Guarded by this
+    private Map<String, LatencyHistogram> byServer = new HashMap<>();
+    private Map<String, LatencyHistogram> byRegion = new HashMap<>();
+    private Map<String, LatencyHistogram> lastByServer = new HashMap<>();
+    private Map<String, LatencyHistogram> lastByRegion = new HashMap<>();
+    private final List<Map<String, Object>> degraded = new ArrayList<>();
+    private long windowStart = System.currentTimeMillis();
+    private long lastWindowMs = 0;
+
+    public PingSampler(ProxyServer server, Logger logger, double degradedFactor, long degradedMinMs) {
+        this.server = server;
+        this.logger = logger;
+        this.degradedFactor = Math.max(1.1, degradedFactor);
+        this.degradedMinMs = Math.max(1, degradedMinMs);
+    }
+
+    public synchronized void sample() {
+        for (Player player : server.getAllPlayers()) {
+            long ping = player.getPing();
+            if (ping < 0) {
+                continue; // no keep-alive answered yet
+            }
+
+            Optional<ServerConnection> connection = player.getCurrentServer();
+            String backend = connection.isPresent() ? connection.get().getServerInfo().getName() : "proxy";
+            Locale locale = player.getEffectiveLocale();
+            String region = locale != null && !locale.getCountry().isEmpty() ? locale.getCountry() : "unknown";
+
+            histogram(byServer, backend).record(ping);
+            histogram(byRegion, region).record(ping);
+
+            PlayerPing state = players.computeIfAbsent(player.getUniqueId(), k -> new PlayerPing());
+            if (state.record(ping)) {
+                degraded(player, backend, region, state);
+            }
+        }
+    }
+
+    /**
+     * Forgets the player and returns their mean sampled ping this session, or 0 if never sampled
+     */
+    public long endSession(UUID uuid) {
+        PlayerPing state = players.remove(uuid);
+        return state != null && state.samples > 0 ? state.sum / state.samples : 0;
+    }
+
+    /**
+     * Closes the current window and returns it as a report: percentiles per backend and region
+     * plus the players that degraded during it
+     */
+    public synchronized Map<String, Object> rollWindow() {
+        long now = System.currentTimeMillis();
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("windowSeconds", (now - windowStart) / 1000);
+        report.put("servers", summaries(byServer));
+        report.put("regions", summaries(byRegion));
+        report.put("degraded", new ArrayList<>(degraded));
+        degraded.clear();
+
+        // Swap so the histograms are reused instead of reallocated
+        Map<String, LatencyHistogram> servers = lastByServer;
+        Map<String, LatencyHistogram> regions = lastByRegion;
+        lastByServer = byServer;
+        lastByRegion = byRegion;
+        servers.values().forEach(LatencyHistogram::reset);
+        regions.values().forEach(LatencyHistogram::reset);
+        byServer = servers;
+        byRegion = regions;
+        lastWindowMs = now - windowStart;
+        windowStart = now;
+        return report;
+    }
+
+    /**
+     * Summaries of the last completed window, by backend or by region
+     */
+    public synchronized Map<String, Map<String, Object>> lastWindow(boolean regions) {
+        return summaries(regions ? lastByRegion : lastByServer);
+    }
+
+    public synchronized long getLastWindowSeconds() {
+        return lastWindowMs / 1000;
+    }
+
+    private void degraded(Player player, String backend, String region, PlayerPing state) {
+        Map<String, Object> event = new LinkedHashMap<>();
+        event.put("uuid", player.getUniqueId().toString());
+        event.put("username", player.getUsername());
+        event.put("server", backend);
+        event.put("region", region);
+        event.put("baselineMs", Math.round(state.baseline));
+        event.put("currentMs", Math.round(state.ewma));
+        event.put("sessionMinutes", (System.currentTimeMillis() - state.started) / 60000);
+        if (degraded.size() < MAX_DEGRADED_REPORTED) {
+            degraded.add(event);
+        }
+        logger.info("Ping of {} on {} degraded from {}ms to {}ms", player.getUsername(), backend,
+            Math.round(state.baseline), Math.round(state.ewma));
+    }
+
+    private static LatencyHistogram histogram(Map<String, LatencyHistogram> histograms, String key) {
+        LatencyHistogram histogram = histograms.get(key);
+        if (histogram == null) {
+            histogram = new LatencyHistogram();
+            histograms.put(key, histogram);
+        }
+        return histogram;
+    }
+
+    private static Map<String, Map<String, Object>> summaries(Map<String, LatencyHistogram> histograms) {
+        Map<String, Map<String, Object>> result = new TreeMap<>();
+        for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+            if (entry.getValue().getCount() > 0) {
+                result.put(entry.getKey(), entry.getValue().summary());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * One player's session: a baseline from the first samples and a smoothed current value
+     */
+    private class PlayerPing {
+        private final long started = System.currentTimeMillis();
+        private long samples = 0;
+        private long sum = 0;
+        private double ewma = 0;
+        private double baseline = 0;
+        private int above = 0;
+        private boolean alerted = false;
+
+        /**
+         * Returns true on the sample where the player first counts as degraded
+         */
+        boolean record(long ping) {
+            samples++;
+            sum += ping;
+            ewma = samples == 1 ? ping : EWMA_ALPHA * ping + (1 - EWMA_ALPHA) * ewma;
+            if (samples < BASELINE_SAMPLES) {
+                return false;
+            }
+            if (samples == BASELINE_SAMPLES || ewma < baseline) {
+                baseline = ewma; // the best the connection has shown this session
+            }
+
+            boolean high = ewma >= baseline * degradedFactor && ewma - baseline >= degradedMinMs;
+            above = high ? above + 1 : 0;
+            if (alerted && ewma < baseline * (1 + degradedFactor) / 2) {
+                alerted = false; // recovered, may alert again
+            }
+            if (above >= DEGRADED_SAMPLES && !alerted) {
+                alerted = true;
+                return true;
+            }
+            return false;
+        }
+    }
+}
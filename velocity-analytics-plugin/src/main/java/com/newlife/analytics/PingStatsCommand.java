@@ -0,0 +1,56 @@
+package com.newlife.analytics;
+
+import com.velocitypowered.api.command.SimpleCommand;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * /pingstats [servers|regions] - ping percentiles of the last sampling window
+ */
+public class PingStatsCommand implements SimpleCommand {
+
+    private final NewLifeAnalytics plugin;
+
+    public PingStatsCommand(NewLifeAnalytics plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public void execute(Invocation invocation) {
+        var source = invocation.source();
+        String[] args = invocation.arguments();
+        boolean regions = args.length > 0 && args[0].equalsIgnoreCase("regions");
+
+        PingSampler sampler = plugin.getPingSampler();
+        Map<String, Map<String, Object>> window = sampler.lastWindow(regions);
+        if (window.isEmpty()) {
+            source.sendMessage(Component.text("No ping samples yet, try again after the first report interval.", NamedTextColor.RED));
+            return;
+        }
+
+        source.sendMessage(Component.text("Ping by " + (regions ? "region" : "server") + " (last "
+            + sampler.getLastWindowSeconds() + "s)", NamedTextColor.GOLD));
+        for (Map.Entry<String, Map<String, Object>> entry : window.entrySet()) {
+            Map<String, Object> s = entry.getValue();
+            source.sendMessage(Component.text()
+                .append(Component.text("  " + entry.getKey() + ": ", NamedTextColor.WHITE))
+                .append(Component.text(String.format("p50 %sms, p90 %sms, p99 %sms, max %sms (%s samples)",
+                    s.get("p50"), s.get("p90"), s.get("p99"), s.get("max"), s.get("count")), NamedTextColor.GRAY))
+                .build());
+        }
+    }
+
+    @Override
+    public CompletableFuture<List<String>> suggestAsync(Invocation invocation) {
+        return CompletableFuture.completedFuture(List.of("servers", "regions"));
+    }
+
+    @Override
+    public boolean hasPermission(Invocation invocation) {
+        return invocation.source().hasPermission("newlife.analytics.ping");
+    }
+}
@@ -0,0 +1,257 @@
+package com.newlife.analytics;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.*;
+
+/**
+ * Unique players and IPs per calendar hour, day and week as HyperLogLog sketches, plus peak and
+ * average concurrent players per backend, so the bot gets daily and weekly figures without
+ * scanning connection events.
+ *
+ * Every period holds two 1KB sketches; all three are saved to stats.dat (about 6KB) and picked up
+ * again after a restart. A period that ended while the proxy was down is reported as final on
+ * the next start.
+ */
+public class PlayerStats {
+
+    public enum Kind {
+        HOUR, DAY, WEEK
+    }
+
+    private static final int FILE_MAGIC = 0x4E4C5053; // NLPS
+    private static final int FILE_VERSION = 1;
+
+    private final ZoneId zone;
+    // Guarded by this
+    private final EnumMap<Kind, Period> periods = new EnumMap<>(Kind.class);
+
+    public PlayerStats(ZoneId zone) {
+        this.zone = zone;
+        long now = System.currentTimeMillis();
+        for (Kind kind : Kind.values()) {
+            periods.put(kind, new Period(kind, start(kind, now)));
+        }
+    }
+
+    /**
+     * Counts the player and address in every current period
+     */
+    public synchronized void observe(UUID uuid, InetAddress address) {
+        long player = HyperLogLog.hash(uuid.getMostSignificantBits() ^ HyperLogLog.hash(uuid.getLeastSignificantBits()));
+        long ip = address != null ? HyperLogLog.hash(AltIndex.addressKey(address)) : 0;
+        for (Period period : periods.values()) {
+            period.players.offer(player);
+            if (address != null) {
+                period.ips.offer(ip);
+            }
+        }
+    }
+
+    /**
+     * Records one concurrency sample: players per backend and on the whole proxy. Backends missing
+     * from the sample count as empty.
+     */
+    public synchronized void sampleConcurrency(Map<String, Integer> perServer, int total) {
+        for (Period period : periods.values()) {
+            period.total.record(total);
+            for (Map.Entry<String, Integer> entry : perServer.entrySet()) {
+                period.servers.computeIfAbsent(entry.getKey(), k -> new Concurrency());
+            }
+            for (Map.Entry<String, Concurrency> entry : period.servers.entrySet()) {
+                entry.getValue().record(perServer.getOrDefault(entry.getKey(), 0));
+            }
+        }
+    }
+
+    /**
+     * Closes every period whose calendar span is over and returns their final summaries
+     */
+    public synchronized List<Map<String, Object>> roll() {
+        long now = System.currentTimeMillis();
+        List<Map<String, Object>> closed = new ArrayList<>();
+        for (Kind kind : Kind.values()) {
+            long start = start(kind, now);
+            Period period = periods.get(kind);
+            if (period.start != start) {
+                closed.add(period.summary(end(kind, period.start), true));
+                periods.put(kind, new Period(kind, start));
+            }
+        }
+        return closed;
+    }
+
+    /**
+     * Running summaries of the current hour, day and week
+     */
+    public synchronized List<Map<String, Object>> live() {
+        List<Map<String, Object>> live = new ArrayList<>();
+        for (Period period : periods.values()) {
+            live.add(period.summary(end(period.kind, period.start), false));
+        }
+        return live;
+    }
+
+    public synchronized void save(Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeByte(FILE_VERSION);
+            out.writeByte(periods.size());
+            for (Period period : periods.values()) {
+                out.writeByte(period.kind.ordinal());
+                out.writeLong(period.start);
+                out.write(period.players.toBytes());
+                out.write(period.ips.toBytes());
+                period.total.write(out);
+                out.writeShort(period.servers.size());
+                for (Map.Entry<String, Concurrency> entry : period.servers.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    entry.getValue().write(out);
+                }
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Restores saved periods that are still current. Returns the final summaries of saved periods
+     * that ended while the proxy was down.
+     */
+    public synchronized List<Map<String, Object>> load(Path file) throws IOException {
+        List<Map<String, Object>> closed = new ArrayList<>();
+        if (!Files.exists(file)) {
+            return closed;
+        }
+        long now = System.currentTimeMillis();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != FILE_MAGIC || in.readUnsignedByte() != FILE_VERSION) {
+                throw new IOException("Not a player stats file: " + file);
+            }
+            int count = in.readUnsignedByte();
+            for (int i = 0; i < count; i++) {
+                Kind kind = Kind.values()[in.readUnsignedByte()];
+                Period period = new Period(kind, in.readLong());
+                period.players.load(in.readNBytes(HyperLogLog.REGISTERS));
+                period.ips.load(in.readNBytes(HyperLogLog.REGISTERS));
+                period.total.read(in);
+                int servers = in.readUnsignedShort();
+                for (int s = 0; s < servers; s++) {
+                    String name = in.readUTF();
+                    Concurrency concurrency = new Concurrency();
+                    concurrency.read(in);
+                    period.servers.put(name, concurrency);
+                }
+
+                if (period.start == start(kind, now)) {
+                    periods.put(kind, period);
+                } else {
+                    closed.add(period.summary(end(kind, period.start), true));
+                }
+            }
+        }
+        return closed;
+    }
+
+    long start(Kind kind, long millis) {
+        ZonedDateTime time = Instant.ofEpochMilli(millis).atZone(zone);
+        switch (kind) {
+            case HOUR:
+                return time.truncatedTo(ChronoUnit.HOURS).toInstant().toEpochMilli();
+            case DAY:
+                return time.truncatedTo(ChronoUnit.DAYS).toInstant().toEpochMilli();
+            default:
+                return time.truncatedTo(ChronoUnit.DAYS).with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY))
+                    .toInstant().toEpochMilli();
+        }
+    }
+
+    long end(Kind kind, long start) {
+        ZonedDateTime time = Instant.ofEpochMilli(start).atZone(zone);
+        switch (kind) {
+            case HOUR:
+                return time.plusHours(1).toInstant().toEpochMilli();
+            case DAY:
+                return time.plusDays(1).toInstant().toEpochMilli();
+            default:
+                return time.plusWeeks(1).toInstant().toEpochMilli();
+        }
+    }
+
+    private static class Period {
+        private final Kind kind;
+        private final long start;
+        private final HyperLogLog players = new HyperLogLog();
+        private final HyperLogLog ips = new HyperLogLog();
+        private final Concurrency total = new Concurrency();
+        private final Map<String, Concurrency> servers = new TreeMap<>();
+
+        Period(Kind kind, long start) {
+            this.kind = kind;
+            this.start = start;
+        }
+
+        Map<String, Object> summary(long end, boolean closed) {
+            Base64.Encoder base64 = Base64.getEncoder();
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("period", kind.name().toLowerCase(Locale.ROOT));
+            summary.put("start", start);
+            summary.put("end", end);
+            summary.put("final", closed);
+            summary.put("uniquePlayers", players.estimate());
+            summary.put("uniqueIps", ips.estimate());
+            summary.put("playersSketch", base64.encodeToString(players.toBytes()));
+            summary.put("ipsSketch", base64.encodeToString(ips.toBytes()));
+
+            Map<String, Object> concurrency = new LinkedHashMap<>();
+            concurrency.put("total", total.summary());
+            Map<String, Object> byServer = new LinkedHashMap<>();
+            for (Map.Entry<String, Concurrency> entry : servers.entrySet()) {
+                byServer.put(entry.getKey(), entry.getValue().summary());
+            }
+            concurrency.put("servers", byServer);
+            summary.put("concurrency", concurrency);
+            return summary;
+        }
+    }
+
+    private static class Concurrency {
+        private int peak = 0;
+        private long sum = 0;
+        private int samples = 0;
+
+        void record(int players) {
+            peak = Math.max(peak, players);
+            sum += players;
+            samples++;
+        }
+
+        Map<String, Object> summary() {
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("peak", peak);
+            summary.put("avg", samples > 0 ? Math.round(sum * 10.0 / samples) / 10.0 : 0.0);
+            return summary;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeInt(peak);
+            out.writeLong(sum);
+            out.writeInt(samples);
+        }
+
+        void read(DataInputStream in) throws IOException {
+            peak = in.readInt();
+            sum = in.readLong();
+            samples = in.readInt();
+        }
+    }
+}
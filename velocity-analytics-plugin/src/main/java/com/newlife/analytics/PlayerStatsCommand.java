@@ -0,0 +1,41 @@
+package com.newlife.analytics;
+
+import com.velocitypowered.api.command.SimpleCommand;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
+
+import java.util.Map;
+
+/**
+ * /playerstats - estimated unique players and IPs and concurrency for the current hour, day and week
+ */
+public class PlayerStatsCommand implements SimpleCommand {
+
+    private final NewLifeAnalytics plugin;
+
+    public PlayerStatsCommand(NewLifeAnalytics plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void execute(Invocation invocation) {
+        var source = invocation.source();
+        source.sendMessage(Component.text("Player stats (unique counts are estimates, ~3%)", NamedTextColor.GOLD));
+        for (Map<String, Object> period : plugin.getPlayerStats().live()) {
+            Map<String, Object> concurrency = (Map<String, Object>) period.get("concurrency");
+            Map<String, Object> total = (Map<String, Object>) concurrency.get("total");
+            source.sendMessage(Component.text()
+                .append(Component.text("  This " + period.get("period") + ": ", NamedTextColor.WHITE))
+                .append(Component.text(String.format("%s players, %s IPs, peak %s online, avg %s",
+                    period.get("uniquePlayers"), period.get("uniqueIps"), total.get("peak"), total.get("avg")),
+                    NamedTextColor.GRAY))
+                .build());
+        }
+    }
+
+    @Override
+    public boolean hasPermission(Invocation invocation) {
+        return invocation.source().hasPermission("newlife.analytics.stats");
+    }
+}
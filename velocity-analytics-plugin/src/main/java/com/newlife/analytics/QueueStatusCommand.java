@@ -0,0 +1,52 @@
+package com.newlife.analytics;
+
+import com.velocitypowered.api.command.CommandSource;
+import com.velocitypowered.api.command.SimpleCommand;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
+
+import java.util.Map;
+
+/**
+ * /analyticsqueue - shows the connection event queue depth, overflow counters and send latency,
+ * and the forwarded backend report queue when telemetry is enabled
+ */
+public class QueueStatusCommand implements SimpleCommand {
+
+    private final NewLifeAnalytics plugin;
+
+    public QueueStatusCommand(NewLifeAnalytics plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public void execute(Invocation invocation) {
+        var source = invocation.source();
+        ConnectionEventBatcher batcher = plugin.getBatcher();
+        if (batcher == null) {
+            source.sendMessage(Component.text("Connection event queue is not running.", NamedTextColor.RED));
+            return;
+        }
+
+        show(source, "Connection event queue", batcher.metrics());
+        TelemetryCollector telemetry = plugin.getTelemetry();
+        if (telemetry != null) {
+            show(source, "Forwarded backend reports", telemetry.metrics());
+        }
+    }
+
+    private static void show(CommandSource source, String title, Map<String, Object> metrics) {
+        source.sendMessage(Component.text(title, NamedTextColor.GOLD));
+        for (Map.Entry<String, Object> entry : metrics.entrySet()) {
+            source.sendMessage(Component.text()
+                .append(Component.text("  " + entry.getKey() + ": ", NamedTextColor.GRAY))
+                .append(Component.text(String.valueOf(entry.getValue()), NamedTextColor.WHITE))
+                .build());
+        }
+    }
+
+    @Override
+    public boolean hasPermission(Invocation invocation) {
+        return invocation.source().hasPermission("newlife.analytics.queue");
+    }
+}
@@ -0,0 +1,421 @@
+package com.newlife.analytics;
+
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append-only record of open sessions, so a proxy crash does not lose playtime.
+ *
+ * Every login, server switch and disconnect appends one line; a writer thread collects whatever
+ * arrived within flushMs and makes it durable with a single fsync, so logins never wait on the disk.
+ * The writer also appends a heartbeat every heartbeatMs, which bounds when a crashed proxy was last
+ * alive. Once enough lines pile up the journal is rewritten with only the sessions still open.
+ *
+ * On startup replay() returns the sessions the previous run never closed, ended at the last time
+ * the journal proves the proxy was running. start() carries them into the new journal with their end
+ * time fixed, and they stay there until acknowledge() records that their leave event was delivered,
+ * so a bot that is down at startup gets them on a later start instead of never.
+ */
+public class SessionJournal {
+
+    private static final String OPEN = "O";
+    private static final String SWITCH = "S";
+    private static final String CLOSE = "C";
+    private static final String HEARTBEAT = "H";
+    // An orphaned session waiting for its leave event to be delivered; time is its end
+    private static final String PENDING = "P";
+    private static final String ACKNOWLEDGED = "A";
+    private static final Record STOP = new Record(0, "", null, null, null, null);
+
+    private final Path file;
+    private final Logger logger;
+    private final long flushMs;
+    private final long heartbeatMs;
+    private final int compactAfter;
+
+    private final BlockingQueue<Record> queue = new LinkedBlockingQueue<>();
+    // Writer thread only: the sessions the journal currently holds open, for compaction
+    private final Map<String, Record> open = new LinkedHashMap<>();
+    private final Map<String, Record> pending = new LinkedHashMap<>();
+    // What replay() returned, carried into the new journal by start()
+    private List<Record> unacknowledged = Collections.emptyList();
+    private FileChannel channel;
+    private Thread writer;
+    private int linesSinceCompaction = 0;
+    private volatile boolean running = false;
+
+    public SessionJournal(Path file, Logger logger, long flushMs, long heartbeatMs, int compactAfter) {
+        this.file = file;
+        this.logger = logger;
+        this.flushMs = Math.max(0, flushMs);
+        this.heartbeatMs = Math.max(1000, heartbeatMs);
+        this.compactAfter = Math.max(100, compactAfter);
+    }
+
+    /**
+     * A session the previous run left open
+     */
+    public static class OrphanedSession {
+        private final String uuid;
+        private final String username;
+        private final String ip;
+        private final String server;
+        private final long startTime;
+        private final long endTime;
+
+        OrphanedSession(String uuid, String username, String ip, String server, long startTime, long endTime) {
+            this.uuid = uuid;
+            this.username = username;
+            this.ip = ip;
+            this.server = server;
+            this.startTime = startTime;
+            this.endTime = endTime;
+        }
+
+        public String getUuid() {
+            return uuid;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public String getIp() {
+            return ip;
+        }
+
+        public String getServer() {
+            return server;
+        }
+
+        public long getStartTime() {
+            return startTime;
+        }
+
+        public long getEndTime() {
+            return endTime;
+        }
+
+        public long getDurationSeconds() {
+            return Math.max(0, endTime - startTime) / 1000;
+        }
+    }
+
+    /**
+     * Reads the journal left by the previous run and returns its open sessions, plus the orphans of
+     * earlier runs that were never acknowledged. Call before start(), which begins a fresh journal
+     * holding only these.
+     */
+    public List<OrphanedSession> replay() {
+        if (!Files.exists(file)) {
+            return Collections.emptyList();
+        }
+
+        Map<String, Record> sessions = new LinkedHashMap<>();
+        Map<String, Record> orphaned = new LinkedHashMap<>();
+        long lastSeen = 0;
+        int skipped = 0;
+        try {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                Record record = Record.parse(line);
+                if (record == null) {
+                    skipped++; // torn write at the moment of the crash
+                    continue;
+                }
+                lastSeen = Math.max(lastSeen, record.time);
+                apply(sessions, orphaned, record);
+            }
+        } catch (IOException e) {
+            logger.error("Failed to read session journal {}", file, e);
+            return Collections.emptyList();
+        }
+        if (skipped > 0) {
+            logger.warn("Skipped {} unreadable session journal lines", skipped);
+        }
+
+        for (Record session : sessions.values()) {
+            orphaned.put(pendingKey(session.uuid, session.time), new Record(lastSeen, PENDING, session.uuid,
+                session.username, session.ip, session.server, session.time));
+        }
+        unacknowledged = new ArrayList<>(orphaned.values());
+
+        List<OrphanedSession> orphans = new ArrayList<>();
+        for (Record orphan : unacknowledged) {
+            orphans.add(new OrphanedSession(orphan.uuid, orphan.username, orphan.ip, orphan.server,
+                orphan.start, orphan.time));
+        }
+        return orphans;
+    }
+
+    public void start() throws IOException {
+        Files.createDirectories(file.getParent());
+        // The new run starts with only the orphans replay() handed off, written before anything else
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+        if (!unacknowledged.isEmpty()) {
+            write(unacknowledged);
+            unacknowledged = Collections.emptyList();
+        }
+        running = true;
+        writer = new Thread(this::run, "newlife-analytics-journal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Writes everything queued, then closes the journal. Sessions still open stay in it.
+     */
+    public void shutdown() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        queue.add(STOP);
+        try {
+            writer.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public void open(UUID uuid, String username, String ip, String server, long startTime) {
+        append(new Record(startTime, OPEN, uuid.toString(), username, ip, server));
+    }
+
+    public void switchServer(UUID uuid, String server) {
+        append(new Record(System.currentTimeMillis(), SWITCH, uuid.toString(), null, null, server));
+    }
+
+    public void close(UUID uuid) {
+        append(new Record(System.currentTimeMillis(), CLOSE, uuid.toString(), null, null, null));
+    }
+
+    /**
+     * Drops an orphan from the journal once its leave event has been delivered
+     */
+    public void acknowledge(OrphanedSession orphan) {
+        append(new Record(System.currentTimeMillis(), ACKNOWLEDGED, orphan.getUuid(), null, null, null,
+            orphan.getStartTime()));
+    }
+
+    private void append(Record record) {
+        if (running) {
+            queue.add(record);
+        }
+    }
+
+    private void run() {
+        List<Record> group = new ArrayList<>();
+        long nextHeartbeat = System.currentTimeMillis() + heartbeatMs;
+        boolean stopping = false;
+        try {
+            while (!stopping) {
+                Record first = queue.poll(Math.max(1, nextHeartbeat - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                if (first != null && first != STOP && flushMs > 0) {
+                    // Let a burst of logins pile up so they share one fsync
+                    Thread.sleep(flushMs);
+                }
+
+                group.clear();
+                if (first != null) {
+                    group.add(first);
+                }
+                queue.drainTo(group);
+                stopping = group.remove(STOP);
+
+                long now = System.currentTimeMillis();
+                if (now >= nextHeartbeat || stopping) {
+                    group.add(new Record(now, HEARTBEAT, null, null, null, null));
+                    nextHeartbeat = now + heartbeatMs;
+                }
+                if (!group.isEmpty()) {
+                    write(group);
+                }
+                if (linesSinceCompaction >= compactAfter) {
+                    compact();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            running = false;
+            logger.error("Session journal write failed, open sessions will not survive a crash", e);
+        } finally {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void write(List<Record> records) throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (Record record : records) {
+            record.appendTo(text);
+            apply(open, pending, record);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+        linesSinceCompaction += records.size();
+    }
+
+    /**
+     * Rewrites the journal with one line per open session and unacknowledged orphan, and swaps it
+     * in atomically
+     */
+    private void compact() throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        StringBuilder text = new StringBuilder();
+        for (Record session : open.values()) {
+            session.appendTo(text);
+        }
+        for (Record orphan : pending.values()) {
+            orphan.appendTo(text);
+        }
+        new Record(System.currentTimeMillis(), HEARTBEAT, null, null, null, null).appendTo(text);
+
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            out.force(true);
+        }
+        channel.close();
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        linesSinceCompaction = 0;
+    }
+
+    private static void apply(Map<String, Record> sessions, Map<String, Record> orphans, Record record) {
+        switch (record.type) {
+            case OPEN:
+                sessions.put(record.uuid, record);
+                break;
+            case SWITCH:
+                Record session = sessions.get(record.uuid);
+                if (session != null) {
+                    sessions.put(record.uuid, new Record(session.time, OPEN, session.uuid, session.username,
+                        session.ip, record.server));
+                }
+                break;
+            case CLOSE:
+                sessions.remove(record.uuid);
+                break;
+            case PENDING:
+                orphans.put(pendingKey(record.uuid, record.start), record);
+                break;
+            case ACKNOWLEDGED:
+                orphans.remove(pendingKey(record.uuid, record.start));
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * A player can have orphans from more than one crash, told apart by when the session started
+     */
+    private static String pendingKey(String uuid, long start) {
+        return uuid + '@' + start;
+    }
+
+    /**
+     * One journal line: time, type, then the fields the type uses, tab separated. Pending and
+     * acknowledged records also carry the start of the orphaned session.
+     */
+    private static class Record {
+        private final long time;
+        private final String type;
+        private final String uuid;
+        private final String username;
+        private final String ip;
+        private final String server;
+        private final long start;
+
+        Record(long time, String type, String uuid, String username, String ip, String server) {
+            this(time, type, uuid, username, ip, server, 0);
+        }
+
+        Record(long time, String type, String uuid, String username, String ip, String server, long start) {
+            this.time = time;
+            this.type = type;
+            this.uuid = uuid;
+            this.username = username;
+            this.ip = ip;
+            this.server = server;
+            this.start = start;
+        }
+
+        void appendTo(StringBuilder text) {
+            text.append(time).append('\t').append(type);
+            switch (type) {
+                case OPEN:
+                    text.append('\t').append(uuid).append('\t').append(username)
+                        .append('\t').append(ip).append('\t').append(server);
+                    break;
+                case SWITCH:
+                    text.append('\t').append(uuid).append('\t').append(server);
+                    break;
+                case CLOSE:
+                    text.append('\t').append(uuid);
+                    break;
+                case PENDING:
+                    text.append('\t').append(uuid).append('\t').append(username)
+                        .append('\t').append(ip).append('\t').append(server).append('\t').append(start);
+                    break;
+                case ACKNOWLEDGED:
+                    text.append('\t').append(uuid).append('\t').append(start);
+                    break;
+                default:
+                    break;
+            }
+            text.append('\n');
+        }
+
+        static Record parse(String line) {
+            String[] parts = line.split("\t", -1);
+            try {
+                long time = Long.parseLong(parts[0]);
+                switch (parts.length > 1 ? parts[1] : "") {
+                    case OPEN:
+                        return parts.length == 6 ? new Record(time, OPEN, parts[2], parts[3], parts[4], parts[5]) : null;
+                    case SWITCH:
+                        return parts.length == 4 ? new Record(time, SWITCH, parts[2], null, null, parts[3]) : null;
+                    case CLOSE:
+                        return parts.length == 3 ? new Record(time, CLOSE, parts[2], null, null, null) : null;
+                    case PENDING:
+                        return parts.length == 7
+                            ? new Record(time, PENDING, parts[2], parts[3], parts[4], parts[5], Long.parseLong(parts[6]))
+                            : null;
+                    case ACKNOWLEDGED:
+                        return parts.length == 4
+                            ? new Record(time, ACKNOWLEDGED, parts[2], null, null, null, Long.parseLong(parts[3]))
+                            : null;
+                    case HEARTBEAT:
+                        return parts.length == 2 ? new Record(time, HEARTBEAT, null, null, null, null) : null;
+                    default:
+                        return null;
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+}
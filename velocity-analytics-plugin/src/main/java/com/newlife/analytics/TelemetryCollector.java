@@ -0,0 +1,373 @@
+package com.newlife.analytics;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonWriter;
+import org.slf4j.Logger;
+
+import java.io.*;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Ships the reports Paper backends forward over plugin messaging (TPS, chunks, lag alerts, lag
+ * budgets) to the bot's ingest endpoint, merged into one gzipped request every flushMs.
+ *
+ * A single sender thread posts through one HttpClient, so the bot sees one kept-alive connection
+ * however many backends there are. A TPS report or lag budget still waiting when the same backend
+ * sends a newer one is replaced, since only the latest matters. At most capacity reports wait;
+ * beyond that the oldest is dropped. A failed batch is put back in front of the queue and retried
+ * on the next flush. Against a bot without the ingest endpoint every report is posted to its own
+ * path instead.
+ */
+public class TelemetryCollector {
+
+    private static final String INGEST_PATH = "/api/analytics/ingest";
+    private static final Set<String> FORWARDED_PATHS = Set.of(
+        "/api/analytics/tps", "/api/analytics/chunks", "/api/analytics/lag-alert", "/api/analytics/lag-budget");
+    private static final Set<String> LATEST_ONLY = Set.of("/api/analytics/tps", "/api/analytics/lag-budget");
+    private static final int MAX_BATCH = 500;
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+    private static final Gson GSON = new Gson();
+
+    private final Logger logger;
+    private final String apiUrl;
+    private final String apiKey;
+    private final long flushMs;
+    private final int capacity;
+    private final boolean debug;
+    private final HttpClient client;
+    private final Thread sender;
+    private volatile boolean running = true;
+    // Cleared when the bot predates the ingest endpoint
+    private volatile boolean ingestEndpoint = true;
+
+    // Guarded by this
+    private final Deque<Report> queue = new ArrayDeque<>();
+    private final Map<String, Report> latest = new HashMap<>();
+    private long received = 0;
+    private long shipped = 0;
+    private long coalesced = 0;
+    private long dropped = 0;
+    private long rejected = 0;
+    private long malformed = 0;
+    private long posts = 0;
+    private long failedPosts = 0;
+    private long rawBytes = 0;
+    private long sentBytes = 0;
+
+    public TelemetryCollector(Logger logger, String apiUrl, String apiKey, long flushMs, int capacity, boolean debug) {
+        this.logger = logger;
+        this.apiUrl = apiUrl;
+        this.apiKey = apiKey;
+        this.flushMs = Math.max(100, flushMs);
+        this.capacity = Math.max(10, capacity);
+        this.debug = debug;
+        this.client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(TIMEOUT)
+            .build();
+        this.sender = new Thread(this::run, "NewLifeAnalytics-Telemetry");
+        this.sender.setDaemon(true);
+    }
+
+    public void start() {
+        sender.start();
+    }
+
+    /**
+     * Sends what is queued one last time and stops the sender
+     */
+    public void shutdown() {
+        running = false;
+        synchronized (this) {
+            notifyAll();
+        }
+        try {
+            sender.join(TIMEOUT.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Queues a report a backend forwarded. Called on the proxy's network threads, so the gzipped
+     * body is only stored here and unpacked by the sender.
+     */
+    public synchronized void accept(String backend, String path, String contentType, byte[] gzippedBody) {
+        if (!FORWARDED_PATHS.contains(path)) {
+            rejected++;
+            if (debug) {
+                logger.warn("Ignoring forwarded report for {} from {}", path, backend);
+            }
+            return;
+        }
+        received++;
+        Report report = new Report(backend, path, contentType, gzippedBody);
+        if (LATEST_ONLY.contains(path)) {
+            Report waiting = latest.get(report.key());
+            if (waiting != null) {
+                waiting.replaceWith(report);
+                coalesced++;
+                return;
+            }
+            latest.put(report.key(), report);
+        }
+        if (queue.size() >= capacity) {
+            drop(queue.pollFirst());
+        }
+        queue.addLast(report);
+    }
+
+    public synchronized Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("queueDepth", queue.size());
+        metrics.put("queueCapacity", capacity);
+        metrics.put("received", received);
+        metrics.put("shipped", shipped);
+        metrics.put("coalesced", coalesced);
+        metrics.put("dropped", dropped);
+        metrics.put("rejected", rejected);
+        metrics.put("malformed", malformed);
+        metrics.put("posts", posts);
+        metrics.put("failedPosts", failedPosts);
+        metrics.put("rawBytes", rawBytes);
+        metrics.put("sentBytes", sentBytes);
+        metrics.put("endpoint", ingestEndpoint ? "ingest" : "per-report");
+        return metrics;
+    }
+
+    private void drop(Report report) {
+        dropped++;
+        latest.remove(report.key(), report);
+    }
+
+    private void run() {
+        while (true) {
+            List<Report> batch;
+            synchronized (this) {
+                long deadline = System.currentTimeMillis() + flushMs;
+                long wait;
+                while (running && (wait = deadline - System.currentTimeMillis()) > 0) {
+                    try {
+                        wait(wait);
+                    } catch (InterruptedException e) {
+                        running = false;
+                    }
+                }
+                batch = take();
+                if (batch.isEmpty() && !running) {
+                    return;
+                }
+            }
+            if (!batch.isEmpty() && !send(batch)) {
+                requeue(batch);
+                if (!running) {
+                    return; // the bot is unreachable; don't hold up the proxy shutdown
+                }
+            }
+        }
+    }
+
+    private List<Report> take() {
+        List<Report> batch = new ArrayList<>(Math.min(queue.size(), MAX_BATCH));
+        while (batch.size() < MAX_BATCH && !queue.isEmpty()) {
+            Report report = queue.pollFirst();
+            latest.remove(report.key(), report);
+            batch.add(report);
+        }
+        return batch;
+    }
+
+    /**
+     * Puts a failed batch back in front, keeping order; newer latest-only reports that arrived
+     * meanwhile win over their retried copies
+     */
+    private synchronized void requeue(List<Report> batch) {
+        failedPosts++;
+        for (int i = batch.size() - 1; i >= 0; i--) {
+            Report report = batch.get(i);
+            if (LATEST_ONLY.contains(report.path)) {
+                if (latest.containsKey(report.key())) {
+                    coalesced++;
+                    continue;
+                }
+                latest.put(report.key(), report);
+            }
+            if (queue.size() >= capacity) {
+                drop(report);
+                continue;
+            }
+            queue.addFirst(report);
+        }
+    }
+
+    private boolean send(List<Report> batch) {
+        try {
+            if (ingestEndpoint) {
+                try {
+                    sendIngest(batch);
+                    return true;
+                } catch (ApiClient.HttpStatusException e) {
+                    if (e.getStatusCode() != 404) {
+                        throw e;
+                    }
+                    ingestEndpoint = false;
+                    logger.warn("Bot has no ingest endpoint, posting forwarded reports one by one");
+                }
+            }
+            sendEach(batch);
+            return true;
+        } catch (IOException e) {
+            if (debug) {
+                logger.error("Failed to ship {} forwarded reports", batch.size(), e);
+            }
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void sendIngest(List<Report> batch) throws IOException, InterruptedException {
+        long raw = 0;
+        int written = 0;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(8192);
+        try (JsonWriter json = new JsonWriter(new OutputStreamWriter(new GZIPOutputStream(bytes), StandardCharsets.UTF_8))) {
+            json.beginObject().name("reports").beginArray();
+            for (Report report : batch) {
+                byte[] body;
+                JsonElement parsed = null;
+                boolean isJson = report.contentType.startsWith("application/json");
+                try {
+                    body = report.body();
+                    if (isJson) {
+                        parsed = JsonParser.parseString(new String(body, StandardCharsets.UTF_8));
+                    }
+                } catch (IOException | JsonParseException e) {
+                    // Retrying cannot fix a corrupt report, so only this one is lost
+                    malformed(report);
+                    continue;
+                }
+                raw += body.length;
+                written++;
+                json.beginObject();
+                json.name("backend").value(report.backend);
+                json.name("path").value(report.path);
+                json.name("receivedAt").value(report.receivedAt);
+                if (isJson) {
+                    json.name("body");
+                    GSON.toJson(parsed, json);
+                } else {
+                    json.name("contentType").value(report.contentType);
+                    json.name("bodyBase64").value(Base64.getEncoder().encodeToString(body));
+                }
+                json.endObject();
+            }
+            json.endArray().endObject();
+        }
+
+        HttpRequest request = HttpRequest.newBuilder(URI.create(apiUrl + INGEST_PATH))
+            .timeout(TIMEOUT)
+            .header("Content-Type", "application/json")
+            .header("Content-Encoding", "gzip")
+            .header("Authorization", "Bearer " + apiKey)
+            .POST(HttpRequest.BodyPublishers.ofByteArray(bytes.toByteArray()))
+            .build();
+        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() < 200 || response.statusCode() >= 300) {
+            throw new ApiClient.HttpStatusException(response.statusCode());
+        }
+
+        synchronized (this) {
+            posts++;
+            shipped += written;
+            rawBytes += raw;
+            sentBytes += bytes.size();
+        }
+        if (debug) {
+            logger.info("Shipped {} forwarded reports ({} bytes, {} gzipped)", written, raw, bytes.size());
+        }
+    }
+
+    /**
+     * Fallback for bots without the ingest endpoint. Reports already posted are not repeated when
+     * a later one fails.
+     */
+    private void sendEach(List<Report> batch) throws IOException {
+        Iterator<Report> it = batch.iterator();
+        while (it.hasNext()) {
+            Report report = it.next();
+            byte[] body;
+            try {
+                body = report.body();
+            } catch (IOException e) {
+                malformed(report);
+                it.remove();
+                continue;
+            }
+            try {
+                ApiClient.post(apiUrl + report.path, apiKey, report.contentType, body);
+            } catch (ApiClient.HttpStatusException e) {
+                // The bot refused this report; retrying won't change that
+                logger.warn("Bot rejected forwarded {} report from {}: {}", report.path, report.backend, e.getMessage());
+            }
+            it.remove();
+            synchronized (this) {
+                posts++;
+                shipped++;
+                rawBytes += body.length;
+                sentBytes += body.length;
+            }
+        }
+    }
+
+    private synchronized void malformed(Report report) {
+        malformed++;
+        logger.warn("Dropping malformed {} report from {}", report.path, report.backend);
+    }
+
+    /**
+     * One forwarded report, kept gzipped as it arrived
+     */
+    private static class Report {
+        private final String backend;
+        private final String path;
+        private String contentType;
+        private byte[] gzippedBody;
+        private long receivedAt;
+
+        Report(String backend, String path, String contentType, byte[] gzippedBody) {
+            this.backend = backend;
+            this.path = path;
+            this.contentType = contentType;
+            this.gzippedBody = gzippedBody;
+            this.receivedAt = System.currentTimeMillis();
+        }
+
+        String key() {
+            return backend + path;
+        }
+
+        void replaceWith(Report newer) {
+            contentType = newer.contentType;
+            gzippedBody = newer.gzippedBody;
+            receivedAt = newer.receivedAt;
+        }
+
+        byte[] body() throws IOException {
+            try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(gzippedBody))) {
+                return in.readAllBytes();
+            }
+        }
+    }
+}
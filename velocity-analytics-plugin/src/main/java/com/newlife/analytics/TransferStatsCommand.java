@@ -0,0 +1,51 @@
+package com.newlife.analytics;
+
+import com.velocitypowered.api.command.SimpleCommand;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
+
+import java.util.Map;
+
+/**
+ * /transferstats - backend transfer success rates and latency of the last report window
+ */
+public class TransferStatsCommand implements SimpleCommand {
+
+    private final NewLifeAnalytics plugin;
+
+    public TransferStatsCommand(NewLifeAnalytics plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void execute(Invocation invocation) {
+        var source = invocation.source();
+        TransferTracker tracker = plugin.getTransferTracker();
+        Map<String, Map<String, Object>> window = tracker.lastWindow();
+        if (window.isEmpty()) {
+            source.sendMessage(Component.text("No transfers in the last report window.", NamedTextColor.RED));
+            return;
+        }
+
+        source.sendMessage(Component.text("Transfers by target server (last " + tracker.getLastWindowSeconds() + "s)", NamedTextColor.GOLD));
+        for (Map.Entry<String, Map<String, Object>> entry : window.entrySet()) {
+            Map<String, Object> s = entry.getValue();
+            Map<String, Object> total = (Map<String, Object>) s.get("totalMs");
+            int failures = (int) s.get("failures");
+            source.sendMessage(Component.text()
+                .append(Component.text("  " + entry.getKey() + ": ", NamedTextColor.WHITE))
+                .append(Component.text(String.format("%s ok, ", s.get("successes")), NamedTextColor.GRAY))
+                .append(Component.text(failures + " failed " + (failures > 0 ? s.get("failureReasons") + " " : ""),
+                    failures > 0 ? NamedTextColor.RED : NamedTextColor.GRAY))
+                .append(Component.text(String.format("- p50 %sms, p90 %sms, p99 %sms, max %sms",
+                    total.get("p50"), total.get("p90"), total.get("p99"), total.get("max")), NamedTextColor.GRAY))
+                .build());
+        }
+    }
+
+    @Override
+    public boolean hasPermission(Invocation invocation) {
+        return invocation.source().hasPermission("newlife.analytics.transfers");
+    }
+}
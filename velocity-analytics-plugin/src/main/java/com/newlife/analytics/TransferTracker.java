@@ -0,0 +1,195 @@
+package com.newlife.analytics;
+
+import org.slf4j.Logger;
+
+import java.util.*;
+
+/**
+ * Times every move onto a backend, from ServerPreConnectEvent to ServerConnectedEvent (the backend
+ * accepted the login) and to ServerPostConnectEvent (the player is fully on it), per target backend.
+ * Initial connections and switches between backends are both counted.
+ *
+ * A transfer fails when the backend kicks the player while connecting, the player disconnects
+ * first, or nothing completes it within PENDING_TIMEOUT_MS. Transfers slower than slowMs are kept
+ * as outliers for the next report.
+ */
+public class TransferTracker {
+
+    private static final long PENDING_TIMEOUT_MS = 60_000;
+    private static final int MAX_OUTLIERS_REPORTED = 50;
+
+    private final Logger logger;
+    private final long slowMs;
+
+    // Guarded by this
+    private final Map<UUID, Pending> pending = new HashMap<>();
+    private Map<String, Backend> backends = new HashMap<>();
+    private Map<String, Backend> lastBackends = new HashMap<>();
+    private final List<Map<String, Object>> outliers = new ArrayList<>();
+    private long windowStart = System.currentTimeMillis();
+    private long lastWindowMs = 0;
+
+    public TransferTracker(Logger logger, long slowMs) {
+        this.logger = logger;
+        this.slowMs = Math.max(1, slowMs);
+    }
+
+    public synchronized void preConnect(UUID uuid, String username, String target, String previous) {
+        Pending stale = pending.put(uuid, new Pending(username, target, previous));
+        if (stale != null) {
+            fail(stale, "superseded"); // a new attempt started before the last one finished
+        }
+    }
+
+    public synchronized void connected(UUID uuid, String server) {
+        Pending transfer = pending.get(uuid);
+        if (transfer != null && transfer.target.equals(server)) {
+            transfer.connectedNanos = System.nanoTime();
+        }
+    }
+
+    public synchronized void postConnect(UUID uuid) {
+        Pending transfer = pending.remove(uuid);
+        if (transfer == null) {
+            return;
+        }
+        long end = System.nanoTime();
+        long connectMs = ((transfer.connectedNanos != 0 ? transfer.connectedNanos : end) - transfer.startNanos) / 1_000_000;
+        long totalMs = (end - transfer.startNanos) / 1_000_000;
+
+        Backend backend = backend(transfer.target);
+        backend.successes++;
+        backend.connect.record(connectMs);
+        backend.total.record(totalMs);
+
+        if (totalMs >= slowMs) {
+            if (outliers.size() < MAX_OUTLIERS_REPORTED) {
+                Map<String, Object> outlier = new LinkedHashMap<>();
+                outlier.put("username", transfer.username);
+                outlier.put("from", transfer.previous != null ? transfer.previous : "login");
+                outlier.put("to", transfer.target);
+                outlier.put("connectMs", connectMs);
+                outlier.put("totalMs", totalMs);
+                outliers.add(outlier);
+            }
+            logger.info("Slow transfer of {} to {}: {}ms ({}ms until the backend accepted)",
+                transfer.username, transfer.target, totalMs, connectMs);
+        }
+    }
+
+    /**
+     * The backend kicked the player during the connection
+     */
+    public synchronized void kicked(UUID uuid, String server) {
+        Pending transfer = pending.get(uuid);
+        if (transfer != null && transfer.target.equals(server)) {
+            pending.remove(uuid);
+            fail(transfer, "kicked");
+        }
+    }
+
+    public synchronized void disconnected(UUID uuid) {
+        Pending transfer = pending.remove(uuid);
+        if (transfer != null) {
+            fail(transfer, "disconnected");
+        }
+    }
+
+    private void fail(Pending transfer, String reason) {
+        Backend backend = backend(transfer.target);
+        backend.failures++;
+        backend.failureReasons.merge(reason, 1, Integer::sum);
+    }
+
+    /**
+     * Closes the current window and returns it as a report: per backend attempts, failures and
+     * latency percentiles, plus the slow outliers
+     */
+    public synchronized Map<String, Object> rollWindow() {
+        long now = System.currentTimeMillis();
+        long nanoNow = System.nanoTime();
+        Iterator<Pending> it = pending.values().iterator();
+        while (it.hasNext()) {
+            Pending transfer = it.next();
+            if ((nanoNow - transfer.startNanos) / 1_000_000 > PENDING_TIMEOUT_MS) {
+                it.remove();
+                fail(transfer, "timeout");
+            }
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("windowSeconds", (now - windowStart) / 1000);
+        report.put("servers", summaries(backends));
+        report.put("slow", new ArrayList<>(outliers));
+        outliers.clear();
+
+        Map<String, Backend> reuse = lastBackends;
+        lastBackends = backends;
+        reuse.values().forEach(Backend::reset);
+        backends = reuse;
+        lastWindowMs = now - windowStart;
+        windowStart = now;
+        return report;
+    }
+
+    public synchronized Map<String, Map<String, Object>> lastWindow() {
+        return summaries(lastBackends);
+    }
+
+    public synchronized long getLastWindowSeconds() {
+        return lastWindowMs / 1000;
+    }
+
+    private Backend backend(String name) {
+        return backends.computeIfAbsent(name, k -> new Backend());
+    }
+
+    private static Map<String, Map<String, Object>> summaries(Map<String, Backend> backends) {
+        Map<String, Map<String, Object>> result = new TreeMap<>();
+        for (Map.Entry<String, Backend> entry : backends.entrySet()) {
+            Backend backend = entry.getValue();
+            if (backend.successes + backend.failures == 0) {
+                continue;
+            }
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("attempts", backend.successes + backend.failures);
+            summary.put("successes", backend.successes);
+            summary.put("failures", backend.failures);
+            summary.put("failureReasons", new TreeMap<>(backend.failureReasons));
+            summary.put("connectMs", backend.connect.summary());
+            summary.put("totalMs", backend.total.summary());
+            result.put(entry.getKey(), summary);
+        }
+        return result;
+    }
+
+    private static class Pending {
+        private final String username;
+        private final String target;
+        private final String previous;
+        private final long startNanos = System.nanoTime();
+        private long connectedNanos = 0;
+
+        Pending(String username, String target, String previous) {
+            this.username = username;
+            this.target = target;
+            this.previous = previous;
+        }
+    }
+
+    private static class Backend {
+        private int successes = 0;
+        private int failures = 0;
+        private final Map<String, Integer> failureReasons = new HashMap<>();
+        private final LatencyHistogram connect = new LatencyHistogram();
+        private final LatencyHistogram total = new LatencyHistogram();
+
+        void reset() {
+            successes = 0;
+            failures = 0;
+            failureReasons.clear();
+            connect.reset();
+            total.reset();
+        }
+    }
+}
@@ -1,16 +1,20 @@
 package com.newlifesmp.bans;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import org.slf4j.Logger;
 
+import java.io.IOException;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
+import java.time.Instant;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 public class BanApiClient {
 
@@ -70,7 +74,8 @@ public class BanApiClient {
                                     data.has("remaining") ? data.get("remaining").getAsString() : "Unknown",
                                     data.has("caseNumber") ? data.get("caseNumber").getAsInt() : 0,
                                     data.has("staffTag") ? data.get("staffTag").getAsString() : "Staff",
-                                    null
+                                    null,
+                                    parseTime(data.get("expiresAt"))
                                 );
                             }
                             
@@ -92,6 +97,58 @@ public class BanApiClient {
             });
     }
 
+    /**
+     * Every active ban, for bootstrapping the local replica
+     * @return { success, cursor, bans: [...] }; fails on a connection error or non-200 response
+     */
+    public CompletableFuture<JsonObject> fetchBanSnapshot() {
+        return getJson("/api/bans/snapshot");
+    }
+
+    /**
+     * Bans created or changed since the cursor of a snapshot or an earlier call
+     * @return { success, cursor, more, reset, changes: [...] }; fails on a connection error or non-200 response
+     */
+    public CompletableFuture<JsonObject> fetchBanChanges(long cursor) {
+        return getJson("/api/bans/changes?since=" + cursor);
+    }
+
+    private CompletableFuture<JsonObject> getJson(String path) {
+        HttpRequest request = HttpRequest.newBuilder()
+            .uri(URI.create(baseUrl + path))
+            .header("Authorization", "Bearer " + apiKey)
+            .header("Content-Type", "application/json")
+            .timeout(Duration.ofMillis(timeout))
+            .GET()
+            .build();
+
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+            .thenApply(response -> {
+                if (response.statusCode() != 200) {
+                    throw new CompletionException(new IOException("API error: " + response.statusCode()));
+                }
+                JsonObject json = gson.fromJson(response.body(), JsonObject.class);
+                if (json == null || !json.has("success") || !json.get("success").getAsBoolean()) {
+                    throw new CompletionException(new IOException("API returned non-success response"));
+                }
+                return json;
+            });
+    }
+
+    /**
+     * Epoch millis of an ISO-8601 date from the API, or 0 if it is missing or malformed
+     */
+    static long parseTime(JsonElement value) {
+        if (value == null || value.isJsonNull()) {
+            return 0;
+        }
+        try {
+            return Instant.parse(value.getAsString()).toEpochMilli();
+        } catch (RuntimeException e) {
+            return 0;
+        }
+    }
+
     /**
      * Health check for the API
      */
@@ -123,10 +180,17 @@ public class BanApiClient {
         private final int caseNumber;
         private final String staffTag;
         private final String error;
+        private final long expiresAt;
 
         public BanResult(boolean success, boolean banned, String reason, String duration,
                         boolean isPermanent, String remaining, int caseNumber, 
                         String staffTag, String error) {
+            this(success, banned, reason, duration, isPermanent, remaining, caseNumber, staffTag, error, 0);
+        }
+
+        public BanResult(boolean success, boolean banned, String reason, String duration,
+                        boolean isPermanent, String remaining, int caseNumber,
+                        String staffTag, String error, long expiresAt) {
             this.success = success;
             this.banned = banned;
             this.reason = reason;
@@ -136,6 +200,7 @@ public class BanApiClient {
             this.caseNumber = caseNumber;
             this.staffTag = staffTag;
             this.error = error;
+            this.expiresAt = expiresAt;
         }
 
         public boolean isSuccess() {
@@ -158,10 +223,34 @@ public class BanApiClient {
             return isPermanent;
         }
 
+        /**
+         * Time left on the ban, counted from now when the expiry is known so a cached result
+         * stays accurate
+         */
         public String getRemaining() {
+            if (expiresAt > 0 && !isPermanent) {
+                long diff = expiresAt - System.currentTimeMillis();
+                if (diff <= 0) {
+                    return "Expired";
+                }
+                long days = diff / 86_400_000L;
+                long hours = diff % 86_400_000L / 3_600_000L;
+                long minutes = diff % 3_600_000L / 60_000L;
+                if (days > 0) {
+                    return days + "d " + hours + "h";
+                }
+                return hours > 0 ? hours + "h " + minutes + "m" : minutes + "m";
+            }
             return remaining != null ? remaining : "Unknown";
         }
 
+        /**
+         * Epoch millis the ban ends, 0 if permanent or unknown
+         */
+        public long getExpiresAt() {
+            return expiresAt;
+        }
+
         public int getCaseNumber() {
             return caseNumber;
         }
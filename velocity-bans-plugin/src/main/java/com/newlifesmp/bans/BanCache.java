@@ -0,0 +1,120 @@
+package com.newlifesmp.bans;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Remembers recent ban check results so a player who rejoins often costs no API call.
+ *
+ * "Not banned" results are kept for the not-banned TTL. Ban results are kept for the banned TTL,
+ * but never past the ban's own expiry, so a temporary ban ends on time. Failed checks are never
+ * cached. The least recently used entry is evicted beyond maxEntries. The bot drops entries
+ * through the /invalidate endpoint when it bans or unbans someone, so a new ban takes effect
+ * before the TTL runs out. Every invalidation bumps a generation; a result is only stored if no
+ * invalidation happened since its check began, so a check that raced a ban can't re-cache
+ * "not banned".
+ */
+public class BanCache {
+
+    private final long notBannedTtlMs;
+    private final long bannedTtlMs;
+    private final Map<String, Entry> entries;
+    private long hits = 0;
+    private long misses = 0;
+    private long generation = 0;
+
+    public BanCache(int notBannedTtlSeconds, int bannedTtlSeconds, int maxEntries) {
+        this.notBannedTtlMs = Math.max(0, notBannedTtlSeconds) * 1000L;
+        this.bannedTtlMs = Math.max(0, bannedTtlSeconds) * 1000L;
+        int capacity = Math.max(1, maxEntries);
+        this.entries = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * The cached result for the UUID, or null if there is none or it has expired
+     */
+    public synchronized BanApiClient.BanResult get(String uuid) {
+        String key = normalize(uuid);
+        Entry entry = entries.get(key);
+        if (entry == null || entry.expiresAt <= System.currentTimeMillis()) {
+            if (entry != null) {
+                entries.remove(key);
+            }
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.result;
+    }
+
+    /**
+     * The current invalidation generation; read it before starting a check and pass it to put
+     */
+    public synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * Stores a check result, unless it failed or an invalidation happened after the check began
+     */
+    public synchronized void put(String uuid, BanApiClient.BanResult result, long checkGeneration) {
+        if (!result.isSuccess() || checkGeneration != generation) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long expiresAt;
+        if (result.isBanned()) {
+            expiresAt = now + bannedTtlMs;
+            if (!result.isPermanent() && result.getExpiresAt() > 0) {
+                expiresAt = Math.min(expiresAt, result.getExpiresAt());
+            }
+        } else {
+            expiresAt = now + notBannedTtlMs;
+        }
+        if (expiresAt > now) {
+            entries.put(normalize(uuid), new Entry(result, expiresAt));
+        }
+    }
+
+    public synchronized void invalidate(String uuid) {
+        generation++;
+        entries.remove(normalize(uuid));
+    }
+
+    public synchronized void clear() {
+        generation++;
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    private static String normalize(String uuid) {
+        return uuid.replace("-", "").toLowerCase(Locale.ROOT);
+    }
+
+    private static class Entry {
+        private final BanApiClient.BanResult result;
+        private final long expiresAt;
+
+        Entry(BanApiClient.BanResult result, long expiresAt) {
+            this.result = result;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.newlifesmp.bans;
 
+import com.velocitypowered.api.event.EventTask;
 import com.velocitypowered.api.event.ResultedEvent;
 import com.velocitypowered.api.event.Subscribe;
 import com.velocitypowered.api.event.connection.LoginEvent;
@@ -7,7 +8,8 @@ import com.velocitypowered.api.proxy.Player;
 import net.kyori.adventure.text.minimessage.MiniMessage;
 import net.kyori.adventure.text.Component;
 
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.Map;
@@ -25,8 +27,13 @@ public class BanCheckListener {
         this.miniMessage = MiniMessage.miniMessage();
     }
 
+    /**
+     * Checks kick cooldowns and bans. With the ban replica loaded the check is local; otherwise an
+     * API call suspends the login through an EventTask instead of blocking, so a join wave does not
+     * tie up Velocity's event threads.
+     */
     @Subscribe
-    public void onPlayerLogin(LoginEvent event) {
+    public EventTask onPlayerLogin(LoginEvent event) {
         Player player = event.getPlayer();
         String uuid = player.getUniqueId().toString();
         String username = player.getUsername();
@@ -43,7 +50,7 @@ public class BanCheckListener {
             if (config.isDebug()) {
                 plugin.getLogger().info("[DEBUG] Player {} has bypass permission, skipping checks", username);
             }
-            return;
+            return null;
         }
 
         // Check kick cooldown first (30 minutes)
@@ -74,67 +81,110 @@ public class BanCheckListener {
                 
                 plugin.getLogger().info("Denied kicked player {} - cooldown: {}m {}s remaining", 
                     username, minutes, seconds);
-                return;
+                return null;
             } else {
                 // Cooldown expired, remove from map
                 kickCooldowns.remove(uuid);
             }
         }
 
-        // Check ban status via API
-        try {
-            BanApiClient.BanResult result = plugin.getApiClient()
-                .checkBan(uuid)
-                .get(config.getTimeout() + 1000, TimeUnit.MILLISECONDS);
+        // Check ban status against the local replica once it has loaded
+        BanReplica replica = plugin.getBanReplica();
+        BanApiClient.BanResult local = replica != null ? replica.check(player.getUniqueId()) : null;
+        if (local != null) {
+            applyBanResult(event, local, "replica");
+            return null;
+        }
 
-            if (config.isDebug()) {
-                plugin.getLogger().info("[DEBUG] Ban check for {}: success={}, banned={}", 
-                    username, result.isSuccess(), result.isBanned());
-            }
+        // Otherwise from the cache when a recent answer is still fresh
+        BanCache cache = plugin.getBanCache();
+        BanApiClient.BanResult cached = cache != null ? cache.get(uuid) : null;
+        if (cached != null) {
+            applyBanResult(event, cached, "cache");
+            return null;
+        }
 
-            if (!result.isSuccess()) {
-                // API error - let them through (fail-open for bans)
-                plugin.getLogger().warn("Ban API check failed for {}: {}", username, 
-                    result.getError().orElse("Unknown error"));
-                return;
-            }
+        // Ask the API without holding an event thread; Velocity resumes the login once the answer is in
+        long generation = cache != null ? cache.generation() : 0;
+        CompletableFuture<Void> check = plugin.getApiClient()
+            .checkBan(uuid)
+            .orTimeout(config.getTimeout() + 1000, TimeUnit.MILLISECONDS)
+            .handle((result, error) -> {
+                if (error != null) {
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                    if (cause instanceof TimeoutException) {
+                        plugin.getLogger().warn("Ban check timed out for {}", username);
+                    } else {
+                        plugin.getLogger().error("Ban check execution failed for {}", username, cause);
+                    }
+                    // Fail-open unless the replica is set to fail closed
+                    denyIfFailClosed(event);
+                    return null;
+                }
+                if (cache != null) {
+                    cache.put(uuid, result, generation);
+                }
+                applyBanResult(event, result, "api");
+                return null;
+            });
+        return EventTask.resumeWhenComplete(check);
+    }
 
-            if (result.isBanned()) {
-                // Player is banned - deny entry
-                plugin.getLogger().info("Denied banned player: {} ({})", username, uuid);
-                
-                String kickMessage = config.getBannedMessage()
-                    .replace("{reason}", result.getReason())
-                    .replace("{duration}", result.getDuration())
-                    .replace("{expires}", result.isPermanent() ? "Never (Permanent)" : result.getRemaining())
-                    .replace("{case}", String.valueOf(result.getCaseNumber()))
-                    .replace("{staff}", result.getStaffTag());
-                
-                Component kickComponent = miniMessage.deserialize(kickMessage);
-                event.setResult(ResultedEvent.ComponentResult.denied(kickComponent));
-                return;
-            }
+    private void applyBanResult(LoginEvent event, BanApiClient.BanResult result, String source) {
+        Player player = event.getPlayer();
+        String uuid = player.getUniqueId().toString();
+        String username = player.getUsername();
+        BanConfig config = plugin.getConfig();
 
-            // Player is not banned - allow
-            if (config.isDebug()) {
-                plugin.getLogger().info("[DEBUG] Player {} is not banned, allowing", username);
-            }
+        if (config.isDebug()) {
+            plugin.getLogger().info("[DEBUG] Ban check for {}: success={}, banned={}, source={}", 
+                username, result.isSuccess(), result.isBanned(), source);
+        }
 
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            plugin.getLogger().error("Ban check interrupted for {}", username);
-            // Fail-open: allow player through
+        if (!result.isSuccess()) {
+            // API error - let them through (fail-open for bans) unless the replica fails closed
+            plugin.getLogger().warn("Ban API check failed for {}: {}", username, 
+                result.getError().orElse("Unknown error"));
+            denyIfFailClosed(event);
+            return;
+        }
+
+        if (result.isBanned()) {
+            // Player is banned - deny entry
+            plugin.getLogger().info("Denied banned player: {} ({})", username, uuid);
             
-        } catch (ExecutionException e) {
-            plugin.getLogger().error("Ban check execution failed for {}", username, e.getCause());
-            // Fail-open: allow player through
+            String kickMessage = config.getBannedMessage()
+                .replace("{reason}", result.getReason())
+                .replace("{duration}", result.getDuration())
+                .replace("{expires}", result.isPermanent() ? "Never (Permanent)" : result.getRemaining())
+                .replace("{case}", String.valueOf(result.getCaseNumber()))
+                .replace("{staff}", result.getStaffTag());
             
-        } catch (TimeoutException e) {
-            plugin.getLogger().warn("Ban check timed out for {}", username);
-            // Fail-open: allow player through
+            Component kickComponent = miniMessage.deserialize(kickMessage);
+            event.setResult(ResultedEvent.ComponentResult.denied(kickComponent));
+            return;
+        }
+
+        // Player is not banned - allow
+        if (config.isDebug()) {
+            plugin.getLogger().info("[DEBUG] Player {} is not banned, allowing", username);
         }
     }
     
+    /**
+     * Denies the login when the ban status is unknown (no replica loaded yet and the API failed)
+     * and replica.fail-closed is set
+     */
+    private void denyIfFailClosed(LoginEvent event) {
+        if (plugin.getBanReplica() == null || !plugin.getConfig().isReplicaFailClosed()) {
+            return;
+        }
+        plugin.getLogger().warn("Denied {}: ban status unknown and the replica fails closed",
+            event.getPlayer().getUsername());
+        event.setResult(ResultedEvent.ComponentResult.denied(
+            miniMessage.deserialize(plugin.getConfig().getApiErrorMessage())));
+    }
+
     /**
      * Mark a player as kicked - they won't be able to rejoin for 30 minutes
      */
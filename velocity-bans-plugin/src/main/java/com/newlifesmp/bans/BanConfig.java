@@ -23,6 +23,14 @@ public class BanConfig {
     private String discordInvite;
     private String bypassPermission;
     private boolean debug;
+    private boolean cacheEnabled;
+    private int cacheNotBannedTtl;
+    private int cacheBannedTtl;
+    private int cacheMaxEntries;
+    private boolean replicaEnabled;
+    private int replicaPollSeconds;
+    private int replicaResyncMinutes;
+    private boolean replicaFailClosed;
 
     public BanConfig(Path configPath, Logger logger) throws IOException {
         this.configPath = configPath;
@@ -48,6 +56,20 @@ public class BanConfig {
             this.bannedMessage = (String) messages.getOrDefault("banned", getDefaultBannedMessage());
             this.apiErrorMessage = (String) messages.getOrDefault("api-error", getDefaultApiErrorMessage());
 
+            // Ban check cache
+            Map<String, Object> cache = (Map<String, Object>) data.getOrDefault("cache", Map.of());
+            this.cacheEnabled = (Boolean) cache.getOrDefault("enabled", true);
+            this.cacheNotBannedTtl = ((Number) cache.getOrDefault("not-banned-ttl", 300)).intValue();
+            this.cacheBannedTtl = ((Number) cache.getOrDefault("banned-ttl", 600)).intValue();
+            this.cacheMaxEntries = ((Number) cache.getOrDefault("max-entries", 10000)).intValue();
+
+            // Local ban replica
+            Map<String, Object> replica = (Map<String, Object>) data.getOrDefault("replica", Map.of());
+            this.replicaEnabled = (Boolean) replica.getOrDefault("enabled", true);
+            this.replicaPollSeconds = ((Number) replica.getOrDefault("poll-seconds", 30)).intValue();
+            this.replicaResyncMinutes = ((Number) replica.getOrDefault("resync-minutes", 360)).intValue();
+            this.replicaFailClosed = (Boolean) replica.getOrDefault("fail-closed", false);
+
             // Other settings
             this.discordInvite = (String) data.getOrDefault("discord-invite", "https://discord.gg/YKhHRCgaSv");
             this.bypassPermission = (String) data.getOrDefault("bypass-permission", "newlife.bans.bypass");
@@ -58,6 +80,10 @@ public class BanConfig {
                 logger.info("[DEBUG] API URL: {}", apiUrl);
                 logger.info("[DEBUG] Timeout: {}ms", timeout);
                 logger.info("[DEBUG] Bypass Permission: {}", bypassPermission);
+                logger.info("[DEBUG] Cache: enabled={}, not-banned-ttl={}s, banned-ttl={}s, max-entries={}",
+                    cacheEnabled, cacheNotBannedTtl, cacheBannedTtl, cacheMaxEntries);
+                logger.info("[DEBUG] Replica: enabled={}, poll-seconds={}, resync-minutes={}, fail-closed={}",
+                    replicaEnabled, replicaPollSeconds, replicaResyncMinutes, replicaFailClosed);
             }
         }
     }
@@ -143,4 +169,36 @@ public class BanConfig {
     public int getKickServerPort() {
         return kickServerPort;
     }
+
+    public boolean isCacheEnabled() {
+        return cacheEnabled;
+    }
+
+    public int getCacheNotBannedTtl() {
+        return cacheNotBannedTtl;
+    }
+
+    public int getCacheBannedTtl() {
+        return cacheBannedTtl;
+    }
+
+    public int getCacheMaxEntries() {
+        return cacheMaxEntries;
+    }
+
+    public boolean isReplicaEnabled() {
+        return replicaEnabled;
+    }
+
+    public int getReplicaPollSeconds() {
+        return replicaPollSeconds;
+    }
+
+    public int getReplicaResyncMinutes() {
+        return replicaResyncMinutes;
+    }
+
+    public boolean isReplicaFailClosed() {
+        return replicaFailClosed;
+    }
 }
@@ -56,7 +56,14 @@ public class BanInfoCommand implements SimpleCommand {
             "<gray>Checking ban status for <white>" + finalTargetName + "<gray>..."
         ));
 
+        BanCache cache = plugin.getBanCache();
+        long generation = cache != null ? cache.generation() : 0;
         plugin.getApiClient().checkBan(targetUuid).thenAccept(result -> {
+            // A fresh answer is as good as a login check; keep it for the next join
+            if (cache != null) {
+                cache.put(targetUuid, result, generation);
+            }
+
             if (!result.isSuccess()) {
                 source.sendMessage(Component.text()
                     .append(Component.text("✗ ", NamedTextColor.RED))
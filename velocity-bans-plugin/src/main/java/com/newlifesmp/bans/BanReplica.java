@@ -0,0 +1,361 @@
+package com.newlifesmp.bans;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A local copy of every active ban, so a login is checked without calling the bot and keeps being
+ * checked while the bot is down.
+ *
+ * The copy starts from the bot's snapshot and then pulls the bans created or changed since the last
+ * cursor (new bans, unbans, expiries) every few seconds. When the bot bans or unbans someone it
+ * posts to /invalidate, which pulls right away. Bans deleted outright arrive as removals through
+ * the bot's tombstones; a full snapshot every few hours catches anything missed. Bans past their
+ * expiry stop matching on their own, whether or not the bot has marked them yet.
+ *
+ * Every change builds a new immutable state (bans by id and by UUID plus a {@link UuidBloomFilter})
+ * and swaps it in, so lookups never lock. Most players are not banned and are answered by the
+ * filter alone. The state is saved to disk after each change, so a restart while the bot is
+ * unreachable still starts with the last known bans.
+ */
+public class BanReplica {
+
+    private static final BanApiClient.BanResult NOT_BANNED =
+        new BanApiClient.BanResult(true, false, null, null, false, null, 0, null, null);
+
+    private final NewLifeBans plugin;
+    private final Logger logger;
+    private final Path file;
+    private final Gson gson = new Gson();
+    private final AtomicBoolean syncing = new AtomicBoolean();
+    private final AtomicBoolean syncAgain = new AtomicBoolean();
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder filtered = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private volatile State state;
+    // Only written by the sync in flight; -1 until the first snapshot
+    private volatile long cursor = -1;
+    private volatile long lastSnapshot = 0;
+    private volatile long lastSync = 0;
+    private volatile int failures = 0;
+    private volatile String lastError;
+
+    public BanReplica(NewLifeBans plugin, Path file) {
+        this.plugin = plugin;
+        this.logger = plugin.getLogger();
+        this.file = file;
+    }
+
+    /**
+     * Loads the saved copy and starts syncing with the bot
+     */
+    public void start() {
+        load();
+        plugin.getServer().getScheduler().buildTask(plugin, this::sync)
+            .repeat(Math.max(1, plugin.getConfig().getReplicaPollSeconds()), TimeUnit.SECONDS)
+            .schedule();
+    }
+
+    public boolean isReady() {
+        return state != null;
+    }
+
+    /**
+     * The player's ban, a "not banned" result, or null if nothing has been loaded yet
+     */
+    public BanApiClient.BanResult check(UUID uuid) {
+        State current = state;
+        if (current == null) {
+            return null;
+        }
+        lookups.increment();
+        if (!current.filter.mightContain(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits())) {
+            filtered.increment();
+            return NOT_BANNED;
+        }
+        ReplicaBan ban = current.byUuid.get(normalize(uuid.toString()));
+        if (ban == null || ban.isExpired(System.currentTimeMillis())) {
+            return NOT_BANNED;
+        }
+        hits.increment();
+        return ban.toResult();
+    }
+
+    /**
+     * Pulls changes from the bot now. A call while a sync is running makes it pull once more when
+     * it is done, so a push is never lost.
+     */
+    public void sync() {
+        if (!syncing.compareAndSet(false, true)) {
+            syncAgain.set(true);
+            return;
+        }
+        syncAgain.set(false);
+
+        BanApiClient api = plugin.getApiClient();
+        long resyncMs = Math.max(1, plugin.getConfig().getReplicaResyncMinutes()) * 60_000L;
+        boolean full = cursor < 0 || System.currentTimeMillis() - lastSnapshot >= resyncMs;
+        CompletableFuture<Boolean> step = full
+            ? api.fetchBanSnapshot().thenApply(this::applySnapshot)
+            : api.fetchBanChanges(cursor).thenApply(this::applyChanges);
+
+        step.whenComplete((more, error) -> {
+            if (error != null) {
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                lastError = cause.getMessage();
+                if (failures++ == 0) {
+                    logger.warn("Ban replica sync failed, logins are checked against the last known bans: {}", lastError);
+                } else if (plugin.getConfig().isDebug()) {
+                    logger.info("[DEBUG] Ban replica sync failed ({} in a row): {}", failures, lastError);
+                }
+            } else {
+                if (failures > 0) {
+                    logger.info("Ban replica sync recovered after {} failed attempts", failures);
+                }
+                failures = 0;
+                lastError = null;
+                lastSync = System.currentTimeMillis();
+            }
+            syncing.set(false);
+            if ((error == null && more) || syncAgain.getAndSet(false)) {
+                sync();
+            }
+        });
+    }
+
+    private boolean applySnapshot(JsonObject json) {
+        Map<String, ReplicaBan> byId = new HashMap<>();
+        for (JsonElement element : json.getAsJsonArray("bans")) {
+            ReplicaBan ban = ReplicaBan.fromApi(element.getAsJsonObject());
+            byId.put(ban.id, ban);
+        }
+        install(byId, json.get("cursor").getAsLong());
+        lastSnapshot = System.currentTimeMillis();
+        if (plugin.getConfig().isDebug()) {
+            logger.info("[DEBUG] Ban replica snapshot: {} active bans", byId.size());
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the bot has more changes waiting
+     */
+    private boolean applyChanges(JsonObject json) {
+        if (json.has("reset") && json.get("reset").getAsBoolean()) {
+            // The cursor can't move past the changes waiting, or is older than the bot's
+            // tombstones; start over from a snapshot
+            cursor = -1;
+            return true;
+        }
+        long next = json.get("cursor").getAsLong();
+        boolean more = json.has("more") && json.get("more").getAsBoolean();
+        List<JsonElement> changes = new ArrayList<>();
+        json.getAsJsonArray("changes").forEach(changes::add);
+        if (changes.isEmpty()) {
+            cursor = next;
+            return more;
+        }
+
+        Map<String, ReplicaBan> byId = new HashMap<>(state.byId);
+        for (JsonElement element : changes) {
+            JsonObject change = element.getAsJsonObject();
+            if ("ban".equals(change.get("op").getAsString())) {
+                ReplicaBan ban = ReplicaBan.fromApi(change.getAsJsonObject("ban"));
+                byId.put(ban.id, ban);
+            } else {
+                byId.remove(change.get("id").getAsString());
+            }
+        }
+        install(byId, next);
+        if (plugin.getConfig().isDebug()) {
+            logger.info("[DEBUG] Ban replica applied {} changes, {} active bans", changes.size(), byId.size());
+        }
+        return more;
+    }
+
+    private void install(Map<String, ReplicaBan> byId, long newCursor) {
+        long now = System.currentTimeMillis();
+        byId.values().removeIf(ban -> ban.isExpired(now));
+        state = new State(byId);
+        cursor = newCursor;
+        save(byId.values(), newCursor);
+    }
+
+    private void load() {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            Saved saved = gson.fromJson(reader, Saved.class);
+            if (saved == null || saved.bans == null) {
+                return;
+            }
+            Map<String, ReplicaBan> byId = new HashMap<>();
+            long now = System.currentTimeMillis();
+            for (ReplicaBan ban : saved.bans) {
+                if (ban.id != null && !ban.isExpired(now)) {
+                    byId.put(ban.id, ban);
+                }
+            }
+            state = new State(byId);
+            cursor = saved.cursor;
+            logger.info("Loaded {} bans saved at {} from {}", byId.size(), Instant.ofEpochMilli(saved.savedAt),
+                file.getFileName());
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not load saved bans from {}: {}", file, e.getMessage());
+        }
+    }
+
+    private void save(Iterable<ReplicaBan> bans, long savedCursor) {
+        Saved saved = new Saved();
+        saved.cursor = savedCursor;
+        saved.savedAt = System.currentTimeMillis();
+        saved.bans = new ArrayList<>();
+        bans.forEach(saved.bans::add);
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                gson.toJson(saved, writer);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Could not save bans to {}: {}", file, e.getMessage());
+        }
+    }
+
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        State current = state;
+        status.put("loaded", current != null);
+        if (current != null) {
+            status.put("bans", current.byId.size());
+            status.put("uuids", current.byUuid.size());
+            status.put("filterBits", current.filter.sizeInBits());
+        }
+        status.put("lastSync", lastSync > 0 ? Instant.ofEpochMilli(lastSync).toString() : "never");
+        status.put("lastSnapshot", lastSnapshot > 0 ? Instant.ofEpochMilli(lastSnapshot).toString() : "never");
+        status.put("failedSyncs", failures);
+        if (lastError != null) {
+            status.put("lastError", lastError);
+        }
+        status.put("lookups", lookups.sum());
+        status.put("filtered", filtered.sum());
+        status.put("hits", hits.sum());
+        return status;
+    }
+
+    private static String normalize(String uuid) {
+        return uuid.replace("-", "").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * One version of the replica. Never changed after it is built.
+     */
+    private static class State {
+        private final Map<String, ReplicaBan> byId;
+        private final Map<String, ReplicaBan> byUuid = new HashMap<>();
+        private final UuidBloomFilter filter;
+
+        State(Map<String, ReplicaBan> byId) {
+            this.byId = byId;
+            for (ReplicaBan ban : byId.values()) {
+                for (String uuid : ban.uuids) {
+                    String key = normalize(uuid);
+                    // Discord IDs stand in for UUIDs on some bans; they can't match a player
+                    if (key.length() != 32 || !key.chars().allMatch(c -> Character.digit(c, 16) >= 0)) {
+                        continue;
+                    }
+                    byUuid.merge(key, ban, (a, b) -> a.outlasts(b) ? a : b);
+                }
+            }
+            this.filter = new UuidBloomFilter(byUuid.size());
+            for (String key : byUuid.keySet()) {
+                filter.add(Long.parseUnsignedLong(key.substring(0, 16), 16),
+                    Long.parseUnsignedLong(key.substring(16), 16));
+            }
+        }
+    }
+
+    /**
+     * One ban as the bot sends it, with dates as epoch millis. Also the saved form.
+     */
+    static class ReplicaBan {
+        String id;
+        int caseNumber;
+        List<String> uuids = new ArrayList<>();
+        String reason;
+        String duration;
+        boolean permanent;
+        long bannedAt;
+        long expiresAt;
+        String staffTag;
+
+        static ReplicaBan fromApi(JsonObject json) {
+            ReplicaBan ban = new ReplicaBan();
+            ban.id = json.get("id").getAsString();
+            ban.caseNumber = json.has("caseNumber") && !json.get("caseNumber").isJsonNull()
+                ? json.get("caseNumber").getAsInt() : 0;
+            for (JsonElement uuid : json.getAsJsonArray("uuids")) {
+                ban.uuids.add(uuid.getAsString());
+            }
+            ban.reason = string(json, "reason");
+            ban.duration = string(json, "duration");
+            ban.permanent = json.has("isPermanent") && json.get("isPermanent").getAsBoolean();
+            ban.bannedAt = BanApiClient.parseTime(json.get("bannedAt"));
+            ban.expiresAt = BanApiClient.parseTime(json.get("expiresAt"));
+            ban.staffTag = string(json, "staffTag");
+            return ban;
+        }
+
+        private static String string(JsonObject json, String key) {
+            return json.has(key) && !json.get(key).isJsonNull() ? json.get(key).getAsString() : null;
+        }
+
+        boolean isExpired(long now) {
+            return !permanent && expiresAt > 0 && expiresAt <= now;
+        }
+
+        /**
+         * Whether this ban ends no earlier than the other
+         */
+        boolean outlasts(ReplicaBan other) {
+            if (permanent || expiresAt <= 0) {
+                return true;
+            }
+            return !other.permanent && other.expiresAt > 0 && expiresAt >= other.expiresAt;
+        }
+
+        BanApiClient.BanResult toResult() {
+            return new BanApiClient.BanResult(true, true, reason, duration, permanent, null, caseNumber,
+                staffTag, null, expiresAt);
+        }
+    }
+
+    private static class Saved {
+        long cursor;
+        long savedAt;
+        List<ReplicaBan> bans;
+    }
+}
@@ -0,0 +1,49 @@
+package com.newlifesmp.bans;
+
+import com.velocitypowered.api.command.SimpleCommand;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
+
+import java.util.Map;
+
+/**
+ * /banreplica [sync] - the local ban replica's state, or pull changes from the bot now
+ */
+public class BanReplicaCommand implements SimpleCommand {
+
+    private final NewLifeBans plugin;
+
+    public BanReplicaCommand(NewLifeBans plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public void execute(Invocation invocation) {
+        var source = invocation.source();
+        String[] args = invocation.arguments();
+        BanReplica replica = plugin.getBanReplica();
+        if (replica == null) {
+            source.sendMessage(Component.text("The ban replica is disabled.", NamedTextColor.RED));
+            return;
+        }
+
+        if (args.length > 0 && args[0].equalsIgnoreCase("sync")) {
+            replica.sync();
+            source.sendMessage(Component.text("Pulling ban changes from the bot.", NamedTextColor.GREEN));
+            return;
+        }
+
+        source.sendMessage(Component.text("Ban replica", NamedTextColor.GOLD));
+        for (Map.Entry<String, Object> entry : replica.status().entrySet()) {
+            source.sendMessage(Component.text()
+                .append(Component.text("  " + entry.getKey() + ": ", NamedTextColor.GRAY))
+                .append(Component.text(String.valueOf(entry.getValue()), NamedTextColor.WHITE))
+                .build());
+        }
+    }
+
+    @Override
+    public boolean hasPermission(Invocation invocation) {
+        return invocation.source().hasPermission("newlife.bans.replica");
+    }
+}
@@ -1,6 +1,7 @@
 package com.newlifesmp.bans;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.sun.net.httpserver.HttpServer;
 import com.sun.net.httpserver.HttpExchange;
@@ -12,24 +13,31 @@ import java.net.InetSocketAddress;
 import java.nio.charset.StandardCharsets;
 
 /**
- * Simple HTTP server to receive kick notifications from Discord bot
+ * Simple HTTP server to receive kick notifications from Discord bot, and ban changes that make
+ * cached ban checks and the ban replica stale
  */
 public class KickHttpServer {
     
     private final HttpServer server;
     private final Logger logger;
     private final BanCheckListener banCheckListener;
+    private final BanCache banCache;
+    private final BanReplica banReplica;
     private final String apiKey;
     private final Gson gson;
     
-    public KickHttpServer(int port, String apiKey, BanCheckListener banCheckListener, Logger logger) throws IOException {
+    public KickHttpServer(int port, String apiKey, BanCheckListener banCheckListener, BanCache banCache,
+                          BanReplica banReplica, Logger logger) throws IOException {
         this.logger = logger;
         this.banCheckListener = banCheckListener;
+        this.banCache = banCache;
+        this.banReplica = banReplica;
         this.apiKey = apiKey;
         this.gson = new Gson();
         
         this.server = HttpServer.create(new InetSocketAddress(port), 0);
         this.server.createContext("/kick", this::handleKickNotification);
+        this.server.createContext("/invalidate", this::handleInvalidate);
         this.server.setExecutor(null); // Use default executor
     }
     
@@ -88,6 +96,62 @@ public class KickHttpServer {
         }
     }
     
+    /**
+     * Drops cached ban checks after a ban or unban: body { "uuids": [...] }, or { "all": true }.
+     * Also has the ban replica pull the change right away.
+     */
+    private void handleInvalidate(HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                sendResponse(exchange, 405, createErrorResponse("Method not allowed"));
+                return;
+            }
+            
+            String authHeader = exchange.getRequestHeaders().getFirst("Authorization");
+            if (authHeader == null || !authHeader.equals("Bearer " + apiKey)) {
+                sendResponse(exchange, 401, createErrorResponse("Unauthorized"));
+                return;
+            }
+            
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            JsonObject json = gson.fromJson(body, JsonObject.class);
+            boolean all = json != null && json.has("all") && json.get("all").isJsonPrimitive()
+                && json.get("all").getAsBoolean();
+            if (json == null || (!all && !(json.has("uuids") && json.get("uuids").isJsonArray()))) {
+                sendResponse(exchange, 400, createErrorResponse("Missing uuids"));
+                return;
+            }
+            
+            int dropped = 0;
+            if (banCache != null) {
+                if (all) {
+                    dropped = banCache.size();
+                    banCache.clear();
+                } else {
+                    for (JsonElement uuid : json.getAsJsonArray("uuids")) {
+                        banCache.invalidate(uuid.getAsString());
+                        dropped++;
+                    }
+                }
+            }
+            
+            if (banReplica != null) {
+                banReplica.sync();
+            }
+            
+            logger.info("Ban state changed, dropped {} cached ban checks", dropped);
+            
+            JsonObject response = new JsonObject();
+            response.addProperty("success", true);
+            response.addProperty("invalidated", dropped);
+            sendResponse(exchange, 200, gson.toJson(response));
+            
+        } catch (Exception e) {
+            logger.error("Error handling ban cache invalidation", e);
+            sendResponse(exchange, 500, createErrorResponse("Internal server error"));
+        }
+    }
+    
     private void sendResponse(HttpExchange exchange, int statusCode, String response) throws IOException {
         byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
         exchange.getResponseHeaders().set("Content-Type", "application/json");
@@ -28,6 +28,8 @@ public class NewLifeBans {
     private final Path dataDirectory;
     private BanConfig config;
     private BanApiClient apiClient;
+    private BanCache banCache;
+    private BanReplica banReplica;
     private BanCheckListener banCheckListener;
     private KickHttpServer kickHttpServer;
 
@@ -61,6 +63,19 @@ public class NewLifeBans {
             logger
         );
 
+        if (config.isCacheEnabled()) {
+            this.banCache = new BanCache(
+                config.getCacheNotBannedTtl(),
+                config.getCacheBannedTtl(),
+                config.getCacheMaxEntries()
+            );
+        }
+
+        if (config.isReplicaEnabled()) {
+            this.banReplica = new BanReplica(this, dataDirectory.resolve("bans-replica.json"));
+            banReplica.start();
+        }
+
         // Register event listeners
         this.banCheckListener = new BanCheckListener(this);
         server.getEventManager().register(this, banCheckListener);
@@ -71,6 +86,8 @@ public class NewLifeBans {
                 config.getKickServerPort(),
                 config.getApiKey(),
                 banCheckListener,
+                banCache,
+                banReplica,
                 logger
             );
             kickHttpServer.start();
@@ -87,6 +104,12 @@ public class NewLifeBans {
                 .build(),
             new BanInfoCommand(this)
         );
+        server.getCommandManager().register(
+            server.getCommandManager().metaBuilder("banreplica")
+                .plugin(this)
+                .build(),
+            new BanReplicaCommand(this)
+        );
 
         logger.info("NewLife Bans enabled successfully!");
         logger.info("API URL: {}", config.getApiUrl());
@@ -135,6 +158,29 @@ public class NewLifeBans {
               key: "your-secure-api-key-here"
               # Request timeout in milliseconds
               timeout: 5000
+              # Port for the HTTP server that receives kick and ban notifications from Discord bot
+              kick-server-port: 3002
+            
+            # Ban check cache - rejoining players skip the API call while their entry is fresh
+            cache:
+              enabled: true
+              # Seconds a "not banned" answer is reused
+              not-banned-ttl: 300
+              # Seconds a ban is reused (never past the ban's own expiry)
+              banned-ttl: 600
+              # Most players remembered; the least recently seen are dropped first
+              max-entries: 10000
+            
+            # Local copy of all active bans - logins are checked without calling the bot and keep
+            # being checked while it is down. Saved to bans-replica.json across restarts.
+            replica:
+              enabled: true
+              # Seconds between pulls of new bans, unbans and expiries (a ban or unban in Discord also pulls at once)
+              poll-seconds: 30
+              # Minutes between full reloads, a safety net for any change a pull missed
+              resync-minutes: 360
+              # Deny logins while no copy has ever been loaded and the bot can't be reached, instead of letting them in
+              fail-closed: false
             
             # Messages (supports MiniMessage format)
             messages:
@@ -206,4 +252,18 @@ public class NewLifeBans {
     public BanApiClient getApiClient() {
         return apiClient;
     }
+
+    /**
+     * Null when cache.enabled is false
+     */
+    public BanCache getBanCache() {
+        return banCache;
+    }
+
+    /**
+     * Null when replica.enabled is false
+     */
+    public BanReplica getBanReplica() {
+        return banReplica;
+    }
 }
@@ -0,0 +1,62 @@
+package com.newlifesmp.bans;
+
+/**
+ * Bloom filter over player UUIDs. A miss means the UUID is definitely not in the set; a hit means
+ * it probably is and the caller has to look it up.
+ *
+ * Sized to a power of two between 10 and 20 bits per UUID with 7 probes, so under 1% of players
+ * who are not banned get past it. The probes are derived from two mixed halves of the UUID
+ * (double hashing). Built once and never changed, so any number of threads can read it.
+ */
+public class UuidBloomFilter {
+
+    private static final int PROBES = 7;
+    private static final int BITS_PER_ENTRY = 10;
+
+    private final long[] words;
+    private final long mask;
+
+    public UuidBloomFilter(int expectedEntries) {
+        long wanted = Math.max(64L, (long) Math.max(1, expectedEntries) * BITS_PER_ENTRY);
+        long bits = Long.highestOneBit(wanted - 1) << 1;
+        this.words = new long[(int) (bits >>> 6)];
+        this.mask = bits - 1;
+    }
+
+    public void add(long mostSigBits, long leastSigBits) {
+        long h1 = mix(mostSigBits ^ mix(leastSigBits));
+        long h2 = mix(h1 ^ leastSigBits) | 1;
+        for (int i = 0; i < PROBES; i++) {
+            long bit = (h1 + i * h2) & mask;
+            words[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    public boolean mightContain(long mostSigBits, long leastSigBits) {
+        long h1 = mix(mostSigBits ^ mix(leastSigBits));
+        long h2 = mix(h1 ^ leastSigBits) | 1;
+        for (int i = 0; i < PROBES; i++) {
+            long bit = (h1 + i * h2) & mask;
+            if ((words[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long sizeInBits() {
+        return mask + 1;
+    }
+
+    /**
+     * Murmur3's 64-bit finalizer
+     */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
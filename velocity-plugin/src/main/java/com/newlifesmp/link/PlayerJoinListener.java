@@ -1,5 +1,6 @@
 package com.newlifesmp.link;
 
+import com.velocitypowered.api.event.EventTask;
 import com.velocitypowered.api.event.ResultedEvent;
 import com.velocitypowered.api.event.Subscribe;
 import com.velocitypowered.api.event.connection.LoginEvent;
@@ -7,7 +8,8 @@ import com.velocitypowered.api.proxy.Player;
 import net.kyori.adventure.text.minimessage.MiniMessage;
 import net.kyori.adventure.text.Component;
 
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
@@ -21,8 +23,12 @@ public class PlayerJoinListener {
         this.miniMessage = MiniMessage.miniMessage();
     }
 
+    /**
+     * Checks that the account is linked. The API call suspends the login through an EventTask
+     * instead of blocking, so a join wave does not tie up Velocity's event threads.
+     */
     @Subscribe
-    public void onPlayerLogin(LoginEvent event) {
+    public EventTask onPlayerLogin(LoginEvent event) {
         Player player = event.getPlayer();
         String uuid = player.getUniqueId().toString();
         String username = player.getUsername();
@@ -39,72 +45,75 @@ public class PlayerJoinListener {
             if (config.isDebug()) {
                 plugin.getLogger().info("[DEBUG] Player {} has bypass permission, allowing", username);
             }
-            return;
+            return null;
         }
 
-        // Check link status via API
-        try {
-            LinkApiClient.LinkResult result = plugin.getApiClient()
-                .checkLinked(uuid)
-                .get(config.getTimeout() + 1000, TimeUnit.MILLISECONDS);
-
-            if (config.isDebug()) {
-                plugin.getLogger().info("[DEBUG] API result for {}: success={}, linked={}", 
-                    username, result.isSuccess(), result.isLinked());
-            }
-
-            if (!result.isSuccess()) {
-                // API error - deny with error message
-                plugin.getLogger().warn("API check failed for {}: {}", username, 
-                    result.getError().orElse("Unknown error"));
-                
-                Component kickComponent = miniMessage.deserialize(config.getApiErrorMessage());
-                event.setResult(ResultedEvent.ComponentResult.denied(kickComponent));
-                return;
-            }
+        // Check link status via API without holding an event thread; Velocity resumes the login
+        // once the answer is in
+        CompletableFuture<Void> check = plugin.getApiClient()
+            .checkLinked(uuid)
+            .orTimeout(config.getTimeout() + 1000, TimeUnit.MILLISECONDS)
+            .handle((result, error) -> {
+                if (error != null) {
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                    if (cause instanceof TimeoutException) {
+                        plugin.getLogger().warn("Link check timed out for {}", username);
+                    } else {
+                        plugin.getLogger().error("Link check execution failed for {}", username, cause);
+                    }
+                    denyUnlessFailOpen(event);
+                    return null;
+                }
+                applyLinkResult(event, result);
+                return null;
+            });
+        return EventTask.resumeWhenComplete(check);
+    }
 
-            if (!result.isLinked()) {
-                // Not linked - deny with instructions
-                plugin.getLogger().info("Denied unlinked player: {} ({})", username, uuid);
-                
-                Component kickComponent = miniMessage.deserialize(config.getKickMessage());
-                event.setResult(ResultedEvent.ComponentResult.denied(kickComponent));
-                return;
-            }
+    private void applyLinkResult(LoginEvent event, LinkApiClient.LinkResult result) {
+        Player player = event.getPlayer();
+        String uuid = player.getUniqueId().toString();
+        String username = player.getUsername();
+        Config config = plugin.getConfig();
 
-            // Player is linked - allow
-            if (config.isDebug()) {
-                plugin.getLogger().info("[DEBUG] Player {} is linked to Discord {}, allowing", 
-                    username, result.getDiscordId().orElse("unknown"));
-            }
+        if (config.isDebug()) {
+            plugin.getLogger().info("[DEBUG] API result for {}: success={}, linked={}", 
+                username, result.isSuccess(), result.isLinked());
+        }
 
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            plugin.getLogger().error("Link check interrupted for {}", username);
-            if (!config.isFailOpen()) {
-                Component kickComponent = miniMessage.deserialize(config.getApiErrorMessage());
-                event.setResult(ResultedEvent.ComponentResult.denied(kickComponent));
-            } else {
-                plugin.getLogger().warn("Fail-open enabled, allowing {} through", username);
-            }
+        if (!result.isSuccess()) {
+            // API error - deny with error message
+            plugin.getLogger().warn("API check failed for {}: {}", username, 
+                result.getError().orElse("Unknown error"));
             
-        } catch (ExecutionException e) {
-            plugin.getLogger().error("Link check execution failed for {}", username, e.getCause());
-            if (!config.isFailOpen()) {
-                Component kickComponent = miniMessage.deserialize(config.getApiErrorMessage());
-                event.setResult(ResultedEvent.ComponentResult.denied(kickComponent));
-            } else {
-                plugin.getLogger().warn("Fail-open enabled, allowing {} through", username);
-            }
+            Component kickComponent = miniMessage.deserialize(config.getApiErrorMessage());
+            event.setResult(ResultedEvent.ComponentResult.denied(kickComponent));
+            return;
+        }
+
+        if (!result.isLinked()) {
+            // Not linked - deny with instructions
+            plugin.getLogger().info("Denied unlinked player: {} ({})", username, uuid);
             
-        } catch (TimeoutException e) {
-            plugin.getLogger().warn("Link check timed out for {}", username);
-            if (!config.isFailOpen()) {
-                Component kickComponent = miniMessage.deserialize(config.getApiErrorMessage());
-                event.setResult(ResultedEvent.ComponentResult.denied(kickComponent));
-            } else {
-                plugin.getLogger().warn("Fail-open enabled, allowing {} through", username);
-            }
+            Component kickComponent = miniMessage.deserialize(config.getKickMessage());
+            event.setResult(ResultedEvent.ComponentResult.denied(kickComponent));
+            return;
+        }
+
+        // Player is linked - allow
+        if (config.isDebug()) {
+            plugin.getLogger().info("[DEBUG] Player {} is linked to Discord {}, allowing", 
+                username, result.getDiscordId().orElse("unknown"));
+        }
+    }
+
+    private void denyUnlessFailOpen(LoginEvent event) {
+        Config config = plugin.getConfig();
+        if (!config.isFailOpen()) {
+            Component kickComponent = miniMessage.deserialize(config.getApiErrorMessage());
+            event.setResult(ResultedEvent.ComponentResult.denied(kickComponent));
+        } else {
+            plugin.getLogger().warn("Fail-open enabled, allowing {} through", event.getPlayer().getUsername());
         }
     }
 }